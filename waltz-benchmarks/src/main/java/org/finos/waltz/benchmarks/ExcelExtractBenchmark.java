@@ -0,0 +1,129 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.benchmarks;
+
+import org.finos.waltz.model.report_grid.ImmutableReportGrid;
+import org.finos.waltz.model.report_grid.ReportGrid;
+import org.finos.waltz.model.report_grid.ReportGridCell;
+import org.finos.waltz.model.report_grid.ReportGridDefinition;
+import org.finos.waltz.model.report_grid.ReportGridFixedColumnDefinition;
+import org.finos.waltz.model.report_grid.ReportGridInstance;
+import org.finos.waltz.model.report_grid.ReportSubject;
+import org.finos.waltz.web.endpoints.extracts.ColumnCommentary;
+import org.finos.waltz.web.endpoints.extracts.reportgrid.DynamicExcelFormatter;
+import org.finos.waltz.web.endpoints.extracts.reportgrid.FormatterUtils;
+import org.jooq.lambda.tuple.Tuple2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.finos.waltz.common.MapUtilities.groupBy;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Writing report grid extracts via the streaming (SXSSF) excel formatter.
+ * The query based extracts share the same workbook handling, see
+ * {@link org.finos.waltz.benchmarks.h2.DirectQueryExtractBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExcelExtractBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int rowCount;
+
+    @Param({"10"})
+    public int fixedColumnCount;
+
+    private final DynamicExcelFormatter formatter = new DynamicExcelFormatter(new FormatterUtils());
+
+    private ReportGrid reportGrid;
+    private List<Tuple2<ReportGridFixedColumnDefinition, ColumnCommentary>> columnDefinitions;
+    private List<Tuple2<ReportSubject, ArrayList<Object>>> reportRows;
+
+
+    @Setup
+    public void setup() {
+        ReportGridDefinition definition = SyntheticData.mkReportGridDefinition(fixedColumnCount);
+        List<ReportSubject> subjects = SyntheticData.mkReportSubjects(rowCount);
+        ReportGridInstance instance = SyntheticData.mkReportGridInstance(definition, subjects);
+
+        reportGrid = ImmutableReportGrid
+                .builder()
+                .definition(definition)
+                .instance(instance)
+                .build();
+
+        columnDefinitions = definition
+                .fixedColumnDefinitions()
+                .stream()
+                .map(cd -> tuple(cd, ColumnCommentary.NO_COMMENTARY))
+                .collect(Collectors.toList());
+
+        Map<Long, Collection<ReportGridCell>> cellsBySubject = groupBy(
+                instance.cellData(),
+                ReportGridCell::subjectId);
+
+        reportRows = subjects
+                .stream()
+                .map(s -> {
+                    Collection<ReportGridCell> cells = cellsBySubject.get(s.entityReference().id());
+                    ArrayList<Object> values = definition
+                            .fixedColumnDefinitions()
+                            .stream()
+                            .map(cd -> Optional
+                                    .ofNullable(cells)
+                                    .flatMap(cs -> cs
+                                            .stream()
+                                            .filter(c -> c.columnDefinitionId().equals(cd.gridColumnId()))
+                                            .findFirst())
+                                    .map(c -> (Object) c.numberValue())
+                                    .orElse(null))
+                            .collect(Collectors.toCollection(ArrayList::new));
+                    return tuple(s, values);
+                })
+                .collect(Collectors.toList());
+    }
+
+
+    @Benchmark
+    public byte[] formatReportGrid() throws IOException {
+        return formatter.format("benchmark", reportGrid, columnDefinitions, reportRows);
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.benchmarks;
+
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.flow_classification_rule.FlowClassificationRuleVantagePoint;
+import org.finos.waltz.model.rating.AuthoritativenessRatingValue;
+import org.finos.waltz.service.flow_classification_rule.FlowClassificationRuleResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.finos.waltz.model.EntityReference.mkRef;
+
+/**
+ * Constructing the resolver (done per recalculation of flow ratings) and
+ * resolving a batch of lookups against it (done once per flow decorator).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlowClassificationRuleResolverBenchmark {
+
+    private static final int LOOKUP_COUNT = 10_000;
+
+    @Param({"1000", "10000", "50000"})
+    public int ruleCount;
+
+    @Param({"200"})
+    public int vantagePointCount;
+
+    @Param({"100"})
+    public int dataTypeCount;
+
+    @Param({"2000"})
+    public int sourceCount;
+
+    private List<FlowClassificationRuleVantagePoint> vantagePoints;
+    private FlowClassificationRuleResolver resolver;
+    private EntityReference[] lookupVantagePoints;
+    private EntityReference[] lookupSources;
+    private long[] lookupDataTypes;
+
+
+    @Setup
+    public void setup() {
+        vantagePoints = SyntheticData.mkVantagePoints(ruleCount, vantagePointCount, dataTypeCount, sourceCount);
+        resolver = new FlowClassificationRuleResolver(vantagePoints);
+
+        Random rnd = new Random(ruleCount);
+        lookupVantagePoints = new EntityReference[LOOKUP_COUNT];
+        lookupSources = new EntityReference[LOOKUP_COUNT];
+        lookupDataTypes = new long[LOOKUP_COUNT];
+
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            lookupVantagePoints[i] = mkRef(EntityKind.ORG_UNIT, rnd.nextInt(vantagePointCount));
+            lookupSources[i] = mkRef(EntityKind.APPLICATION, rnd.nextInt(sourceCount));
+            lookupDataTypes[i] = rnd.nextInt(dataTypeCount);
+        }
+    }
+
+
+    @Benchmark
+    public FlowClassificationRuleResolver construct() {
+        return new FlowClassificationRuleResolver(vantagePoints);
+    }
+
+
+    @Benchmark
+    public void resolve(Blackhole bh) {
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            AuthoritativenessRatingValue rating = resolver.resolve(
+                    lookupVantagePoints[i],
+                    lookupSources[i],
+                    lookupDataTypes[i]);
+            bh.consume(rating);
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.benchmarks;
+
+import org.finos.waltz.model.report_grid.ReportGridCell;
+import org.finos.waltz.model.report_grid.ReportGridDefinition;
+import org.finos.waltz.model.report_grid.ReportGridInstance;
+import org.finos.waltz.service.report_grid.ReportGridColumnCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating the derived columns of a grid.  The compiled scripts are cached
+ * against the definition, so this measures steady state evaluation only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportGridColumnCalculatorBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int subjectCount;
+
+    @Param({"10"})
+    public int fixedColumnCount;
+
+    private ReportGridDefinition definition;
+    private ReportGridInstance instance;
+
+
+    @Setup
+    public void setup() {
+        definition = SyntheticData.mkReportGridDefinition(fixedColumnCount);
+        instance = SyntheticData.mkReportGridInstance(
+                definition,
+                SyntheticData.mkReportSubjects(subjectCount));
+    }
+
+
+    @Benchmark
+    public Set<ReportGridCell> calculate() {
+        return ReportGridColumnCalculator.calculate(instance, definition);
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.benchmarks;
+
+import org.finos.waltz.common.hierarchy.FlatNode;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.application.Application;
+import org.finos.waltz.model.application.ApplicationKind;
+import org.finos.waltz.model.application.ImmutableApplication;
+import org.finos.waltz.model.application.LifecyclePhase;
+import org.finos.waltz.model.external_identifier.ExternalIdValue;
+import org.finos.waltz.model.flow_classification_rule.FlowClassificationRuleVantagePoint;
+import org.finos.waltz.model.flow_classification_rule.ImmutableFlowClassificationRuleVantagePoint;
+import org.finos.waltz.model.rating.RagRating;
+import org.finos.waltz.model.report_grid.ImmutableReportGridCell;
+import org.finos.waltz.model.report_grid.ImmutableReportGridDefinition;
+import org.finos.waltz.model.report_grid.ImmutableReportGridDerivedColumnDefinition;
+import org.finos.waltz.model.report_grid.ImmutableReportGridFixedColumnDefinition;
+import org.finos.waltz.model.report_grid.ImmutableReportGridInstance;
+import org.finos.waltz.model.report_grid.ImmutableReportSubject;
+import org.finos.waltz.model.report_grid.ReportGridCell;
+import org.finos.waltz.model.report_grid.ReportGridDefinition;
+import org.finos.waltz.model.report_grid.ReportGridDerivedColumnDefinition;
+import org.finos.waltz.model.report_grid.ReportGridFixedColumnDefinition;
+import org.finos.waltz.model.report_grid.ReportGridInstance;
+import org.finos.waltz.model.report_grid.ReportSubject;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.finos.waltz.common.ListUtilities.asList;
+import static org.finos.waltz.model.EntityReference.mkRef;
+
+/**
+ * Generators for the synthetic data sets used by the benchmarks.
+ * <p>
+ * All generators are seeded so repeated runs (and forks) measure
+ * the same shape of data.
+ */
+public class SyntheticData {
+
+    private static final long SEED = 73L;
+
+    public static final String[] CLASSIFICATION_CODES = {"PRIMARY", "SECONDARY", "DISCOURAGED"};
+
+
+    /**
+     * A forest of <code>count</code> nodes, roughly 1% of which are roots.
+     * Each other node has a random parent from the nodes preceding it.
+     */
+    public static List<FlatNode<String, Long>> mkFlatNodes(int count) {
+        Random rnd = new Random(SEED);
+        int rootCount = Math.max(1, count / 100);
+
+        return LongStream
+                .range(0, count)
+                .mapToObj(id -> {
+                    Optional<Long> parentId = id < rootCount
+                            ? Optional.empty()
+                            : Optional.of((long) rnd.nextInt((int) id));
+                    return new FlatNode<>(id, parentId, "node" + id);
+                })
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Flow classification rules spread across <code>vantagePointCount</code> org units
+     * and <code>dataTypeCount</code> data types, each rule naming one of
+     * <code>sourceCount</code> source applications.
+     */
+    public static List<FlowClassificationRuleVantagePoint> mkVantagePoints(int ruleCount,
+                                                                           int vantagePointCount,
+                                                                           int dataTypeCount,
+                                                                           int sourceCount) {
+        Random rnd = new Random(SEED);
+
+        return IntStream
+                .range(0, ruleCount)
+                .mapToObj(i -> ImmutableFlowClassificationRuleVantagePoint
+                        .builder()
+                        .vantagePoint(mkRef(EntityKind.ORG_UNIT, rnd.nextInt(vantagePointCount)))
+                        .vantagePointRank(rnd.nextInt(5))
+                        .dataType(mkRef(EntityKind.DATA_TYPE, rnd.nextInt(dataTypeCount)))
+                        .dataTypeRank(rnd.nextInt(3))
+                        .subjectReference(mkRef(EntityKind.APPLICATION, rnd.nextInt(sourceCount)))
+                        .ruleId((long) i)
+                        .classificationCode(CLASSIFICATION_CODES[rnd.nextInt(CLASSIFICATION_CODES.length)])
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+
+    public static List<Application> mkApplications(int count) {
+        return LongStream
+                .range(0, count)
+                .mapToObj(id -> ImmutableApplication
+                        .builder()
+                        .id(id)
+                        .name("App " + id)
+                        .description("Synthetic application " + id + " used for benchmarking")
+                        .assetCode(ExternalIdValue.of("APP-" + id))
+                        .organisationalUnitId(id % 50)
+                        .applicationKind(ApplicationKind.IN_HOUSE)
+                        .lifecyclePhase(LifecyclePhase.PRODUCTION)
+                        .overallRating(RagRating.G)
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+
+    public static List<ReportSubject> mkReportSubjects(int count) {
+        return LongStream
+                .range(0, count)
+                .mapToObj(id -> ImmutableReportSubject
+                        .builder()
+                        .entityReference(mkRef(EntityKind.APPLICATION, id, "App " + id, null, "APP-" + id))
+                        .lifecyclePhase(LifecyclePhase.PRODUCTION)
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * A grid with <code>fixedColumnCount</code> fixed (numeric) columns.  The derived columns
+     * are typical of those seen in practice: a sum of the fixed columns, a threshold check
+     * on that sum and a lookup against one of the fixed columns.
+     */
+    public static ReportGridDefinition mkReportGridDefinition(int fixedColumnCount) {
+        List<ReportGridFixedColumnDefinition> fixedCols = IntStream
+                .range(0, fixedColumnCount)
+                .mapToObj(i -> ImmutableReportGridFixedColumnDefinition
+                        .builder()
+                        .gridColumnId((long) i)
+                        .columnEntityKind(EntityKind.COST_KIND)
+                        .columnEntityId((long) i)
+                        .columnName("Cost " + i)
+                        .externalId("COST_" + i)
+                        .position(i)
+                        .build())
+                .collect(Collectors.toList());
+
+        String sumExpr = IntStream
+                .range(0, fixedColumnCount)
+                .mapToObj(i -> "(cell('COST_" + i + "') == null ? 0 : cell('COST_" + i + "').numberValue())")
+                .collect(Collectors.joining(" + "));
+
+        List<ReportGridDerivedColumnDefinition> derivedCols = asList(
+                mkDerivedCol(fixedColumnCount, "TOTAL", "mkResult('' + (" + sumExpr + "))"),
+                mkDerivedCol(fixedColumnCount + 1, "EXPENSIVE", "cell('TOTAL').textValue().length() > 4 ? mkResult('yes', 'Expensive', 'Y') : mkResult('no', 'Cheap', 'N')"),
+                mkDerivedCol(fixedColumnCount + 2, "HAS_COST_0", "cell('COST_0') == null ? mkResult('missing') : mkResult('present')"));
+
+        return ImmutableReportGridDefinition
+                .builder()
+                .name("benchmark")
+                .description("synthetic grid")
+                .lastUpdatedBy("benchmark")
+                .subjectKind(EntityKind.APPLICATION)
+                .fixedColumnDefinitions(fixedCols)
+                .derivedColumnDefinitions(derivedCols)
+                .build();
+    }
+
+
+    /**
+     * Populates ~80% of the fixed cells of <code>definition</code> for each subject.
+     */
+    public static ReportGridInstance mkReportGridInstance(ReportGridDefinition definition,
+                                                          List<ReportSubject> subjects) {
+        Random rnd = new Random(SEED);
+        List<ReportGridCell> cells = new ArrayList<>();
+
+        for (ReportSubject subject : subjects) {
+            for (ReportGridFixedColumnDefinition col : definition.fixedColumnDefinitions()) {
+                if (rnd.nextInt(10) < 8) {
+                    cells.add(ImmutableReportGridCell
+                            .builder()
+                            .subjectId(subject.entityReference().id())
+                            .columnDefinitionId(col.gridColumnId())
+                            .numberValue(BigDecimal.valueOf(rnd.nextInt(100_000), 2))
+                            .build());
+                }
+            }
+        }
+
+        return ImmutableReportGridInstance
+                .builder()
+                .subjects(subjects)
+                .cellData(cells)
+                .build();
+    }
+
+
+    // -- HELPERS ---
+
+    private static ReportGridDerivedColumnDefinition mkDerivedCol(int gridColId,
+                                                                  String extId,
+                                                                  String script) {
+        return ImmutableReportGridDerivedColumnDefinition
+                .builder()
+                .gridColumnId((long) gridColId)
+                .displayName(extId)
+                .externalId(extId)
+                .position(gridColId)
+                .derivationScript(script)
+                .build();
+    }
+
+}
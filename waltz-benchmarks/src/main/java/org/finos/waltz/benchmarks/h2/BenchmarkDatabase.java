@@ -0,0 +1,296 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.benchmarks.h2;
+
+import org.finos.waltz.common.LoggingUtilities;
+import org.finos.waltz.integration_test.inmem.DIInMemoryTestConfiguration;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityLifecycleStatus;
+import org.finos.waltz.model.application.ApplicationKind;
+import org.finos.waltz.model.application.LifecyclePhase;
+import org.finos.waltz.model.rating.RagRating;
+import org.finos.waltz.schema.tables.records.ApplicationRecord;
+import org.finos.waltz.schema.tables.records.LogicalFlowRecord;
+import org.finos.waltz.schema.tables.records.MeasurableRatingRecord;
+import org.finos.waltz.schema.tables.records.OrganisationalUnitRecord;
+import org.finos.waltz.service.entity_hierarchy.EntityHierarchyService;
+import org.jooq.DSLContext;
+import org.jooq.TableRecord;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.finos.waltz.common.DateTimeUtilities.nowUtcTimestamp;
+import static org.finos.waltz.common.ListUtilities.asList;
+import static org.finos.waltz.schema.Tables.APPLICATION;
+import static org.finos.waltz.schema.Tables.LOGICAL_FLOW;
+import static org.finos.waltz.schema.Tables.MEASURABLE_RATING;
+import static org.finos.waltz.schema.Tables.ORGANISATIONAL_UNIT;
+
+/**
+ * The in-memory H2 database used by the integration tests (see {@link DIInMemoryTestConfiguration})
+ * along with loaders for bulk synthetic data.
+ * <p>
+ * The context is created once per (forked) benchmark jvm.  Loaders insert in batches
+ * rather than via the test helpers, which write a row at a time.
+ */
+public class BenchmarkDatabase {
+
+    public static final String PROVENANCE = "benchmark";
+
+    private static final int BATCH_SIZE = 1000;
+
+    // packages on the benchmark classpath which must not be component scanned
+    private static final List<String> UNSCANNED_PACKAGE_PATHS = asList(
+            "org/finos/waltz/web/",
+            "org/finos/waltz/integration_test/");
+
+    // org unit ids are not generated by the database
+    private static final AtomicLong orgUnitIdCounter = new AtomicLong(1_000_000);
+
+    private static AnnotationConfigApplicationContext ctx;
+
+
+    public static synchronized AnnotationConfigApplicationContext getContext() {
+        if (ctx == null) {
+            LoggingUtilities.configureLogging();
+            ctx = new BenchmarkContext();
+            ctx.register(DIInMemoryTestConfiguration.class);
+            ctx.refresh();
+        }
+        return ctx;
+    }
+
+
+    public static <T> T getBean(Class<T> beanClass) {
+        return getContext().getBean(beanClass);
+    }
+
+
+    /**
+     * Creates an instance of a (non-scanned) class with its dependencies
+     * injected from the context, e.g. the <code>waltz-test-common</code> helpers.
+     */
+    public static <T> T createBean(Class<T> beanClass) {
+        return getContext()
+                .getAutowireCapableBeanFactory()
+                .createBean(beanClass);
+    }
+
+
+    public static DSLContext getDsl() {
+        return getBean(DSLContext.class);
+    }
+
+
+    /**
+     * Removes data created by previous loads (only relevant if benchmarks are run without forking).
+     */
+    public static void clear() {
+        DSLContext dsl = getDsl();
+        dsl.deleteFrom(LOGICAL_FLOW).execute();
+        dsl.deleteFrom(MEASURABLE_RATING).execute();
+        dsl.deleteFrom(APPLICATION).execute();
+        dsl.deleteFrom(ORGANISATIONAL_UNIT).execute();
+    }
+
+
+    /**
+     * Creates a root org unit with <code>childCount</code> children and rebuilds the
+     * org unit hierarchy.
+     *
+     * @return ids of the org units, the root first
+     */
+    public static List<Long> createOrgUnits(int childCount) {
+        DSLContext dsl = getDsl();
+        long rootId = createOrgUnit(dsl, "root", null);
+
+        List<Long> ids = new ArrayList<>();
+        ids.add(rootId);
+        IntStream
+                .range(0, childCount)
+                .forEach(i -> ids.add(createOrgUnit(dsl, "ou" + i, rootId)));
+
+        getBean(EntityHierarchyService.class).buildFor(EntityKind.ORG_UNIT);
+        return ids;
+    }
+
+
+    /**
+     * Creates <code>count</code> applications spread evenly over the given org units.
+     *
+     * @return ids of the created applications
+     */
+    public static List<Long> createApplications(int count, List<Long> orgUnitIds) {
+        DSLContext dsl = getDsl();
+        Timestamp now = nowUtcTimestamp();
+
+        List<ApplicationRecord> records = IntStream
+                .range(0, count)
+                .mapToObj(i -> {
+                    ApplicationRecord record = dsl.newRecord(APPLICATION);
+                    record.setName("App " + i);
+                    record.setDescription("Synthetic application " + i);
+                    record.setAssetCode(PROVENANCE + "-" + i);
+                    record.setParentAssetCode("");
+                    record.setOrganisationalUnitId(orgUnitIds.get(i % orgUnitIds.size()));
+                    record.setKind(ApplicationKind.IN_HOUSE.name());
+                    record.setLifecyclePhase(LifecyclePhase.PRODUCTION.name());
+                    record.setOverallRating(RagRating.G.name());
+                    record.setBusinessCriticality("MEDIUM");
+                    record.setUpdatedAt(now);
+                    record.setProvenance(PROVENANCE);
+                    return record;
+                })
+                .collect(Collectors.toList());
+
+        insertInBatches(dsl, records);
+
+        return dsl
+                .select(APPLICATION.ID)
+                .from(APPLICATION)
+                .where(APPLICATION.PROVENANCE.eq(PROVENANCE))
+                .orderBy(APPLICATION.ID)
+                .fetch(APPLICATION.ID);
+    }
+
+
+    /**
+     * Creates (up to) <code>flowsPerApp</code> outbound flows from each application
+     * to randomly chosen applications.  Self flows and duplicates are skipped.
+     */
+    public static void createLogicalFlows(List<Long> appIds, int flowsPerApp, Random rnd) {
+        DSLContext dsl = getDsl();
+        Timestamp now = nowUtcTimestamp();
+        List<LogicalFlowRecord> records = new ArrayList<>();
+
+        for (Long sourceId : appIds) {
+            rnd.ints(flowsPerApp, 0, appIds.size())
+                    .mapToObj(appIds::get)
+                    .filter(targetId -> ! targetId.equals(sourceId))
+                    .distinct()
+                    .forEach(targetId -> {
+                        LogicalFlowRecord record = dsl.newRecord(LOGICAL_FLOW);
+                        record.setSourceEntityKind(EntityKind.APPLICATION.name());
+                        record.setSourceEntityId(sourceId);
+                        record.setTargetEntityKind(EntityKind.APPLICATION.name());
+                        record.setTargetEntityId(targetId);
+                        record.setEntityLifecycleStatus(EntityLifecycleStatus.ACTIVE.name());
+                        record.setLastUpdatedAt(now);
+                        record.setLastUpdatedBy(PROVENANCE);
+                        record.setCreatedAt(now);
+                        record.setCreatedBy(PROVENANCE);
+                        record.setProvenance(PROVENANCE);
+                        record.setIsRemoved(false);
+                        record.setIsReadonly(false);
+                        records.add(record);
+                    });
+        }
+
+        insertInBatches(dsl, records);
+    }
+
+
+    /**
+     * Rates each application against a random selection of (up to) <code>ratingsPerApp</code>
+     * of the given measurables.
+     */
+    public static void createMeasurableRatings(List<Long> appIds,
+                                               List<Long> measurableIds,
+                                               int ratingsPerApp,
+                                               Random rnd) {
+        DSLContext dsl = getDsl();
+        Timestamp now = nowUtcTimestamp();
+        List<MeasurableRatingRecord> records = new ArrayList<>();
+
+        for (Long appId : appIds) {
+            rnd.ints(ratingsPerApp, 0, measurableIds.size())
+                    .distinct()
+                    .mapToObj(measurableIds::get)
+                    .forEach(measurableId -> {
+                        MeasurableRatingRecord record = dsl.newRecord(MEASURABLE_RATING);
+                        record.setEntityKind(EntityKind.APPLICATION.name());
+                        record.setEntityId(appId);
+                        record.setMeasurableId(measurableId);
+                        record.setRating("G");
+                        record.setDescription("synthetic rating");
+                        record.setLastUpdatedAt(now);
+                        record.setLastUpdatedBy(PROVENANCE);
+                        record.setProvenance(PROVENANCE);
+                        records.add(record);
+                    });
+        }
+
+        insertInBatches(dsl, records);
+    }
+
+
+    // -- HELPERS ---
+
+    /**
+     * The integration test configuration (indirectly) scans all of <code>org.finos.waltz</code>.
+     * Unlike the integration tests, the web tier and the tests themselves are on the benchmark
+     * classpath.  Their beans would be created (and query the database) before the schema has
+     * been set up, so they are hidden from the scan.
+     */
+    private static class BenchmarkContext extends AnnotationConfigApplicationContext {
+
+        @Override
+        public Resource[] getResources(String locationPattern) throws IOException {
+            return Stream
+                    .of(super.getResources(locationPattern))
+                    .filter(r -> UNSCANNED_PACKAGE_PATHS
+                            .stream()
+                            .noneMatch(p -> r.getDescription().contains(p)))
+                    .toArray(Resource[]::new);
+        }
+    }
+
+
+    private static long createOrgUnit(DSLContext dsl, String name, Long parentId) {
+        OrganisationalUnitRecord record = dsl.newRecord(ORGANISATIONAL_UNIT);
+        record.setId(orgUnitIdCounter.incrementAndGet());
+        record.setName(name);
+        record.setDescription(name);
+        record.setParentId(parentId);
+        record.setLastUpdatedAt(nowUtcTimestamp());
+        record.setLastUpdatedBy(PROVENANCE);
+        record.setProvenance(PROVENANCE);
+        record.insert();
+        return record.getId();
+    }
+
+
+    private static void insertInBatches(DSLContext dsl, List<? extends TableRecord<?>> records) {
+        for (int i = 0; i < records.size(); i += BATCH_SIZE) {
+            dsl.batchInsert(records.subList(i, Math.min(i + BATCH_SIZE, records.size())))
+                    .execute();
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.benchmarks.h2;
+
+import org.finos.waltz.web.endpoints.extracts.DirectQueryBasedDataExtractor;
+import org.jooq.DSLContext;
+import org.jooq.Select;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import static org.finos.waltz.schema.Tables.APPLICATION;
+import static org.finos.waltz.schema.Tables.ORGANISATIONAL_UNIT;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * The query based excel extract path: rows are read through a lazy cursor and
+ * written to a streaming (SXSSF) workbook, which is then written to the response.
+ * The response body is discarded so only the extract itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DirectQueryExtractBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int appCount;
+
+    private DSLContext dsl;
+    private Select<?> qry;
+
+
+    @Setup
+    public void setup() {
+        dsl = BenchmarkDatabase.getDsl();
+
+        BenchmarkDatabase.clear();
+        List<Long> ouIds = BenchmarkDatabase.createOrgUnits(20);
+        BenchmarkDatabase.createApplications(appCount, ouIds);
+
+        qry = dsl
+                .select(APPLICATION.ID.as("Waltz Id"),
+                        APPLICATION.NAME.as("Name"),
+                        APPLICATION.ASSET_CODE.as("Asset Code"),
+                        APPLICATION.DESCRIPTION.as("Description"),
+                        APPLICATION.KIND.as("Kind"),
+                        APPLICATION.LIFECYCLE_PHASE.as("Lifecycle Phase"),
+                        APPLICATION.BUSINESS_CRITICALITY.as("Criticality"),
+                        ORGANISATIONAL_UNIT.NAME.as("Org Unit"))
+                .from(APPLICATION)
+                .innerJoin(ORGANISATIONAL_UNIT)
+                .on(ORGANISATIONAL_UNIT.ID.eq(APPLICATION.ORGANISATIONAL_UNIT_ID))
+                .where(APPLICATION.IS_REMOVED.isFalse());
+    }
+
+
+    @Benchmark
+    public Object writeAsExcel() {
+        return DirectQueryBasedDataExtractor.writeAsMultiSheetExcel(
+                dsl,
+                "applications",
+                new DiscardingResponse(),
+                tuple("applications", qry));
+    }
+
+
+    // -- HELPERS ---
+
+    /**
+     * A response whose raw servlet response accepts headers and discards the body.
+     */
+    private static class DiscardingResponse extends Response {
+
+        private final HttpServletResponse raw = (HttpServletResponse) Proxy.newProxyInstance(
+                HttpServletResponse.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class},
+                (proxy, method, args) -> method.getName().equals("getOutputStream")
+                        ? new DiscardingOutputStream()
+                        : null);
+
+
+        @Override
+        public HttpServletResponse raw() {
+            return raw;
+        }
+    }
+
+
+    private static class DiscardingOutputStream extends ServletOutputStream {
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+
+        @Override
+        public void write(int b) {
+        }
+
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+}
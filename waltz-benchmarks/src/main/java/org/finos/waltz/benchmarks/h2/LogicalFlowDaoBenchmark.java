@@ -0,0 +1,111 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.benchmarks.h2;
+
+import org.finos.waltz.data.logical_flow.LogicalFlowDao;
+import org.finos.waltz.data.logical_flow.LogicalFlowIdSelectorFactory;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.HierarchyQueryScope;
+import org.finos.waltz.model.logical_flow.LogicalFlow;
+import org.jooq.Record1;
+import org.jooq.Select;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.model.IdSelectionOptions.mkOpts;
+
+/**
+ * Logical flow queries against the in-memory H2 schema.  Useful for spotting
+ * changes in query shape and mapping costs, absolute timings are not
+ * representative of a production database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogicalFlowDaoBenchmark {
+
+    @Param({"1000", "5000"})
+    public int appCount;
+
+    @Param({"5"})
+    public int flowsPerApp;
+
+    @Param({"20"})
+    public int orgUnitCount;
+
+    private final LogicalFlowIdSelectorFactory selectorFactory = new LogicalFlowIdSelectorFactory();
+
+    private LogicalFlowDao dao;
+    private List<Long> appIds;
+    private Select<Record1<Long>> orgUnitSelector;
+    private Random rnd;
+
+
+    @Setup
+    public void setup() {
+        dao = BenchmarkDatabase.getBean(LogicalFlowDao.class);
+        rnd = new Random(appCount);
+
+        BenchmarkDatabase.clear();
+        List<Long> ouIds = BenchmarkDatabase.createOrgUnits(orgUnitCount);
+        appIds = BenchmarkDatabase.createApplications(appCount, ouIds.subList(1, ouIds.size()));
+        BenchmarkDatabase.createLogicalFlows(appIds, flowsPerApp, rnd);
+
+        orgUnitSelector = selectorFactory.apply(mkOpts(
+                mkRef(EntityKind.ORG_UNIT, ouIds.get(1)),
+                HierarchyQueryScope.CHILDREN));
+    }
+
+
+    @Benchmark
+    public List<LogicalFlow> findByEntityReference() {
+        Long appId = appIds.get(rnd.nextInt(appIds.size()));
+        return dao.findByEntityReference(mkRef(EntityKind.APPLICATION, appId));
+    }
+
+
+    @Benchmark
+    public List<LogicalFlow> findBySelector() {
+        return dao.findBySelector(orgUnitSelector);
+    }
+
+
+    @Benchmark
+    public List<LogicalFlow> findAllActive() {
+        return dao.findAllActive();
+    }
+
+}
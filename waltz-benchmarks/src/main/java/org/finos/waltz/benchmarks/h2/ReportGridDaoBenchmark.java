@@ -0,0 +1,170 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.benchmarks.h2;
+
+import org.finos.waltz.data.GenericSelector;
+import org.finos.waltz.data.GenericSelectorFactory;
+import org.finos.waltz.data.report_grid.ReportGridDao;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.HierarchyQueryScope;
+import org.finos.waltz.model.report_grid.ImmutableReportGridColumnDefinitionsUpdateCommand;
+import org.finos.waltz.model.report_grid.ImmutableReportGridCreateCommand;
+import org.finos.waltz.model.report_grid.ImmutableReportGridFixedColumnDefinition;
+import org.finos.waltz.model.report_grid.ReportGridCell;
+import org.finos.waltz.model.report_grid.ReportGridFixedColumnDefinition;
+import org.finos.waltz.service.entity_hierarchy.EntityHierarchyService;
+import org.finos.waltz.service.report_grid.ReportGridService;
+import org.finos.waltz.test_common.helpers.InvolvementHelper;
+import org.finos.waltz.test_common.helpers.MeasurableHelper;
+import org.finos.waltz.test_common.helpers.PersonHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.model.IdSelectionOptions.mkOpts;
+
+/**
+ * Fetching the cell data for a grid of measurable and involvement columns
+ * against the in-memory H2 schema.  Useful for spotting changes in query
+ * shape, absolute timings are not representative of a production database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportGridDaoBenchmark {
+
+    @Param({"1000", "5000"})
+    public int appCount;
+
+    @Param({"50"})
+    public int measurableCount;
+
+    @Param({"10"})
+    public int ratingsPerApp;
+
+    @Param({"10"})
+    public int measurableColumnCount;
+
+    private ReportGridDao dao;
+    private long gridId;
+    private GenericSelector selector;
+
+
+    @Setup
+    public void setup() throws Exception {
+        dao = BenchmarkDatabase.getBean(ReportGridDao.class);
+        Random rnd = new Random(appCount);
+
+        BenchmarkDatabase.clear();
+        List<Long> ouIds = BenchmarkDatabase.createOrgUnits(20);
+        List<Long> appIds = BenchmarkDatabase.createApplications(appCount, ouIds.subList(1, ouIds.size()));
+
+        MeasurableHelper measurableHelper = BenchmarkDatabase.createBean(MeasurableHelper.class);
+        long categoryId = measurableHelper.createMeasurableCategory("benchmark-" + appCount);
+        List<Long> measurableIds = IntStream
+                .range(0, measurableCount)
+                .mapToObj(i -> measurableHelper.createMeasurable("benchmark-" + appCount + "-" + i, categoryId))
+                .collect(Collectors.toList());
+        BenchmarkDatabase.getBean(EntityHierarchyService.class).buildFor(EntityKind.MEASURABLE);
+        BenchmarkDatabase.createMeasurableRatings(appIds, measurableIds, ratingsPerApp, rnd);
+
+        gridId = mkGrid(measurableIds.subList(0, measurableColumnCount));
+
+        selector = new GenericSelectorFactory().applyForKind(
+                EntityKind.APPLICATION,
+                mkOpts(mkRef(EntityKind.ORG_UNIT, ouIds.get(0)), HierarchyQueryScope.CHILDREN));
+    }
+
+
+    @Benchmark
+    public Set<ReportGridCell> findCellDataByGridId() {
+        return dao.findCellDataByGridId(gridId, selector);
+    }
+
+
+    // -- HELPERS ---
+
+    private long mkGrid(List<Long> measurableIds) throws Exception {
+        String owner = "benchmark-owner-" + appCount;
+        BenchmarkDatabase.createBean(PersonHelper.class).createPerson(owner);
+
+        ReportGridService reportGridService = BenchmarkDatabase.getBean(ReportGridService.class);
+        long id = reportGridService
+                .create(
+                        ImmutableReportGridCreateCommand
+                                .builder()
+                                .name("benchmark-" + appCount)
+                                .subjectKind(EntityKind.APPLICATION)
+                                .build(),
+                        owner)
+                .gridId();
+
+        List<ReportGridFixedColumnDefinition> columns = new ArrayList<>();
+        for (int i = 0; i < measurableIds.size(); i++) {
+            columns.add(ImmutableReportGridFixedColumnDefinition
+                    .builder()
+                    .columnEntityKind(EntityKind.MEASURABLE)
+                    .columnEntityId(measurableIds.get(i))
+                    .position(i)
+                    .build());
+        }
+
+        long involvementKindId = BenchmarkDatabase
+                .createBean(InvolvementHelper.class)
+                .mkInvolvementKind("benchmark-" + appCount);
+
+        columns.add(ImmutableReportGridFixedColumnDefinition
+                .builder()
+                .columnEntityKind(EntityKind.INVOLVEMENT_KIND)
+                .columnEntityId(involvementKindId)
+                .position(measurableIds.size())
+                .build());
+
+        reportGridService.updateColumnDefinitions(
+                id,
+                ImmutableReportGridColumnDefinitionsUpdateCommand
+                        .builder()
+                        .fixedColumnDefinitions(columns)
+                        .build(),
+                owner);
+
+        return id;
+    }
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.finos.waltz.common.Checks.checkNotEmpty;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
+
+/**
+ * Buffers items in a bounded queue and hands them, in batches, to a writer on a
+ * background thread.  A batch is written once <code>batchSize</code> items are
+ * waiting or <code>flushIntervalMillis</code> has passed since the last write,
+ * whichever comes first.
+ * <p>
+ * When the queue is full the {@link OverflowPolicy} decides whether the item is
+ * dropped straight away or the caller waits (up to <code>offerTimeoutMillis</code>)
+ * for space.  Failed batches are logged and counted, they are not retried.
+ * Callers which would rather write an item themselves than lose it should use
+ * {@link #trySubmit(Object)}, such items are counted as rejected, not dropped.
+ * <p>
+ * {@link #close()} stops the background thread and writes anything still queued,
+ * it should be called on shutdown (before the database is closed).
+ *
+ * @param <T> item type
+ */
+public class BatchingWriter<T> implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchingWriter.class);
+
+    private static final String THREAD_NAME_PREFIX = "waltz-batching-writer-";
+
+    // the flusher wakes at least this often to notice it has been closed
+    private static final long MAX_POLL_MILLIS = 100;
+
+    // how long close waits for a write in progress before draining the queue itself
+    private static final long CLOSE_TIMEOUT_MILLIS = 5_000;
+
+    public enum OverflowPolicy {
+        /** discard the item if the queue is full */
+        DROP,
+        /** wait for space in the queue, dropping the item if none becomes free in time */
+        BLOCK
+    }
+
+    private final String name;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final OverflowPolicy overflowPolicy;
+    private final long offerTimeoutMillis;
+    private final Consumer<List<T>> batchWriter;
+
+    private final BlockingQueue<T> queue;
+    private final Thread flusher;
+    private final Object writeLock = new Object();
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private volatile boolean running = true;
+
+
+    public BatchingWriter(String name,
+                          int capacity,
+                          int batchSize,
+                          long flushIntervalMillis,
+                          OverflowPolicy overflowPolicy,
+                          long offerTimeoutMillis,
+                          Consumer<List<T>> batchWriter) {
+        checkNotEmpty(name, "name cannot be empty");
+        checkTrue(capacity > 0, "capacity must be greater than zero");
+        checkTrue(batchSize > 0, "batchSize must be greater than zero");
+        checkTrue(flushIntervalMillis > 0, "flushIntervalMillis must be greater than zero");
+        checkNotNull(overflowPolicy, "overflowPolicy cannot be null");
+        checkNotNull(batchWriter, "batchWriter cannot be null");
+
+        this.name = name;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeoutMillis = Math.max(0, offerTimeoutMillis);
+        this.batchWriter = batchWriter;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        this.flusher = new Thread(this::run, THREAD_NAME_PREFIX + name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+
+    /**
+     * Queues the item for writing.
+     *
+     * @param item item to write
+     * @return true if the item was queued, false if it was dropped (queue full or writer closed)
+     */
+    public boolean submit(T item) {
+        return submit(item, dropped);
+    }
+
+
+    /**
+     * Queues the item for writing if possible, otherwise it is left to the caller.
+     *
+     * @param item item to write
+     * @return true if the item was queued, false if it was rejected (queue full or writer closed)
+     *      and the caller is responsible for writing it
+     */
+    public boolean trySubmit(T item) {
+        return submit(item, rejected);
+    }
+
+
+    /**
+     * Synchronously writes everything currently queued.
+     */
+    public void flush() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+
+    @Override
+    public void close() {
+        if (! running) {
+            return;
+        }
+        running = false;
+        try {
+            // not interrupted, a write in progress should be allowed to finish
+            flusher.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        LOG.info("Closed batching writer: {}, flushed: {}, dropped: {}, rejected: {}, failed: {}",
+                name,
+                flushed.get(),
+                dropped.get(),
+                rejected.get(),
+                failed.get());
+    }
+
+
+    // --- metrics ---
+
+    public String getName() {
+        return name;
+    }
+
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+
+    public int getCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+
+    public long getQueuedCount() {
+        return queued.get();
+    }
+
+
+    public long getFlushedCount() {
+        return flushed.get();
+    }
+
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+
+    public void resetCounters() {
+        queued.set(0);
+        flushed.set(0);
+        dropped.set(0);
+        rejected.set(0);
+        failed.set(0);
+        batches.set(0);
+    }
+
+
+    // --- helpers ---
+
+    private boolean submit(T item, AtomicLong notAcceptedCounter) {
+        checkNotNull(item, "item cannot be null");
+
+        boolean accepted = running && offer(item);
+
+        if (accepted) {
+            queued.incrementAndGet();
+        } else {
+            notAcceptedCounter.incrementAndGet();
+        }
+        return accepted;
+    }
+
+
+    private boolean offer(T item) {
+        if (overflowPolicy == OverflowPolicy.DROP || offerTimeoutMillis == 0) {
+            return queue.offer(item);
+        }
+        try {
+            return queue.offer(item, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+
+    private void run() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (running && batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    T item = queue.poll(
+                            Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(MAX_POLL_MILLIS)),
+                            TimeUnit.NANOSECONDS);
+                    if (item != null) {
+                        batch.add(item);
+                        queue.drainTo(batch, batchSize - batch.size());
+                    }
+                }
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // anything taken from the queue but not yet written
+        write(batch);
+    }
+
+
+    private void write(List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            try {
+                batchWriter.accept(batch);
+                flushed.addAndGet(batch.size());
+                batches.incrementAndGet();
+            } catch (Exception e) {
+                failed.addAndGet(batch.size());
+                LOG.warn("Batching writer: {}, failed to write {} items: {}", name, batch.size(), e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
+
+/**
+ * A small, thread-safe, size bounded cache where entries expire after a fixed
+ * time-to-live.  When the cache is full the least recently used entry is evicted.
+ * <p>
+ * A ttl of zero (or less) disables caching, every lookup is passed through to the loader.
+ * This allows callers to switch caching off via configuration without changing code paths.
+ * <p>
+ * Hit, miss and eviction counts are kept so callers can expose them (e.g. via jmx).
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class ExpiringCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final Map<K, CachedValue<V>> entries;
+
+    // bumped on every invalidation so loads which started before it are not cached
+    private long generation = 0;
+
+
+    public ExpiringCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::currentTimeMillis);
+    }
+
+
+    ExpiringCache(int maxSize, long ttlMillis, LongSupplier clock) {
+        checkTrue(maxSize > 0, "maxSize must be greater than zero");
+        checkNotNull(clock, "clock cannot be null");
+
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<K, CachedValue<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+                boolean evict = size() > ExpiringCache.this.maxSize;
+                if (evict) {
+                    evictions.incrementAndGet();
+                }
+                return evict;
+            }
+        };
+    }
+
+
+    /**
+     * Returns the cached value for the given key, or computes (and caches) it
+     * using the loader if it is absent or has expired.  The loader is invoked
+     * outside of any lock, so concurrent misses for the same key may both load.
+     * Values loaded across an invalidation are returned but not retained.
+     *
+     * @param key    key to look up
+     * @param loader function to compute the value when not cached
+     * @return the cached or freshly loaded value
+     */
+    public V get(K key, Function<K, V> loader) {
+        checkNotNull(loader, "loader cannot be null");
+
+        if (! isEnabled()) {
+            misses.incrementAndGet();
+            return loader.apply(key);
+        }
+
+        long now = clock.getAsLong();
+        long generationAtLoad;
+
+        synchronized (entries) {
+            CachedValue<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            generationAtLoad = generation;
+        }
+
+        misses.incrementAndGet();
+        V value = loader.apply(key);
+
+        synchronized (entries) {
+            if (generationAtLoad == generation) {
+                entries.put(key, new CachedValue<>(value, now + ttlMillis));
+            }
+        }
+
+        return value;
+    }
+
+
+    /**
+     * Reloads the value for a key which is already cached, replacing the held value once
+     * the loader completes.  Until then lookups continue to be served the previous value.
+     * The reloaded value is not retained if the key was invalidated, or evicted, while loading.
+     *
+     * @param key    key to reload
+     * @param loader function to compute the new value
+     * @return the freshly loaded value
+     */
+    public V refresh(K key, Function<K, V> loader) {
+        checkNotNull(loader, "loader cannot be null");
+
+        if (! isEnabled()) {
+            return loader.apply(key);
+        }
+
+        long generationAtLoad;
+        synchronized (entries) {
+            generationAtLoad = generation;
+        }
+
+        V value = loader.apply(key);
+        long now = clock.getAsLong();
+
+        synchronized (entries) {
+            if (generationAtLoad == generation && entries.containsKey(key)) {
+                entries.put(key, new CachedValue<>(value, now + ttlMillis));
+            }
+        }
+
+        return value;
+    }
+
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            generation++;
+            entries.remove(key);
+        }
+    }
+
+
+    public void invalidateIf(Predicate<K> keyPredicate) {
+        checkNotNull(keyPredicate, "keyPredicate cannot be null");
+        synchronized (entries) {
+            generation++;
+            entries.keySet().removeIf(keyPredicate);
+        }
+    }
+
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+
+    /**
+     * A copy of the unexpired entries, most recently used last.  Lookups made via
+     * the snapshot do not count as hits.
+     *
+     * @return key to value map of the entries currently held
+     */
+    public Map<K, V> snapshot() {
+        long now = clock.getAsLong();
+        Map<K, V> result = new LinkedHashMap<>();
+        synchronized (entries) {
+            for (Entry<K, CachedValue<V>> entry : entries.entrySet()) {
+                if (entry.getValue().expiresAt > now) {
+                    result.put(entry.getKey(), entry.getValue().value);
+                }
+            }
+        }
+        return result;
+    }
+
+
+    public boolean isEnabled() {
+        return ttlMillis > 0;
+    }
+
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+
+    private static class CachedValue<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private CachedValue(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
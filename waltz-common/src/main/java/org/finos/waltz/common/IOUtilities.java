@@ -62,6 +62,15 @@ public class IOUtilities {
     }
 
 
+    public static byte[] readFully(InputStream stream) throws IOException {
+        checkNotNull(stream, "stream must not be null");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        copyStream(stream, output);
+        return output.toByteArray();
+    }
+
+
     public static String readAsString(InputStream stream) {
         checkNotNull(stream, "stream must not be null");
 
@@ -0,0 +1,114 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.finos.waltz.common.Checks.checkTrue;
+
+/**
+ * A lock-free, fixed bucket histogram of durations (in millis).
+ * Intended for cheap, always-on instrumentation which can be exposed via jmx.
+ * <p>
+ * Each bucket counts values less than or equal to its upper bound (and greater than
+ * the previous bound), a final overflow bucket counts everything larger.
+ */
+public class LatencyHistogram {
+
+    private static final long[] DEFAULT_BOUNDS = {10, 50, 100, 250, 500, 1_000, 5_000, 10_000};
+
+    private final long[] bounds;
+    private final AtomicLongArray counts;
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+
+    public LatencyHistogram() {
+        this(DEFAULT_BOUNDS);
+    }
+
+
+    public LatencyHistogram(long... bounds) {
+        checkTrue(bounds.length > 0, "Must provide at least one bucket bound");
+        for (int i = 1; i < bounds.length; i++) {
+            checkTrue(bounds[i] > bounds[i - 1], "Bucket bounds must be increasing");
+        }
+        this.bounds = bounds.clone();
+        this.counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+
+    public void record(long millis) {
+        int idx = 0;
+        while (idx < bounds.length && millis > bounds[idx]) {
+            idx++;
+        }
+        counts.incrementAndGet(idx);
+        total.addAndGet(millis);
+        max.accumulateAndGet(millis, Math::max);
+    }
+
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+
+    public long getMax() {
+        return max.get();
+    }
+
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0
+                ? 0
+                : (double) total.get() / count;
+    }
+
+
+    /**
+     * @return bucket counts keyed by a label describing the bucket (e.g. '&lt;= 50ms'), in bucket order
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < bounds.length; i++) {
+            result.put("<= " + bounds[i] + "ms", counts.get(i));
+        }
+        result.put("> " + bounds[bounds.length - 1] + "ms", counts.get(bounds.length));
+        return result;
+    }
+
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        max.set(0);
+    }
+
+}
@@ -27,6 +27,7 @@ import java.util.function.Predicate;
 
 import static java.util.stream.Collectors.toList;
 import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
 
 
 public class ListUtilities {
@@ -202,4 +203,24 @@ public class ListUtilities {
         return maybeGet(xs, idx)
                 .orElse(defaultValue);
     }
+
+
+    /**
+     * Splits a list into consecutive sub-lists (views) of at most `size` elements,
+     * the final sub-list may be shorter.
+     * @param xs the list to split
+     * @param size maximum number of elements in each sub-list, must be positive
+     * @return list of sub-lists, empty if `xs` is empty
+     * @param <T> type of elements in the list
+     */
+    public static <T> List<List<T>> partition(List<T> xs, int size) {
+        checkNotNull(xs, "xs cannot be null");
+        checkTrue(size > 0, "size must be positive");
+
+        List<List<T>> partitions = new ArrayList<>();
+        for (int i = 0; i < xs.size(); i += size) {
+            partitions.add(xs.subList(i, Math.min(i + size, xs.size())));
+        }
+        return partitions;
+    }
 }
@@ -0,0 +1,322 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.common;
+
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Counts the queries issued on behalf of a single unit of work (typically an http request).
+ * <p>
+ * A {@link Tally} is started with {@link #begin(String)} and bound to the calling thread,
+ * the jOOQ execute listener reports every statement via {@link #record(String, long)} and
+ * the database executor pool carries the tally over to the threads running concurrent queries.
+ * Statements are grouped by their shape (the sql with bind values and in-lists collapsed)
+ * so that N+1 patterns show up as a single statement executed many times.
+ * <p>
+ * When a unit of work issues more statements than the configured budget it is logged,
+ * along with the most repeated statement shapes, to the performance log.
+ */
+public class QueryAccounting {
+
+    private static final String PERFORMANCE_APPENDER = "WALTZ.PERFORMANCE";
+    private static final Logger LOG = LoggerFactory.getLogger(PERFORMANCE_APPENDER);
+
+    private static final ThreadLocal<Tally> CURRENT = new ThreadLocal<>();
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+    private static final int MAX_OFFENDERS = 20;
+    private static final int MAX_SHAPES_REPORTED = 5;
+    private static final int MAX_SHAPE_LENGTH = 300;
+
+    private volatile int budget;
+
+    private final AtomicLong unitCount = new AtomicLong();
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong overBudgetCount = new AtomicLong();
+    private final AtomicLong maxQueriesPerUnit = new AtomicLong();
+    private final LatencyHistogram dbTimeHistogram = new LatencyHistogram();
+    private final Deque<String> recentOffenders = new LinkedList<>();
+
+
+    /**
+     * @param budget  number of statements a unit of work may issue before it is
+     *                reported, zero or less disables reporting
+     */
+    public QueryAccounting(int budget) {
+        LOG.info("Initialising query accounting with a budget of {} statements per request", budget);
+        this.budget = budget;
+    }
+
+
+    /**
+     * Tracks the statements issued for a single unit of work.
+     */
+    public static class Tally {
+
+        private final String label;
+        private final AtomicInteger queryCount = new AtomicInteger();
+        private final AtomicLong dbTimeNanos = new AtomicLong();
+        private final Map<String, AtomicInteger> shapes = new ConcurrentHashMap<>();
+
+
+        private Tally(String label) {
+            this.label = label;
+        }
+
+
+        private void record(String shape, long elapsedNanos) {
+            queryCount.incrementAndGet();
+            dbTimeNanos.addAndGet(elapsedNanos);
+            shapes.computeIfAbsent(shape, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+
+        public String getLabel() {
+            return label;
+        }
+
+
+        public int getQueryCount() {
+            return queryCount.get();
+        }
+
+
+        public long getDbTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(dbTimeNanos.get());
+        }
+
+
+        /**
+         * @return tuples of (statement shape, execution count) for shapes executed more
+         * than once, most frequent first
+         */
+        public List<Tuple2<String, Integer>> getRepeatedStatements() {
+            return shapes
+                    .entrySet()
+                    .stream()
+                    .map(e -> tuple(e.getKey(), e.getValue().get()))
+                    .filter(t -> t.v2 > 1)
+                    .sorted((a, b) -> Integer.compare(b.v2, a.v2))
+                    .collect(toList());
+        }
+    }
+
+
+    // --- thread binding ---
+
+    /**
+     * Starts a tally for a new unit of work and binds it to the calling thread.
+     */
+    public Tally begin(String label) {
+        Tally tally = new Tally(label);
+        CURRENT.set(tally);
+        return tally;
+    }
+
+
+    /**
+     * Unbinds the current tally from the calling thread, adds it to the overall
+     * figures and reports it if it exceeded the budget.
+     *
+     * @return the finished tally, or null if none was bound to the thread
+     */
+    public Tally end() {
+        Tally tally = CURRENT.get();
+        CURRENT.remove();
+
+        if (tally != null) {
+            complete(tally);
+        }
+
+        return tally;
+    }
+
+
+    /**
+     * @return the tally bound to the calling thread, or null if there is none
+     */
+    public static Tally current() {
+        return CURRENT.get();
+    }
+
+
+    /**
+     * Binds the given tally (which may be null) to the calling thread.
+     *
+     * @return the tally which was previously bound, so that it can be restored
+     */
+    public static Tally attach(Tally tally) {
+        Tally previous = CURRENT.get();
+        if (tally == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(tally);
+        }
+        return previous;
+    }
+
+
+    /**
+     * Records a statement against the tally bound to the calling thread (if any).
+     */
+    public static void record(String sql, long elapsedNanos) {
+        Tally tally = CURRENT.get();
+        if (tally != null && sql != null) {
+            tally.record(toShape(sql), elapsedNanos);
+        }
+    }
+
+
+    /**
+     * Reduces a statement to its shape, collapsing whitespace and lists of bind
+     * placeholders (as produced by <code>in (...)</code> clauses of varying size).
+     */
+    public static String toShape(String sql) {
+        String collapsed = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        return PLACEHOLDER_LIST.matcher(collapsed).replaceAll("?, ...");
+    }
+
+
+    // --- statistics ---
+
+    public int getBudget() {
+        return budget;
+    }
+
+
+    public void setBudget(int budget) {
+        this.budget = budget;
+    }
+
+
+    public long getUnitCount() {
+        return unitCount.get();
+    }
+
+
+    public long getQueryCount() {
+        return queryCount.get();
+    }
+
+
+    public long getOverBudgetCount() {
+        return overBudgetCount.get();
+    }
+
+
+    public long getMaxQueriesPerUnit() {
+        return maxQueriesPerUnit.get();
+    }
+
+
+    public LatencyHistogram getDbTimeHistogram() {
+        return dbTimeHistogram;
+    }
+
+
+    public List<String> getRecentOffenders() {
+        synchronized (recentOffenders) {
+            return new ArrayList<>(recentOffenders);
+        }
+    }
+
+
+    public void resetCounters() {
+        unitCount.set(0);
+        queryCount.set(0);
+        overBudgetCount.set(0);
+        maxQueriesPerUnit.set(0);
+        dbTimeHistogram.reset();
+        synchronized (recentOffenders) {
+            recentOffenders.clear();
+        }
+    }
+
+
+    // --- helpers ---
+
+    private void complete(Tally tally) {
+        int count = tally.getQueryCount();
+
+        unitCount.incrementAndGet();
+        queryCount.addAndGet(count);
+        maxQueriesPerUnit.accumulateAndGet(count, Math::max);
+        dbTimeHistogram.record(tally.getDbTimeMillis());
+
+        int currentBudget = budget;
+        if (currentBudget > 0 && count > currentBudget) {
+            overBudgetCount.incrementAndGet();
+            reportOffender(tally, currentBudget);
+        }
+    }
+
+
+    private void reportOffender(Tally tally, int currentBudget) {
+        String summary = format(
+                "%s issued %d statements (budget: %d) taking %dms",
+                tally.getLabel(),
+                tally.getQueryCount(),
+                currentBudget,
+                tally.getDbTimeMillis());
+
+        String repeated = tally
+                .getRepeatedStatements()
+                .stream()
+                .limit(MAX_SHAPES_REPORTED)
+                .map(t -> format("\n  %5d x %s", t.v2, abbreviate(t.v1)))
+                .collect(joining());
+
+        LOG.warn("Query budget exceeded, {}{}", summary, repeated);
+
+        synchronized (recentOffenders) {
+            recentOffenders.addFirst(summary);
+            while (recentOffenders.size() > MAX_OFFENDERS) {
+                recentOffenders.removeLast();
+            }
+        }
+    }
+
+
+    private static String abbreviate(String shape) {
+        return shape.length() > MAX_SHAPE_LENGTH
+                ? shape.substring(0, MAX_SHAPE_LENGTH) + "..."
+                : shape;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.common;
+
+import org.finos.waltz.common.BatchingWriter.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class BatchingWriterTest {
+
+    @Test
+    public void itemsAreWrittenInBatchesOnceBatchSizeIsReached() throws InterruptedException {
+        List<List<Integer>> written = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(2);
+
+        BatchingWriter<Integer> writer = new BatchingWriter<>(
+                "test", 100, 3, 60_000, OverflowPolicy.DROP, 0,
+                batch -> { written.add(new ArrayList<>(batch)); latch.countDown(); });
+
+        for (int i = 0; i < 6; i++) {
+            writer.submit(i);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "expected two full batches well before the flush interval");
+        writer.close();
+
+        assertEquals(6, written.stream().mapToInt(List::size).sum());
+        assertTrue(written.stream().allMatch(b -> b.size() <= 3));
+        assertEquals(6, writer.getQueuedCount());
+        assertEquals(6, writer.getFlushedCount());
+    }
+
+
+    @Test
+    public void partialBatchesAreWrittenAfterFlushInterval() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        BatchingWriter<Integer> writer = new BatchingWriter<>(
+                "test", 100, 1000, 50, OverflowPolicy.DROP, 0,
+                batch -> latch.countDown());
+
+        writer.submit(1);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        writer.close();
+        assertEquals(1, writer.getFlushedCount());
+    }
+
+
+    @Test
+    public void itemsAreDroppedWhenFullIfPolicyIsDrop() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+
+        BatchingWriter<Integer> writer = new BatchingWriter<>(
+                "test", 2, 1, 10, OverflowPolicy.DROP, 0,
+                batch -> {
+                    writing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+
+        writer.submit(0);
+        assertTrue(writing.await(5, TimeUnit.SECONDS), "flusher should be blocked writing the first item");
+
+        assertTrue(writer.submit(1));
+        assertTrue(writer.submit(2));
+        assertFalse(writer.submit(3), "queue is full");
+        assertEquals(1, writer.getDroppedCount());
+
+        release.countDown();
+        writer.close();
+        assertEquals(3, writer.getFlushedCount());
+    }
+
+
+    @Test
+    public void itemsLeftToTheCallerAreCountedAsRejectedNotDropped() {
+        BatchingWriter<Integer> writer = new BatchingWriter<>(
+                "test", 100, 1000, 60_000, OverflowPolicy.DROP, 0,
+                batch -> {});
+        writer.close();
+
+        assertFalse(writer.trySubmit(1));
+        assertEquals(1, writer.getRejectedCount());
+        assertEquals(0, writer.getDroppedCount());
+    }
+
+
+    @Test
+    public void closeWritesOutstandingItemsAndRejectsNewOnes() {
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+
+        BatchingWriter<Integer> writer = new BatchingWriter<>(
+                "test", 100, 1000, 60_000, OverflowPolicy.BLOCK, 100,
+                written::addAll);
+
+        writer.submit(1);
+        writer.submit(2);
+        writer.close();
+
+        assertEquals(2, written.size());
+        assertFalse(writer.submit(3));
+        assertEquals(1, writer.getDroppedCount());
+    }
+
+
+    @Test
+    public void failedBatchesAreCountedNotRetried() {
+        BatchingWriter<Integer> writer = new BatchingWriter<>(
+                "test", 100, 1000, 60_000, OverflowPolicy.DROP, 0,
+                batch -> { throw new IllegalStateException("boom"); });
+
+        writer.submit(1);
+        writer.submit(2);
+        writer.close();
+
+        assertEquals(2, writer.getFailedCount());
+        assertEquals(0, writer.getFlushedCount());
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+public class ExpiringCacheTest {
+
+    @Test
+    public void repeatedLookupsAreServedFromCache() {
+        AtomicInteger loads = new AtomicInteger();
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, 1000);
+
+        assertEquals(Integer.valueOf(3), cache.get("abc", k -> { loads.incrementAndGet(); return k.length(); }));
+        assertEquals(Integer.valueOf(3), cache.get("abc", k -> { loads.incrementAndGet(); return k.length(); }));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+
+    @Test
+    public void entriesExpireAfterTtl() {
+        AtomicLong now = new AtomicLong(0);
+        AtomicInteger loads = new AtomicInteger();
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, 100, now::get);
+
+        cache.get("a", k -> loads.incrementAndGet());
+        now.set(99);
+        cache.get("a", k -> loads.incrementAndGet());
+        assertEquals(1, loads.get());
+
+        now.set(100);
+        cache.get("a", k -> loads.incrementAndGet());
+        assertEquals(2, loads.get());
+    }
+
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvictedWhenFull() {
+        AtomicInteger loads = new AtomicInteger();
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(2, 1000);
+
+        cache.get("a", k -> loads.incrementAndGet());
+        cache.get("b", k -> loads.incrementAndGet());
+        cache.get("a", k -> loads.incrementAndGet()); // 'a' now most recently used
+        cache.get("c", k -> loads.incrementAndGet()); // evicts 'b'
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.get("a", k -> loads.incrementAndGet());
+        assertEquals(3, loads.get());
+        cache.get("b", k -> loads.incrementAndGet());
+        assertEquals(4, loads.get());
+    }
+
+
+    @Test
+    public void invalidationForcesReload() {
+        AtomicInteger loads = new AtomicInteger();
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, 1000);
+
+        cache.get("a", k -> loads.incrementAndGet());
+        cache.get("b", k -> loads.incrementAndGet());
+        cache.invalidate("a");
+        cache.get("a", k -> loads.incrementAndGet());
+        cache.get("b", k -> loads.incrementAndGet());
+        assertEquals(3, loads.get());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+
+    @Test
+    public void invalidationCanTargetKeysMatchingPredicate() {
+        AtomicInteger loads = new AtomicInteger();
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, 1000);
+
+        cache.get("a1", k -> loads.incrementAndGet());
+        cache.get("a2", k -> loads.incrementAndGet());
+        cache.get("b1", k -> loads.incrementAndGet());
+        cache.invalidateIf(k -> k.startsWith("a"));
+
+        assertEquals(1, cache.size());
+        cache.get("b1", k -> loads.incrementAndGet());
+        assertEquals(3, loads.get());
+    }
+
+
+    @Test
+    public void zeroTtlDisablesCaching() {
+        AtomicInteger loads = new AtomicInteger();
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, 0);
+
+        cache.get("a", k -> loads.incrementAndGet());
+        cache.get("a", k -> loads.incrementAndGet());
+
+        assertFalse(cache.isEnabled());
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+
+    @Test
+    public void maxSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ExpiringCache<String, String>(0, 1000));
+    }
+
+
+    @Test
+    public void snapshotOnlyContainsUnexpiredEntries() {
+        AtomicLong now = new AtomicLong(0);
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, 100, now::get);
+
+        cache.get("a", String::length);
+        now.set(50);
+        cache.get("bb", String::length);
+        now.set(120);
+
+        assertEquals(1, cache.snapshot().size());
+        assertEquals(Integer.valueOf(2), cache.snapshot().get("bb"));
+        assertEquals(0, cache.getHitCount(), "snapshots should not count as hits");
+    }
+
+
+    @Test
+    public void refreshReplacesHeldEntriesOnly() {
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, 1000);
+
+        cache.get("a", k -> 1);
+        assertEquals(Integer.valueOf(2), cache.refresh("a", k -> 2));
+        assertEquals(Integer.valueOf(2), cache.get("a", k -> 3));
+
+        cache.refresh("b", k -> 4);
+        assertEquals(1, cache.size(), "refreshing an absent key should not add it");
+    }
+
+
+    @Test
+    public void refreshIsDiscardedIfInvalidatedWhileLoading() {
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, 1000);
+
+        cache.get("a", k -> 1);
+        cache.refresh("a", k -> {
+            cache.invalidate("a");
+            return 2;
+        });
+
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.finos.waltz.common.ListUtilities.asList;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void valuesAreCountedInTheirBucket() {
+        LatencyHistogram histogram = new LatencyHistogram(10, 100);
+
+        histogram.record(0);
+        histogram.record(10);
+        histogram.record(11);
+        histogram.record(500);
+
+        Map<String, Long> snapshot = histogram.snapshot();
+        assertEquals(asList("<= 10ms", "<= 100ms", "> 100ms"), asList(snapshot.keySet().toArray()));
+        assertEquals(Long.valueOf(2), snapshot.get("<= 10ms"));
+        assertEquals(Long.valueOf(1), snapshot.get("<= 100ms"));
+        assertEquals(Long.valueOf(1), snapshot.get("> 100ms"));
+
+        assertEquals(4, histogram.getCount());
+        assertEquals(500, histogram.getMax());
+        assertEquals(130.25, histogram.getMean(), 0.001);
+    }
+
+
+    @Test
+    public void resetClearsAllCounts() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean(), 0.001);
+    }
+
+
+    @Test
+    public void boundsMustBeIncreasing() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(100, 10));
+    }
+
+}
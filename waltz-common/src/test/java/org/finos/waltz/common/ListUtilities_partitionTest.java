@@ -0,0 +1,38 @@
+package org.finos.waltz.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ListUtilities_partitionTest {
+
+    @Test
+    public void partitionsIntoEqualSizedLists(){
+        List<List<String>> result = ListUtilities.partition(ListUtilities.newArrayList("a","b","c","d"), 2);
+        assertEquals(2, result.size());
+        assertEquals(ListUtilities.newArrayList("a","b"), result.get(0));
+        assertEquals(ListUtilities.newArrayList("c","d"), result.get(1));
+    }
+
+    @Test
+    public void finalPartitionMayBeShorter(){
+        List<List<String>> result = ListUtilities.partition(ListUtilities.newArrayList("a","b","c"), 2);
+        assertEquals(2, result.size());
+        assertEquals(ListUtilities.newArrayList("c"), result.get(1));
+    }
+
+    @Test
+    public void emptyListGivesNoPartitions(){
+        assertTrue(ListUtilities.partition(ListUtilities.newArrayList(), 5).isEmpty());
+    }
+
+    @Test
+    public void sizeMustBePositive(){
+        assertThrows(IllegalArgumentException.class,
+                () -> ListUtilities.partition(ListUtilities.newArrayList("a"), 0));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.common;
+
+import org.jooq.lambda.tuple.Tuple2;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryAccountingTest {
+
+    @AfterEach
+    public void unbind() {
+        QueryAccounting.attach(null);
+    }
+
+
+    @Test
+    public void statementShapesIgnoreWhitespaceAndInListSizes() {
+        assertEquals(
+                "select * from application where id in (?, ...)",
+                QueryAccounting.toShape("select *\n  from application where id in (?, ?,?)"));
+
+        assertEquals(
+                QueryAccounting.toShape("select * from application where id in (?, ?)"),
+                QueryAccounting.toShape("select * from application where id in (?, ?, ?, ?)"));
+
+        assertEquals(
+                "select * from application where id = ?",
+                QueryAccounting.toShape("select * from application where id = ?"));
+    }
+
+
+    @Test
+    public void statementsAreOnlyRecordedWithinAUnitOfWork() {
+        QueryAccounting accounting = new QueryAccounting(10);
+
+        QueryAccounting.record("select 1", 1000);
+        assertNull(accounting.end());
+
+        accounting.begin("test");
+        QueryAccounting.record("select * from person where id = ?", 1_000_000);
+        QueryAccounting.record("select * from person where id = ?", 2_000_000);
+        QueryAccounting.record("select * from application", 3_000_000);
+        QueryAccounting.Tally tally = accounting.end();
+
+        assertEquals(3, tally.getQueryCount());
+        assertEquals(6, tally.getDbTimeMillis());
+
+        List<Tuple2<String, Integer>> repeated = tally.getRepeatedStatements();
+        assertEquals(1, repeated.size());
+        assertEquals(tuple("select * from person where id = ?", 2), repeated.get(0));
+
+        assertNull(QueryAccounting.current(), "tally is unbound once ended");
+        assertEquals(1, accounting.getUnitCount());
+        assertEquals(3, accounting.getQueryCount());
+        assertEquals(0, accounting.getOverBudgetCount());
+    }
+
+
+    @Test
+    public void unitsExceedingTheBudgetAreReported() {
+        QueryAccounting accounting = new QueryAccounting(2);
+
+        accounting.begin("GET /api/app/1");
+        for (int i = 0; i < 5; i++) {
+            QueryAccounting.record("select * from involvement where entity_id = ?", 0);
+        }
+        accounting.end();
+
+        accounting.begin("GET /api/app/2");
+        QueryAccounting.record("select 1", 0);
+        accounting.end();
+
+        assertEquals(2, accounting.getUnitCount());
+        assertEquals(1, accounting.getOverBudgetCount());
+        assertEquals(5, accounting.getMaxQueriesPerUnit());
+        assertEquals(1, accounting.getRecentOffenders().size());
+        assertTrue(accounting.getRecentOffenders().get(0).startsWith("GET /api/app/1 issued 5 statements"));
+
+        accounting.resetCounters();
+        assertEquals(0, accounting.getUnitCount());
+        assertTrue(accounting.getRecentOffenders().isEmpty());
+    }
+
+}
@@ -18,34 +18,450 @@
 
 package org.finos.waltz.data;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import org.finos.waltz.common.LatencyHistogram;
+import org.finos.waltz.common.QueryAccounting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static java.lang.String.format;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
+
+/**
+ * Executes database tasks (typically independent queries which make up a single
+ * response) concurrently.
+ * <p>
+ * Two modes are supported:
+ * <ul>
+ *     <li>{@link Mode#POOLED} - a fixed number of named threads fed from a bounded queue.
+ *     When the queue is full the {@link RejectionPolicy} determines whether the task is
+ *     run by the submitting thread or rejected.</li>
+ *     <li>{@link Mode#PERMIT_GATED} - a thread per task (virtual threads when the runtime
+ *     supports them, otherwise on-demand platform threads).  Concurrency is limited by a
+ *     number of permits rather than by the number of threads, the permits should be sized
+ *     against the database connection pool.</li>
+ * </ul>
+ * Tasks submitted from within a running task are executed inline by the submitting
+ * thread, this prevents nested fan-outs from starving the pool (or deadlocking on permits).
+ * <p>
+ * If a task timeout is configured, waiting on a returned future will fail with an
+ * {@link ExecutionException} (caused by a {@link TimeoutException}) once the task has
+ * been outstanding for longer than the timeout, the task is then cancelled.
+ * <p>
+ * Any {@link QueryAccounting.Tally} bound to the submitting thread is carried over to
+ * the thread running the task, so concurrent queries count towards the same request.
+ */
 public class DBExecutorPool implements DBExecutorPoolInterface {
 
-    private final ExecutorService executorPool;
+    private static final Logger LOG = LoggerFactory.getLogger(DBExecutorPool.class);
+
+    private static final String THREAD_NAME_PREFIX = "waltz-db-executor-";
+    private static final int DEFAULT_QUEUE_SIZE = 200;
+    private static final ThreadLocal<Boolean> IN_EXECUTOR = ThreadLocal.withInitial(() -> false);
+
+    public enum Mode {
+        POOLED,
+        PERMIT_GATED
+    }
+
+    public enum RejectionPolicy {
+        CALLER_RUNS,
+        ABORT
+    }
+
+    private final Mode mode;
+    private final int concurrency;
+    private final int queueSize;
+    private final RejectionPolicy rejectionPolicy;
+    private final long taskTimeoutMillis;
+
+    private final ExecutorService executor;
+    private final Semaphore permits;  // only used in PERMIT_GATED mode
+    private final boolean usingVirtualThreads;
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong inlineCount = new AtomicLong();
+    private final AtomicLong timedOutCount = new AtomicLong();
+    private final LatencyHistogram queueWaitHistogram = new LatencyHistogram();
+    private final LatencyHistogram executionHistogram = new LatencyHistogram();
 
 
-    @Autowired
     public DBExecutorPool(int dbPoolMin, int dbPoolMax) {
-        executorPool = Executors.newFixedThreadPool(
-                Integer.max(dbPoolMax / 2, 1),
-                (runnable) -> {
-                    Thread t = new Thread(runnable, "DB Executor");
-                    t.setDaemon(true);
-                    return t;
-                });
+        this(Mode.POOLED,
+             defaultConcurrency(dbPoolMin, dbPoolMax),
+             DEFAULT_QUEUE_SIZE,
+             RejectionPolicy.CALLER_RUNS,
+             0);
+    }
+
+
+    /**
+     * @param mode              how tasks are executed, see class docs
+     * @param concurrency       max number of tasks executing at once (threads when POOLED, permits when PERMIT_GATED)
+     * @param queueSize         max number of tasks waiting for a thread (POOLED only), zero for direct hand-off
+     * @param rejectionPolicy   what to do when the queue is full (POOLED only)
+     * @param taskTimeoutMillis how long a task may be outstanding before waiters give up on it, zero (or less) for no limit
+     */
+    public DBExecutorPool(Mode mode,
+                          int concurrency,
+                          int queueSize,
+                          RejectionPolicy rejectionPolicy,
+                          long taskTimeoutMillis) {
+        checkNotNull(mode, "mode cannot be null");
+        checkNotNull(rejectionPolicy, "rejectionPolicy cannot be null");
+        checkTrue(concurrency > 0, "concurrency must be greater than zero");
+        checkTrue(queueSize >= 0, "queueSize cannot be negative");
+
+        this.mode = mode;
+        this.concurrency = concurrency;
+        this.queueSize = queueSize;
+        this.rejectionPolicy = rejectionPolicy;
+        this.taskTimeoutMillis = taskTimeoutMillis;
+
+        if (mode == Mode.PERMIT_GATED) {
+            ExecutorService virtualThreadExecutor = mkVirtualThreadExecutor();
+            this.usingVirtualThreads = virtualThreadExecutor != null;
+            this.executor = usingVirtualThreads
+                    ? virtualThreadExecutor
+                    : Executors.newCachedThreadPool(mkThreadFactory());
+            this.permits = new Semaphore(concurrency, true);
+        } else {
+            this.usingVirtualThreads = false;
+            this.executor = mkPooledExecutor();
+            this.permits = null;
+        }
 
+        LOG.info(
+                "Created DB executor: mode={}, concurrency={}, queueSize={}, rejectionPolicy={}, taskTimeoutMillis={}, virtualThreads={}",
+                mode,
+                concurrency,
+                queueSize,
+                rejectionPolicy,
+                taskTimeoutMillis,
+                usingVirtualThreads);
+    }
+
+
+    /**
+     * Leaves headroom in the connection pool for request threads whilst honouring the configured minimum.
+     */
+    public static int defaultConcurrency(int dbPoolMin, int dbPoolMax) {
+        return Integer.max(
+                Integer.min(Integer.max(dbPoolMax / 2, dbPoolMin), dbPoolMax),
+                1);
     }
 
 
     @Override
     public <T> Future<T> submit(Callable<T> task) {
-        return executorPool.submit(task);
+        checkNotNull(task, "task cannot be null");
+
+        submittedCount.incrementAndGet();
+        long submittedAt = System.nanoTime();
+        Callable<T> instrumentedTask = instrument(task, submittedAt);
+
+        if (IN_EXECUTOR.get()) {
+            // nested fan-out, waiting on the pool from within the pool risks starving it
+            inlineCount.incrementAndGet();
+            FutureTask<T> futureTask = new FutureTask<>(instrumentedTask);
+            futureTask.run();
+            return futureTask;
+        }
+
+        Future<T> future = executor.submit(instrumentedTask);
+
+        return taskTimeoutMillis > 0
+                ? new DeadlineFuture<>(future, submittedAt + TimeUnit.MILLISECONDS.toNanos(taskTimeoutMillis))
+                : future;
+    }
+
+
+    public void shutdown() {
+        LOG.info("Shutting down DB executor");
+        executor.shutdown();
+    }
+
+
+    // --- metrics ---
+
+    public Mode getMode() {
+        return mode;
+    }
+
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+
+    public int getQueueCapacity() {
+        return queueSize;
+    }
+
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+
+    public long getTaskTimeoutMillis() {
+        return taskTimeoutMillis;
+    }
+
+
+    public boolean isUsingVirtualThreads() {
+        return usingVirtualThreads;
+    }
+
+
+    /**
+     * @return number of tasks waiting to start, either queued for a thread or waiting for a permit
+     */
+    public int getQueueDepth() {
+        return mode == Mode.PERMIT_GATED
+                ? permits.getQueueLength()
+                : ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+
+
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+
+    public long getInlineCount() {
+        return inlineCount.get();
+    }
+
+
+    public long getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+
+    public LatencyHistogram getQueueWaitHistogram() {
+        return queueWaitHistogram;
+    }
+
+
+    public LatencyHistogram getExecutionHistogram() {
+        return executionHistogram;
+    }
+
+
+    public void resetCounters() {
+        submittedCount.set(0);
+        completedCount.set(0);
+        failedCount.set(0);
+        rejectedCount.set(0);
+        inlineCount.set(0);
+        timedOutCount.set(0);
+        queueWaitHistogram.reset();
+        executionHistogram.reset();
+    }
+
+
+    // --- helpers ---
+
+    private <T> Callable<T> instrument(Callable<T> task, long submittedAt) {
+        QueryAccounting.Tally tally = QueryAccounting.current();
+
+        return () -> {
+            boolean nested = IN_EXECUTOR.get();
+            boolean acquiredPermit = false;
+
+            if (permits != null && ! nested) {
+                permits.acquire();
+                acquiredPermit = true;
+            }
+
+            long startedAt = System.nanoTime();
+            queueWaitHistogram.record(TimeUnit.NANOSECONDS.toMillis(startedAt - submittedAt));
+            activeCount.incrementAndGet();
+            IN_EXECUTOR.set(true);
+            QueryAccounting.Tally previousTally = QueryAccounting.attach(tally);
+
+            try {
+                T result = task.call();
+                completedCount.incrementAndGet();
+                return result;
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                throw e;
+            } finally {
+                QueryAccounting.attach(previousTally);
+                IN_EXECUTOR.set(nested);
+                activeCount.decrementAndGet();
+                executionHistogram.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+                if (acquiredPermit) {
+                    permits.release();
+                }
+            }
+        };
+    }
+
+
+    private ExecutorService mkPooledExecutor() {
+        BlockingQueue<Runnable> queue = queueSize == 0
+                ? new SynchronousQueue<>()
+                : new ArrayBlockingQueue<>(queueSize);
+
+        RejectedExecutionHandler rejectionHandler = (runnable, pool) -> {
+            rejectedCount.incrementAndGet();
+            if (rejectionPolicy == RejectionPolicy.ABORT || pool.isShutdown()) {
+                throw new RejectedExecutionException(format(
+                        "DB executor cannot accept task, %d tasks queued and %d running",
+                        pool.getQueue().size(),
+                        pool.getActiveCount()));
+            }
+            runnable.run();
+        };
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                concurrency,
+                concurrency,
+                60,
+                TimeUnit.SECONDS,
+                queue,
+                mkThreadFactory(),
+                rejectionHandler);
+
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+
+    private static ThreadFactory mkThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread t = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+
+    /**
+     * The project targets Java 8 so virtual threads are looked up reflectively,
+     * returns null if the runtime does not support them.
+     */
+    private static ExecutorService mkVirtualThreadExecutor() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass
+                    .getMethod("name", String.class, long.class)
+                    .invoke(builder, THREAD_NAME_PREFIX + "v-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass
+                    .getMethod("factory")
+                    .invoke(builder);
+
+            return (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.info("Virtual threads are not available on this runtime, using platform threads");
+            return null;
+        }
+    }
+
+
+    private class DeadlineFuture<T> implements Future<T> {
+
+        private final Future<T> delegate;
+        private final long deadlineNanos;
+
+
+        private DeadlineFuture(Future<T> delegate, long deadlineNanos) {
+            this.delegate = delegate;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            try {
+                return delegate.get(
+                        Long.max(deadlineNanos - System.nanoTime(), 0),
+                        TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                timedOutCount.incrementAndGet();
+                delegate.cancel(true);
+                throw new ExecutionException(new TimeoutException(format(
+                        "DB task did not complete within %dms",
+                        taskTimeoutMillis)));
+            }
+        }
+
+
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            long remaining = deadlineNanos - System.nanoTime();
+            return unit.toNanos(timeout) < remaining
+                    ? delegate.get(timeout, unit)
+                    : get();
+        }
+
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return delegate.cancel(mayInterruptIfRunning);
+        }
+
+
+        @Override
+        public boolean isCancelled() {
+            return delegate.isCancelled();
+        }
+
+
+        @Override
+        public boolean isDone() {
+            return delegate.isDone();
+        }
     }
 
 }
@@ -100,6 +100,14 @@ public class GenericSelectorFactory {
      * @return
      */
     private Select<Record1<Long>> applySelectorForKind(EntityKind kind, IdSelectionOptions selectionOptions) {
+        // application and measurable selectors are materialised by their own factories
+        return kind == EntityKind.APPLICATION || kind == EntityKind.MEASURABLE
+                ? mkSelectorForKind(kind, selectionOptions)
+                : IdSelectorMaterialiser.materialise(kind, selectionOptions, () -> mkSelectorForKind(kind, selectionOptions));
+    }
+
+
+    private Select<Record1<Long>> mkSelectorForKind(EntityKind kind, IdSelectionOptions selectionOptions) {
         switch (kind) {
             case APPLICATION:
                 return applicationIdSelectorFactory.apply(selectionOptions);
@@ -0,0 +1,211 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.data;
+
+import org.finos.waltz.common.ExpiringCache;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.HierarchyQueryScope;
+import org.finos.waltz.model.IdSelectionOptions;
+import org.finos.waltz.model.ImmutableIdSelectionOptions;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record1;
+import org.jooq.Row1;
+import org.jooq.Select;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Resolves id selectors once and shares the resulting id set between callers.
+ * <p>
+ * A single page typically makes many calls with the same {@link IdSelectionOptions},
+ * each of which would otherwise re-embed (and make the database re-evaluate) the
+ * same hierarchy or group expansion as a subquery.  The materialiser evaluates the
+ * selector on first use, keeps the ids for a short time-to-live and hands out a
+ * selector over an inlined list of those ids instead.
+ * <p>
+ * Id sets larger than <code>maxIds</code> are not materialised, the original
+ * selector is returned, as very long inlined lists perform worse than the subquery.
+ * <p>
+ * The selector factories look up the installed materialiser via {@link #materialise},
+ * when none is installed (or it is disabled) selectors are returned unchanged.
+ */
+public class IdSelectorMaterialiser {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IdSelectorMaterialiser.class);
+
+    private static volatile IdSelectorMaterialiser installed = null;
+
+    private final DSLContext dsl;
+    private final int maxIds;
+    private final ExpiringCache<Tuple2<EntityKind, IdSelectionOptions>, Optional<Select<Record1<Long>>>> cache;
+
+
+    public IdSelectorMaterialiser(DSLContext dsl,
+                                  long ttlMillis,
+                                  int maxIds,
+                                  int maxEntries) {
+        checkNotNull(dsl, "dsl cannot be null");
+        checkTrue(maxIds > 0, "maxIds must be greater than zero");
+
+        this.dsl = dsl;
+        this.maxIds = maxIds;
+        this.cache = new ExpiringCache<>(maxEntries, ttlMillis);
+    }
+
+
+    /**
+     * Makes the given materialiser available to the selector factories.
+     *
+     * @param materialiser materialiser to use, or null to stop materialising selectors
+     */
+    public static void install(IdSelectorMaterialiser materialiser) {
+        if (materialiser != null && materialiser.isEnabled()) {
+            LOG.info("Installing id selector materialiser, max ids: {}", materialiser.maxIds);
+            installed = materialiser;
+        } else {
+            installed = null;
+        }
+    }
+
+
+    /**
+     * Returns a materialised version of the selector (for the given target kind and
+     * options) if a materialiser is installed, otherwise the selector built by the
+     * given supplier.
+     *
+     * @param targetKind kind of entity the selector returns ids for
+     * @param options    options the selector is derived from
+     * @param selector   builds the (unmaterialised) selector
+     * @return selector giving the same ids as the one built by the supplier
+     */
+    public static Select<Record1<Long>> materialise(EntityKind targetKind,
+                                                    IdSelectionOptions options,
+                                                    Supplier<Select<Record1<Long>>> selector) {
+        IdSelectorMaterialiser materialiser = installed;
+        return materialiser == null || isTrivial(targetKind, options)
+                ? selector.get()
+                : materialiser.apply(targetKind, options, selector);
+    }
+
+
+    public Select<Record1<Long>> apply(EntityKind targetKind,
+                                       IdSelectionOptions options,
+                                       Supplier<Select<Record1<Long>>> selector) {
+        checkNotNull(targetKind, "targetKind cannot be null");
+        checkNotNull(options, "options cannot be null");
+        checkNotNull(selector, "selector cannot be null");
+
+        return cache
+                .get(tuple(targetKind, normalise(options)), k -> load(selector.get()))
+                .orElseGet(selector);
+    }
+
+
+    public ExpiringCache<?, ?> getCache() {
+        return cache;
+    }
+
+
+    public boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+
+    public int getMaxIds() {
+        return maxIds;
+    }
+
+
+    private Optional<Select<Record1<Long>>> load(Select<Record1<Long>> selector) {
+        Set<Long> ids = new LinkedHashSet<>();
+
+        try (Cursor<Record1<Long>> cursor = dsl.fetchLazy(selector)) {
+            while (cursor.hasNext()) {
+                ids.add(cursor.fetchNext().value1());
+                if (ids.size() > maxIds) {
+                    return Optional.empty();
+                }
+            }
+        }
+
+        return Optional.of(mkInlineSelector(ids));
+    }
+
+
+    private static Select<Record1<Long>> mkInlineSelector(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return DSL
+                    .select(DSL.inline(-1L))
+                    .where(DSL.falseCondition());
+        }
+
+        @SuppressWarnings("unchecked")
+        Row1<Long>[] rows = ids
+                .stream()
+                .map(id -> DSL.row(DSL.inline(id)))
+                .toArray(Row1[]::new);
+
+        Table<Record1<Long>> values = DSL.values(rows).as("materialised_ids", "id");
+        Field<Long> id = values.field(0, Long.class);
+
+        return DSL
+                .select(id)
+                .from(values);
+    }
+
+
+    /**
+     * An exact selection of an entity of the target kind is just that entity's id,
+     * there is nothing to be gained by materialising it.
+     */
+    private static boolean isTrivial(EntityKind targetKind, IdSelectionOptions options) {
+        return options.scope() == HierarchyQueryScope.EXACT
+                && options.entityReference().kind() == targetKind;
+    }
+
+
+    /**
+     * Only the kind and id of the selection entity are significant, names and
+     * other descriptive fields are dropped so equivalent options share an entry.
+     */
+    private static IdSelectionOptions normalise(IdSelectionOptions options) {
+        return ImmutableIdSelectionOptions
+                .copyOf(options)
+                .withEntityReference(mkRef(
+                        options.entityReference().kind(),
+                        options.entityReference().id()));
+    }
+
+}
@@ -36,6 +36,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import static org.finos.waltz.common.ListUtilities.map;
 import static org.finos.waltz.schema.tables.AccessLog.ACCESS_LOG;
 
 
@@ -80,6 +81,13 @@ public class AccessLogDao {
     }
 
 
+    public int[] writeAll(List<AccessLog> logEntries) {
+        return dsl
+                .batchInsert(map(logEntries, this::toRecord))
+                .execute();
+    }
+
+
     public List<AccessLog> findForUserId(String userId,
                                          Optional<Integer> limit) {
         return dsl.select(ACCESS_LOG.fields())
@@ -91,6 +99,16 @@ public class AccessLogDao {
     }
 
 
+    private AccessLogRecord toRecord(AccessLog logEntry) {
+        AccessLogRecord record = dsl.newRecord(ACCESS_LOG);
+        record.setParams(logEntry.params());
+        record.setState(logEntry.state());
+        record.setUserId(logEntry.userId());
+        record.setCreatedAt(Timestamp.valueOf(logEntry.createdAt()));
+        return record;
+    }
+
+
     public List<AccessTime> findActiveUsersSince(LocalDateTime dateTime) {
         Field<Timestamp> maxCreatedAt = DSL.max(ACCESS_LOG.CREATED_AT).as(ACCESS_LOG.CREATED_AT);
         return dsl
@@ -14,15 +14,27 @@ import org.finos.waltz.schema.tables.records.AggregateOverlayDiagramCellDataReco
 import org.finos.waltz.schema.tables.records.AggregateOverlayDiagramRecord;
 import org.jooq.DSLContext;
 import org.jooq.Field;
+import org.jooq.Record1;
+import org.jooq.Select;
+import org.jooq.impl.DSL;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+import static org.finos.waltz.common.DateTimeUtilities.nowUtcTimestamp;
 import static org.finos.waltz.common.ListUtilities.newArrayList;
 import static org.finos.waltz.common.SetUtilities.map;
 import static org.finos.waltz.data.JooqUtilities.summarizeResults;
 import static org.finos.waltz.data.aggregate_overlay_diagram.AggregateOverlayDiagramUtilities.TO_DOMAIN_MAPPER;
+import static org.finos.waltz.data.aggregate_overlay_diagram.AggregateOverlayDiagramUtilities.loadCellExtIdToAggregatedEntities;
+import static org.finos.waltz.data.aggregate_overlay_diagram.AggregateOverlayDiagramUtilities.loadExpandedCellMappingsForDiagram;
 import static org.finos.waltz.schema.Tables.AGGREGATE_OVERLAY_DIAGRAM;
 import static org.finos.waltz.schema.Tables.AGGREGATE_OVERLAY_DIAGRAM_CELL_DATA;
 
@@ -40,6 +52,7 @@ public class AggregateOverlayDiagramDao {
                     ))
             .as("entity_name");
 
+    // the tables feeding the overlay widgets, with the column recording when each row last changed
     private final DSLContext dsl;
 
     @Autowired
@@ -126,6 +139,7 @@ public class AggregateOverlayDiagramDao {
         record.setCellExternalId(backingEntity.cellId());
         record.setRelatedEntityId(backingEntity.entityReference().id());
         record.setRelatedEntityKind(backingEntity.entityReference().kind().name());
+        record.setLastUpdatedAt(nowUtcTimestamp());
         return record;
     }
 
@@ -152,4 +166,44 @@ public class AggregateOverlayDiagramDao {
                 .where(AGGREGATE_OVERLAY_DIAGRAM.ID.eq(diagramId))
                 .execute() == 1;
     }
+
+
+    /**
+     * Resolves the backing entities of each cell in the diagram (expanded via the entity hierarchy)
+     * to the in-scope aggregated entities, this is the common first step of most widgets.
+     *
+     * @return map of cell external id to the ids of the aggregated entities (e.g. apps) in that cell
+     */
+    public Map<String, Set<Long>> findAggregatedEntitiesByCellExtId(long diagramId,
+                                                                    EntityKind aggregatedEntityKind,
+                                                                    Select<Record1<Long>> inScopeEntityIdSelector,
+                                                                    Optional<LocalDate> targetStateDate) {
+        return loadCellExtIdToAggregatedEntities(
+                dsl,
+                loadExpandedCellMappingsForDiagram(dsl, diagramId),
+                aggregatedEntityKind,
+                inScopeEntityIdSelector,
+                targetStateDate);
+    }
+
+
+    /**
+     * Cheap aggregates (row count plus latest update time) for each of the given widget
+     * inputs.  If the aggregates for an input change then widget data calculated from it may be out
+     * of date.
+     *
+     * @param inputs the widget input tables to check
+     * @return map of widget input to its current version, the values are only meaningful for equality checks
+     */
+    public Map<OverlayWidgetInput, List<Object>> findWidgetInputVersions(Set<OverlayWidgetInput> inputs) {
+        return inputs
+                .stream()
+                .collect(toMap(
+                        identity(),
+                        input -> dsl
+                                .select(DSL.count(), DSL.max(input.lastUpdatedAt()))
+                                .from(input.table())
+                                .fetchOne()
+                                .intoList()));
+    }
 }
@@ -53,6 +53,18 @@ public class AggregatedEntitiesWidgetDao {
                 inScopeEntityIdSelector,
                 targetStateDate);
 
+        return findWidgetData(cellExtIdsToAggregatedEntities, aggregatedEntityKind, inScopeEntityIdSelector);
+    }
+
+
+    /**
+     * @param cellExtIdsToAggregatedEntities  aggregated entity ids per cell, as given by
+     *                                        {@link AggregateOverlayDiagramDao#findAggregatedEntitiesByCellExtId}
+     */
+    public Set<AggregatedEntitiesWidgetDatum> findWidgetData(Map<String, Set<Long>> cellExtIdsToAggregatedEntities,
+                                                             EntityKind aggregatedEntityKind,
+                                                             Select<Record1<Long>> inScopeEntityIdSelector) {
+
         Map<Long, EntityReference> entityIdToRefMap = loadEntityIdToNameMap(aggregatedEntityKind, inScopeEntityIdSelector);
 
         return cellExtIdsToAggregatedEntities
@@ -54,6 +54,17 @@ public class AppCountWidgetDao {
                 inScopeApplicationSelector,
                 Optional.empty());
 
+        return findWidgetData(cellExtIdsToAggregatedEntities, targetStateDate);
+    }
+
+
+    /**
+     * @param cellExtIdsToAggregatedEntities  application ids per cell, as given by
+     *                                        {@link AggregateOverlayDiagramDao#findAggregatedEntitiesByCellExtId}
+     */
+    public Set<CountWidgetDatum> findWidgetData(Map<String, Set<Long>> cellExtIdsToAggregatedEntities,
+                                                LocalDate targetStateDate) {
+
         Set<Long> appIds = cellExtIdsToAggregatedEntities.values()
                 .stream()
                 .flatMap(Collection::stream)
@@ -59,6 +59,18 @@ public class AssessmentRatingWidgetDao {
                 inScopeEntityIdSelector,
                 targetStateDate);
 
+        return findWidgetData(cellExtIdsToAggregatedEntities, aggregatedEntityKind, assessmentId);
+    }
+
+
+    /**
+     * @param cellExtIdsToAggregatedEntities  aggregated entity ids per cell, as given by
+     *                                        {@link AggregateOverlayDiagramDao#findAggregatedEntitiesByCellExtId}
+     */
+    public Set<AssessmentRatingsWidgetDatum> findWidgetData(Map<String, Set<Long>> cellExtIdsToAggregatedEntities,
+                                                            EntityKind aggregatedEntityKind,
+                                                            Long assessmentId) {
+
         Set<Long> diagramEntityIds = cellExtIdsToAggregatedEntities.values()
                 .stream()
                 .flatMap(Collection::stream)
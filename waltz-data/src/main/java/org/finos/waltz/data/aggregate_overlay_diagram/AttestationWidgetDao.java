@@ -59,6 +59,23 @@ public class AttestationWidgetDao {
                 inScopeEntityIdSelector,
                 Optional.empty());
 
+        return findWidgetData(
+                cellExtIdsToAggregatedEntities,
+                attestedEntityKind,
+                attestedEntityId,
+                inScopeEntityIdSelector);
+    }
+
+
+    /**
+     * @param cellExtIdsToAggregatedEntities  application ids per cell, as given by
+     *                                        {@link AggregateOverlayDiagramDao#findAggregatedEntitiesByCellExtId}
+     */
+    public Set<AttestationWidgetDatum> findWidgetData(Map<String, Set<Long>> cellExtIdsToAggregatedEntities,
+                                                      EntityKind attestedEntityKind,
+                                                      Optional<Long> attestedEntityId,
+                                                      Select<Record1<Long>> inScopeEntityIdSelector) {
+
         SelectConditionStep<Record5<String, Long, Timestamp, String, Integer>> rawAttestationData = dsl
                 .select(
                         att_i.PARENT_ENTITY_KIND.as("ref_k"),
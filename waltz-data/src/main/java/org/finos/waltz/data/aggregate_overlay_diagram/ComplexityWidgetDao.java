@@ -51,6 +51,20 @@ public class ComplexityWidgetDao {
                 inScopeEntityIdSelector,
                 Optional.empty());
 
+        return findWidgetData(
+                cellExtIdsToAggregatedEntities,
+                aggregatedEntityKind,
+                costKindIds);
+    }
+
+
+    /**
+     * @param cellExtIdsToAggregatedEntities  aggregated entity ids per cell, as given by
+     *                                        {@link AggregateOverlayDiagramDao#findAggregatedEntitiesByCellExtId}
+     */
+    public Set<ComplexityWidgetDatum> findWidgetData(Map<String, Set<Long>> cellExtIdsToAggregatedEntities,
+                                                     EntityKind aggregatedEntityKind,
+                                                     Set<Long> costKindIds) {
         return fetchComplexityData(
                 dsl,
                 costKindIds,
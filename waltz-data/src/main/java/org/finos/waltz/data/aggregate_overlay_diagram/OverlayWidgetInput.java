@@ -0,0 +1,123 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.data.aggregate_overlay_diagram;
+
+import org.finos.waltz.schema.Tables;
+import org.jooq.Field;
+import org.jooq.Table;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The tables overlay widget data is calculated from, along with the aggregates used to cheaply
+ * tell whether their contents have changed.  Every table is compared on row count and latest
+ * update time, the count catches removals.  Writes which do not maintain a table's last updated
+ * column (e.g. direct sql) are not seen, cached widgets can be evicted via jmx after such loads.
+ */
+public enum OverlayWidgetInput {
+
+    AGGREGATE_OVERLAY_DIAGRAM(
+            Tables.AGGREGATE_OVERLAY_DIAGRAM,
+            Tables.AGGREGATE_OVERLAY_DIAGRAM.LAST_UPDATED_AT),
+    AGGREGATE_OVERLAY_DIAGRAM_CELL_DATA(
+            Tables.AGGREGATE_OVERLAY_DIAGRAM_CELL_DATA,
+            Tables.AGGREGATE_OVERLAY_DIAGRAM_CELL_DATA.LAST_UPDATED_AT),
+    ALLOCATION(
+            Tables.ALLOCATION,
+            Tables.ALLOCATION.LAST_UPDATED_AT),
+    APPLICATION(
+            Tables.APPLICATION,
+            Tables.APPLICATION.UPDATED_AT),
+    ASSESSMENT_RATING(
+            Tables.ASSESSMENT_RATING,
+            Tables.ASSESSMENT_RATING.LAST_UPDATED_AT),
+    ATTESTATION_INSTANCE(
+            Tables.ATTESTATION_INSTANCE,
+            Tables.ATTESTATION_INSTANCE.ATTESTED_AT),
+    COMPLEXITY(
+            Tables.COMPLEXITY,
+            Tables.COMPLEXITY.LAST_UPDATED_AT),
+    COST(
+            Tables.COST,
+            Tables.COST.LAST_UPDATED_AT),
+    DATA_TYPE_USAGE(
+            Tables.DATA_TYPE_USAGE,
+            Tables.DATA_TYPE_USAGE.LAST_UPDATED_AT),
+    ENTITY_HIERARCHY(
+            Tables.ENTITY_HIERARCHY,
+            Tables.ENTITY_HIERARCHY.LAST_UPDATED_AT),
+    ENTITY_RELATIONSHIP(
+            Tables.ENTITY_RELATIONSHIP,
+            Tables.ENTITY_RELATIONSHIP.LAST_UPDATED_AT),
+    MEASURABLE(
+            Tables.MEASURABLE,
+            Tables.MEASURABLE.LAST_UPDATED_AT),
+    MEASURABLE_RATING(
+            Tables.MEASURABLE_RATING,
+            Tables.MEASURABLE_RATING.LAST_UPDATED_AT),
+    MEASURABLE_RATING_PLANNED_DECOMMISSION(
+            Tables.MEASURABLE_RATING_PLANNED_DECOMMISSION,
+            Tables.MEASURABLE_RATING_PLANNED_DECOMMISSION.UPDATED_AT),
+    MEASURABLE_RATING_REPLACEMENT(
+            Tables.MEASURABLE_RATING_REPLACEMENT,
+            Tables.MEASURABLE_RATING_REPLACEMENT.UPDATED_AT),
+    ORGANISATIONAL_UNIT(
+            Tables.ORGANISATIONAL_UNIT,
+            Tables.ORGANISATIONAL_UNIT.LAST_UPDATED_AT);
+
+
+    /**
+     * Inputs to the resolution of a diagram's cells to in-scope aggregated entities (see
+     * {@link AggregateOverlayDiagramDao#findAggregatedEntitiesByCellExtId}), most widgets start from this.
+     */
+    public static final Set<OverlayWidgetInput> CELL_RESOLUTION_INPUTS = Collections.unmodifiableSet(EnumSet.of(
+            AGGREGATE_OVERLAY_DIAGRAM,
+            AGGREGATE_OVERLAY_DIAGRAM_CELL_DATA,
+            APPLICATION,
+            DATA_TYPE_USAGE,
+            ENTITY_HIERARCHY,
+            ENTITY_RELATIONSHIP,
+            MEASURABLE_RATING,
+            MEASURABLE_RATING_PLANNED_DECOMMISSION,
+            MEASURABLE_RATING_REPLACEMENT,
+            ORGANISATIONAL_UNIT));
+
+
+    private final Table<?> table;
+    private final Field<Timestamp> lastUpdatedAt;
+
+
+    OverlayWidgetInput(Table<?> table, Field<Timestamp> lastUpdatedAt) {
+        this.table = table;
+        this.lastUpdatedAt = lastUpdatedAt;
+    }
+
+
+    Table<?> table() {
+        return table;
+    }
+
+
+    Field<Timestamp> lastUpdatedAt() {
+        return lastUpdatedAt;
+    }
+}
@@ -56,6 +56,17 @@ public class TargetAppCostWidgetDao {
                 inScopeApplicationSelector,
                 Optional.empty());
 
+        return findWidgetData(cellExtIdsToAggregatedEntities, targetStateDate);
+    }
+
+
+    /**
+     * @param cellExtIdsToAggregatedEntities  application ids per cell, as given by
+     *                                        {@link AggregateOverlayDiagramDao#findAggregatedEntitiesByCellExtId}
+     */
+    public Set<TargetCostWidgetDatum> findWidgetData(Map<String, Set<Long>> cellExtIdsToAggregatedEntities,
+                                                     LocalDate targetStateDate) {
+
         Set<Long> diagramAppIds = cellExtIdsToAggregatedEntities
                 .values()
                 .stream()
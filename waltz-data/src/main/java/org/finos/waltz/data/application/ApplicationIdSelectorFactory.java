@@ -19,6 +19,7 @@
 package org.finos.waltz.data.application;
 
 import org.finos.waltz.schema.tables.*;
+import org.finos.waltz.data.IdSelectorMaterialiser;
 import org.finos.waltz.data.SelectorUtilities;
 import org.finos.waltz.data.data_type.DataTypeIdSelectorFactory;
 import org.finos.waltz.data.logical_flow.LogicalFlowDao;
@@ -74,6 +75,11 @@ public class ApplicationIdSelectorFactory implements Function<IdSelectionOptions
 
     public Select<Record1<Long>> apply(IdSelectionOptions options) {
         checkNotNull(options, "options cannot be null");
+        return IdSelectorMaterialiser.materialise(EntityKind.APPLICATION, options, () -> mkSelector(options));
+    }
+
+
+    private Select<Record1<Long>> mkSelector(IdSelectionOptions options) {
         EntityReference ref = options.entityReference();
         switch (ref.kind()) {
             case ALL:
@@ -71,6 +71,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiFunction;
 
 import static java.lang.String.format;
 import static java.util.stream.Collectors.counting;
@@ -136,15 +137,20 @@ public class AttestationInstanceDao {
     }
 
 
-    public long create(AttestationInstance attestationInstance) {
-        checkNotNull(attestationInstance, "attestationInstance cannot be null");
-
+    public static final BiFunction<AttestationInstance, DSLContext, AttestationInstanceRecord> TO_RECORD_MAPPER = (attestationInstance, dsl) -> {
         AttestationInstanceRecord record = dsl.newRecord(ATTESTATION_INSTANCE);
         record.setAttestationRunId(attestationInstance.attestationRunId());
         record.setParentEntityKind(attestationInstance.parentEntity().kind().name());
         record.setParentEntityId(attestationInstance.parentEntity().id());
         record.setAttestedEntityKind(attestationInstance.attestedEntityKind().name());
+        return record;
+    };
+
+
+    public long create(AttestationInstance attestationInstance) {
+        checkNotNull(attestationInstance, "attestationInstance cannot be null");
 
+        AttestationInstanceRecord record = TO_RECORD_MAPPER.apply(attestationInstance, dsl);
         record.store();
 
         return record.getId();
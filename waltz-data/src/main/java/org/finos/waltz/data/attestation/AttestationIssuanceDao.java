@@ -0,0 +1,104 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.data.attestation;
+
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.attestation.AttestationInstance;
+import org.finos.waltz.schema.tables.records.AttestationInstanceRecipientRecord;
+import org.finos.waltz.schema.tables.records.AttestationInstanceRecord;
+import org.jooq.DSLContext;
+import org.jooq.lambda.tuple.Tuple2;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.schema.Tables.ATTESTATION_INSTANCE;
+import static org.finos.waltz.schema.Tables.ATTESTATION_INSTANCE_RECIPIENT;
+
+
+/**
+ * Batched writes used when issuing the instances of pending attestation runs.
+ * <p>
+ * Every method takes the context to execute against so that each run can be
+ * issued in its own transaction.
+ */
+@Repository
+public class AttestationIssuanceDao {
+
+    public int createInstances(DSLContext tx, Collection<AttestationInstance> instances) {
+        checkNotNull(instances, "instances cannot be null");
+
+        if (instances.isEmpty()) {
+            return 0;
+        }
+
+        List<AttestationInstanceRecord> records = instances
+                .stream()
+                .map(i -> AttestationInstanceDao.TO_RECORD_MAPPER.apply(i, tx))
+                .collect(toList());
+
+        return tx.batchInsert(records).execute().length;
+    }
+
+
+    /**
+     * @return map of parent entity id to instance id for the given run
+     */
+    public Map<Long, Long> findInstanceIdsByParentId(DSLContext tx,
+                                                     long attestationRunId,
+                                                     EntityKind parentKind,
+                                                     Collection<Long> parentIds) {
+        return tx
+                .select(ATTESTATION_INSTANCE.PARENT_ENTITY_ID, ATTESTATION_INSTANCE.ID)
+                .from(ATTESTATION_INSTANCE)
+                .where(ATTESTATION_INSTANCE.ATTESTATION_RUN_ID.eq(attestationRunId))
+                .and(ATTESTATION_INSTANCE.PARENT_ENTITY_KIND.eq(parentKind.name()))
+                .and(ATTESTATION_INSTANCE.PARENT_ENTITY_ID.in(parentIds))
+                .fetchMap(ATTESTATION_INSTANCE.PARENT_ENTITY_ID, ATTESTATION_INSTANCE.ID);
+    }
+
+
+    /**
+     * @param recipients  tuples of (instance id, user id)
+     */
+    public int createRecipients(DSLContext tx, Collection<Tuple2<Long, String>> recipients) {
+        checkNotNull(recipients, "recipients cannot be null");
+
+        if (recipients.isEmpty()) {
+            return 0;
+        }
+
+        List<AttestationInstanceRecipientRecord> records = recipients
+                .stream()
+                .map(t -> {
+                    AttestationInstanceRecipientRecord record = tx.newRecord(ATTESTATION_INSTANCE_RECIPIENT);
+                    record.setAttestationInstanceId(t.v1);
+                    record.setUserId(t.v2);
+                    return record;
+                })
+                .collect(toList());
+
+        return tx.batchInsert(records).execute().length;
+    }
+
+}
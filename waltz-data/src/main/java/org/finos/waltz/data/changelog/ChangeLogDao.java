@@ -31,7 +31,6 @@ import org.finos.waltz.schema.tables.AttestationInstance;
 import org.finos.waltz.schema.tables.records.ChangeLogRecord;
 import org.jooq.Condition;
 import org.jooq.DSLContext;
-import org.jooq.Query;
 import org.jooq.Record;
 import org.jooq.Record4;
 import org.jooq.RecordMapper;
@@ -47,11 +46,16 @@ import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.finos.waltz.common.Checks.checkNotEmpty;
 import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.common.DateTimeUtilities.nowUtc;
+import static org.finos.waltz.common.EnumUtilities.readEnum;
 import static org.finos.waltz.data.JooqUtilities.*;
 import static org.finos.waltz.schema.Tables.PERSON;
 import static org.finos.waltz.schema.tables.ChangeLog.CHANGE_LOG;
@@ -322,28 +326,81 @@ public class ChangeLogDao {
     }
 
 
+    /**
+     * Inserts the entries as a single (prepared statement) batch.
+     */
     public int[] write(Collection<ChangeLog> changeLogs) {
         checkNotNull(changeLogs, "changeLogs must not be null");
 
-        Query[] queries = changeLogs
+        if (changeLogs.isEmpty()) {
+            return new int[0];
+        }
+
+        List<ChangeLogRecord> records = changeLogs
                 .stream()
-                .map(changeLog -> DSL.insertInto(CHANGE_LOG)
-                        .set(CHANGE_LOG.MESSAGE, changeLog.message())
-                        .set(CHANGE_LOG.PARENT_ID, changeLog.parentReference().id())
-                        .set(CHANGE_LOG.PARENT_KIND, changeLog.parentReference().kind().name())
-                        .set(CHANGE_LOG.USER_ID, changeLog.userId())
-                        .set(CHANGE_LOG.SEVERITY, changeLog.severity().name())
-                        .set(CHANGE_LOG.CHILD_KIND, changeLog.childKind().map(Enum::name).orElse(null))
-                        .set(CHANGE_LOG.CHILD_ID, changeLog.childId().orElse(null))
-                        .set(CHANGE_LOG.OPERATION, changeLog.operation().name())
-                        .set(CHANGE_LOG.CREATED_AT, Timestamp.valueOf(changeLog.createdAt())))
-                .toArray(Query[]::new);
+                .map(changeLog -> {
+                    ChangeLogRecord record = dsl.newRecord(CHANGE_LOG);
+                    record.setMessage(changeLog.message());
+                    record.setParentId(changeLog.parentReference().id());
+                    record.setParentKind(changeLog.parentReference().kind().name());
+                    record.setUserId(changeLog.userId());
+                    record.setSeverity(changeLog.severity().name());
+                    record.setChildKind(changeLog.childKind().map(Enum::name).orElse(null));
+                    record.setChildId(changeLog.childId().orElse(null));
+                    record.setOperation(changeLog.operation().name());
+                    record.setCreatedAt(Timestamp.valueOf(changeLog.createdAt()));
+                    return record;
+                })
+                .collect(Collectors.toList());
+
         return dsl
-                .batch(queries)
+                .batchInsert(records)
                 .execute();
     }
 
 
+    /**
+     * Returns the id of the most recent change log entry (or zero if the change log is empty).
+     * As every change log insert increases this value it can be used as a coarse
+     * 'data version' by callers which cache derived data.
+     *
+     * @return highest change log id
+     */
+    public long getLatestId() {
+        Number latestId = dsl
+                .select(DSL.max(CHANGE_LOG.ID))
+                .from(CHANGE_LOG)
+                .fetchOne()
+                .value1();
+
+        return latestId == null
+                ? 0L
+                : latestId.longValue();
+    }
+
+
+    /**
+     * Returns the parent and child kinds of all change log entries written after the given id,
+     * i.e. the kinds which may have changed since a data version was taken (see {@link #getLatestId()}).
+     *
+     * @param changeLogId  exclusive lower bound
+     * @return kinds mentioned by the newer entries (unrecognised kinds are ignored)
+     */
+    public Set<EntityKind> findKindsChangedSince(long changeLogId) {
+        return dsl
+                .selectDistinct(CHANGE_LOG.PARENT_KIND, CHANGE_LOG.CHILD_KIND)
+                .from(CHANGE_LOG)
+                .where(CHANGE_LOG.ID.gt(Math.toIntExact(changeLogId)))
+                .fetch()
+                .stream()
+                .flatMap(r -> Stream.of(r.value1(), r.value2()))
+                .filter(Objects::nonNull)
+                .map(kind -> readEnum(kind, EntityKind.class, k -> null))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+
     /**
      * Given an entity ref this function will determine all changelog entries made _after_ the latest
      * attestations for that entity.  Change log is matched between the attestation kind and the change
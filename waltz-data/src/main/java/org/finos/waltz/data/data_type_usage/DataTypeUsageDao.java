@@ -19,6 +19,7 @@
 package org.finos.waltz.data.data_type_usage;
 
 import org.finos.waltz.common.MapUtilities;
+import org.finos.waltz.common.SetUtilities;
 import org.finos.waltz.data.JooqUtilities;
 import org.finos.waltz.model.EntityKind;
 import org.finos.waltz.model.EntityReference;
@@ -46,17 +47,25 @@ import org.jooq.SelectOrderByStep;
 import org.jooq.Table;
 import org.jooq.TableField;
 import org.jooq.impl.DSL;
+import org.jooq.lambda.tuple.Tuple2;
+import org.jooq.lambda.tuple.Tuple3;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.DateTimeUtilities.nowUtcTimestamp;
 import static org.finos.waltz.common.StringUtilities.limit;
 import static org.finos.waltz.data.application.ApplicationDao.IS_ACTIVE;
 import static org.finos.waltz.model.EntityLifecycleStatus.REMOVED;
@@ -65,9 +74,11 @@ import static org.finos.waltz.schema.tables.Actor.ACTOR;
 import static org.finos.waltz.schema.tables.Application.APPLICATION;
 import static org.finos.waltz.schema.tables.DataType.DATA_TYPE;
 import static org.finos.waltz.schema.tables.DataTypeUsage.DATA_TYPE_USAGE;
+import static org.finos.waltz.schema.tables.DataTypeUsageRecalcCheckpoint.DATA_TYPE_USAGE_RECALC_CHECKPOINT;
 import static org.finos.waltz.schema.tables.LogicalFlow.LOGICAL_FLOW;
 import static org.finos.waltz.schema.tables.LogicalFlowDecorator.LOGICAL_FLOW_DECORATOR;
 import static org.jooq.impl.DSL.*;
+import static org.jooq.lambda.tuple.Tuple.tuple;
 
 @Repository
 public class DataTypeUsageDao {
@@ -80,6 +91,11 @@ public class DataTypeUsageDao {
     private final org.finos.waltz.schema.tables.Actor actor = ACTOR.as("actor");
     private final Condition NOT_REMOVED = lf.ENTITY_LIFECYCLE_STATUS.ne(REMOVED.name());
 
+    private static final Set<String> CALCULATED_USAGE_KINDS = SetUtilities.asSet(
+            UsageKind.CONSUMER.name(),
+            UsageKind.ORIGINATOR.name(),
+            UsageKind.DISTRIBUTOR.name());
+
     private final Field<String> originatorUsageKindField = val(UsageKind.ORIGINATOR.name());
 
 
@@ -87,6 +103,9 @@ public class DataTypeUsageDao {
     private final Field<Long> nodeIdInner = DSL.field("node_id_inner", Long.class);
     private final Field<Long> dataTypeIdInner = DSL.field("dt_id_inner", Long.class);
     private final Field<String> usageKindInner = DSL.field("usage_kind_inner", String.class);
+    private final Field<String> activeEntityKind = DSL.field("entity_kind", String.class);
+    private final Field<Long> activeEntityId = DSL.field("entity_id", Long.class);
+    private final Field<Long> activeDataTypeId = DSL.field("data_type_id", Long.class);
 
     private static final RecordMapper<Record, DataTypeUsage> TO_USAGE_MAPPER = r -> {
         DataTypeUsageRecord record = r.into(DATA_TYPE_USAGE);
@@ -118,6 +137,7 @@ public class DataTypeUsageDao {
                     domain.usage().description(),
                     DATA_TYPE_USAGE.DESCRIPTION.getDataType().length()));
         record.setIsSelected(domain.usage().isSelected());
+        record.setLastUpdatedAt(nowUtcTimestamp());
         return record;
     };
 
@@ -297,6 +317,7 @@ public class DataTypeUsageDao {
             // mark commented usages inactive
             tx.update(DATA_TYPE_USAGE)
                     .set(DATA_TYPE_USAGE.IS_SELECTED, false)
+                    .set(DATA_TYPE_USAGE.LAST_UPDATED_AT, nowUtcTimestamp())
                     .where(isCalculatedUsageKind)
                     .and(DATA_TYPE_USAGE.DESCRIPTION.ne(""))
                     .and(DATA_TYPE_USAGE.ENTITY_ID.in(idSelector))
@@ -308,6 +329,7 @@ public class DataTypeUsageDao {
                     mkConsumerDistributorUsagesToInsertSelector(kind, idSelector));
             updateUsageKinds(
                     tx,
+                    kind,
                     mkFlowWithTypesForConsumerDistributors(kind, idSelector));
 
             insertUsages(
@@ -315,6 +337,7 @@ public class DataTypeUsageDao {
                     mkOriginatorUsagesToInsertSelector(kind, idSelector));
             updateUsageKinds(
                     tx,
+                    kind,
                     mkFlowWithTypesForOriginators(kind, idSelector));
         });
 
@@ -323,17 +346,270 @@ public class DataTypeUsageDao {
     }
 
 
+    /**
+     * Ids of the entities whose usages are recalculated by {@link #recalculateForAllApplications()}
+     * (active applications and all actors), in ascending order.
+     *
+     * @param kind    APPLICATION or ACTOR
+     * @param afterId only ids greater than this are returned
+     */
+    public List<Long> findIdsForRecalculation(EntityKind kind, long afterId) {
+        return dsl
+                .select(mkIdForRecalculationField(kind))
+                .from(mkIdForRecalculationTable(kind))
+                .where(mkIdForRecalculationCondition(kind))
+                .and(mkIdForRecalculationField(kind).gt(afterId))
+                .orderBy(mkIdForRecalculationField(kind))
+                .fetch(mkIdForRecalculationField(kind));
+    }
+
+
+    /**
+     * Recalculates the usages of the entities with ids in the given (inclusive) range, in a transaction
+     * of its own.  The outcome matches {@link #recalculateForIdSelector(EntityKind, Select)} however only
+     * the rows which actually differ are written, so locks are short-lived and unchanged rows untouched.
+     *
+     * @return the number of rows inserted, updated or deleted
+     */
+    public int recalculateForIdRange(EntityKind kind, long minId, long maxId) {
+        return recalculateDifferences(
+                kind,
+                DSL.select(mkIdForRecalculationField(kind))
+                        .from(mkIdForRecalculationTable(kind))
+                        .where(mkIdForRecalculationCondition(kind))
+                        .and(mkIdForRecalculationField(kind).between(minId, maxId)));
+    }
+
+
+    /**
+     * Recalculates the usages of the given entities, in a transaction of its own.  As with
+     * {@link #recalculateForIdRange(EntityKind, long, long)} only the rows which differ are written,
+     * so repeating a recalculation changes nothing.
+     *
+     * @param kind APPLICATION or ACTOR
+     * @param ids  ids of the entities to recalculate
+     * @return the number of rows inserted, updated or deleted
+     */
+    public int recalculateForIds(EntityKind kind, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return recalculateDifferences(
+                kind,
+                DSL.select(mkIdForRecalculationField(kind))
+                        .from(mkIdForRecalculationTable(kind))
+                        .where(mkIdForRecalculationField(kind).in(ids)));
+    }
+
+
+    private int recalculateDifferences(EntityKind kind, Select<Record1<Long>> idSelector) {
+        return dsl.transactionResult(configuration -> {
+            DSLContext tx = DSL.using(configuration);
+
+            List<DataTypeUsageRecord> existing = tx
+                    .selectFrom(DATA_TYPE_USAGE)
+                    .where(DATA_TYPE_USAGE.ENTITY_KIND.eq(kind.name()))
+                    .and(DATA_TYPE_USAGE.ENTITY_ID.in(idSelector))
+                    .fetch();
+
+            Set<Tuple2<Long, Long>> activeFlowDataTypes = mkActiveFlowDataTypesSelector(tx, kind, idSelector)
+                    .fetchSet(r -> tuple(r.get(activeEntityId), r.get(activeDataTypeId)));
+
+            Set<Tuple3<Long, Long, String>> calculatedUsages = findCalculatedUsages(tx, kind, idSelector);
+
+            List<DataTypeUsageRecord> toDelete = new ArrayList<>();
+            List<DataTypeUsageRecord> toUpdate = new ArrayList<>();
+            Set<Tuple3<Long, Long, String>> remaining = new HashSet<>(calculatedUsages);
+
+            for (DataTypeUsageRecord record : existing) {
+                Tuple3<Long, Long, String> key = tuple(record.getEntityId(), record.getDataTypeId(), record.getUsageKind());
+                boolean isCalculated = calculatedUsages.contains(key);
+                boolean isCommented = ! record.getDescription().equals("");
+                boolean hasActiveFlow = activeFlowDataTypes.contains(tuple(record.getEntityId(), record.getDataTypeId()));
+                remaining.remove(key);
+
+                boolean keep;
+                boolean selected;
+                if (! CALCULATED_USAGE_KINDS.contains(record.getUsageKind())) {
+                    // user maintained usages are only removed once no flow carries the type
+                    keep = hasActiveFlow;
+                    selected = record.getIsSelected();
+                } else if (! isCalculated) {
+                    // only commented usages are kept (unselected), and then only whilst a flow carries the type
+                    keep = isCommented && hasActiveFlow;
+                    selected = false;
+                } else {
+                    keep = true;
+                    selected = true;
+                    if ((! isCommented || ! hasActiveFlow) && ! record.getProvenance().equals("waltz")) {
+                        record.setProvenance("waltz");
+                    }
+                    if (isCommented && ! hasActiveFlow) {
+                        // comments are lost if the type is no longer carried by an active flow
+                        record.setDescription("");
+                    }
+                }
+
+                if (! keep) {
+                    toDelete.add(record);
+                    continue;
+                }
+                if (record.getIsSelected() != selected) {
+                    record.setIsSelected(selected);
+                }
+                if (record.changed()) {
+                    record.setLastUpdatedAt(nowUtcTimestamp());
+                    toUpdate.add(record);
+                }
+            }
+
+            List<DataTypeUsageRecord> toInsert = remaining
+                    .stream()
+                    .map(key -> {
+                        DataTypeUsageRecord record = tx.newRecord(DATA_TYPE_USAGE);
+                        record.setEntityId(key.v1);
+                        record.setEntityKind(kind.name());
+                        record.setDataTypeId(key.v2);
+                        record.setUsageKind(key.v3);
+                        record.setDescription("");
+                        record.setProvenance("waltz");
+                        record.setIsSelected(true);
+                        record.setLastUpdatedAt(nowUtcTimestamp());
+                        return record;
+                    })
+                    .collect(Collectors.toList());
+
+            tx.batchDelete(toDelete).execute();
+            tx.batchUpdate(toUpdate).execute();
+            tx.batchInsert(toInsert).execute();
+
+            return toDelete.size() + toUpdate.size() + toInsert.size();
+        });
+    }
+
+
+    /**
+     * Consumer and distributor usages come from the flows, an entity is also an originator of any
+     * type it distributes without consuming.
+     */
+    private Set<Tuple3<Long, Long, String>> findCalculatedUsages(DSLContext tx,
+                                                                 EntityKind kind,
+                                                                 Select<Record1<Long>> idSelector) {
+        Set<Tuple3<Long, Long, String>> usages = tx
+                .selectDistinct(nodeIdInner, dataTypeIdInner, usageKindInner)
+                .from(mkFlowWithTypesForConsumerDistributors(kind, idSelector))
+                .fetchSet(r -> tuple(r.get(nodeIdInner), r.get(dataTypeIdInner), r.get(usageKindInner)));
+
+        Set<Tuple3<Long, Long, String>> originators = usages
+                .stream()
+                .filter(u -> u.v3.equals(UsageKind.DISTRIBUTOR.name()))
+                .filter(u -> ! usages.contains(tuple(u.v1, u.v2, UsageKind.CONSUMER.name())))
+                .map(u -> tuple(u.v1, u.v2, UsageKind.ORIGINATOR.name()))
+                .collect(Collectors.toSet());
+
+        usages.addAll(originators);
+        return usages;
+    }
+
+
+    public Optional<Long> findRecalculationCheckpoint(EntityKind kind, LocalDateTime updatedSince) {
+        return dsl
+                .select(DATA_TYPE_USAGE_RECALC_CHECKPOINT.COMPLETED_UP_TO_ID)
+                .from(DATA_TYPE_USAGE_RECALC_CHECKPOINT)
+                .where(DATA_TYPE_USAGE_RECALC_CHECKPOINT.ENTITY_KIND.eq(kind.name()))
+                .and(DATA_TYPE_USAGE_RECALC_CHECKPOINT.LAST_UPDATED_AT.ge(Timestamp.valueOf(updatedSince)))
+                .fetchOptional(DATA_TYPE_USAGE_RECALC_CHECKPOINT.COMPLETED_UP_TO_ID);
+    }
+
+
+    public int saveRecalculationCheckpoint(EntityKind kind, long completedUpToId, LocalDateTime now) {
+        int updateCount = dsl
+                .update(DATA_TYPE_USAGE_RECALC_CHECKPOINT)
+                .set(DATA_TYPE_USAGE_RECALC_CHECKPOINT.COMPLETED_UP_TO_ID, completedUpToId)
+                .set(DATA_TYPE_USAGE_RECALC_CHECKPOINT.LAST_UPDATED_AT, Timestamp.valueOf(now))
+                .where(DATA_TYPE_USAGE_RECALC_CHECKPOINT.ENTITY_KIND.eq(kind.name()))
+                .execute();
+
+        return updateCount > 0
+                ? updateCount
+                : dsl
+                    .insertInto(DATA_TYPE_USAGE_RECALC_CHECKPOINT)
+                    .set(DATA_TYPE_USAGE_RECALC_CHECKPOINT.ENTITY_KIND, kind.name())
+                    .set(DATA_TYPE_USAGE_RECALC_CHECKPOINT.COMPLETED_UP_TO_ID, completedUpToId)
+                    .set(DATA_TYPE_USAGE_RECALC_CHECKPOINT.LAST_UPDATED_AT, Timestamp.valueOf(now))
+                    .execute();
+    }
+
+
+    public int deleteRecalculationCheckpoint(EntityKind kind) {
+        return dsl
+                .deleteFrom(DATA_TYPE_USAGE_RECALC_CHECKPOINT)
+                .where(DATA_TYPE_USAGE_RECALC_CHECKPOINT.ENTITY_KIND.eq(kind.name()))
+                .execute();
+    }
+
+
+    private Field<Long> mkIdForRecalculationField(EntityKind kind) {
+        switch (kind) {
+            case ACTOR:
+                return ACTOR.ID;
+            case APPLICATION:
+                return APPLICATION.ID;
+            default:
+                throw new UnsupportedOperationException("Cannot recalculate dt usage records for kind: " + kind);
+        }
+    }
+
+
+    private Table<?> mkIdForRecalculationTable(EntityKind kind) {
+        return kind == EntityKind.APPLICATION
+                ? APPLICATION
+                : ACTOR;
+    }
+
+
+    private Condition mkIdForRecalculationCondition(EntityKind kind) {
+        return kind == EntityKind.APPLICATION
+                ? IS_ACTIVE
+                : DSL.trueCondition();
+    }
+
+
     private List<DataTypeUsageRecord> findAllNonActiveDataTypeUsages(DSLContext tx,
                                                                      EntityKind kind,
                                                                      Select<Record1<Long>> idSelector) {
-        Field<String> entityKind = field("entity_kind", String.class);
-        Field<Long> entityId = field("entity_id", Long.class);
-        Field<Long> dataTypeId = field("data_type_id", Long.class);
+        SelectOrderByStep<Record3<String, Long, Long>> refsWithActiveFlowDataTypes = mkActiveFlowDataTypesSelector(
+                tx,
+                kind,
+                idSelector);
 
+        SelectConditionStep<Record> dataTypeUsagesThatNeedDeleting = tx
+                .select(DATA_TYPE_USAGE.fields())
+                .from(DATA_TYPE_USAGE)
+                .leftOuterJoin(refsWithActiveFlowDataTypes)
+                .on(DATA_TYPE_USAGE.ENTITY_KIND.eq(refsWithActiveFlowDataTypes.field(activeEntityKind)))
+                .and(DATA_TYPE_USAGE.ENTITY_ID.eq(refsWithActiveFlowDataTypes.field(activeEntityId)))
+                .and(DATA_TYPE_USAGE.DATA_TYPE_ID.eq(refsWithActiveFlowDataTypes.field(activeDataTypeId)))
+                .where(refsWithActiveFlowDataTypes.field(activeEntityId).isNull())
+                .and(DATA_TYPE_USAGE.ENTITY_KIND.eq(kind.name()))
+                .and(DATA_TYPE_USAGE.ENTITY_ID.in(idSelector));
+
+        return dataTypeUsagesThatNeedDeleting
+                .fetch()
+                .map(r -> r.into(DATA_TYPE_USAGE));
+    }
+
+
+    /**
+     * (entity kind, entity id, data type id) for each data type carried by an active flow to or from the entities
+     */
+    private SelectOrderByStep<Record3<String, Long, Long>> mkActiveFlowDataTypesSelector(DSLContext tx,
+                                                                                           EntityKind kind,
+                                                                                           Select<Record1<Long>> idSelector) {
         SelectConditionStep<Record3<String, Long, Long>> logicalSourcesWithDataTypes = tx.select(
-                LOGICAL_FLOW.SOURCE_ENTITY_KIND.as(entityKind),
-                LOGICAL_FLOW.SOURCE_ENTITY_ID.as(entityId),
-                LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_ID.as(dataTypeId)
+                LOGICAL_FLOW.SOURCE_ENTITY_KIND.as(activeEntityKind),
+                LOGICAL_FLOW.SOURCE_ENTITY_ID.as(activeEntityId),
+                LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_ID.as(activeDataTypeId)
         )
         .from(LOGICAL_FLOW_DECORATOR)
         .innerJoin(LOGICAL_FLOW).on(LOGICAL_FLOW.ID.eq(LOGICAL_FLOW_DECORATOR.LOGICAL_FLOW_ID))
@@ -344,9 +620,9 @@ public class DataTypeUsageDao {
 
 
         SelectConditionStep<Record3<String, Long, Long>> logicalTargetsWithDataTypes = tx.select(
-                LOGICAL_FLOW.TARGET_ENTITY_KIND.as(entityKind),
-                LOGICAL_FLOW.TARGET_ENTITY_ID.as(entityId),
-                LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_ID.as(dataTypeId)
+                LOGICAL_FLOW.TARGET_ENTITY_KIND.as(activeEntityKind),
+                LOGICAL_FLOW.TARGET_ENTITY_ID.as(activeEntityId),
+                LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_ID.as(activeDataTypeId)
         )
         .from(LOGICAL_FLOW_DECORATOR)
         .innerJoin(LOGICAL_FLOW).on(LOGICAL_FLOW.ID.eq(LOGICAL_FLOW_DECORATOR.LOGICAL_FLOW_ID))
@@ -355,23 +631,8 @@ public class DataTypeUsageDao {
         .and(LOGICAL_FLOW.TARGET_ENTITY_ID.in(idSelector))
         .and(LOGICAL_FLOW.TARGET_ENTITY_KIND.eq(kind.name()));
 
-        SelectOrderByStep<Record3<String, Long, Long>> refsWithActiveFlowDataTypes = logicalSourcesWithDataTypes
+        return logicalSourcesWithDataTypes
                 .union(logicalTargetsWithDataTypes);
-
-        SelectConditionStep<Record> dataTypeUsagesThatNeedDeleting = tx
-                .select(DATA_TYPE_USAGE.fields())
-                .from(DATA_TYPE_USAGE)
-                .leftOuterJoin(refsWithActiveFlowDataTypes)
-                .on(DATA_TYPE_USAGE.ENTITY_KIND.eq(refsWithActiveFlowDataTypes.field(entityKind)))
-                .and(DATA_TYPE_USAGE.ENTITY_ID.eq(refsWithActiveFlowDataTypes.field(entityId)))
-                .and(DATA_TYPE_USAGE.DATA_TYPE_ID.eq(refsWithActiveFlowDataTypes.field(dataTypeId)))
-                .where(refsWithActiveFlowDataTypes.field(entityId).isNull())
-                .and(DATA_TYPE_USAGE.ENTITY_KIND.eq(kind.name()))
-                .and(DATA_TYPE_USAGE.ENTITY_ID.in(idSelector));
-
-        return dataTypeUsagesThatNeedDeleting
-                .fetch()
-                .map(r -> r.into(DATA_TYPE_USAGE));
     }
 
 
@@ -393,15 +654,17 @@ public class DataTypeUsageDao {
 
 
     private void updateUsageKinds(DSLContext tx,
+                                  EntityKind nodeKind,
                                   Table<Record3<Long, Long, String>> flowTable) {
         tx.update(DATA_TYPE_USAGE)
                 .set(DATA_TYPE_USAGE.IS_SELECTED, true)
+                .set(DATA_TYPE_USAGE.LAST_UPDATED_AT, nowUtcTimestamp())
                 .where(DATA_TYPE_USAGE.IS_SELECTED.eq(false))
                 .and(exists(
                         select(flowTable.fields())
                                 .from(flowTable)
                                 .where(DATA_TYPE_USAGE.ENTITY_ID.eq(nodeIdInner))
-                                .and(DATA_TYPE_USAGE.ENTITY_KIND.eq(EntityKind.APPLICATION.name()))
+                                .and(DATA_TYPE_USAGE.ENTITY_KIND.eq(nodeKind.name()))
                                 .and(DATA_TYPE_USAGE.DATA_TYPE_ID.eq(dataTypeIdInner))
                                 .and(DATA_TYPE_USAGE.USAGE_KIND.eq(usageKindInner))))
                 .execute();
@@ -28,9 +28,12 @@ import org.finos.waltz.model.datatype.DataTypeUsageCharacteristics;
 import org.finos.waltz.model.datatype.ImmutableDataTypeDecorator;
 import org.finos.waltz.model.datatype.ImmutableDataTypeUsageCharacteristics;
 import org.finos.waltz.model.flow_classification_rule.FlowClassificationRuleVantagePoint;
+import org.finos.waltz.model.flow_classification_rule.FlowDecoratorRating;
+import org.finos.waltz.model.flow_classification_rule.ImmutableFlowDecoratorRating;
 import org.finos.waltz.model.rating.AuthoritativenessRatingValue;
 import org.finos.waltz.schema.tables.LogicalFlowDecorator;
 import org.finos.waltz.schema.tables.records.LogicalFlowDecoratorRecord;
+import org.jooq.BatchBindStep;
 import org.jooq.Condition;
 import org.jooq.DSLContext;
 import org.jooq.Field;
@@ -52,6 +55,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
@@ -66,6 +70,7 @@ import static org.finos.waltz.schema.tables.Application.APPLICATION;
 import static org.finos.waltz.schema.tables.EntityHierarchy.ENTITY_HIERARCHY;
 import static org.finos.waltz.schema.tables.LogicalFlow.LOGICAL_FLOW;
 import static org.finos.waltz.schema.tables.LogicalFlowDecorator.LOGICAL_FLOW_DECORATOR;
+import static org.finos.waltz.schema.tables.OrganisationalUnit.ORGANISATIONAL_UNIT;
 import static org.finos.waltz.schema.tables.PhysicalSpecDataType.PHYSICAL_SPEC_DATA_TYPE;
 
 
@@ -98,7 +103,7 @@ public class LogicalFlowDecoratorDao extends DataTypeDecoratorDao {
     };
 
 
-    private static final Function<DataTypeDecorator, LogicalFlowDecoratorRecord> TO_RECORD = d -> {
+    public static final Function<DataTypeDecorator, LogicalFlowDecoratorRecord> TO_RECORD = d -> {
         LogicalFlowDecoratorRecord r = new LogicalFlowDecoratorRecord();
         r.setId(d.id().orElse(null));
         r.changed(LOGICAL_FLOW_DECORATOR.ID, false);
@@ -356,6 +361,85 @@ public class LogicalFlowDecoratorDao extends DataTypeDecoratorDao {
                 });
     }
 
+    /**
+     * Finds the current ratings of data type decorators on flows targeting applications
+     * which belong to the given org units.
+     */
+    public List<FlowDecoratorRating> findDecoratorRatingsForTargetOrgUnits(Collection<Long> orgUnitIds) {
+        checkNotNull(orgUnitIds, "orgUnitIds cannot be null");
+        return findDecoratorRatings(APPLICATION.ORGANISATIONAL_UNIT_ID.in(orgUnitIds));
+    }
+
+
+    /**
+     * Finds the current ratings of data type decorators on flows which do not target an
+     * application in a known org unit (e.g. flows to actors).
+     */
+    public List<FlowDecoratorRating> findDecoratorRatingsForNonOrgUnitTargets() {
+        return findDecoratorRatings(APPLICATION.ID.isNull()
+                .or(APPLICATION.ORGANISATIONAL_UNIT_ID.notIn(DSL
+                        .select(ORGANISATIONAL_UNIT.ID)
+                        .from(ORGANISATIONAL_UNIT))));
+    }
+
+
+    /**
+     * Writes the rating and flow classification rule of the given decorators
+     * using a single batched statement, no other columns are updated.
+     *
+     * @return number of decorators updated
+     */
+    public int updateRatings(Collection<FlowDecoratorRating> ratings) {
+        checkNotNull(ratings, "ratings cannot be null");
+        if (ratings.isEmpty()) {
+            return 0;
+        }
+
+        BatchBindStep batch = dsl.batch(dsl
+                .update(LOGICAL_FLOW_DECORATOR)
+                .set(LOGICAL_FLOW_DECORATOR.RATING, (String) null)
+                .set(LOGICAL_FLOW_DECORATOR.FLOW_CLASSIFICATION_RULE_ID, (Long) null)
+                .where(LOGICAL_FLOW_DECORATOR.ID.eq((Long) null)));
+
+        ratings.forEach(r -> batch.bind(
+                r.rating().value(),
+                r.flowClassificationRuleId().orElse(null),
+                r.decoratorId()));
+
+        return IntStream.of(batch.execute()).sum();
+    }
+
+
+    private List<FlowDecoratorRating> findDecoratorRatings(Condition condition) {
+        return dsl
+                .select(LOGICAL_FLOW_DECORATOR.ID,
+                        LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_ID,
+                        LOGICAL_FLOW_DECORATOR.RATING,
+                        LOGICAL_FLOW_DECORATOR.FLOW_CLASSIFICATION_RULE_ID,
+                        LOGICAL_FLOW.SOURCE_ENTITY_KIND,
+                        LOGICAL_FLOW.SOURCE_ENTITY_ID,
+                        LOGICAL_FLOW.TARGET_ENTITY_KIND,
+                        LOGICAL_FLOW.TARGET_ENTITY_ID,
+                        APPLICATION.ORGANISATIONAL_UNIT_ID)
+                .from(LOGICAL_FLOW_DECORATOR)
+                .innerJoin(LOGICAL_FLOW).on(LOGICAL_FLOW.ID.eq(LOGICAL_FLOW_DECORATOR.LOGICAL_FLOW_ID))
+                .leftJoin(APPLICATION).on(APPLICATION.ID.eq(LOGICAL_FLOW.TARGET_ENTITY_ID)
+                        .and(LOGICAL_FLOW.TARGET_ENTITY_KIND.eq(EntityKind.APPLICATION.name())))
+                .where(LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_KIND.eq(DATA_TYPE.name()))
+                .and(condition)
+                .fetch(r -> ImmutableFlowDecoratorRating
+                        .builder()
+                        .decoratorId(r.get(LOGICAL_FLOW_DECORATOR.ID))
+                        .dataTypeId(r.get(LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_ID))
+                        .rating(AuthoritativenessRatingValue.of(r.get(LOGICAL_FLOW_DECORATOR.RATING)))
+                        .flowClassificationRuleId(Optional.ofNullable(r.get(LOGICAL_FLOW_DECORATOR.FLOW_CLASSIFICATION_RULE_ID)))
+                        .source(mkRef(EntityKind.valueOf(r.get(LOGICAL_FLOW.SOURCE_ENTITY_KIND)), r.get(LOGICAL_FLOW.SOURCE_ENTITY_ID)))
+                        .target(mkRef(EntityKind.valueOf(r.get(LOGICAL_FLOW.TARGET_ENTITY_KIND)), r.get(LOGICAL_FLOW.TARGET_ENTITY_ID)))
+                        .targetOrgUnitId(Optional.ofNullable(r.get(APPLICATION.ORGANISATIONAL_UNIT_ID)))
+                        .build());
+    }
+
+
     public int updateRatingsByCondition(AuthoritativenessRatingValue rating, Condition condition) {
         return dsl
                 .update(LOGICAL_FLOW_DECORATOR)
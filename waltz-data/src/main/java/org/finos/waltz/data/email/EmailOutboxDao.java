@@ -0,0 +1,219 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.data.email;
+
+import org.finos.waltz.model.email.EmailStatus;
+import org.finos.waltz.model.email.ImmutableOutboxEmail;
+import org.finos.waltz.model.email.OutboxEmail;
+import org.finos.waltz.schema.tables.records.EmailOutboxRecord;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.RecordMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Arrays.asList;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.ListUtilities.map;
+import static org.finos.waltz.common.StringUtilities.join;
+import static org.finos.waltz.schema.Tables.EMAIL_OUTBOX;
+import static org.jooq.impl.DSL.count;
+
+/**
+ * Persistence for the email outbox.  Emails are claimed before they are sent,
+ * a claim expires at <code>next_attempt_at</code> so emails claimed by an instance
+ * which then dies are eventually picked up again.
+ */
+@Repository
+public class EmailOutboxDao {
+
+    private static final String RECIPIENT_SEPARATOR = ",";
+
+    // errors are truncated to keep the column a manageable size
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private static final RecordMapper<Record, OutboxEmail> TO_DOMAIN_MAPPER = r -> {
+        EmailOutboxRecord record = r.into(EMAIL_OUTBOX);
+        return ImmutableOutboxEmail
+                .builder()
+                .id(record.getId())
+                .subject(record.getSubject())
+                .body(record.getBody())
+                .recipients(asList(record.getRecipients().split(RECIPIENT_SEPARATOR)))
+                .status(EmailStatus.valueOf(record.getStatus()))
+                .attempts(record.getAttempts())
+                .lastError(Optional.ofNullable(record.getLastError()))
+                .createdAt(record.getCreatedAt().toLocalDateTime())
+                .build();
+    };
+
+
+    private final DSLContext dsl;
+
+
+    @Autowired
+    public EmailOutboxDao(DSLContext dsl) {
+        checkNotNull(dsl, "dsl cannot be null");
+        this.dsl = dsl;
+    }
+
+
+    public int[] enqueue(Collection<OutboxEmail> emails, LocalDateTime now) {
+        checkNotNull(emails, "emails cannot be null");
+
+        List<EmailOutboxRecord> records = map(emails, email -> {
+            EmailOutboxRecord record = dsl.newRecord(EMAIL_OUTBOX);
+            record.setSubject(email.subject());
+            record.setBody(email.body());
+            record.setRecipients(join(email.recipients(), RECIPIENT_SEPARATOR));
+            record.setStatus(EmailStatus.PENDING.name());
+            record.setAttempts(0);
+            record.setNextAttemptAt(Timestamp.valueOf(now));
+            record.setCreatedAt(Timestamp.valueOf(email.createdAt()));
+            return record;
+        });
+
+        return dsl
+                .batchInsert(records)
+                .execute();
+    }
+
+
+    /**
+     * Emails which are waiting to be sent (or retried), or whose claim has lapsed.
+     * Oldest first.
+     */
+    public List<OutboxEmail> findDue(LocalDateTime now, int limit) {
+        return dsl
+                .select(EMAIL_OUTBOX.fields())
+                .from(EMAIL_OUTBOX)
+                .where(isDue(now))
+                .orderBy(EMAIL_OUTBOX.NEXT_ATTEMPT_AT, EMAIL_OUTBOX.ID)
+                .limit(limit)
+                .fetch(TO_DOMAIN_MAPPER);
+    }
+
+
+    /**
+     * Marks the email as being sent until <code>claimUntil</code> and increments its attempt count.
+     *
+     * @return true if the claim succeeded, false if the email has been claimed (or sent) by someone else
+     */
+    public boolean claim(long id, LocalDateTime now, LocalDateTime claimUntil) {
+        return dsl
+                .update(EMAIL_OUTBOX)
+                .set(EMAIL_OUTBOX.STATUS, EmailStatus.SENDING.name())
+                .set(EMAIL_OUTBOX.NEXT_ATTEMPT_AT, Timestamp.valueOf(claimUntil))
+                .set(EMAIL_OUTBOX.ATTEMPTS, EMAIL_OUTBOX.ATTEMPTS.plus(1))
+                .where(EMAIL_OUTBOX.ID.eq(id))
+                .and(isDue(now))
+                .execute() == 1;
+    }
+
+
+    public int markSent(long id, LocalDateTime sentAt) {
+        return dsl
+                .update(EMAIL_OUTBOX)
+                .set(EMAIL_OUTBOX.STATUS, EmailStatus.SENT.name())
+                .set(EMAIL_OUTBOX.SENT_AT, Timestamp.valueOf(sentAt))
+                .setNull(EMAIL_OUTBOX.LAST_ERROR)
+                .where(EMAIL_OUTBOX.ID.eq(id))
+                .execute();
+    }
+
+
+    public int markForRetry(long id, LocalDateTime nextAttemptAt, String error) {
+        return dsl
+                .update(EMAIL_OUTBOX)
+                .set(EMAIL_OUTBOX.STATUS, EmailStatus.PENDING.name())
+                .set(EMAIL_OUTBOX.NEXT_ATTEMPT_AT, Timestamp.valueOf(nextAttemptAt))
+                .set(EMAIL_OUTBOX.LAST_ERROR, truncate(error))
+                .where(EMAIL_OUTBOX.ID.eq(id))
+                .execute();
+    }
+
+
+    public int markFailed(long id, String error) {
+        return dsl
+                .update(EMAIL_OUTBOX)
+                .set(EMAIL_OUTBOX.STATUS, EmailStatus.FAILED.name())
+                .set(EMAIL_OUTBOX.LAST_ERROR, truncate(error))
+                .where(EMAIL_OUTBOX.ID.eq(id))
+                .execute();
+    }
+
+
+    /**
+     * Failed emails are made pending again, with their attempt count reset.
+     */
+    public int retryFailed(LocalDateTime now) {
+        return dsl
+                .update(EMAIL_OUTBOX)
+                .set(EMAIL_OUTBOX.STATUS, EmailStatus.PENDING.name())
+                .set(EMAIL_OUTBOX.ATTEMPTS, 0)
+                .set(EMAIL_OUTBOX.NEXT_ATTEMPT_AT, Timestamp.valueOf(now))
+                .where(EMAIL_OUTBOX.STATUS.eq(EmailStatus.FAILED.name()))
+                .execute();
+    }
+
+
+    public int deleteSentBefore(LocalDateTime cutoff) {
+        return dsl
+                .deleteFrom(EMAIL_OUTBOX)
+                .where(EMAIL_OUTBOX.STATUS.eq(EmailStatus.SENT.name()))
+                .and(EMAIL_OUTBOX.SENT_AT.lt(Timestamp.valueOf(cutoff)))
+                .execute();
+    }
+
+
+    public Map<EmailStatus, Integer> countByStatus() {
+        Map<EmailStatus, Integer> counts = new EnumMap<>(EmailStatus.class);
+        dsl.select(EMAIL_OUTBOX.STATUS, count())
+                .from(EMAIL_OUTBOX)
+                .groupBy(EMAIL_OUTBOX.STATUS)
+                .fetch()
+                .forEach(r -> counts.put(EmailStatus.valueOf(r.value1()), r.value2()));
+        return counts;
+    }
+
+
+    // -- HELPERS ---
+
+    private static Condition isDue(LocalDateTime now) {
+        return EMAIL_OUTBOX.STATUS.in(EmailStatus.PENDING.name(), EmailStatus.SENDING.name())
+                .and(EMAIL_OUTBOX.NEXT_ATTEMPT_AT.le(Timestamp.valueOf(now)));
+    }
+
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= MAX_ERROR_LENGTH
+                ? error
+                : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+}
@@ -36,11 +36,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import static org.finos.waltz.schema.tables.EntityHierarchy.ENTITY_HIERARCHY;
 import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.DateTimeUtilities.nowUtcTimestamp;
 import static org.finos.waltz.common.ListUtilities.map;
 
 @Repository
@@ -60,6 +64,7 @@ public class EntityHierarchyDao {
                         r.setAncestorId(item.parentId().orElse(null));
                         r.setLevel(item.ancestorLevel());
                         r.setDescendantLevel(item.descendantLevel());
+                        r.setLastUpdatedAt(nowUtcTimestamp());
                         return r;
                     })
                     .orElseThrow(() -> new IllegalArgumentException("Cannot convert an item without an id to a hierarchy record"));
@@ -120,6 +125,113 @@ public class EntityHierarchyDao {
     }
 
 
+    /**
+     * Applies a pre-computed delta to an entity hierarchy.  Unlike
+     * `replaceHierarchy` only the given rows are touched, so the
+     * rest of the hierarchy remains available (and unlocked) whilst
+     * the changes are written.
+     *
+     * Items whose levels have changed should appear in both collections,
+     * the removals are applied before the additions.
+     *
+     * @param kind  the entity kind of the hierarchy being updated
+     * @param removals  items (matched on id and ancestor id) to delete
+     * @param additions  items to insert
+     * @return number of hierarchy records deleted and inserted
+     */
+    public int applyDelta(EntityKind kind,
+                          Collection<EntityHierarchyItem> removals,
+                          Collection<EntityHierarchyItem> additions) {
+        checkNotNull(kind, "kind cannot be null");
+        checkNotNull(removals, "removals cannot be null");
+        checkNotNull(additions, "additions cannot be null");
+
+        if (removals.isEmpty() && additions.isEmpty()) {
+            return 0;
+        }
+
+        List<EntityHierarchyRecord> records = map(additions, ITEM_TO_RECORD_MAPPER);
+
+        LOG.info("Updating hierarchy items for kind: {}, removing: #{}, inserting: #{}", kind, removals.size(), additions.size());
+        return dsl.transactionResult(configuration -> {
+            DSLContext txDsl = DSL.using(configuration);
+
+            int removedCount = removals.isEmpty()
+                    ? 0
+                    : IntStream.of(txDsl
+                        .batch(map(removals, item -> txDsl
+                                .deleteFrom(ENTITY_HIERARCHY)
+                                .where(ENTITY_HIERARCHY.KIND.eq(kind.name()))
+                                .and(ENTITY_HIERARCHY.ID.eq(item.id().orElse(null)))
+                                .and(ENTITY_HIERARCHY.ANCESTOR_ID.eq(item.parentId().orElse(null)))))
+                        .execute())
+                    .sum();
+
+            int insertedCount = records.isEmpty()
+                    ? 0
+                    : txDsl
+                        .batchInsert(records)
+                        .execute()
+                        .length;
+
+            return removedCount + insertedCount;
+        });
+    }
+
+
+    /**
+     * @param kind  the entity kind of the hierarchy
+     * @param filter  any additional restrictions (e.g. to a single measurable category)
+     * @return the current hierarchy items for the given kind
+     */
+    public List<EntityHierarchyItem> findByKind(EntityKind kind,
+                                                Condition filter) {
+        checkNotNull(kind, "kind cannot be null");
+        return dsl
+                .select(ENTITY_HIERARCHY.fields())
+                .from(ENTITY_HIERARCHY)
+                .where(ENTITY_HIERARCHY.KIND.eq(kind.name()))
+                .and(filter)
+                .fetch(TO_DOMAIN_MAPPER);
+    }
+
+
+    /**
+     * @param kind  the entity kind of the hierarchy
+     * @param ids  the nodes whose rows should be returned
+     * @return the current hierarchy items (self and ancestor rows) for the given nodes
+     */
+    public List<EntityHierarchyItem> findByIds(EntityKind kind,
+                                               Collection<Long> ids) {
+        checkNotNull(kind, "kind cannot be null");
+        checkNotNull(ids, "ids cannot be null");
+        return dsl
+                .select(ENTITY_HIERARCHY.fields())
+                .from(ENTITY_HIERARCHY)
+                .where(ENTITY_HIERARCHY.KIND.eq(kind.name()))
+                .and(ENTITY_HIERARCHY.ID.in(ids))
+                .fetch(TO_DOMAIN_MAPPER);
+    }
+
+
+    /**
+     * @param kind  the entity kind of the hierarchy
+     * @param ancestorIds  the nodes whose descendants are required
+     * @return ids of the given nodes and their descendants, according to the current hierarchy items
+     */
+    public Set<Long> findDescendantIds(EntityKind kind,
+                                       Collection<Long> ancestorIds) {
+        checkNotNull(kind, "kind cannot be null");
+        checkNotNull(ancestorIds, "ancestorIds cannot be null");
+        return dsl
+                .selectDistinct(ENTITY_HIERARCHY.ID)
+                .from(ENTITY_HIERARCHY)
+                .where(ENTITY_HIERARCHY.KIND.eq(kind.name()))
+                .and(ENTITY_HIERARCHY.ANCESTOR_ID.in(ancestorIds))
+                .fetchSet(ENTITY_HIERARCHY.ID);
+    }
+
+
     public List<Tally<String>> tallyByKind() {
         return JooqUtilities.calculateStringTallies(dsl, eh, eh.KIND, DSL.trueCondition());
     }
@@ -0,0 +1,282 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.data.entity_search;
+
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityLifecycleStatus;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.ImmutableEntityReference;
+import org.jooq.DSLContext;
+import org.jooq.lambda.tuple.Tuple2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Collections.emptySet;
+import static java.util.stream.Collectors.*;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.schema.Tables.*;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Loads the searchable fields of entities in bulk so they can be held in an
+ * in-memory search index.  Each document is the entity reference which should be
+ * returned by a search, along with any additional text (aliases, emails etc.)
+ * which should match but is not part of the reference.
+ */
+@Repository
+public class EntitySearchIndexDao {
+
+    public static final Set<EntityKind> INDEXABLE_KINDS = asSet(
+            EntityKind.ACTOR,
+            EntityKind.APPLICATION,
+            EntityKind.CHANGE_INITIATIVE,
+            EntityKind.DATA_TYPE,
+            EntityKind.LEGAL_ENTITY,
+            EntityKind.MEASURABLE,
+            EntityKind.ORG_UNIT,
+            EntityKind.PERSON,
+            EntityKind.SERVER);
+
+    private final DSLContext dsl;
+
+
+    @Autowired
+    public EntitySearchIndexDao(DSLContext dsl) {
+        checkNotNull(dsl, "dsl cannot be null");
+        this.dsl = dsl;
+    }
+
+
+    public List<Tuple2<EntityReference, Set<String>>> findDocuments(EntityKind kind) {
+        checkNotNull(kind, "kind cannot be null");
+        switch (kind) {
+            case ACTOR:
+                return findActors();
+            case APPLICATION:
+                return findApplications();
+            case CHANGE_INITIATIVE:
+                return findChangeInitiatives();
+            case DATA_TYPE:
+                return findDataTypes();
+            case LEGAL_ENTITY:
+                return findLegalEntities();
+            case MEASURABLE:
+                return findMeasurables();
+            case ORG_UNIT:
+                return findOrgUnits();
+            case PERSON:
+                return findPeople();
+            case SERVER:
+                return findServers();
+            default:
+                throw new UnsupportedOperationException("Cannot index entities of kind: " + kind);
+        }
+    }
+
+
+    private List<Tuple2<EntityReference, Set<String>>> findActors() {
+        return dsl
+                .select(ACTOR.ID, ACTOR.NAME, ACTOR.DESCRIPTION, ACTOR.EXTERNAL_ID)
+                .from(ACTOR)
+                .fetch(r -> tuple(
+                        ImmutableEntityReference.builder()
+                                .kind(EntityKind.ACTOR)
+                                .id(r.get(ACTOR.ID))
+                                .name(r.get(ACTOR.NAME))
+                                .description(r.get(ACTOR.DESCRIPTION))
+                                .build(),
+                        optionalSet(r.get(ACTOR.EXTERNAL_ID))));
+    }
+
+
+    private List<Tuple2<EntityReference, Set<String>>> findApplications() {
+        Map<Long, Set<String>> aliasesByAppId = dsl
+                .select(ENTITY_ALIAS.ID, ENTITY_ALIAS.ALIAS)
+                .from(ENTITY_ALIAS)
+                .where(ENTITY_ALIAS.KIND.eq(EntityKind.APPLICATION.name()))
+                .fetch()
+                .stream()
+                .collect(groupingBy(
+                        r -> r.get(ENTITY_ALIAS.ID),
+                        mapping(r -> r.get(ENTITY_ALIAS.ALIAS), toSet())));
+
+        return dsl
+                .select(APPLICATION.ID,
+                        APPLICATION.NAME,
+                        APPLICATION.DESCRIPTION,
+                        APPLICATION.ASSET_CODE,
+                        APPLICATION.ENTITY_LIFECYCLE_STATUS)
+                .from(APPLICATION)
+                .fetch(r -> tuple(
+                        ImmutableEntityReference.builder()
+                                .kind(EntityKind.APPLICATION)
+                                .id(r.get(APPLICATION.ID))
+                                .name(r.get(APPLICATION.NAME))
+                                .description(r.get(APPLICATION.DESCRIPTION))
+                                .externalId(Optional.ofNullable(r.get(APPLICATION.ASSET_CODE)))
+                                .entityLifecycleStatus(EntityLifecycleStatus.valueOf(r.get(APPLICATION.ENTITY_LIFECYCLE_STATUS)))
+                                .build(),
+                        aliasesByAppId.getOrDefault(r.get(APPLICATION.ID), emptySet())));
+    }
+
+
+    private List<Tuple2<EntityReference, Set<String>>> findChangeInitiatives() {
+        return dsl
+                .select(CHANGE_INITIATIVE.ID,
+                        CHANGE_INITIATIVE.NAME,
+                        CHANGE_INITIATIVE.DESCRIPTION,
+                        CHANGE_INITIATIVE.EXTERNAL_ID)
+                .from(CHANGE_INITIATIVE)
+                .fetch(r -> {
+                    String externalId = r.get(CHANGE_INITIATIVE.EXTERNAL_ID);
+                    String name = r.get(CHANGE_INITIATIVE.NAME);
+                    return tuple(
+                            ImmutableEntityReference.builder()
+                                    .kind(EntityKind.CHANGE_INITIATIVE)
+                                    .id(r.get(CHANGE_INITIATIVE.ID))
+                                    .name(externalId == null ? name : name + " (" + externalId + ")")
+                                    .description(r.get(CHANGE_INITIATIVE.DESCRIPTION))
+                                    .externalId(Optional.ofNullable(externalId))
+                                    .build(),
+                            emptySet());
+                });
+    }
+
+
+    private List<Tuple2<EntityReference, Set<String>>> findDataTypes() {
+        return dsl
+                .select(DATA_TYPE.ID, DATA_TYPE.NAME, DATA_TYPE.DESCRIPTION, DATA_TYPE.CODE)
+                .from(DATA_TYPE)
+                .fetch(r -> tuple(
+                        ImmutableEntityReference.builder()
+                                .kind(EntityKind.DATA_TYPE)
+                                .id(r.get(DATA_TYPE.ID))
+                                .name(r.get(DATA_TYPE.NAME))
+                                .description(r.get(DATA_TYPE.DESCRIPTION))
+                                .externalId(Optional.ofNullable(r.get(DATA_TYPE.CODE)))
+                                .build(),
+                        emptySet()));
+    }
+
+
+    private List<Tuple2<EntityReference, Set<String>>> findLegalEntities() {
+        return dsl
+                .select(LEGAL_ENTITY.ID,
+                        LEGAL_ENTITY.NAME,
+                        LEGAL_ENTITY.DESCRIPTION,
+                        LEGAL_ENTITY.EXTERNAL_ID,
+                        LEGAL_ENTITY.ENTITY_LIFECYCLE_STATUS)
+                .from(LEGAL_ENTITY)
+                .fetch(r -> tuple(
+                        ImmutableEntityReference.builder()
+                                .kind(EntityKind.LEGAL_ENTITY)
+                                .id(r.get(LEGAL_ENTITY.ID))
+                                .name(r.get(LEGAL_ENTITY.NAME))
+                                .description(r.get(LEGAL_ENTITY.DESCRIPTION))
+                                .externalId(Optional.ofNullable(r.get(LEGAL_ENTITY.EXTERNAL_ID)))
+                                .entityLifecycleStatus(EntityLifecycleStatus.valueOf(r.get(LEGAL_ENTITY.ENTITY_LIFECYCLE_STATUS)))
+                                .build(),
+                        emptySet()));
+    }
+
+
+    private List<Tuple2<EntityReference, Set<String>>> findMeasurables() {
+        return dsl
+                .select(MEASURABLE.ID,
+                        MEASURABLE.NAME,
+                        MEASURABLE.DESCRIPTION,
+                        MEASURABLE.EXTERNAL_ID,
+                        MEASURABLE.ENTITY_LIFECYCLE_STATUS)
+                .from(MEASURABLE)
+                .fetch(r -> tuple(
+                        ImmutableEntityReference.builder()
+                                .kind(EntityKind.MEASURABLE)
+                                .id(r.get(MEASURABLE.ID))
+                                .name(r.get(MEASURABLE.NAME))
+                                .description(r.get(MEASURABLE.DESCRIPTION))
+                                .externalId(Optional.ofNullable(r.get(MEASURABLE.EXTERNAL_ID)))
+                                .entityLifecycleStatus(EntityLifecycleStatus.valueOf(r.get(MEASURABLE.ENTITY_LIFECYCLE_STATUS)))
+                                .build(),
+                        emptySet()));
+    }
+
+
+    private List<Tuple2<EntityReference, Set<String>>> findOrgUnits() {
+        return dsl
+                .select(ORGANISATIONAL_UNIT.ID,
+                        ORGANISATIONAL_UNIT.NAME,
+                        ORGANISATIONAL_UNIT.DESCRIPTION,
+                        ORGANISATIONAL_UNIT.EXTERNAL_ID)
+                .from(ORGANISATIONAL_UNIT)
+                .fetch(r -> tuple(
+                        ImmutableEntityReference.builder()
+                                .kind(EntityKind.ORG_UNIT)
+                                .id(r.get(ORGANISATIONAL_UNIT.ID))
+                                .name(r.get(ORGANISATIONAL_UNIT.NAME))
+                                .description(r.get(ORGANISATIONAL_UNIT.DESCRIPTION))
+                                .externalId(Optional.ofNullable(r.get(ORGANISATIONAL_UNIT.EXTERNAL_ID)))
+                                .build(),
+                        emptySet()));
+    }
+
+
+    private List<Tuple2<EntityReference, Set<String>>> findPeople() {
+        return dsl
+                .select(PERSON.ID, PERSON.DISPLAY_NAME, PERSON.EMAIL, PERSON.IS_REMOVED)
+                .from(PERSON)
+                .fetch(r -> tuple(
+                        ImmutableEntityReference.builder()
+                                .kind(EntityKind.PERSON)
+                                .id(r.get(PERSON.ID))
+                                .name(r.get(PERSON.DISPLAY_NAME))
+                                .entityLifecycleStatus(EntityLifecycleStatus.fromIsRemovedFlag(r.get(PERSON.IS_REMOVED)))
+                                .build(),
+                        optionalSet(r.get(PERSON.EMAIL))));
+    }
+
+
+    private List<Tuple2<EntityReference, Set<String>>> findServers() {
+        return dsl
+                .select(SERVER_INFORMATION.ID, SERVER_INFORMATION.HOSTNAME, SERVER_INFORMATION.EXTERNAL_ID)
+                .from(SERVER_INFORMATION)
+                .fetch(r -> tuple(
+                        ImmutableEntityReference.builder()
+                                .kind(EntityKind.SERVER)
+                                .id(r.get(SERVER_INFORMATION.ID))
+                                .name(r.get(SERVER_INFORMATION.HOSTNAME))
+                                .externalId(Optional.ofNullable(r.get(SERVER_INFORMATION.EXTERNAL_ID)))
+                                .build(),
+                        emptySet()));
+    }
+
+
+    private static Set<String> optionalSet(String value) {
+        return value == null
+                ? Collections.emptySet()
+                : asSet(value);
+    }
+
+}
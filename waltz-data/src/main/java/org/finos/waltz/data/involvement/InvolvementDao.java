@@ -203,6 +203,30 @@ public class InvolvementDao {
             Select<Record1<Long>> entityIdSelector,
             Set<Long> involvementKindIds) {
 
+        return findPeopleByEntityAndInvolvement(
+                entityKind,
+                INVOLVEMENT.ENTITY_ID.in(entityIdSelector),
+                involvementKindIds);
+    }
+
+
+    public Map<EntityReference, List<Person>> findPeopleByEntityIdsAndInvolvement(
+            EntityKind entityKind,
+            Collection<Long> entityIds,
+            Set<Long> involvementKindIds) {
+
+        return findPeopleByEntityAndInvolvement(
+                entityKind,
+                INVOLVEMENT.ENTITY_ID.in(entityIds),
+                involvementKindIds);
+    }
+
+
+    private Map<EntityReference, List<Person>> findPeopleByEntityAndInvolvement(
+            EntityKind entityKind,
+            Condition entityIdCondition,
+            Set<Long> involvementKindIds) {
+
         return dsl.selectDistinct()
                 .select(PERSON.fields())
                 .select(INVOLVEMENT.fields())
@@ -212,7 +236,7 @@ public class InvolvementDao {
                 .on(INVOLVEMENT.EMPLOYEE_ID.eq(PERSON.EMPLOYEE_ID))
                 .where(PERSON.IS_REMOVED.isFalse()
                         .and(INVOLVEMENT.ENTITY_KIND.eq(entityKind.name())
-                                .and(INVOLVEMENT.ENTITY_ID.in(entityIdSelector)
+                                .and(entityIdCondition
                                         .and(INVOLVEMENT.KIND_ID.in(involvementKindIds)))))
                 .fetch()
                 .stream()
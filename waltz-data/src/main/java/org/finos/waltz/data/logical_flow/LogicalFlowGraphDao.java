@@ -0,0 +1,99 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.data.logical_flow;
+
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.schema.Tables.LOGICAL_FLOW;
+import static org.finos.waltz.schema.Tables.LOGICAL_FLOW_DECORATOR;
+
+
+/**
+ * Change tracking queries used to keep the in-memory logical flow graph up to date.
+ */
+@Repository
+public class LogicalFlowGraphDao {
+
+    private final DSLContext dsl;
+
+
+    @Autowired
+    public LogicalFlowGraphDao(DSLContext dsl) {
+        checkNotNull(dsl, "dsl cannot be null");
+        this.dsl = dsl;
+    }
+
+
+    /**
+     * @return the most recent update time of any logical flow or logical flow decorator
+     */
+    public Optional<LocalDateTime> findLatestUpdate() {
+        Timestamp latestFlowUpdate = dsl
+                .select(DSL.max(LOGICAL_FLOW.LAST_UPDATED_AT))
+                .from(LOGICAL_FLOW)
+                .fetchOne()
+                .value1();
+
+        Timestamp latestDecoratorUpdate = dsl
+                .select(DSL.max(LOGICAL_FLOW_DECORATOR.LAST_UPDATED_AT))
+                .from(LOGICAL_FLOW_DECORATOR)
+                .fetchOne()
+                .value1();
+
+        return Stream
+                .of(latestFlowUpdate, latestDecoratorUpdate)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .map(Timestamp::toLocalDateTime);
+    }
+
+
+    /**
+     * @return ids of logical flows which have been updated, or had a decorator
+     * added or updated, after the given time
+     */
+    public Set<Long> findFlowIdsUpdatedAfter(LocalDateTime since) {
+        checkNotNull(since, "since cannot be null");
+
+        Timestamp sinceTimestamp = Timestamp.valueOf(since);
+
+        return dsl
+                .select(LOGICAL_FLOW.ID)
+                .from(LOGICAL_FLOW)
+                .where(LOGICAL_FLOW.LAST_UPDATED_AT.gt(sinceTimestamp))
+                .union(DSL
+                        .select(LOGICAL_FLOW_DECORATOR.LOGICAL_FLOW_ID)
+                        .from(LOGICAL_FLOW_DECORATOR)
+                        .where(LOGICAL_FLOW_DECORATOR.LAST_UPDATED_AT.gt(sinceTimestamp)))
+                .fetchSet(LOGICAL_FLOW.ID);
+    }
+
+}
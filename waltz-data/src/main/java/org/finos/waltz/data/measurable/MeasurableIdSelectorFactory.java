@@ -22,6 +22,7 @@ package org.finos.waltz.data.measurable;
 import org.finos.waltz.data.change_initiative.ChangeInitiativeIdSelectorFactory;
 import org.finos.waltz.schema.tables.MeasurableRating;
 import org.finos.waltz.data.IdSelectorFactory;
+import org.finos.waltz.data.IdSelectorMaterialiser;
 import org.finos.waltz.data.application.ApplicationIdSelectorFactory;
 import org.finos.waltz.data.orgunit.OrganisationalUnitIdSelectorFactory;
 import org.finos.waltz.model.EntityKind;
@@ -67,6 +68,11 @@ public class MeasurableIdSelectorFactory implements IdSelectorFactory {
 
     @Override
     public Select<Record1<Long>> apply(IdSelectionOptions options) {
+        return IdSelectorMaterialiser.materialise(EntityKind.MEASURABLE, options, () -> mkSelector(options));
+    }
+
+
+    private Select<Record1<Long>> mkSelector(IdSelectionOptions options) {
         switch (options.entityReference().kind()) {
             case PERSON:
                 return mkForPerson(options);
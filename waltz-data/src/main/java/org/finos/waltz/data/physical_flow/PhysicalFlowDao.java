@@ -54,6 +54,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiFunction;
 
 import static java.util.Collections.emptyList;
 import static org.finos.waltz.common.Checks.checkFalse;
@@ -101,6 +102,32 @@ public class PhysicalFlowDao {
                 .build();
     };
 
+    public static final BiFunction<PhysicalFlow, DSLContext, PhysicalFlowRecord> TO_RECORD_MAPPER = (flow, dsl) -> {
+        PhysicalFlowRecord record = dsl.newRecord(PHYSICAL_FLOW);
+        record.setLogicalFlowId(flow.logicalFlowId());
+
+        record.setFrequency(flow.frequency().value());
+        record.setTransport(flow.transport().value());
+        record.setBasisOffset(flow.basisOffset());
+        record.setCriticality(flow.criticality().value());
+
+        record.setSpecificationId(flow.specificationId());
+
+        record.setDescription(flow.description());
+        record.setLastUpdatedBy(flow.lastUpdatedBy());
+        record.setLastUpdatedAt(Timestamp.valueOf(flow.lastUpdatedAt()));
+        record.setLastAttestedBy(flow.lastAttestedBy().orElse(null));
+        record.setLastAttestedAt(flow.lastAttestedAt().map(Timestamp::valueOf).orElse(null));
+        record.setIsRemoved(flow.isRemoved());
+        record.setProvenance("waltz");
+        record.setExternalId(flow.externalId().orElse(null));
+
+        record.setCreatedAt(flow.created().map(UserTimestamp::atTimestamp).orElse(Timestamp.valueOf(flow.lastUpdatedAt())));
+        record.setCreatedBy(flow.created().map(UserTimestamp::by).orElse(flow.lastUpdatedBy()));
+        return record;
+    };
+
+
     public static final Condition PHYSICAL_FLOW_NOT_REMOVED = PHYSICAL_FLOW.IS_REMOVED.isFalse()
             .and(PHYSICAL_FLOW.ENTITY_LIFECYCLE_STATUS.ne(EntityLifecycleStatus.REMOVED.name()));
 
@@ -298,28 +325,7 @@ public class PhysicalFlowDao {
         checkNotNull(flow, "flow cannot be null");
         checkFalse(flow.id().isPresent(), "flow must not have an id");
 
-        PhysicalFlowRecord record = dsl.newRecord(PHYSICAL_FLOW);
-        record.setLogicalFlowId(flow.logicalFlowId());
-
-        record.setFrequency(flow.frequency().value());
-        record.setTransport(flow.transport().value());
-        record.setBasisOffset(flow.basisOffset());
-        record.setCriticality(flow.criticality().value());
-
-        record.setSpecificationId(flow.specificationId());
-
-        record.setDescription(flow.description());
-        record.setLastUpdatedBy(flow.lastUpdatedBy());
-        record.setLastUpdatedAt(Timestamp.valueOf(flow.lastUpdatedAt()));
-        record.setLastAttestedBy(flow.lastAttestedBy().orElse(null));
-        record.setLastAttestedAt(flow.lastAttestedAt().map(Timestamp::valueOf).orElse(null));
-        record.setIsRemoved(flow.isRemoved());
-        record.setProvenance("waltz");
-        record.setExternalId(flow.externalId().orElse(null));
-
-        record.setCreatedAt(flow.created().map(UserTimestamp::atTimestamp).orElse(Timestamp.valueOf(flow.lastUpdatedAt())));
-        record.setCreatedBy(flow.created().map(UserTimestamp::by).orElse(flow.lastUpdatedBy()));
-
+        PhysicalFlowRecord record = TO_RECORD_MAPPER.apply(flow, dsl);
         record.store();
         return record.getId();
     }
@@ -0,0 +1,254 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.data.physical_flow;
+
+import org.finos.waltz.data.datatype_decorator.LogicalFlowDecoratorDao;
+import org.finos.waltz.data.datatype_decorator.PhysicalSpecDecoratorDao;
+import org.finos.waltz.data.logical_flow.LogicalFlowDao;
+import org.finos.waltz.data.physical_specification.PhysicalSpecificationDao;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityLifecycleStatus;
+import org.finos.waltz.model.UserTimestamp;
+import org.finos.waltz.model.datatype.DataTypeDecorator;
+import org.finos.waltz.model.logical_flow.ImmutableLogicalFlow;
+import org.finos.waltz.model.logical_flow.LogicalFlow;
+import org.finos.waltz.model.physical_flow.PhysicalFlow;
+import org.finos.waltz.model.physical_specification.PhysicalSpecification;
+import org.finos.waltz.schema.tables.records.LogicalFlowRecord;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.RecordMapper;
+import org.jooq.TableRecord;
+import org.jooq.lambda.tuple.Tuple2;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.DateTimeUtilities.nowUtc;
+import static org.finos.waltz.common.EnumUtilities.readEnum;
+import static org.finos.waltz.common.ListUtilities.partition;
+import static org.finos.waltz.data.physical_specification.PhysicalSpecificationDao.PHYSICAL_SPEC_NOT_REMOVED;
+import static org.finos.waltz.model.EntityLifecycleStatus.ACTIVE;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.schema.Tables.LOGICAL_FLOW;
+import static org.finos.waltz.schema.Tables.LOGICAL_FLOW_DECORATOR;
+import static org.finos.waltz.schema.Tables.PHYSICAL_FLOW;
+import static org.finos.waltz.schema.Tables.PHYSICAL_SPECIFICATION;
+import static org.finos.waltz.schema.Tables.PHYSICAL_SPEC_DATA_TYPE;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+
+/**
+ * Set based reads and batched writes used by the physical flow bulk uploader.
+ * <p>
+ * Every method takes the context to execute against so the whole upload can be
+ * performed in a single transaction.  Lookups are made with `IN` clauses, split
+ * into chunks of at most {@link #MAX_IDS_PER_QUERY} ids.
+ */
+@Repository
+public class PhysicalFlowUploadDao {
+
+    public static final int MAX_IDS_PER_QUERY = 1000;
+
+
+    /**
+     * Maps just the logical flow columns (no source/target names) as the uploader
+     * already has the resolved source and target references.
+     */
+    private static final RecordMapper<Record, LogicalFlow> TO_LOGICAL_FLOW_MAPPER = r -> {
+        LogicalFlowRecord record = r.into(LogicalFlowRecord.class);
+
+        return ImmutableLogicalFlow.builder()
+                .id(record.getId())
+                .source(mkRef(EntityKind.valueOf(record.getSourceEntityKind()), record.getSourceEntityId()))
+                .target(mkRef(EntityKind.valueOf(record.getTargetEntityKind()), record.getTargetEntityId()))
+                .entityLifecycleStatus(readEnum(record.getEntityLifecycleStatus(), EntityLifecycleStatus.class, s -> ACTIVE))
+                .lastUpdatedBy(record.getLastUpdatedBy())
+                .lastUpdatedAt(record.getLastUpdatedAt().toLocalDateTime())
+                .created(UserTimestamp.mkForUser(record.getCreatedBy(), record.getCreatedAt()))
+                .provenance(record.getProvenance())
+                .isReadOnly(record.getIsReadonly())
+                .isRemoved(record.getIsRemoved())
+                .build();
+    };
+
+
+    // --- LOGICAL FLOWS ---
+
+    /**
+     * @return all logical flows (including removed ones) from any of the given source ids
+     */
+    public List<LogicalFlow> findLogicalFlowsBySourceIds(DSLContext tx, Collection<Long> sourceIds) {
+        return inChunks(
+                sourceIds,
+                chunk -> tx
+                        .select(LOGICAL_FLOW.fields())
+                        .from(LOGICAL_FLOW)
+                        .where(LOGICAL_FLOW.SOURCE_ENTITY_ID.in(chunk))
+                        .fetch(TO_LOGICAL_FLOW_MAPPER));
+    }
+
+
+    public int restoreLogicalFlows(DSLContext tx, Collection<Long> logicalFlowIds, String username) {
+        checkNotNull(username, "username cannot be null");
+        Timestamp now = Timestamp.valueOf(nowUtc());
+
+        int restored = 0;
+        for (List<Long> chunk : partition(new ArrayList<>(logicalFlowIds), MAX_IDS_PER_QUERY)) {
+            restored += tx
+                    .update(LOGICAL_FLOW)
+                    .set(LOGICAL_FLOW.ENTITY_LIFECYCLE_STATUS, ACTIVE.name())
+                    .set(LOGICAL_FLOW.IS_REMOVED, false)
+                    .set(LOGICAL_FLOW.LAST_UPDATED_BY, username)
+                    .set(LOGICAL_FLOW.LAST_UPDATED_AT, now)
+                    .where(LOGICAL_FLOW.ID.in(chunk))
+                    .execute();
+        }
+        return restored;
+    }
+
+
+    public int createLogicalFlows(DSLContext tx, Collection<LogicalFlow> flows) {
+        return batchInsert(tx, flows, f -> LogicalFlowDao.TO_RECORD_MAPPER.apply(f, tx));
+    }
+
+
+    /**
+     * @return tuples of (logical flow id, data type id)
+     */
+    public Set<Tuple2<Long, Long>> findLogicalFlowDataTypes(DSLContext tx, Collection<Long> logicalFlowIds) {
+        return new HashSet<>(inChunks(
+                logicalFlowIds,
+                chunk -> tx
+                        .select(LOGICAL_FLOW_DECORATOR.LOGICAL_FLOW_ID, LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_ID)
+                        .from(LOGICAL_FLOW_DECORATOR)
+                        .where(LOGICAL_FLOW_DECORATOR.LOGICAL_FLOW_ID.in(chunk))
+                        .and(LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_KIND.eq(EntityKind.DATA_TYPE.name()))
+                        .fetch(r -> tuple(r.value1(), r.value2()))));
+    }
+
+
+    public int createLogicalFlowDecorators(DSLContext tx, Collection<DataTypeDecorator> decorators) {
+        return batchInsert(tx, decorators, LogicalFlowDecoratorDao.TO_RECORD);
+    }
+
+
+    // --- SPECIFICATIONS ---
+
+    /**
+     * @return all non-removed specifications owned by any of the given ids
+     */
+    public List<PhysicalSpecification> findSpecificationsByOwnerIds(DSLContext tx, Collection<Long> ownerIds) {
+        return inChunks(
+                ownerIds,
+                chunk -> tx
+                        .select(PHYSICAL_SPECIFICATION.fields())
+                        .select(PhysicalSpecificationDao.owningEntityNameField)
+                        .from(PHYSICAL_SPECIFICATION)
+                        .where(PHYSICAL_SPECIFICATION.OWNING_ENTITY_ID.in(chunk))
+                        .and(PHYSICAL_SPEC_NOT_REMOVED)
+                        .fetch(PhysicalSpecificationDao.TO_DOMAIN_MAPPER));
+    }
+
+
+    public int createSpecifications(DSLContext tx, Collection<PhysicalSpecification> specifications) {
+        return batchInsert(tx, specifications, s -> PhysicalSpecificationDao.TO_RECORD_MAPPER.apply(s, tx));
+    }
+
+
+    /**
+     * @return tuples of (specification id, data type id)
+     */
+    public Set<Tuple2<Long, Long>> findSpecificationDataTypes(DSLContext tx, Collection<Long> specificationIds) {
+        return new HashSet<>(inChunks(
+                specificationIds,
+                chunk -> tx
+                        .select(PHYSICAL_SPEC_DATA_TYPE.SPECIFICATION_ID, PHYSICAL_SPEC_DATA_TYPE.DATA_TYPE_ID)
+                        .from(PHYSICAL_SPEC_DATA_TYPE)
+                        .where(PHYSICAL_SPEC_DATA_TYPE.SPECIFICATION_ID.in(chunk))
+                        .fetch(r -> tuple(r.value1(), r.value2()))));
+    }
+
+
+    public int createSpecificationDecorators(DSLContext tx, Collection<DataTypeDecorator> decorators) {
+        return batchInsert(tx, decorators, PhysicalSpecDecoratorDao.TO_RECORD_MAPPER);
+    }
+
+
+    // --- PHYSICAL FLOWS ---
+
+    /**
+     * @return all physical flows (including removed ones) for any of the given logical flow ids
+     */
+    public List<PhysicalFlow> findPhysicalFlowsByLogicalFlowIds(DSLContext tx, Collection<Long> logicalFlowIds) {
+        return inChunks(
+                logicalFlowIds,
+                chunk -> tx
+                        .select(PHYSICAL_FLOW.fields())
+                        .from(PHYSICAL_FLOW)
+                        .where(PHYSICAL_FLOW.LOGICAL_FLOW_ID.in(chunk))
+                        .fetch(PhysicalFlowDao.TO_DOMAIN_MAPPER));
+    }
+
+
+    public int createPhysicalFlows(DSLContext tx, Collection<PhysicalFlow> flows) {
+        return batchInsert(tx, flows, f -> PhysicalFlowDao.TO_RECORD_MAPPER.apply(f, tx));
+    }
+
+
+    // --- HELPERS ---
+
+    private static <T> List<T> inChunks(Collection<Long> ids,
+                                        Function<List<Long>, ? extends Collection<T>> query) {
+        checkNotNull(ids, "ids cannot be null");
+
+        List<T> results = new ArrayList<>();
+        for (List<Long> chunk : partition(new ArrayList<>(new HashSet<>(ids)), MAX_IDS_PER_QUERY)) {
+            results.addAll(query.apply(chunk));
+        }
+        return results;
+    }
+
+
+    private static <T> int batchInsert(DSLContext tx,
+                                       Collection<T> items,
+                                       Function<T, ? extends TableRecord<?>> toRecord) {
+        checkNotNull(items, "items cannot be null");
+
+        if (items.isEmpty()) {
+            return 0;
+        }
+
+        List<TableRecord<?>> records = items
+                .stream()
+                .map(toRecord)
+                .collect(toList());
+
+        return tx.batchInsert(records).execute().length;
+    }
+
+}
@@ -58,6 +58,7 @@ import java.sql.Timestamp;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.BiFunction;
 
 import static org.finos.waltz.common.Checks.checkFalse;
 import static org.finos.waltz.common.Checks.checkNotNull;
@@ -113,6 +114,26 @@ public class PhysicalSpecificationDao {
                 .build();
     };
 
+    public static final BiFunction<PhysicalSpecification, DSLContext, PhysicalSpecificationRecord> TO_RECORD_MAPPER = (specification, dsl) -> {
+        PhysicalSpecificationRecord record = dsl.newRecord(PHYSICAL_SPECIFICATION);
+        record.setOwningEntityKind(specification.owningEntity().kind().name());
+        record.setOwningEntityId(specification.owningEntity().id());
+
+        record.setName(specification.name());
+        record.setExternalId(specification.externalId().orElse(""));
+        record.setDescription(specification.description());
+        record.setFormat(specification.format().value());
+        record.setLastUpdatedAt(Timestamp.valueOf(specification.lastUpdatedAt()));
+        record.setLastUpdatedBy(specification.lastUpdatedBy());
+        record.setIsRemoved(specification.isRemoved());
+        record.setProvenance("waltz");
+
+        record.setCreatedAt(specification.created().get().atTimestamp());
+        record.setCreatedBy(specification.created().get().by());
+        return record;
+    };
+
+
     public static final Condition PHYSICAL_SPEC_NOT_REMOVED = PHYSICAL_SPECIFICATION.IS_REMOVED.isFalse();
 
 
@@ -204,22 +225,7 @@ public class PhysicalSpecificationDao {
         checkNotNull(specification, "specification cannot be null");
         checkFalse(specification.id().isPresent(), "specification must not have an id");
 
-        PhysicalSpecificationRecord record = dsl.newRecord(PHYSICAL_SPECIFICATION);
-        record.setOwningEntityKind(specification.owningEntity().kind().name());
-        record.setOwningEntityId(specification.owningEntity().id());
-
-        record.setName(specification.name());
-        record.setExternalId(specification.externalId().orElse(""));
-        record.setDescription(specification.description());
-        record.setFormat(specification.format().value());
-        record.setLastUpdatedAt(Timestamp.valueOf(specification.lastUpdatedAt()));
-        record.setLastUpdatedBy(specification.lastUpdatedBy());
-        record.setIsRemoved(specification.isRemoved());
-        record.setProvenance("waltz");
-
-        record.setCreatedAt(specification.created().get().atTimestamp());
-        record.setCreatedBy(specification.created().get().by());
-
+        PhysicalSpecificationRecord record = TO_RECORD_MAPPER.apply(specification, dsl);
         record.store();
         return record.getId();
     }
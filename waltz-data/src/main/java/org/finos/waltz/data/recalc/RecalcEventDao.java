@@ -0,0 +1,188 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.data.recalc;
+
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.recalc.ImmutableRecalcEvent;
+import org.finos.waltz.model.recalc.RecalcEvent;
+import org.finos.waltz.model.recalc.RecalcTarget;
+import org.finos.waltz.schema.tables.records.RecalcEventRecord;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.RecordMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.ListUtilities.map;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.schema.Tables.RECALC_EVENT;
+import static org.jooq.impl.DSL.count;
+
+/**
+ * Persistence for the queue of recalculation events.  Events are read oldest first,
+ * claimed for a short lease while being processed and deleted once processed.  Failed
+ * events keep their row, with a retry time in place of the lease.
+ */
+@Repository
+public class RecalcEventDao {
+
+    private static final RecordMapper<Record, RecalcEvent> TO_DOMAIN_MAPPER = r -> {
+        RecalcEventRecord record = r.into(RECALC_EVENT);
+        return ImmutableRecalcEvent
+                .builder()
+                .id(record.getId())
+                .target(RecalcTarget.valueOf(record.getTarget()))
+                .entityReference(mkRef(
+                        EntityKind.valueOf(record.getEntityKind()),
+                        record.getEntityId()))
+                .createdAt(record.getCreatedAt().toLocalDateTime())
+                .attempts(record.getAttempts())
+                .build();
+    };
+
+
+    private final DSLContext dsl;
+
+
+    @Autowired
+    public RecalcEventDao(DSLContext dsl) {
+        checkNotNull(dsl, "dsl cannot be null");
+        this.dsl = dsl;
+    }
+
+
+    public int[] enqueue(Collection<RecalcEvent> events) {
+        checkNotNull(events, "events cannot be null");
+
+        List<RecalcEventRecord> records = map(events, event -> {
+            RecalcEventRecord record = dsl.newRecord(RECALC_EVENT);
+            record.setTarget(event.target().name());
+            record.setEntityKind(event.entityReference().kind().name());
+            record.setEntityId(event.entityReference().id());
+            record.setCreatedAt(Timestamp.valueOf(event.createdAt()));
+            return record;
+        });
+
+        return dsl
+                .batchInsert(records)
+                .execute();
+    }
+
+
+    /**
+     * Oldest events first, skipping any currently claimed by another worker.
+     */
+    public List<RecalcEvent> findClaimable(LocalDateTime now, int limit) {
+        return dsl
+                .select(RECALC_EVENT.fields())
+                .from(RECALC_EVENT)
+                .where(isClaimable(now))
+                .orderBy(RECALC_EVENT.ID)
+                .limit(limit)
+                .fetch(TO_DOMAIN_MAPPER);
+    }
+
+
+    /**
+     * Marks the events as being processed until <code>claimUntil</code> and increments their
+     * attempt counts.  Each event is claimed individually so events claimed by someone else
+     * in the meantime are skipped.
+     *
+     * @return ids of the events which were successfully claimed
+     */
+    public Set<Long> claim(Collection<Long> ids, LocalDateTime now, LocalDateTime claimUntil) {
+        checkNotNull(ids, "ids cannot be null");
+
+        List<Long> idList = new ArrayList<>(ids);
+        if (idList.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        int[] results = dsl
+                .batch(map(idList, id -> dsl
+                        .update(RECALC_EVENT)
+                        .set(RECALC_EVENT.CLAIMED_UNTIL, Timestamp.valueOf(claimUntil))
+                        .set(RECALC_EVENT.ATTEMPTS, RECALC_EVENT.ATTEMPTS.plus(1))
+                        .where(RECALC_EVENT.ID.eq(id))
+                        .and(isClaimable(now))))
+                .execute();
+
+        Set<Long> claimed = new HashSet<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == 1) {
+                claimed.add(idList.get(i));
+            }
+        }
+        return claimed;
+    }
+
+
+    /**
+     * Releases the claim on events whose processing failed, so they may be claimed again
+     * from <code>retryAt</code>.
+     */
+    public int markForRetry(Collection<Long> ids, LocalDateTime retryAt) {
+        checkNotNull(ids, "ids cannot be null");
+        return dsl
+                .update(RECALC_EVENT)
+                .set(RECALC_EVENT.CLAIMED_UNTIL, Timestamp.valueOf(retryAt))
+                .where(RECALC_EVENT.ID.in(ids))
+                .execute();
+    }
+
+
+    public int deleteByIds(Collection<Long> ids) {
+        checkNotNull(ids, "ids cannot be null");
+        return dsl
+                .deleteFrom(RECALC_EVENT)
+                .where(RECALC_EVENT.ID.in(ids))
+                .execute();
+    }
+
+
+    public Map<RecalcTarget, Integer> countByTarget() {
+        Map<RecalcTarget, Integer> counts = new EnumMap<>(RecalcTarget.class);
+        dsl.select(RECALC_EVENT.TARGET, count())
+                .from(RECALC_EVENT)
+                .groupBy(RECALC_EVENT.TARGET)
+                .fetch()
+                .forEach(r -> counts.put(RecalcTarget.valueOf(r.value1()), r.value2()));
+        return counts;
+    }
+
+
+    private static Condition isClaimable(LocalDateTime now) {
+        return RECALC_EVENT.CLAIMED_UNTIL.isNull()
+                .or(RECALC_EVENT.CLAIMED_UNTIL.le(Timestamp.valueOf(now)));
+    }
+
+}
@@ -27,6 +27,7 @@ import org.finos.waltz.common.StringUtilities;
 import org.finos.waltz.common.hierarchy.FlatNode;
 import org.finos.waltz.common.hierarchy.Forest;
 import org.finos.waltz.common.hierarchy.Node;
+import org.finos.waltz.data.DBExecutorPoolInterface;
 import org.finos.waltz.data.GenericSelector;
 import org.finos.waltz.data.InlineSelectFieldFactory;
 import org.finos.waltz.model.Cardinality;
@@ -86,31 +87,44 @@ import org.jooq.lambda.tuple.Tuple3;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
 import static java.util.Comparator.comparing;
 import static java.util.Optional.ofNullable;
 import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.*;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
 import static org.finos.waltz.common.CollectionUtilities.isEmpty;
 import static org.finos.waltz.common.DateTimeUtilities.toLocalDate;
 import static org.finos.waltz.common.DateTimeUtilities.toLocalDateTime;
@@ -146,6 +160,8 @@ public class ReportGridDao {
     private static final Logger LOG = LoggerFactory.getLogger(ReportGridDao.class);
 
     private final DSLContext dsl;
+    private final DBExecutorPoolInterface dbExecutorPool;
+    private final int maxConcurrentFetchesPerGrid;
 
     private final org.finos.waltz.schema.tables.Measurable m = MEASURABLE.as("m");
     private final org.finos.waltz.schema.tables.MeasurableRating mr = MEASURABLE_RATING.as("mr");
@@ -211,8 +227,16 @@ public class ReportGridDao {
 
 
     @Autowired
-    public ReportGridDao(DSLContext dsl) {
+    public ReportGridDao(DSLContext dsl,
+                         DBExecutorPoolInterface dbExecutorPool,
+                         @Value("${waltz.report.grid.fetch.concurrency:4}") int maxConcurrentFetchesPerGrid) {
+        checkNotNull(dsl, "dsl cannot be null");
+        checkNotNull(dbExecutorPool, "dbExecutorPool cannot be null");
+        checkTrue(maxConcurrentFetchesPerGrid > 0, "maxConcurrentFetchesPerGrid must be greater than zero");
+
         this.dsl = dsl;
+        this.dbExecutorPool = dbExecutorPool;
+        this.maxConcurrentFetchesPerGrid = maxConcurrentFetchesPerGrid;
     }
 
 
@@ -248,13 +272,23 @@ public class ReportGridDao {
 
     public Set<ReportGridCell> findCellDataByGridId(long id,
                                                     GenericSelector genericSelector) {
+        return findCellDataByGridCondition(rg.ID.eq(id), genericSelector).v1;
+    }
+
+
+    /**
+     * As {@link #findCellDataByGridId(long, GenericSelector)} but also returns the time
+     * taken (millis) to fetch the cells for each kind of column.
+     */
+    public Tuple2<Set<ReportGridCell>, Map<String, Long>> getCellDataAndTimingsByGridId(long id,
+                                                                                         GenericSelector genericSelector) {
         return findCellDataByGridCondition(rg.ID.eq(id), genericSelector);
     }
 
 
     public Set<ReportGridCell> findCellDataByGridExternalId(String externalId,
                                                             GenericSelector genericSelector) {
-        return findCellDataByGridCondition(rg.EXTERNAL_ID.eq(externalId), genericSelector);
+        return findCellDataByGridCondition(rg.EXTERNAL_ID.eq(externalId), genericSelector).v1;
     }
 
 
@@ -835,13 +869,13 @@ public class ReportGridDao {
     }
 
 
-    private Set<ReportGridCell> findCellDataByGridCondition(Condition gridCondition,
-                                                            GenericSelector genericSelector) {
+    private Tuple2<Set<ReportGridCell>, Map<String, Long>> findCellDataByGridCondition(Condition gridCondition,
+                                                                                       GenericSelector genericSelector) {
 
         ReportGridDefinition gridDefn = getGridDefinitionByCondition(gridCondition);
 
         if (gridDefn == null) {
-            return emptySet();
+            return tuple(emptySet(), emptyMap());
 
         } else {
 
@@ -889,30 +923,96 @@ public class ReportGridDao {
                     .collect(groupingBy(t -> t.v2.entityKind(), toSet()));
 
 
-            return union(
-                    fetchAssessmentData(genericSelector, colsByKind.get(EntityKind.ASSESSMENT_DEFINITION)),
-                    fetchInvolvementData(genericSelector, colsByKind.get(EntityKind.INVOLVEMENT_KIND)),
-                    fetchCostData(genericSelector, colsByKind.get(EntityKind.COST_KIND)),
-                    fetchComplexityData(genericSelector, colsByKind.get(EntityKind.COMPLEXITY_KIND)),
-                    fetchSummaryMeasurableData(
-                            genericSelector,
-                            measurableColumnsByRollupKind.getOrDefault(AdditionalColumnOptions.PICK_HIGHEST, emptySet()),
-                            measurableColumnsByRollupKind.getOrDefault(AdditionalColumnOptions.PICK_LOWEST, emptySet())),
-                    fetchExactMeasurableData(genericSelector, measurableColumnsByRollupKind.get(AdditionalColumnOptions.NONE)),
-                    fetchSurveyQuestionResponseData(genericSelector, colsByKind.get(EntityKind.SURVEY_QUESTION)),
-                    fetchSurveyTemplateResponseData(genericSelector, colsByKind.get(EntityKind.SURVEY_TEMPLATE)),
-                    fetchAppGroupData(genericSelector, colsByKind.get(EntityKind.APP_GROUP)),
-                    fetchApplicationFieldReferenceData(genericSelector, fieldRefColsByKind.get(EntityKind.APPLICATION)),
-                    fetchExactDataTypeData(genericSelector, dataTypeColumnsByIsExact.get(Boolean.TRUE)),
-                    fetchSummaryDataTypeData(genericSelector, dataTypeColumnsByIsExact.get(Boolean.FALSE)),
-                    fetchSurveyFieldReferenceData(genericSelector, fieldRefColsByKind.get(EntityKind.SURVEY_INSTANCE)),
-                    fetchChangeInitiativeFieldReferenceData(genericSelector, fieldRefColsByKind.get(EntityKind.CHANGE_INITIATIVE)),
-                    fetchAttestationData(genericSelector, colsByKind.get(EntityKind.ATTESTATION)),
-                    fetchOrgUnitFieldReferenceData(genericSelector, fieldRefColsByKind.get(EntityKind.ORG_UNIT)),
-                    fetchTagData(genericSelector, colsByKind.get(EntityKind.TAG)),
-                    fetchAliasData(genericSelector, colsByKind.get(EntityKind.ENTITY_ALIAS)),
-                    fetchMeasurableHierarchyData(genericSelector, colsByKind.get(EntityKind.MEASURABLE_CATEGORY)),
-                    fetchEntityStatisticData(genericSelector, colsByKind.get(EntityKind.ENTITY_STATISTIC)));
+            // each kind of column is fetched independently, so we run them concurrently (bounded per grid)
+
+            Collection<ReportGridFixedColumnDefinition> highestMeasurableCols = measurableColumnsByRollupKind.getOrDefault(AdditionalColumnOptions.PICK_HIGHEST, emptySet());
+            Collection<ReportGridFixedColumnDefinition> lowestMeasurableCols = measurableColumnsByRollupKind.getOrDefault(AdditionalColumnOptions.PICK_LOWEST, emptySet());
+
+            Map<String, Supplier<Set<ReportGridCell>>> fetchersByKind = new LinkedHashMap<>();
+
+            addFetcher(fetchersByKind, "ASSESSMENT_DEFINITION", colsByKind.get(EntityKind.ASSESSMENT_DEFINITION), cols -> fetchAssessmentData(genericSelector, cols));
+            addFetcher(fetchersByKind, "INVOLVEMENT_KIND", colsByKind.get(EntityKind.INVOLVEMENT_KIND), cols -> fetchInvolvementData(genericSelector, cols));
+            addFetcher(fetchersByKind, "COST_KIND", colsByKind.get(EntityKind.COST_KIND), cols -> fetchCostData(genericSelector, cols));
+            addFetcher(fetchersByKind, "COMPLEXITY_KIND", colsByKind.get(EntityKind.COMPLEXITY_KIND), cols -> fetchComplexityData(genericSelector, cols));
+            addFetcher(fetchersByKind, "MEASURABLE_SUMMARY", union(highestMeasurableCols, lowestMeasurableCols), cols -> fetchSummaryMeasurableData(genericSelector, highestMeasurableCols, lowestMeasurableCols));
+            addFetcher(fetchersByKind, "MEASURABLE", measurableColumnsByRollupKind.get(AdditionalColumnOptions.NONE), cols -> fetchExactMeasurableData(genericSelector, cols));
+            addFetcher(fetchersByKind, "SURVEY_QUESTION", colsByKind.get(EntityKind.SURVEY_QUESTION), cols -> fetchSurveyQuestionResponseData(genericSelector, cols));
+            addFetcher(fetchersByKind, "SURVEY_TEMPLATE", colsByKind.get(EntityKind.SURVEY_TEMPLATE), cols -> fetchSurveyTemplateResponseData(genericSelector, cols));
+            addFetcher(fetchersByKind, "APP_GROUP", colsByKind.get(EntityKind.APP_GROUP), cols -> fetchAppGroupData(genericSelector, cols));
+            addFetcher(fetchersByKind, "APPLICATION_FIELD", fieldRefColsByKind.get(EntityKind.APPLICATION), cols -> fetchApplicationFieldReferenceData(genericSelector, cols));
+            addFetcher(fetchersByKind, "DATA_TYPE", dataTypeColumnsByIsExact.get(Boolean.TRUE), cols -> fetchExactDataTypeData(genericSelector, cols));
+            addFetcher(fetchersByKind, "DATA_TYPE_SUMMARY", dataTypeColumnsByIsExact.get(Boolean.FALSE), cols -> fetchSummaryDataTypeData(genericSelector, cols));
+            addFetcher(fetchersByKind, "SURVEY_INSTANCE_FIELD", fieldRefColsByKind.get(EntityKind.SURVEY_INSTANCE), cols -> fetchSurveyFieldReferenceData(genericSelector, cols));
+            addFetcher(fetchersByKind, "CHANGE_INITIATIVE_FIELD", fieldRefColsByKind.get(EntityKind.CHANGE_INITIATIVE), cols -> fetchChangeInitiativeFieldReferenceData(genericSelector, cols));
+            addFetcher(fetchersByKind, "ATTESTATION", colsByKind.get(EntityKind.ATTESTATION), cols -> fetchAttestationData(genericSelector, cols));
+            addFetcher(fetchersByKind, "ORG_UNIT_FIELD", fieldRefColsByKind.get(EntityKind.ORG_UNIT), cols -> fetchOrgUnitFieldReferenceData(genericSelector, cols));
+            addFetcher(fetchersByKind, "TAG", colsByKind.get(EntityKind.TAG), cols -> fetchTagData(genericSelector, cols));
+            addFetcher(fetchersByKind, "ENTITY_ALIAS", colsByKind.get(EntityKind.ENTITY_ALIAS), cols -> fetchAliasData(genericSelector, cols));
+            addFetcher(fetchersByKind, "MEASURABLE_CATEGORY", colsByKind.get(EntityKind.MEASURABLE_CATEGORY), cols -> fetchMeasurableHierarchyData(genericSelector, cols));
+            addFetcher(fetchersByKind, "ENTITY_STATISTIC", colsByKind.get(EntityKind.ENTITY_STATISTIC), cols -> fetchEntityStatisticData(genericSelector, cols));
+
+            return runFetchers(fetchersByKind);
+        }
+    }
+
+
+    private static <C extends Collection<?>> void addFetcher(Map<String, Supplier<Set<ReportGridCell>>> fetchersByKind,
+                                                            String kind,
+                                                            C cols,
+                                                            Function<C, Set<ReportGridCell>> fetcher) {
+        if (cols != null && ! cols.isEmpty()) {
+            fetchersByKind.put(kind, () -> fetcher.apply(cols));
+        }
+    }
+
+
+    /**
+     * Runs each fetcher on the db executor pool, with at most `maxConcurrentFetchesPerGrid`
+     * in flight at once (the caller blocks until a slot is available).
+     *
+     * @return tuple of (all cells, fetch time in millis by kind)
+     */
+    private Tuple2<Set<ReportGridCell>, Map<String, Long>> runFetchers(Map<String, Supplier<Set<ReportGridCell>>> fetchersByKind) {
+        Semaphore permits = new Semaphore(maxConcurrentFetchesPerGrid);
+        Map<String, Long> timingsByKind = new ConcurrentHashMap<>();
+        List<Future<Set<ReportGridCell>>> futures = new ArrayList<>();
+
+        try {
+            for (Map.Entry<String, Supplier<Set<ReportGridCell>>> fetcher : fetchersByKind.entrySet()) {
+                permits.acquire();
+                futures.add(dbExecutorPool.submit(() -> {
+                    long start = System.currentTimeMillis();
+                    try {
+                        return fetcher.getValue().get();
+                    } finally {
+                        timingsByKind.put(fetcher.getKey(), System.currentTimeMillis() - start);
+                        permits.release();
+                    }
+                }));
+            }
+
+            Set<ReportGridCell> cells = new HashSet<>();
+            for (Future<Set<ReportGridCell>> future : futures) {
+                cells.addAll(future.get());
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Report grid cell fetch timings (ms): {}", timingsByKind);
+            }
+
+            return tuple(cells, new TreeMap<>(timingsByKind));
+
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst fetching report grid cell data", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw new IllegalStateException("Failed to fetch report grid cell data", e.getCause());
+            }
         }
     }
 
@@ -65,6 +65,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -200,9 +201,7 @@ public class SurveyInstanceDao {
     }
 
 
-    public long create(SurveyInstanceCreateCommand command) {
-        checkNotNull(command, "command cannot be null");
-
+    public static final BiFunction<SurveyInstanceCreateCommand, DSLContext, SurveyInstanceRecord> TO_RECORD_MAPPER = (command, dsl) -> {
         SurveyInstanceRecord record = dsl.newRecord(si);
         record.setSurveyRunId(command.surveyRunId());
         record.setEntityKind(command.entityReference().kind().name());
@@ -213,7 +212,14 @@ public class SurveyInstanceDao {
         record.setOwningRole(command.owningRole());
         record.setName(command.name());
         record.setIssuedOn(toSqlDate(command.issuedOn()));
+        return record;
+    };
+
+
+    public long create(SurveyInstanceCreateCommand command) {
+        checkNotNull(command, "command cannot be null");
 
+        SurveyInstanceRecord record = TO_RECORD_MAPPER.apply(command, dsl);
         record.store();
         return record.getId();
     }
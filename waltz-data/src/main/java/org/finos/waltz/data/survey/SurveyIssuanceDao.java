@@ -0,0 +1,159 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.data.survey;
+
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.survey.SurveyInstanceCreateCommand;
+import org.finos.waltz.schema.tables.records.SurveyInstanceOwnerRecord;
+import org.finos.waltz.schema.tables.records.SurveyInstanceRecipientRecord;
+import org.finos.waltz.schema.tables.records.SurveyInstanceRecord;
+import org.jooq.DSLContext;
+import org.jooq.Record1;
+import org.jooq.Select;
+import org.jooq.lambda.tuple.Tuple2;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.schema.Tables.SURVEY_INSTANCE;
+import static org.finos.waltz.schema.Tables.SURVEY_INSTANCE_OWNER;
+import static org.finos.waltz.schema.Tables.SURVEY_INSTANCE_RECIPIENT;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+
+/**
+ * Batched writes used when (re)issuing all the instances of a survey run.
+ * <p>
+ * Every method takes the context to execute against so that the removal of the
+ * previous instances and the creation of the new ones happen in a single
+ * transaction.
+ */
+@Repository
+public class SurveyIssuanceDao {
+
+    /**
+     * Removes the recipients, owners and instances of the given run.
+     *
+     * @return number of instances removed
+     */
+    public int deleteForSurveyRun(DSLContext tx, long surveyRunId) {
+        Select<Record1<Long>> instanceIds = tx
+                .select(SURVEY_INSTANCE.ID)
+                .from(SURVEY_INSTANCE)
+                .where(SURVEY_INSTANCE.SURVEY_RUN_ID.eq(surveyRunId));
+
+        tx.deleteFrom(SURVEY_INSTANCE_RECIPIENT)
+                .where(SURVEY_INSTANCE_RECIPIENT.SURVEY_INSTANCE_ID.in(instanceIds))
+                .execute();
+
+        tx.deleteFrom(SURVEY_INSTANCE_OWNER)
+                .where(SURVEY_INSTANCE_OWNER.SURVEY_INSTANCE_ID.in(instanceIds))
+                .execute();
+
+        return tx
+                .deleteFrom(SURVEY_INSTANCE)
+                .where(SURVEY_INSTANCE.SURVEY_RUN_ID.eq(surveyRunId))
+                .execute();
+    }
+
+
+    public int createInstances(DSLContext tx, List<SurveyInstanceCreateCommand> commands) {
+        checkNotNull(commands, "commands cannot be null");
+
+        if (commands.isEmpty()) {
+            return 0;
+        }
+
+        List<SurveyInstanceRecord> records = commands
+                .stream()
+                .map(c -> SurveyInstanceDao.TO_RECORD_MAPPER.apply(c, tx))
+                .collect(toList());
+
+        return tx.batchInsert(records).execute().length;
+    }
+
+
+    /**
+     * Instance ids are allocated by the database in insertion order, so reading
+     * them back sorted by id lines them up with the commands that created them.
+     *
+     * @return tuples of (instance id, subject entity) for the run, ordered by id
+     */
+    public List<Tuple2<Long, EntityReference>> findInstanceIdsForSurveyRun(DSLContext tx, long surveyRunId) {
+        return tx
+                .select(SURVEY_INSTANCE.ID, SURVEY_INSTANCE.ENTITY_KIND, SURVEY_INSTANCE.ENTITY_ID)
+                .from(SURVEY_INSTANCE)
+                .where(SURVEY_INSTANCE.SURVEY_RUN_ID.eq(surveyRunId))
+                .and(SURVEY_INSTANCE.ORIGINAL_INSTANCE_ID.isNull())
+                .orderBy(SURVEY_INSTANCE.ID)
+                .fetch(r -> tuple(
+                        r.get(SURVEY_INSTANCE.ID),
+                        mkRef(EntityKind.valueOf(r.get(SURVEY_INSTANCE.ENTITY_KIND)), r.get(SURVEY_INSTANCE.ENTITY_ID))));
+    }
+
+
+    /**
+     * @param owners  tuples of (instance id, person id)
+     */
+    public int createOwners(DSLContext tx, Collection<Tuple2<Long, Long>> owners) {
+        checkNotNull(owners, "owners cannot be null");
+
+        List<SurveyInstanceOwnerRecord> records = owners
+                .stream()
+                .map(t -> {
+                    SurveyInstanceOwnerRecord record = tx.newRecord(SURVEY_INSTANCE_OWNER);
+                    record.setSurveyInstanceId(t.v1);
+                    record.setPersonId(t.v2);
+                    return record;
+                })
+                .collect(toList());
+
+        return records.isEmpty()
+                ? 0
+                : tx.batchInsert(records).execute().length;
+    }
+
+
+    /**
+     * @param recipients  tuples of (instance id, person id)
+     */
+    public int createRecipients(DSLContext tx, Collection<Tuple2<Long, Long>> recipients) {
+        checkNotNull(recipients, "recipients cannot be null");
+
+        List<SurveyInstanceRecipientRecord> records = recipients
+                .stream()
+                .map(t -> {
+                    SurveyInstanceRecipientRecord record = tx.newRecord(SURVEY_INSTANCE_RECIPIENT);
+                    record.setSurveyInstanceId(t.v1);
+                    record.setPersonId(t.v2);
+                    return record;
+                })
+                .collect(toList());
+
+        return records.isEmpty()
+                ? 0
+                : tx.batchInsert(records).execute().length;
+    }
+
+}
@@ -33,6 +33,7 @@ import java.util.function.Function;
 
 import static org.finos.waltz.schema.tables.UserAgentInfo.USER_AGENT_INFO;
 import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.ListUtilities.map;
 
 @Repository
 public class UserAgentInfoDao {
@@ -82,6 +83,14 @@ public class UserAgentInfoDao {
     }
 
 
+    public int[] saveAll(List<UserAgentInfo> userAgentInfos) {
+        checkNotNull(userAgentInfos, "userAgentInfos cannot be null");
+        return dsl
+                .batchInsert(map(userAgentInfos, TO_RECORD_MAPPER))
+                .execute();
+    }
+
+
     public List<UserAgentInfo> findLoginsForUser(String userName, int limit) {
         return dsl.select(uai.fields())
                 .from(uai)
@@ -0,0 +1,175 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.data;
+
+import org.finos.waltz.common.QueryAccounting;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.finos.waltz.data.DBExecutorPool.Mode.PERMIT_GATED;
+import static org.finos.waltz.data.DBExecutorPool.Mode.POOLED;
+import static org.finos.waltz.data.DBExecutorPool.RejectionPolicy.ABORT;
+import static org.finos.waltz.data.DBExecutorPool.RejectionPolicy.CALLER_RUNS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DBExecutorPoolTest {
+
+    @Test
+    public void tasksRunOnNamedThreads() throws Exception {
+        DBExecutorPool pool = new DBExecutorPool(POOLED, 2, 10, CALLER_RUNS, 0);
+
+        String threadName = pool.submit(() -> Thread.currentThread().getName()).get();
+
+        assertTrue(threadName.startsWith("waltz-db-executor-"));
+        assertEquals(1, pool.getCompletedCount());
+        assertEquals(1, pool.getExecutionHistogram().getCount());
+        pool.shutdown();
+    }
+
+
+    @Test
+    public void nestedSubmissionsRunInlineRatherThanStarvingThePool() throws Exception {
+        DBExecutorPool pool = new DBExecutorPool(POOLED, 1, 0, ABORT, 0);
+
+        int result = pool
+                .submit(() -> pool.submit(() -> 42).get())
+                .get();
+
+        assertEquals(42, result);
+        assertEquals(1, pool.getInlineCount());
+        pool.shutdown();
+    }
+
+
+    @Test
+    public void fullPoolRejectsTasksWhenPolicyIsAbort() throws Exception {
+        DBExecutorPool pool = new DBExecutorPool(POOLED, 1, 0, ABORT, 0);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Boolean> blocker = pool.submit(awaiting(release));
+
+        assertThrows(RejectedExecutionException.class, () -> pool.submit(() -> 1));
+        assertEquals(1, pool.getRejectedCount());
+
+        release.countDown();
+        assertTrue(blocker.get());
+        pool.shutdown();
+    }
+
+
+    @Test
+    public void fullPoolRunsTaskOnCallingThreadWhenPolicyIsCallerRuns() throws Exception {
+        DBExecutorPool pool = new DBExecutorPool(POOLED, 1, 0, CALLER_RUNS, 0);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Boolean> blocker = pool.submit(awaiting(release));
+        String threadName = pool.submit(() -> Thread.currentThread().getName()).get();
+
+        assertEquals(Thread.currentThread().getName(), threadName);
+        assertEquals(1, pool.getRejectedCount());
+
+        release.countDown();
+        blocker.get();
+        pool.shutdown();
+    }
+
+
+    @Test
+    public void waitersGiveUpOnTasksWhichExceedTheTimeout() {
+        DBExecutorPool pool = new DBExecutorPool(POOLED, 1, 10, CALLER_RUNS, 50);
+        CountDownLatch never = new CountDownLatch(1);
+
+        Future<Boolean> slow = pool.submit(awaiting(never));
+
+        ExecutionException e = assertThrows(ExecutionException.class, slow::get);
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertTrue(slow.isCancelled());
+        assertEquals(1, pool.getTimedOutCount());
+        pool.shutdown();
+    }
+
+
+    @Test
+    public void permitGatedModeLimitsConcurrency() throws Exception {
+        DBExecutorPool pool = new DBExecutorPool(PERMIT_GATED, 1, 0, CALLER_RUNS, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Boolean> blocker = pool.submit(() -> {
+            started.countDown();
+            return awaiting(release).call();
+        });
+        started.await();
+        Future<Integer> waiting = pool.submit(() -> 1);
+
+        // give the second task a chance to (not) start
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+        assertEquals(1, pool.getActiveCount());
+
+        release.countDown();
+        blocker.get();
+        assertEquals(Integer.valueOf(1), waiting.get());
+        pool.shutdown();
+    }
+
+
+    @Test
+    public void defaultConcurrencyLeavesHeadroomInTheConnectionPool() {
+        assertEquals(5, DBExecutorPool.defaultConcurrency(2, 10));
+        assertEquals(8, DBExecutorPool.defaultConcurrency(8, 10));
+        assertEquals(1, DBExecutorPool.defaultConcurrency(0, 1));
+    }
+
+
+    private static Callable<Boolean> awaiting(CountDownLatch latch) {
+        return () -> {
+            latch.await();
+            return true;
+        };
+    }
+
+
+    @Test
+    public void tallyIsCarriedOverToExecutorThreads() throws Exception {
+        QueryAccounting accounting = new QueryAccounting(0);
+        DBExecutorPool pool = new DBExecutorPool(POOLED, 2, 10, CALLER_RUNS, 0);
+
+        accounting.begin("test");
+        pool.submit(() -> {
+            QueryAccounting.record("select 1", 0);
+            return null;
+        }).get();
+        QueryAccounting.Tally tally = accounting.end();
+
+        assertEquals(1, tally.getQueryCount());
+        assertNull(
+                pool.submit(QueryAccounting::current).get(),
+                "executor threads do not retain the tally");
+        assertEquals(0, accounting.getOverBudgetCount(), "budget of zero disables reporting");
+        pool.shutdown();
+    }
+
+}
@@ -5,7 +5,6 @@ import com.zaxxer.hikari.HikariDataSource;
 import liquibase.integration.spring.SpringLiquibase;
 import org.finos.waltz.common.ExcludeFromIntegrationTesting;
 import org.finos.waltz.data.DBExecutorPool;
-import org.finos.waltz.data.DBExecutorPoolInterface;
 import org.jooq.DSLContext;
 import org.jooq.SQLDialect;
 import org.jooq.conf.RenderNameCase;
@@ -31,7 +30,7 @@ import java.sql.SQLException;
 public class DIInMemoryTestConfiguration {
 
     @Bean
-    public DBExecutorPoolInterface dbExecutorPool() {
+    public DBExecutorPool dbExecutorPool() {
         return new DBExecutorPool(2, 4);
     }
 
@@ -0,0 +1,128 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.integration_test.inmem.dao;
+
+import org.finos.waltz.data.IdSelectorMaterialiser;
+import org.finos.waltz.data.application.ApplicationDao;
+import org.finos.waltz.data.application.ApplicationIdSelectorFactory;
+import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.IdSelectionOptions;
+import org.finos.waltz.test_common.helpers.AppHelper;
+import org.jooq.DSLContext;
+import org.jooq.Record1;
+import org.jooq.Select;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Set;
+
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.common.SetUtilities.map;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.model.IdSelectionOptions.mkOpts;
+import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+public class IdSelectorMaterialiserTest extends BaseInMemoryIntegrationTest {
+
+    private final ApplicationIdSelectorFactory idSelectorFactory = new ApplicationIdSelectorFactory();
+
+    @Autowired
+    private ApplicationDao appDao;
+
+    @Autowired
+    private AppHelper appHelper;
+
+    @Autowired
+    private DSLContext dsl;
+
+
+    @AfterEach
+    public void uninstall() {
+        IdSelectorMaterialiser.install(null);
+    }
+
+
+    @Test
+    public void materialisedSelectorsAreReusedUntilInvalidated() {
+        Long ou = createOrgUnit("materialise", ouIds.root);
+        Long childOu = createOrgUnit("materialise-child", ou);
+        rebuildHierarchy(EntityKind.ORG_UNIT);
+
+        EntityReference app1 = appHelper.createNewApp(mkName("materialise1"), ou);
+        EntityReference app2 = appHelper.createNewApp(mkName("materialise2"), childOu);
+
+        IdSelectorMaterialiser materialiser = new IdSelectorMaterialiser(dsl, 60_000, 100, 10);
+        IdSelectorMaterialiser.install(materialiser);
+
+        IdSelectionOptions opts = mkOpts(mkRef(EntityKind.ORG_UNIT, ou));
+        assertEquals(ids(app1, app2), findApps(idSelectorFactory.apply(opts)));
+        assertEquals(
+                ids(app1, app2),
+                findApps(idSelectorFactory.apply(mkOpts(mkRef(EntityKind.ORG_UNIT, ou, "named differently")))),
+                "entity names are ignored when matching options");
+
+        assertEquals(1, materialiser.getCache().getMissCount());
+        assertEquals(1, materialiser.getCache().getHitCount());
+
+        EntityReference app3 = appHelper.createNewApp(mkName("materialise3"), childOu);
+        assertEquals(ids(app1, app2), findApps(idSelectorFactory.apply(opts)), "ids are reused until they expire");
+
+        materialiser.getCache().invalidateAll();
+        assertEquals(ids(app1, app2, app3), findApps(idSelectorFactory.apply(opts)));
+    }
+
+
+    @Test
+    public void largeSelectionsAreNotMaterialised() {
+        Long ou = createOrgUnit("materialise-large", ouIds.root);
+        rebuildHierarchy(EntityKind.ORG_UNIT);
+
+        EntityReference app1 = appHelper.createNewApp(mkName("materialise-large1"), ou);
+        EntityReference app2 = appHelper.createNewApp(mkName("materialise-large2"), ou);
+
+        IdSelectorMaterialiser.install(new IdSelectorMaterialiser(dsl, 60_000, 1, 10));
+
+        IdSelectionOptions opts = mkOpts(mkRef(EntityKind.ORG_UNIT, ou));
+        assertEquals(ids(app1, app2), findApps(idSelectorFactory.apply(opts)));
+
+        EntityReference app3 = appHelper.createNewApp(mkName("materialise-large3"), ou);
+        assertEquals(
+                ids(app1, app2, app3),
+                findApps(idSelectorFactory.apply(opts)),
+                "the original selector is used so new apps are seen straight away");
+    }
+
+
+    private Set<Long> findApps(Select<Record1<Long>> selector) {
+        return map(
+                appDao.findByAppIdSelector(selector),
+                a -> a.id().get());
+    }
+
+
+    private Set<Long> ids(EntityReference... refs) {
+        return map(asSet(refs), EntityReference::id);
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.integration_test.inmem.service;
+
+import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.HierarchyQueryScope;
+import org.finos.waltz.model.IdSelectionOptions;
+import org.finos.waltz.model.aggregate_overlay_diagram.ImmutableBackingEntity;
+import org.finos.waltz.model.aggregate_overlay_diagram.ImmutableOverlayDiagramCreateCommand;
+import org.finos.waltz.model.aggregate_overlay_diagram.OverlayDiagramKind;
+import org.finos.waltz.model.aggregate_overlay_diagram.overlay.BackingEntityWidgetData;
+import org.finos.waltz.model.aggregate_overlay_diagram.overlay.CountWidgetData;
+import org.finos.waltz.model.aggregate_overlay_diagram.overlay.CountWidgetDatum;
+import org.finos.waltz.model.aggregate_overlay_diagram.overlay.widget_parameters.AppCountWidgetParameters;
+import org.finos.waltz.model.aggregate_overlay_diagram.overlay.widget_parameters.ImmutableAppCountWidgetParameters;
+import org.finos.waltz.service.aggregate_overlay_diagram.AggregateOverlayDiagramService;
+import org.finos.waltz.test_common.helpers.AppHelper;
+import org.finos.waltz.test_common.helpers.MeasurableHelper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.util.Collections;
+
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.model.IdSelectionOptions.mkOpts;
+import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AggregateOverlayDiagramServiceTest extends BaseInMemoryIntegrationTest {
+
+    @Autowired
+    private AggregateOverlayDiagramService overlayDiagramService;
+
+    @Autowired
+    private AppHelper appHelper;
+
+    @Autowired
+    private MeasurableHelper measurableHelper;
+
+
+    @Test
+    public void widgetDataIsCachedAndRecalculatedWhenRatingsChange() {
+        long categoryId = measurableHelper.createMeasurableCategory(mkName("overlayCategory"));
+        long measurableId = measurableHelper.createMeasurable(mkName("overlayMeasurable"), categoryId);
+        EntityReference appA = appHelper.createNewApp(mkName("overlayA"), ouIds.a);
+        EntityReference appB = appHelper.createNewApp(mkName("overlayB"), ouIds.a);
+        measurableHelper.createRating(appA, measurableId);
+
+        Long diagramId = overlayDiagramService.create(
+                ImmutableOverlayDiagramCreateCommand
+                        .builder()
+                        .name(mkName("overlay"))
+                        .layoutData("{}")
+                        .aggregatedEntityKind(EntityKind.APPLICATION)
+                        .diagramKind(OverlayDiagramKind.WALTZ_STATIC_SVG_OVERLAY)
+                        .backingEntities(asSet(ImmutableBackingEntity
+                                .builder()
+                                .cellId("cell")
+                                .entityReference(mkRef(EntityKind.MEASURABLE, measurableId))
+                                .build()))
+                        .build(),
+                "test");
+
+        IdSelectionOptions opts = mkOpts(mkRef(EntityKind.ORG_UNIT, ouIds.a), HierarchyQueryScope.EXACT);
+        AppCountWidgetParameters params = ImmutableAppCountWidgetParameters
+                .builder()
+                .targetDate(LocalDate.now().plusYears(1))
+                .build();
+
+        assertEquals(1, getCount(diagramId, opts, params));
+        BackingEntityWidgetData backingEntityData = overlayDiagramService.getBackingEntityWidgetData(diagramId);
+
+        // establishes the baseline for change detection, for the inputs of the cached widgets
+        overlayDiagramService.refreshIfInputsChanged();
+
+        long hits = overlayDiagramService.getWidgetDataCache().getHitCount();
+        assertEquals(1, getCount(diagramId, opts, params));
+        assertEquals(hits + 1, overlayDiagramService.getWidgetDataCache().getHitCount(), "repeat request should be served from the cache");
+
+        measurableHelper.createRating(appB, measurableId);
+        assertEquals(1, getCount(diagramId, opts, params), "cached data is served until a change is detected");
+
+        long recalculations = overlayDiagramService.getRecalculationCount();
+        overlayDiagramService.refreshIfInputsChanged();
+        assertEquals(recalculations + 1, overlayDiagramService.getRecalculationCount());
+        assertSame(
+                backingEntityData,
+                overlayDiagramService.getBackingEntityWidgetData(diagramId),
+                "widgets which do not depend on ratings should not be recalculated");
+
+        long hitsAfterRecalculation = overlayDiagramService.getWidgetDataCache().getHitCount();
+        assertEquals(2, getCount(diagramId, opts, params));
+        assertEquals(
+                hitsAfterRecalculation + 1,
+                overlayDiagramService.getWidgetDataCache().getHitCount(),
+                "recalculated data should already be in the cache");
+
+        overlayDiagramService.evictCachedWidgetData(diagramId);
+        assertEquals(2, getCount(diagramId, opts, params));
+    }
+
+
+    private int getCount(Long diagramId, IdSelectionOptions opts, AppCountWidgetParameters params) {
+        CountWidgetData data = overlayDiagramService.getAppCountWidgetData(diagramId, opts, Collections.emptySet(), params);
+        return data
+                .cellData()
+                .stream()
+                .filter(d -> d.cellExternalId().equals("cell"))
+                .mapToInt(CountWidgetDatum::currentStateCount)
+                .sum();
+    }
+
+}
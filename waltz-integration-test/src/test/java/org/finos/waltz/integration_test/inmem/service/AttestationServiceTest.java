@@ -20,6 +20,7 @@ package org.finos.waltz.integration_test.inmem.service;
 
 import org.finos.waltz.common.DateTimeUtilities;
 import org.finos.waltz.common.OptionalUtilities;
+import org.finos.waltz.data.attestation.AttestationRunDao;
 import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
 import org.finos.waltz.model.EntityKind;
 import org.finos.waltz.model.EntityReference;
@@ -44,6 +45,7 @@ import static org.finos.waltz.common.SetUtilities.asSet;
 import static org.finos.waltz.model.EntityReference.mkRef;
 import static org.finos.waltz.model.IdSelectionOptions.mkOpts;
 import static org.finos.waltz.schema.tables.AttestationInstance.ATTESTATION_INSTANCE;
+import static org.finos.waltz.schema.tables.AttestationInstanceRecipient.ATTESTATION_INSTANCE_RECIPIENT;
 import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
 import static org.finos.waltz.test_common.helpers.NameHelper.mkUserId;
 import static org.junit.jupiter.api.Assertions.*;
@@ -56,6 +58,9 @@ public class AttestationServiceTest extends BaseInMemoryIntegrationTest {
     @Autowired
     private AttestationRunService arSvc;
 
+    @Autowired
+    private AttestationRunDao arDao;
+
     @Autowired
     private InvolvementHelper involvementHelper;
 
@@ -102,6 +107,64 @@ public class AttestationServiceTest extends BaseInMemoryIntegrationTest {
         assertEquals(EntityKind.APPLICATION, run.targetEntityKind());
     }
 
+    @Test
+    public void pendingRunsAreIssuedIndependently() {
+        long invId = involvementHelper.mkInvolvementKind(mkName("pendingRunsInvolvement"));
+
+        EntityReference appA = appHelper.createNewApp(mkName("pendingRunsA"), ouIds.b);
+        EntityReference appB = appHelper.createNewApp(mkName("pendingRunsB"), ouIds.b);
+        long pId = personHelper.createPerson(mkName("pendingRunsPerson"));
+        involvementHelper.createInvolvement(pId, invId, appA);
+        involvementHelper.createInvolvement(pId, invId, appB);
+        involvementHelper.createInvolvement(pId, invId, mkRef(EntityKind.ORG_UNIT, ouIds.b));
+
+        long goodRunId = mkPendingRun("pendingRunsGood", EntityKind.APPLICATION, invId);
+        long badRunId = mkPendingRun("pendingRunsBad", EntityKind.ORG_UNIT, invId);
+
+        arSvc.issueInstancesForPendingRuns();
+
+        assertEquals(AttestationStatus.ISSUED, arSvc.getById(goodRunId).status());
+        assertEquals(
+                AttestationStatus.ISSUE_FAILED,
+                arSvc.getById(badRunId).status(),
+                "org units cannot be attested so the run fails");
+
+        assertEquals(2, dsl.fetchCount(ATTESTATION_INSTANCE, ATTESTATION_INSTANCE.ATTESTATION_RUN_ID.eq(goodRunId)));
+        assertEquals(0, dsl.fetchCount(ATTESTATION_INSTANCE, ATTESTATION_INSTANCE.ATTESTATION_RUN_ID.eq(badRunId)));
+        assertEquals(2, dsl.fetchCount(
+                ATTESTATION_INSTANCE_RECIPIENT,
+                ATTESTATION_INSTANCE_RECIPIENT.ATTESTATION_INSTANCE_ID.in(dsl
+                        .select(ATTESTATION_INSTANCE.ID)
+                        .from(ATTESTATION_INSTANCE)
+                        .where(ATTESTATION_INSTANCE.ATTESTATION_RUN_ID.eq(goodRunId)))));
+
+        assertEquals(0, arSvc.issueInstancesForPendingRuns(), "failed runs are not retried");
+        assertEquals(AttestationStatus.ISSUE_FAILED, arSvc.getById(badRunId).status());
+
+        arDao.updateStatusForRunIds(asSet(badRunId), AttestationStatus.DRAFT);
+    }
+
+
+    private long mkPendingRun(String name, EntityKind targetKind, long invId) {
+        AttestationRunCreateCommand cmd = ImmutableAttestationRunCreateCommand.builder()
+                .dueDate(DateTimeUtilities.today().plusMonths(1))
+                .targetEntityKind(targetKind)
+                .attestedEntityKind(EntityKind.LOGICAL_DATA_FLOW)
+                .selectionOptions(mkOpts(mkRef(EntityKind.ORG_UNIT, ouIds.b)))
+                .addInvolvementKindIds(invId)
+                .name(mkName(name))
+                .description(name)
+                .sendEmailNotifications(false)
+                .build();
+
+        String user = mkUserId("ast");
+        long runId = arDao.create(user, cmd);
+        arSvc.createRecipientsGroup(runId, cmd.name(), cmd.involvementKindIds(), user);
+        arDao.updateStatusForRunIds(asSet(runId), AttestationStatus.PENDING);
+        return runId;
+    }
+
+
     @Test
     @Disabled
     public void basicRetrieval() {
@@ -0,0 +1,140 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+package org.finos.waltz.integration_test.inmem.service;
+
+import org.finos.waltz.data.data_type_usage.DataTypeUsageDao;
+import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.data_type_usage.DataTypeUsage;
+import org.finos.waltz.model.logical_flow.LogicalFlow;
+import org.finos.waltz.model.usage_info.ImmutableUsageInfo;
+import org.finos.waltz.model.usage_info.UsageKind;
+import org.finos.waltz.service.data_type.DataTypeDecoratorService;
+import org.finos.waltz.service.usage_info.DataTypeUsageService;
+import org.finos.waltz.test_common.helpers.AppHelper;
+import org.finos.waltz.test_common.helpers.DataTypeHelper;
+import org.finos.waltz.test_common.helpers.LogicalFlowHelper;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Set;
+
+import static java.util.Collections.emptySet;
+import static org.finos.waltz.common.DateTimeUtilities.nowUtc;
+import static org.finos.waltz.common.ListUtilities.newArrayList;
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.common.SetUtilities.fromCollection;
+import static org.finos.waltz.common.SetUtilities.union;
+import static org.finos.waltz.schema.tables.DataTypeUsage.DATA_TYPE_USAGE;
+import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class DataTypeUsageServiceTest extends BaseInMemoryIntegrationTest {
+
+    @Autowired
+    private DataTypeUsageService dataTypeUsageService;
+
+    @Autowired
+    private DataTypeUsageDao dataTypeUsageDao;
+
+    @Autowired
+    private DataTypeDecoratorService dataTypeDecoratorService;
+
+    @Autowired
+    private LogicalFlowHelper lfHelper;
+
+    @Autowired
+    private AppHelper appHelper;
+
+    @Autowired
+    private DataTypeHelper dataTypeHelper;
+
+    @Autowired
+    private DSLContext dsl;
+
+
+    @Test
+    public void chunkedRecalculationMatchesFullRecalculation() {
+        EntityReference a = appHelper.createNewApp(mkName("a"), ouIds.a);
+        EntityReference b = appHelper.createNewApp(mkName("b"), ouIds.a1);
+        LogicalFlow flow = lfHelper.createLogicalFlow(a, b);
+        Long dtId = dataTypeHelper.createDataType(mkName("chunkedRecalculationMatchesFullRecalculation"));
+        Long unusedDtId = dataTypeHelper.createDataType(mkName("chunkedRecalculationMatchesFullRecalculationUnused"));
+
+        // decorating the flow recalculates the usages of both ends
+        dataTypeDecoratorService.updateDecorators(mkName("user"), flow.entityReference(), asSet(dtId), emptySet());
+        Set<DataTypeUsage> expected = findUsages(a, b);
+        assertTrue(expected.stream().anyMatch(u -> u.usage().kind() == UsageKind.ORIGINATOR), "a originates the type");
+        assertTrue(expected.stream().anyMatch(u -> u.usage().kind() == UsageKind.CONSUMER), "b consumes the type");
+
+        deleteUsages(a, b);
+        dataTypeUsageDao.insertUsageInfo(
+                a,
+                unusedDtId,
+                newArrayList(ImmutableUsageInfo.builder().kind(UsageKind.DISTRIBUTOR).isSelected(true).build()));
+
+        assertTrue(dataTypeUsageService.recalculateInChunks(EntityKind.APPLICATION) >= expected.size() + 1);
+        assertEquals(expected, findUsages(a, b), "usages are restored and the stale one removed");
+
+        assertEquals(0, dataTypeUsageService.recalculateInChunks(EntityKind.APPLICATION), "nothing changes when recalculated again");
+        assertFalse(dataTypeUsageDao.findRecalculationCheckpoint(EntityKind.APPLICATION, nowUtc().minusDays(1)).isPresent(), "completed runs leave no checkpoint");
+    }
+
+
+    @Test
+    public void recalculationResumesAfterCheckpoint() {
+        EntityReference a = appHelper.createNewApp(mkName("a"), ouIds.a);
+        EntityReference b = appHelper.createNewApp(mkName("b"), ouIds.a1);
+        LogicalFlow flow = lfHelper.createLogicalFlow(a, b);
+        Long dtId = dataTypeHelper.createDataType(mkName("recalculationResumesAfterCheckpoint"));
+        dataTypeDecoratorService.updateDecorators(mkName("user"), flow.entityReference(), asSet(dtId), emptySet());
+
+        deleteUsages(a, b);
+        dataTypeUsageDao.saveRecalculationCheckpoint(EntityKind.APPLICATION, a.id(), nowUtc());
+
+        dataTypeUsageService.recalculateInChunks(EntityKind.APPLICATION);
+
+        assertTrue(dataTypeUsageService.findForEntity(a).isEmpty(), "a was covered by the checkpoint so is skipped");
+        assertFalse(dataTypeUsageService.findForEntity(b).isEmpty(), "b is after the checkpoint so is recalculated");
+    }
+
+
+    // -- HELPERS ---
+
+    private Set<DataTypeUsage> findUsages(EntityReference a, EntityReference b) {
+        return union(
+                fromCollection(dataTypeUsageService.findForEntity(a)),
+                fromCollection(dataTypeUsageService.findForEntity(b)));
+    }
+
+
+    private void deleteUsages(EntityReference... refs) {
+        for (EntityReference ref : refs) {
+            dsl.deleteFrom(DATA_TYPE_USAGE)
+                    .where(DATA_TYPE_USAGE.ENTITY_KIND.eq(ref.kind().name()))
+                    .and(DATA_TYPE_USAGE.ENTITY_ID.eq(ref.id()))
+                    .execute();
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.integration_test.inmem.service;
+
+import org.finos.waltz.data.email.EmailOutboxDao;
+import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
+import org.finos.waltz.model.email.EmailStatus;
+import org.finos.waltz.model.email.OutboxEmail;
+import org.finos.waltz.service.email.EmailOutboxService;
+import org.finos.waltz.service.email.WaltzEmailer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.Arrays.asList;
+import static org.finos.waltz.common.DateTimeUtilities.nowUtc;
+import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class EmailOutboxServiceTest extends BaseInMemoryIntegrationTest {
+
+    @Autowired
+    private EmailOutboxDao emailOutboxDao;
+
+
+    @Test
+    public void queuedEmailsAreSentByTheDispatcher() {
+        RecordingEmailer emailer = new RecordingEmailer(false);
+        EmailOutboxService svc = mkService(emailer, 3, 60_000);
+        String subject = mkName("queuedEmailsAreSentByTheDispatcher");
+
+        int emailCount = svc.enqueue(subject, "body", asList("a@x.com", "b@x.com", "c@x.com"), 2);
+
+        assertEquals(2, emailCount, "recipients are split into batches");
+        assertTrue(emailer.sent.isEmpty(), "nothing is sent until dispatched");
+        assertTrue(findDue(subject).isPresent());
+
+        assertEquals(2, dispatchAndWait(svc));
+
+        assertEquals(2, emailer.sent.size());
+        assertEquals(2, svc.getSentCount());
+        assertFalse(findDue(subject).isPresent(), "sent emails are no longer due");
+    }
+
+
+    @Test
+    public void failedSendsAreRetriedThenMarkedAsFailed() {
+        RecordingEmailer emailer = new RecordingEmailer(true);
+        EmailOutboxService svc = mkService(emailer, 2, 0);
+        String subject = mkName("failedSendsAreRetriedThenMarkedAsFailed");
+
+        svc.enqueue(subject, "body", asList("a@x.com"), 10);
+
+        dispatchAndWait(svc);
+        OutboxEmail retry = findDue(subject).orElseThrow(() -> new AssertionError("should be due for a retry"));
+        assertEquals(1, retry.attempts());
+        assertTrue(retry.lastError().isPresent());
+        assertEquals(1, svc.getRetriedCount());
+
+        dispatchAndWait(svc);
+        assertFalse(findDue(subject).isPresent(), "no further attempts after the maximum");
+        assertEquals(1, svc.getFailedCount());
+
+        assertTrue(svc.retryFailed() >= 1);
+        assertEquals(0, findDue(subject).get().attempts(), "failed emails can be retried");
+    }
+
+
+    // -- HELPERS ---
+
+    private EmailOutboxService mkService(WaltzEmailer emailer, int maxAttempts, long backoffMillis) {
+        return new EmailOutboxService(
+                emailOutboxDao,
+                emailer,
+                true,
+                2,
+                maxAttempts,
+                backoffMillis,
+                backoffMillis,
+                30);
+    }
+
+
+    private int dispatchAndWait(EmailOutboxService svc) {
+        int dispatched = svc.dispatch();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (svc.getInFlightCount() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "dispatched emails should be sent promptly");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+        return dispatched;
+    }
+
+
+    private Optional<OutboxEmail> findDue(String subject) {
+        return emailOutboxDao
+                .findDue(nowUtc(), 1000)
+                .stream()
+                .filter(e -> e.subject().equals(subject))
+                .filter(e -> e.status() == EmailStatus.PENDING)
+                .findFirst();
+    }
+
+
+    private static class RecordingEmailer extends WaltzEmailer {
+
+        private final boolean fail;
+        private final List<List<String>> sent = Collections.synchronizedList(new ArrayList<>());
+
+
+        private RecordingEmailer(boolean fail) {
+            super(null);
+            this.fail = fail;
+        }
+
+
+        @Override
+        public void sendEmail(String subject, String body, String[] to) {
+            if (fail) {
+                throw new IllegalStateException("mail server unavailable");
+            }
+            sent.add(asList(to));
+        }
+    }
+
+}
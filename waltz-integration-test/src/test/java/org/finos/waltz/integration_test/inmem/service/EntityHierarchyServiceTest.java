@@ -0,0 +1,160 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.integration_test.inmem.service;
+
+import org.finos.waltz.data.entity_hierarchy.EntityHierarchyDao;
+import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.entity_hierarchy.EntityHierarchyItem;
+import org.finos.waltz.service.entity_hierarchy.EntityHierarchyService;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toSet;
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.schema.Tables.ORGANISATIONAL_UNIT;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntityHierarchyServiceTest extends BaseInMemoryIntegrationTest {
+
+    @Autowired
+    private EntityHierarchyService entityHierarchyService;
+
+    @Autowired
+    private EntityHierarchyDao entityHierarchyDao;
+
+    @Autowired
+    private DSLContext dsl;
+
+
+    @Test
+    public void incrementalUpdateOfUnchangedHierarchyWritesNothing() {
+        assertEquals(0, entityHierarchyService.updateFor(EntityKind.ORG_UNIT));
+    }
+
+
+    @Test
+    public void movedSubtreesOnlyRewriteTheirOwnRows() {
+        Long a2 = createOrgUnit("a2", ouIds.a1);
+        rebuildHierarchy(EntityKind.ORG_UNIT);
+
+        // move a1 (and therefore a2) from a to b, both keep the same depth
+        moveOrgUnit(ouIds.a1, ouIds.b);
+        int changeCount = entityHierarchyService.updateFor(EntityKind.ORG_UNIT);
+
+        // a1 and a2 each lose 'a' as an ancestor and gain 'b' (1 delete + 1 insert each)
+        assertEquals(4, changeCount);
+        assertEquals(asSet(ouIds.root, ouIds.b, ouIds.a1), findAncestors(ouIds.a1));
+        assertEquals(asSet(ouIds.root, ouIds.b, ouIds.a1, a2), findAncestors(a2));
+        assertMatchesFullRebuild();
+    }
+
+
+    @Test
+    public void addedAndRemovedNodesAreReflected() {
+        Long a1a = createOrgUnit("a1a", ouIds.a1);
+        dsl.deleteFrom(ORGANISATIONAL_UNIT).where(ORGANISATIONAL_UNIT.ID.eq(ouIds.b)).execute();
+
+        entityHierarchyService.updateFor(EntityKind.ORG_UNIT);
+
+        assertEquals(asSet(ouIds.root, ouIds.a, ouIds.a1, a1a), findAncestors(a1a));
+        assertTrue(findAncestors(ouIds.b).isEmpty());
+        assertMatchesFullRebuild();
+    }
+
+
+    @Test
+    public void depthChangesAreApplied() {
+        // promote a1 to be a root, its level (and its self-referencing row) must change
+        moveOrgUnit(ouIds.a1, null);
+
+        entityHierarchyService.updateFor(EntityKind.ORG_UNIT);
+
+        assertEquals(asSet(ouIds.a1), findAncestors(ouIds.a1));
+        assertMatchesFullRebuild();
+    }
+
+
+    @Test
+    public void nodeUpdatesOnlyTouchTheGivenSubtrees() {
+        Long a2 = createOrgUnit("a2", ouIds.a1);
+        Long a3 = createOrgUnit("a3", ouIds.a);
+        rebuildHierarchy(EntityKind.ORG_UNIT);
+
+        moveOrgUnit(ouIds.a1, ouIds.b);
+        moveOrgUnit(a3, ouIds.b);
+        entityHierarchyService.updateForNodes(EntityKind.ORG_UNIT, asSet(ouIds.a1));
+
+        assertEquals(asSet(ouIds.root, ouIds.b, ouIds.a1, a2), findAncestors(a2));
+        assertEquals(asSet(ouIds.root, ouIds.a, a3), findAncestors(a3), "nodes outside the given subtrees are not updated");
+
+        entityHierarchyService.updateFor(EntityKind.ORG_UNIT);
+        assertMatchesFullRebuild();
+    }
+
+
+    @Test
+    public void childrenOfRemovedNodesAreDetached() {
+        Long a2 = createOrgUnit("a2", ouIds.a1);
+        rebuildHierarchy(EntityKind.ORG_UNIT);
+
+        dsl.deleteFrom(ORGANISATIONAL_UNIT).where(ORGANISATIONAL_UNIT.ID.eq(ouIds.a1)).execute();
+        entityHierarchyService.updateFor(EntityKind.ORG_UNIT);
+
+        assertTrue(findAncestors(ouIds.a1).isEmpty());
+        assertEquals(asSet(a2), findAncestors(a2));
+        assertMatchesFullRebuild();
+    }
+
+
+    // -- HELPERS ---
+
+    private void moveOrgUnit(Long id, Long newParentId) {
+        dsl
+                .update(ORGANISATIONAL_UNIT)
+                .set(ORGANISATIONAL_UNIT.PARENT_ID, newParentId)
+                .where(ORGANISATIONAL_UNIT.ID.eq(id))
+                .execute();
+    }
+
+
+    private Set<Long> findAncestors(Long id) {
+        return entityHierarchyDao
+                .findByKind(EntityKind.ORG_UNIT, DSL.trueCondition())
+                .stream()
+                .filter(item -> item.id().orElse(null).equals(id))
+                .map(item -> item.parentId().orElse(null))
+                .collect(toSet());
+    }
+
+
+    private void assertMatchesFullRebuild() {
+        Set<EntityHierarchyItem> incremental = new HashSet<>(entityHierarchyDao.findByKind(EntityKind.ORG_UNIT, DSL.trueCondition()));
+        rebuildHierarchy(EntityKind.ORG_UNIT);
+        Set<EntityHierarchyItem> rebuilt = new HashSet<>(entityHierarchyDao.findByKind(EntityKind.ORG_UNIT, DSL.trueCondition()));
+
+        assertEquals(rebuilt, incremental, "incremental update should produce the same hierarchy as a full rebuild");
+    }
+
+}
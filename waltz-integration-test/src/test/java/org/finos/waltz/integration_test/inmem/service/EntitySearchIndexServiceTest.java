@@ -0,0 +1,141 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.integration_test.inmem.service;
+
+import org.finos.waltz.data.entity_search.EntitySearchIndexDao;
+import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.Operation;
+import org.finos.waltz.model.changelog.ImmutableChangeLog;
+import org.finos.waltz.model.entity_search.EntitySearchOptions;
+import org.finos.waltz.service.changelog.ChangeLogService;
+import org.finos.waltz.service.entity_search.EntitySearchIndexService;
+import org.finos.waltz.service.entity_search.EntitySearchService;
+import org.finos.waltz.test_common.helpers.ActorHelper;
+import org.finos.waltz.test_common.helpers.AppHelper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.stream.Collectors.toList;
+import static org.finos.waltz.data.SearchUtilities.mkTerms;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntitySearchIndexServiceTest extends BaseInMemoryIntegrationTest {
+
+    @Autowired
+    private EntitySearchIndexDao entitySearchIndexDao;
+
+    @Autowired
+    private ChangeLogService changeLogService;
+
+    @Autowired
+    private EntitySearchService entitySearchService;
+
+    @Autowired
+    private AppHelper appHelper;
+
+    @Autowired
+    private ActorHelper actorHelper;
+
+
+    @Test
+    public void indexIsDisabledByDefaultSoSearchesUseTheDatabase() {
+        String name = mkName("searchViaDatabase");
+        EntityReference app = appHelper.createNewApp(name, ouIds.a);
+
+        List<EntityReference> results = entitySearchService.search(EntitySearchOptions.mkForEntity(EntityKind.APPLICATION, name));
+
+        assertTrue(results.stream().map(EntityReference::id).collect(toList()).contains(app.id()));
+    }
+
+
+    @Test
+    public void indexAnswersForIndexedKindsOnceBuilt() {
+        EntitySearchIndexService svc = new EntitySearchIndexService(entitySearchIndexDao, changeLogService, true, 3_600_000);
+        String name = mkName("searchViaIndex");
+        EntityReference app = appHelper.createNewApp(name, ouIds.a);
+        EntitySearchOptions options = EntitySearchOptions.mkForEntity(EntityKind.APPLICATION, name);
+
+        assertFalse(svc.search(EntityKind.APPLICATION, mkTerms(name), options).isPresent(), "not built yet, so should not answer");
+
+        svc.refreshIfStale();
+        Optional<List<EntityReference>> results = svc.search(EntityKind.APPLICATION, mkTerms(name), options);
+
+        assertTrue(results.isPresent());
+        assertEquals(1, results.get().size());
+        assertEquals(app.id(), results.get().get(0).id());
+        assertEquals(name, results.get().get(0).name().orElse(null));
+        assertFalse(svc.search(EntityKind.APP_GROUP, mkTerms(name), options).isPresent(), "app groups are not indexed");
+    }
+
+
+    @Test
+    public void indexIsOnlyRebuiltWhenStale() {
+        EntitySearchIndexService svc = new EntitySearchIndexService(entitySearchIndexDao, changeLogService, true, 3_600_000);
+        svc.refreshIfStale();
+        svc.refreshIfStale();
+        assertEquals(1, svc.getBuildCount(), "nothing changed so should not rebuild");
+
+        String name = mkName("staleIndex");
+        actorHelper.createActor(name);
+        svc.rebuild();
+
+        List<EntityReference> results = svc
+                .search(EntityKind.ACTOR, mkTerms(name), EntitySearchOptions.mkForEntity(EntityKind.ACTOR, name))
+                .orElseThrow(() -> new AssertionError("actors should be indexed"));
+
+        assertEquals(1, results.size());
+        assertEquals(2, svc.getBuildCount());
+    }
+
+
+    @Test
+    public void changedKindsAreUpdatedWithoutAFullRebuild() {
+        EntitySearchIndexService svc = new EntitySearchIndexService(entitySearchIndexDao, changeLogService, true, 3_600_000);
+        svc.refreshIfStale();
+
+        String name = mkName("updatedIndex");
+        Long actorId = actorHelper.createActor(name);
+        changeLogService.write(ImmutableChangeLog
+                .builder()
+                .parentReference(mkRef(EntityKind.ACTOR, actorId))
+                .message("Created actor")
+                .userId("test")
+                .operation(Operation.ADD)
+                .build());
+
+        svc.refreshIfStale();
+
+        List<EntityReference> results = svc
+                .search(EntityKind.ACTOR, mkTerms(name), EntitySearchOptions.mkForEntity(EntityKind.ACTOR, name))
+                .orElseThrow(() -> new AssertionError("actors should be indexed"));
+
+        assertEquals(1, results.size());
+        assertEquals(1, svc.getBuildCount(), "only the changed kind should be re-read");
+        assertEquals(1, svc.getUpdateCount());
+        assertEquals(changeLogService.getDataVersion(), svc.getIndex().get().getDataVersion());
+    }
+
+}
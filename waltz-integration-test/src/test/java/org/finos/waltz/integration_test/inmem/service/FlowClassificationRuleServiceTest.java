@@ -0,0 +1,146 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.integration_test.inmem.service;
+
+import org.finos.waltz.data.flow_classification_rule.FlowClassificationRuleDao;
+import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.datatype.DataTypeDecorator;
+import org.finos.waltz.model.flow_classification_rule.ImmutableFlowClassificationRuleCreateCommand;
+import org.finos.waltz.model.logical_flow.LogicalFlow;
+import org.finos.waltz.model.rating.AuthoritativenessRatingValue;
+import org.finos.waltz.schema.tables.records.FlowClassificationRecord;
+import org.finos.waltz.service.flow_classification_rule.FlowClassificationRuleService;
+import org.finos.waltz.test_common.helpers.ActorHelper;
+import org.finos.waltz.test_common.helpers.AppHelper;
+import org.finos.waltz.test_common.helpers.DataTypeHelper;
+import org.finos.waltz.test_common.helpers.LogicalFlowHelper;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Optional;
+
+import static org.finos.waltz.common.CollectionUtilities.first;
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.schema.Tables.FLOW_CLASSIFICATION;
+import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlowClassificationRuleServiceTest extends BaseInMemoryIntegrationTest {
+
+    @Autowired
+    private FlowClassificationRuleService flowClassificationRuleService;
+
+    @Autowired
+    private FlowClassificationRuleDao flowClassificationRuleDao;
+
+    @Autowired
+    private AppHelper appHelper;
+
+    @Autowired
+    private ActorHelper actorHelper;
+
+    @Autowired
+    private DataTypeHelper dataTypeHelper;
+
+    @Autowired
+    private LogicalFlowHelper logicalFlowHelper;
+
+    @Autowired
+    private DSLContext dsl;
+
+
+    @Test
+    public void recalculationRatesFlowsAndOnlyWritesChanges() {
+        Long dtId = dataTypeHelper.createDataType("recalc-dt");
+        rebuildHierarchy(EntityKind.DATA_TYPE);
+
+        EntityReference source = appHelper.createNewApp(mkName("recalc-source"), ouIds.a);
+        EntityReference otherSource = appHelper.createNewApp(mkName("recalc-other"), ouIds.a);
+        EntityReference target = appHelper.createNewApp(mkName("recalc-target"), ouIds.a1);
+        EntityReference actor = mkRef(EntityKind.ACTOR, actorHelper.createActor("recalc-actor"));
+
+        long primaryId = createClassification("RP");
+        long secondaryId = createClassification("RS");
+        long ouRuleId = createRule(source, mkRef(EntityKind.ORG_UNIT, ouIds.a), dtId, primaryId);
+        long pointToPointRuleId = createRule(source, actor, dtId, secondaryId);
+
+        LogicalFlow ratedFlow = createFlow(source, target, dtId);
+        LogicalFlow discouragedFlow = createFlow(otherSource, target, dtId);
+        LogicalFlow actorFlow = createFlow(source, actor, dtId);
+
+        assertTrue(flowClassificationRuleService.fastRecalculateAllFlowRatings() >= 3);
+
+        assertDecorator(ratedFlow, AuthoritativenessRatingValue.of("RP"), Optional.of(ouRuleId));
+        assertDecorator(discouragedFlow, AuthoritativenessRatingValue.DISCOURAGED, Optional.empty());
+        assertDecorator(actorFlow, AuthoritativenessRatingValue.of("RS"), Optional.of(pointToPointRuleId));
+
+        assertEquals(
+                0,
+                flowClassificationRuleService.fastRecalculateAllFlowRatings(),
+                "nothing has changed so nothing should be written");
+    }
+
+
+    private void assertDecorator(LogicalFlow flow,
+                                 AuthoritativenessRatingValue expectedRating,
+                                 Optional<Long> expectedRuleId) {
+        DataTypeDecorator decorator = first(logicalFlowHelper.fetchDecoratorsForFlow(flow.id().get()));
+        assertEquals(expectedRating, decorator.rating().get());
+        assertEquals(expectedRuleId, decorator.flowClassificationRuleId());
+    }
+
+
+    private LogicalFlow createFlow(EntityReference source, EntityReference target, Long dtId) {
+        LogicalFlow flow = logicalFlowHelper.createLogicalFlow(source, target);
+        logicalFlowHelper.createLogicalFlowDecorators(flow.entityReference(), asSet(dtId));
+        return flow;
+    }
+
+
+    private long createRule(EntityReference subject, EntityReference parent, Long dtId, long classificationId) {
+        return flowClassificationRuleDao.insert(
+                ImmutableFlowClassificationRuleCreateCommand.builder()
+                        .subjectReference(subject)
+                        .parentReference(parent)
+                        .dataTypeId(dtId)
+                        .classificationId(classificationId)
+                        .description("test")
+                        .build(),
+                "test");
+    }
+
+
+    private long createClassification(String code) {
+        FlowClassificationRecord record = dsl.newRecord(FLOW_CLASSIFICATION);
+        record.setName(mkName(code));
+        record.setDescription(code);
+        record.setCode(code);
+        record.setColor("#000");
+        record.setPosition(0);
+        record.setIsCustom(false);
+        record.setUserSelectable(true);
+        record.store();
+        return record.getId();
+    }
+
+}
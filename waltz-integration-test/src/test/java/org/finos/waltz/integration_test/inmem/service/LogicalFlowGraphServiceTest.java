@@ -0,0 +1,166 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.integration_test.inmem.service;
+
+import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.FlowDirection;
+import org.finos.waltz.model.logical_flow.ImmutableAddLogicalFlowCommand;
+import org.finos.waltz.model.logical_flow.LogicalFlow;
+import org.finos.waltz.model.logical_flow.LogicalFlowLineage;
+import org.finos.waltz.model.logical_flow.LogicalFlowLineageNode;
+import org.finos.waltz.service.logical_flow.LogicalFlowGraphService;
+import org.finos.waltz.service.logical_flow.LogicalFlowService;
+import org.finos.waltz.test_common.helpers.AppHelper;
+import org.finos.waltz.test_common.helpers.DataTypeHelper;
+import org.finos.waltz.test_common.helpers.LogicalFlowHelper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Set;
+
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.common.SetUtilities.map;
+import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogicalFlowGraphServiceTest extends BaseInMemoryIntegrationTest {
+
+    @Autowired
+    private LogicalFlowGraphService graphSvc;
+
+    @Autowired
+    private LogicalFlowService lfSvc;
+
+    @Autowired
+    private LogicalFlowHelper helper;
+
+    @Autowired
+    private AppHelper appHelper;
+
+    @Autowired
+    private DataTypeHelper dataTypeHelper;
+
+
+    @Test
+    public void lineageFollowsFlowsInBothDirections() {
+        EntityReference a = appHelper.createNewApp(mkName("a"), ouIds.a);
+        EntityReference b = appHelper.createNewApp(mkName("b"), ouIds.a);
+        EntityReference c = appHelper.createNewApp(mkName("c"), ouIds.a);
+        // a -> b -> c
+        LogicalFlow ab = helper.createLogicalFlow(a, b);
+        LogicalFlow bc = helper.createLogicalFlow(b, c);
+
+        graphSvc.rebuild();
+
+        LogicalFlowLineage downstream = graphSvc.getLineage(a, FlowDirection.OUTBOUND, 3, null);
+        assertEquals(asSet(b, c), entities(downstream));
+        assertEquals(asSet(ab.id().get(), bc.id().get()), map(downstream.edges(), e -> e.flowId()));
+
+        assertEquals(
+                asSet(b),
+                entities(graphSvc.getLineage(c, FlowDirection.INBOUND, 1, null)),
+                "upstream lineage is limited by the number of hops");
+
+        assertEquals(
+                2,
+                graphSvc.findShortestPath(a, c, null).get().edges().size());
+    }
+
+
+    @Test
+    public void reachabilityCanBeRestrictedByDataType() {
+        EntityReference a = appHelper.createNewApp(mkName("a"), ouIds.a);
+        EntityReference b = appHelper.createNewApp(mkName("b"), ouIds.a);
+        EntityReference c = appHelper.createNewApp(mkName("c"), ouIds.a);
+        Long dt = dataTypeHelper.createDataType(mkName("graphDt"));
+        // a -[dt]-> b -> c
+        LogicalFlow ab = helper.createLogicalFlow(a, b);
+        helper.createLogicalFlow(b, c);
+        helper.createLogicalFlowDecorators(ab.entityReference(), asSet(dt));
+
+        graphSvc.rebuild();
+
+        assertEquals(asSet(b), entities(graphSvc.getReachable(a, FlowDirection.OUTBOUND, dt)));
+        assertFalse(graphSvc.findShortestPath(a, c, dt).isPresent());
+    }
+
+
+    @Test
+    public void changesMadeViaTheFlowServiceAreAppliedByTheNextSynchronisation() {
+        EntityReference a = appHelper.createNewApp(mkName("a"), ouIds.a);
+        EntityReference b = appHelper.createNewApp(mkName("b"), ouIds.a);
+        dataTypeHelper.createUnknownDatatype();
+
+        graphSvc.rebuild();
+        assertFalse(graphSvc.findShortestPath(a, b, null).isPresent());
+
+        LogicalFlow ab = lfSvc.addFlow(
+                ImmutableAddLogicalFlowCommand.builder()
+                        .source(a)
+                        .target(b)
+                        .build(),
+                "graphTest");
+
+        assertEquals(1, graphSvc.getPendingFlowCount(), "the graph is not updated on the request thread");
+
+        graphSvc.refreshIfStale();
+        assertTrue(graphSvc.findShortestPath(a, b, null).isPresent(), "added flow should be in the graph");
+
+        lfSvc.removeFlow(ab.id().get(), "graphTest");
+        graphSvc.refreshIfStale();
+
+        assertFalse(graphSvc.findShortestPath(a, b, null).isPresent(), "removed flow should leave the graph");
+        assertEquals(0, graphSvc.getPendingFlowCount());
+    }
+
+
+    @Test
+    public void otherChangesArePickedUpBySynchronisation() throws InterruptedException {
+        EntityReference a = appHelper.createNewApp(mkName("a"), ouIds.a);
+        EntityReference b = appHelper.createNewApp(mkName("b"), ouIds.a);
+
+        graphSvc.rebuild();
+        long buildCount = graphSvc.getBuildCount();
+
+        // ensure the new flow is stamped after the graph watermark
+        Thread.sleep(5);
+        LogicalFlow ab = helper.createLogicalFlow(a, b);
+
+        assertFalse(graphSvc.findShortestPath(a, b, null).isPresent(), "not seen until synchronised");
+
+        graphSvc.refreshIfStale();
+        assertTrue(graphSvc.findShortestPath(a, b, null).isPresent());
+
+        Thread.sleep(5);
+        helper.removeFlow(ab.id().get());
+        graphSvc.refreshIfStale();
+        assertFalse(graphSvc.findShortestPath(a, b, null).isPresent());
+
+        assertEquals(buildCount, graphSvc.getBuildCount(), "changes should be applied without a full rebuild");
+    }
+
+
+    // -- HELPERS ---
+
+    private static Set<EntityReference> entities(LogicalFlowLineage lineage) {
+        return map(lineage.nodes(), LogicalFlowLineageNode::entity);
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.integration_test.inmem.service;
+
+import org.finos.waltz.data.logical_flow.LogicalFlowDao;
+import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.command.CommandOutcome;
+import org.finos.waltz.model.enum_value.EnumValueKind;
+import org.finos.waltz.model.logical_flow.LogicalFlow;
+import org.finos.waltz.model.physical_flow.ImmutablePhysicalFlowUploadCommand;
+import org.finos.waltz.model.physical_flow.PhysicalFlowUploadCommand;
+import org.finos.waltz.model.physical_flow.PhysicalFlowUploadCommandResponse;
+import org.finos.waltz.schema.tables.records.EnumValueRecord;
+import org.finos.waltz.service.physical_flow.PhysicalFlowUploadService;
+import org.finos.waltz.test_common.helpers.AppHelper;
+import org.finos.waltz.test_common.helpers.DataTypeHelper;
+import org.finos.waltz.test_common.helpers.LogicalFlowHelper;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.finos.waltz.common.ListUtilities.newArrayList;
+import static org.finos.waltz.schema.Tables.DATA_TYPE;
+import static org.finos.waltz.schema.Tables.ENUM_VALUE;
+import static org.finos.waltz.schema.Tables.LOGICAL_FLOW_DECORATOR;
+import static org.finos.waltz.schema.Tables.PHYSICAL_SPECIFICATION;
+import static org.finos.waltz.schema.Tables.PHYSICAL_SPEC_DATA_TYPE;
+import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhysicalFlowUploadServiceTest extends BaseInMemoryIntegrationTest {
+
+    private static final String ENUM_KEY = "UPLOAD_TEST";
+
+    @Autowired
+    private PhysicalFlowUploadService physicalFlowUploadService;
+
+    @Autowired
+    private LogicalFlowDao logicalFlowDao;
+
+    @Autowired
+    private AppHelper appHelper;
+
+    @Autowired
+    private DataTypeHelper dataTypeHelper;
+
+    @Autowired
+    private LogicalFlowHelper logicalFlowHelper;
+
+    @Autowired
+    private DSLContext dsl;
+
+
+    @BeforeEach
+    public void ensureEnumValues() {
+        newArrayList(
+                EnumValueKind.TRANSPORT_KIND,
+                EnumValueKind.FREQUENCY,
+                EnumValueKind.PHYSICAL_FLOW_CRITICALITY,
+                EnumValueKind.DATA_FORMAT_KIND)
+                .forEach(kind -> {
+                    boolean exists = dsl.fetchExists(ENUM_VALUE, ENUM_VALUE.TYPE.eq(kind.dbValue()).and(ENUM_VALUE.KEY.eq(ENUM_KEY)));
+                    if (!exists) {
+                        EnumValueRecord record = dsl.newRecord(ENUM_VALUE);
+                        record.setType(kind.dbValue());
+                        record.setKey(ENUM_KEY);
+                        record.setDisplayName(ENUM_KEY);
+                        record.setDescription(ENUM_KEY);
+                        record.setIconName("fw");
+                        record.setPosition(0);
+                        record.insert();
+                    }
+                });
+    }
+
+
+    @Test
+    public void uploadCreatesMissingEntitiesAndReusesExistingOnes() throws Exception {
+        EntityReference a = appHelper.createNewApp(mkName("upload-a"), ouIds.a);
+        EntityReference b = appHelper.createNewApp(mkName("upload-b"), ouIds.a1);
+        EntityReference c = appHelper.createNewApp(mkName("upload-c"), ouIds.b);
+        String dataType = dataTypeName(dataTypeHelper.createDataType("upload-dt"));
+        String specName = mkName("upload-spec");
+
+        List<PhysicalFlowUploadCommand> cmds = newArrayList(
+                mkCmd(a, b, a, specName, "0", dataType),
+                mkCmd(a, b, a, specName, "1", dataType),
+                mkCmd(a, c, a, specName, "0", dataType),
+                mkCmd(a, b, a, specName, "0", dataType));
+
+        List<PhysicalFlowUploadCommandResponse> uploaded = physicalFlowUploadService.upload("admin", cmds);
+
+        assertEquals(4, uploaded.size(), "one response per new row");
+        uploaded.forEach(r -> assertEquals(EntityKind.PHYSICAL_FLOW, r.entityReference().kind()));
+        assertEquals(
+                uploaded.get(0).entityReference(),
+                uploaded.get(3).entityReference(),
+                "identical rows should share a physical flow");
+        assertEquals(3, uploaded.stream().map(PhysicalFlowUploadCommandResponse::entityReference).collect(toSet()).size());
+
+        LogicalFlow abFlow = logicalFlowDao.getBySourceAndTarget(a, b);
+        assertNotNull(abFlow, "logical flow should have been created");
+        assertEquals(1, dsl.fetchCount(LOGICAL_FLOW_DECORATOR, LOGICAL_FLOW_DECORATOR.LOGICAL_FLOW_ID.eq(abFlow.id().get())));
+
+        List<Long> specIds = dsl
+                .select(PHYSICAL_SPECIFICATION.ID)
+                .from(PHYSICAL_SPECIFICATION)
+                .where(PHYSICAL_SPECIFICATION.NAME.eq(specName))
+                .fetch(PHYSICAL_SPECIFICATION.ID);
+        assertEquals(1, specIds.size(), "rows with the same owner, name and format share a specification");
+        assertEquals(1, dsl.fetchCount(PHYSICAL_SPEC_DATA_TYPE, PHYSICAL_SPEC_DATA_TYPE.SPECIFICATION_ID.eq(specIds.get(0))));
+
+        List<PhysicalFlowUploadCommandResponse> revalidated = physicalFlowUploadService.validate(cmds);
+        assertEquals(
+                uploaded.stream().map(PhysicalFlowUploadCommandResponse::entityReference).collect(toList()),
+                revalidated.stream().map(PhysicalFlowUploadCommandResponse::entityReference).collect(toList()),
+                "validation should find the uploaded flows");
+
+        assertTrue(physicalFlowUploadService.upload("admin", cmds).isEmpty(), "nothing new to upload");
+    }
+
+
+    @Test
+    public void uploadRestoresRemovedLogicalFlows() throws Exception {
+        EntityReference a = appHelper.createNewApp(mkName("upload-restore-a"), ouIds.a);
+        EntityReference b = appHelper.createNewApp(mkName("upload-restore-b"), ouIds.a1);
+        String dataType = dataTypeName(dataTypeHelper.createDataType("upload-restore-dt"));
+
+        LogicalFlow original = logicalFlowHelper.createLogicalFlow(a, b);
+        logicalFlowHelper.removeFlow(original.id().get());
+        assertNull(logicalFlowDao.getBySourceAndTarget(a, b));
+
+        List<PhysicalFlowUploadCommandResponse> uploaded = physicalFlowUploadService.upload(
+                "admin",
+                newArrayList(mkCmd(a, b, b, mkName("upload-restore-spec"), "T-1", dataType)));
+
+        assertEquals(CommandOutcome.SUCCESS, uploaded.get(0).outcome());
+        LogicalFlow restored = logicalFlowDao.getBySourceAndTarget(a, b);
+        assertNotNull(restored, "removed logical flow should have been restored");
+        assertEquals(original.id(), restored.id());
+    }
+
+
+    private String dataTypeName(Long id) {
+        return dsl
+                .select(DATA_TYPE.NAME)
+                .from(DATA_TYPE)
+                .where(DATA_TYPE.ID.eq(id))
+                .fetchOne(DATA_TYPE.NAME);
+    }
+
+
+    private PhysicalFlowUploadCommand mkCmd(EntityReference source,
+                                            EntityReference target,
+                                            EntityReference owner,
+                                            String name,
+                                            String basisOffset,
+                                            String dataType) {
+        return ImmutablePhysicalFlowUploadCommand.builder()
+                .source(source.name().get())
+                .target(target.name().get())
+                .owner(owner.name().get())
+                .name(name)
+                .format(ENUM_KEY)
+                .basisOffset(basisOffset)
+                .criticality(ENUM_KEY)
+                .description("upload test")
+                .frequency(ENUM_KEY)
+                .transport(ENUM_KEY)
+                .dataType(dataType)
+                .build();
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.integration_test.inmem.service;
+
+import org.finos.waltz.data.application.ApplicationDao;
+import org.finos.waltz.data.datatype_decorator.LogicalFlowDecoratorDao;
+import org.finos.waltz.data.entity_hierarchy.EntityHierarchyDao;
+import org.finos.waltz.data.flow_classification_rule.FlowClassificationDao;
+import org.finos.waltz.data.flow_classification_rule.FlowClassificationRuleDao;
+import org.finos.waltz.data.orgunit.OrganisationalUnitDao;
+import org.finos.waltz.data.recalc.RecalcEventDao;
+import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.logical_flow.LogicalFlow;
+import org.finos.waltz.model.recalc.RecalcEvent;
+import org.finos.waltz.model.recalc.RecalcTarget;
+import org.finos.waltz.service.data_type.DataTypeDecoratorService;
+import org.finos.waltz.service.entity_hierarchy.EntityHierarchyService;
+import org.finos.waltz.service.flow_classification_rule.FlowRatingRecalculator;
+import org.finos.waltz.service.recalc.RecalcQueueService;
+import org.finos.waltz.service.usage_info.DataTypeUsageService;
+import org.finos.waltz.test_common.helpers.AppHelper;
+import org.finos.waltz.test_common.helpers.DataTypeHelper;
+import org.finos.waltz.test_common.helpers.LogicalFlowHelper;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.emptySet;
+import static java.util.stream.Collectors.toSet;
+import static org.finos.waltz.common.DateTimeUtilities.nowUtc;
+import static org.finos.waltz.common.ListUtilities.asList;
+import static org.finos.waltz.common.ListUtilities.map;
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.schema.tables.DataTypeUsage.DATA_TYPE_USAGE;
+import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class RecalcQueueServiceTest extends BaseInMemoryIntegrationTest {
+
+    @Autowired
+    private RecalcEventDao recalcEventDao;
+
+    @Autowired
+    private DataTypeUsageService dataTypeUsageService;
+
+    @Autowired
+    private FlowRatingRecalculator flowRatingRecalculator;
+
+    @Autowired
+    private EntityHierarchyService entityHierarchyService;
+
+    @Autowired
+    private EntityHierarchyDao entityHierarchyDao;
+
+    @Autowired
+    private ApplicationDao applicationDao;
+
+    @Autowired
+    private DataTypeDecoratorService dataTypeDecoratorService;
+
+    @Autowired
+    private LogicalFlowHelper lfHelper;
+
+    @Autowired
+    private AppHelper appHelper;
+
+    @Autowired
+    private DataTypeHelper dataTypeHelper;
+
+    @Autowired
+    private FlowClassificationRuleDao flowClassificationRuleDao;
+
+    @Autowired
+    private FlowClassificationDao flowClassificationDao;
+
+    @Autowired
+    private LogicalFlowDecoratorDao logicalFlowDecoratorDao;
+
+    @Autowired
+    private OrganisationalUnitDao organisationalUnitDao;
+
+    @Autowired
+    private DSLContext dsl;
+
+
+    @Test
+    public void queuedUsageRecalculationsAreAppliedByTheWorker() {
+        RecalcQueueService svc = mkService();
+        EntityReference a = appHelper.createNewApp(mkName("a"), ouIds.a);
+        EntityReference b = appHelper.createNewApp(mkName("b"), ouIds.a1);
+        LogicalFlow flow = lfHelper.createLogicalFlow(a, b);
+        Long dtId = dataTypeHelper.createDataType(mkName("queuedUsageRecalculationsAreAppliedByTheWorker"));
+        dataTypeDecoratorService.updateDecorators(mkName("user"), flow.entityReference(), asSet(dtId), emptySet());
+        deleteUsages(a, b);
+
+        assertEquals(2, svc.record(RecalcTarget.DATA_TYPE_USAGE, asList(a, b, a)), "duplicate entities are collapsed");
+        assertTrue(dataTypeUsageService.findForEntity(a).isEmpty(), "nothing is recalculated until the queue is processed");
+        assertTrue(svc.countByTarget().get(RecalcTarget.DATA_TYPE_USAGE) >= 2);
+
+        assertTrue(svc.process() >= 2);
+
+        assertFalse(dataTypeUsageService.findForEntity(a).isEmpty());
+        assertFalse(dataTypeUsageService.findForEntity(b).isEmpty());
+        assertFalse(svc.countByTarget().containsKey(RecalcTarget.DATA_TYPE_USAGE), "processed events are removed");
+        assertEquals(0, svc.process(), "nothing left to process");
+    }
+
+
+    @Test
+    public void hierarchyEventsUpdateTheHierarchyOfTheirKind() {
+        RecalcQueueService svc = mkService();
+        Long a2 = createOrgUnit("a2", ouIds.a1);
+
+        svc.record(RecalcTarget.ENTITY_HIERARCHY, asList(mkRef(EntityKind.ORG_UNIT, a2)));
+        assertTrue(findAncestors(a2).isEmpty(), "hierarchy is updated by the worker");
+
+        svc.process();
+
+        assertEquals(asSet(ouIds.root, ouIds.a, ouIds.a1, a2), findAncestors(a2));
+    }
+
+
+    @Test
+    public void eventsClaimedByAnotherWorkerAreSkippedUntilTheLeaseExpires() {
+        RecalcQueueService svc = mkService();
+        svc.process();
+        Long a3 = createOrgUnit("a3", ouIds.a1);
+
+        svc.record(RecalcTarget.ENTITY_HIERARCHY, asList(mkRef(EntityKind.ORG_UNIT, a3)));
+        LocalDateTime now = nowUtc();
+        Set<Long> ids = recalcEventDao
+                .findClaimable(now, 100)
+                .stream()
+                .map(e -> e.id().get())
+                .collect(toSet());
+
+        assertEquals(ids, recalcEventDao.claim(ids, now, now.plusMinutes(5)));
+        assertTrue(recalcEventDao.claim(ids, now, now.plusMinutes(5)).isEmpty(), "events can only be claimed once");
+
+        assertEquals(0, svc.process(), "events claimed elsewhere are not processed");
+        assertTrue(findAncestors(a3).isEmpty());
+
+        assertEquals(ids, recalcEventDao.claim(ids, now.plusMinutes(6), now.plusMinutes(10)), "expired leases can be claimed again");
+        recalcEventDao.deleteByIds(ids);
+    }
+
+
+    @Test
+    public void failedEventsAreRetriedThenAbandoned() {
+        mkService().process();
+        AtomicInteger calls = new AtomicInteger();
+        FlowRatingRecalculator failingRecalculator = new FlowRatingRecalculator(
+                flowClassificationRuleDao,
+                flowClassificationDao,
+                logicalFlowDecoratorDao,
+                entityHierarchyDao,
+                organisationalUnitDao,
+                250,
+                1000) {
+            @Override
+            public synchronized int recalculateForOrgUnits(Collection<Long> orgUnitIds) {
+                calls.incrementAndGet();
+                throw new IllegalStateException("simulated deadlock");
+            }
+        };
+
+        RecalcQueueService retrying = mkService(failingRecalculator, 3);
+        retrying.record(RecalcTarget.FLOW_RATINGS, asList(mkRef(EntityKind.ORG_UNIT, ouIds.a)));
+
+        assertEquals(1, retrying.process());
+        assertEquals(1, calls.get());
+        assertEquals(1, retrying.countByTarget().get(RecalcTarget.FLOW_RATINGS), "failed events are kept");
+        assertEquals(0, retrying.process(), "failed events are not retried immediately");
+
+        List<RecalcEvent> retryable = recalcEventDao.findClaimable(nowUtc().plusMinutes(2), 100);
+        assertEquals(1, retryable.size());
+        assertEquals(1, retryable.get(0).attempts());
+
+        RecalcQueueService giveUp = mkService(failingRecalculator, 1);
+        recalcEventDao.deleteByIds(map(retryable, e -> e.id().get()));
+        giveUp.record(RecalcTarget.FLOW_RATINGS, asList(mkRef(EntityKind.ORG_UNIT, ouIds.a)));
+
+        assertEquals(1, giveUp.process());
+        assertFalse(giveUp.countByTarget().containsKey(RecalcTarget.FLOW_RATINGS), "events are abandoned after the last attempt");
+        assertEquals(1, giveUp.getAbandonedCount());
+    }
+
+
+    // -- HELPERS ---
+
+    private RecalcQueueService mkService() {
+        return mkService(flowRatingRecalculator, 5);
+    }
+
+
+    private RecalcQueueService mkService(FlowRatingRecalculator recalculator, int maxAttempts) {
+        return new RecalcQueueService(
+                recalcEventDao,
+                dataTypeUsageService,
+                recalculator,
+                entityHierarchyService,
+                entityHierarchyDao,
+                applicationDao,
+                true,
+                10,
+                maxAttempts);
+    }
+
+
+    private Set<Long> findAncestors(Long id) {
+        return entityHierarchyDao
+                .findByKind(EntityKind.ORG_UNIT, DSL.trueCondition())
+                .stream()
+                .filter(item -> item.id().orElse(null).equals(id))
+                .map(item -> item.parentId().orElse(null))
+                .collect(toSet());
+    }
+
+
+    private void deleteUsages(EntityReference... refs) {
+        for (EntityReference ref : refs) {
+            dsl.deleteFrom(DATA_TYPE_USAGE)
+                    .where(DATA_TYPE_USAGE.ENTITY_KIND.eq(ref.kind().name()))
+                    .and(DATA_TYPE_USAGE.ENTITY_ID.eq(ref.id()))
+                    .execute();
+        }
+    }
+
+}
@@ -4,8 +4,13 @@ import org.finos.waltz.common.exception.InsufficientPrivelegeException;
 import org.finos.waltz.common.exception.NotFoundException;
 import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
 import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.HierarchyQueryScope;
+import org.finos.waltz.model.IdSelectionOptions;
+import org.finos.waltz.model.Operation;
+import org.finos.waltz.model.changelog.ImmutableChangeLog;
 import org.finos.waltz.model.person.Person;
 import org.finos.waltz.model.report_grid.*;
+import org.finos.waltz.service.changelog.ChangeLogService;
 import org.finos.waltz.service.report_grid.ReportGridMemberService;
 import org.finos.waltz.service.report_grid.ReportGridService;
 import org.finos.waltz.test_common.helpers.InvolvementHelper;
@@ -22,6 +27,8 @@ import java.util.Set;
 import static org.finos.waltz.common.CollectionUtilities.find;
 import static org.finos.waltz.common.CollectionUtilities.maybeFirst;
 import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.model.IdSelectionOptions.mkOpts;
 import static org.finos.waltz.schema.Tables.REPORT_GRID_COLUMN_DEFINITION;
 import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
 import static org.junit.jupiter.api.Assertions.*;
@@ -39,6 +46,9 @@ public class ReportGridServiceTest extends BaseInMemoryIntegrationTest {
     @Autowired
     private ReportGridMemberService reportGridMemberService;
 
+    @Autowired
+    private ChangeLogService changeLogService;
+
     @Autowired
     private InvolvementHelper involvementHelper;
 
@@ -112,8 +122,65 @@ public class ReportGridServiceTest extends BaseInMemoryIntegrationTest {
     }
 
 
+    @Test
+    public void gridInstanceReportsCellFetchTimingsPerColumnKind() throws InsufficientPrivelegeException {
+        ReportGridDefinition grid = mkGrid();
+
+        ReportGrid result = reportGridService
+                .getByIdAndSelectionOptions(
+                        grid.id().get(),
+                        mkOpts(mkRef(EntityKind.ALL, 1L), HierarchyQueryScope.EXACT),
+                        mkName("viewer"))
+                .orElseThrow(() -> new AssertionError("Expected grid to be found"));
+
+        ReportGridInstanceMetadata metadata = result
+                .instance()
+                .metadata()
+                .orElseThrow(() -> new AssertionError("Expected instance metadata"));
+
+        assertEquals(asSet("INVOLVEMENT_KIND"), metadata.cellFetchTimings().keySet());
+    }
+
+
+    @Test
+    public void gridInstancesAreCachedUntilTheChangeLogAdvances() throws InsufficientPrivelegeException {
+        ReportGridDefinition grid = mkGrid();
+        long gridId = grid.id().get();
+        IdSelectionOptions opts = mkOpts(mkRef(EntityKind.ALL, 1L), HierarchyQueryScope.EXACT);
+
+        assertFalse(isCacheHit(gridId, opts), "first request should compute the instance");
+        assertTrue(isCacheHit(gridId, opts), "repeat request should be served from the cache");
+        assertTrue(
+                isCacheHit(gridId, mkOpts(mkRef(EntityKind.ALL, 1L, "a name does not matter"), HierarchyQueryScope.EXACT)),
+                "selection options should be normalised");
+
+        changeLogService.write(ImmutableChangeLog
+                .builder()
+                .parentReference(mkRef(EntityKind.REPORT_GRID, gridId))
+                .message("test change")
+                .userId(mkName("changer"))
+                .operation(Operation.UPDATE)
+                .build());
+
+        assertFalse(isCacheHit(gridId, opts), "a new change log entry should invalidate cached instances");
+        assertTrue(isCacheHit(gridId, opts));
+
+        reportGridService.evictAllCachedInstances();
+        assertFalse(isCacheHit(gridId, opts), "purging the cache should force a recompute");
+    }
+
+
     // -- HELPERS --------------
 
+    private boolean isCacheHit(long gridId, IdSelectionOptions opts) {
+        return reportGridService
+                .getByIdAndSelectionOptions(gridId, opts, mkName("viewer"))
+                .flatMap(g -> g.instance().metadata())
+                .map(ReportGridInstanceMetadata::cacheHit)
+                .orElseThrow(() -> new AssertionError("Expected grid instance metadata"));
+    }
+
+
     private ReportGridDefinition mkGrid() throws InsufficientPrivelegeException {
         ReportGridCreateCommand cmd = ImmutableReportGridCreateCommand.builder()
                 .name(mkName("testReport"))
@@ -14,6 +14,7 @@ import org.finos.waltz.model.survey.*;
 import org.finos.waltz.service.survey.SurveyInstanceService;
 import org.finos.waltz.service.survey.SurveyRunService;
 import org.finos.waltz.test_common.helpers.*;
+import org.jooq.DSLContext;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -27,7 +28,11 @@ import static org.finos.waltz.common.CollectionUtilities.find;
 import static org.finos.waltz.common.DateTimeUtilities.nowUtcTimestamp;
 import static org.finos.waltz.common.DateTimeUtilities.toLocalDate;
 import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.common.SetUtilities.fromCollection;
 import static org.finos.waltz.common.SetUtilities.map;
+import static org.finos.waltz.schema.Tables.SURVEY_INSTANCE;
+import static org.finos.waltz.schema.Tables.SURVEY_INSTANCE_OWNER;
+import static org.finos.waltz.schema.Tables.SURVEY_INSTANCE_RECIPIENT;
 import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -56,6 +61,9 @@ public class SurveyRunServiceTest extends BaseInMemoryIntegrationTest {
     @Autowired
     private InvolvementHelper involvementHelper;
 
+    @Autowired
+    private DSLContext dsl;
+
     @Test
     public void surveysAreIssuedToRecipientsViaInvolvementKind() throws InsufficientPrivelegeException {
         String stem = "srt_surveysAreIssuedToRecipientsViaInvolvementKind";
@@ -142,6 +150,81 @@ public class SurveyRunServiceTest extends BaseInMemoryIntegrationTest {
     }
 
 
+    @Test
+    public void individualIssuanceCreatesAnInstancePerRecipientAndCanBeRerun() throws InsufficientPrivelegeException {
+        String stem = "srt_individualIssuanceCanBeRerun";
+
+        String admin = mkName(stem, "admin");
+        Long adminId = personHelper.createPerson(admin);
+        String u1 = mkName(stem, "user1");
+        Long u1Id = personHelper.createPerson(u1);
+        String u2 = mkName(stem, "user2");
+        Long u2Id = personHelper.createPerson(u2);
+        String owner = mkName(stem, "owner");
+        Long ownerId = personHelper.createPerson(owner);
+
+        EntityReference appA = appHelper.createNewApp(mkName(stem, "appA"), ouIds.a);
+
+        long recipientKind = involvementHelper.mkInvolvementKind(mkName(stem, "recipientKind"));
+        long ownerKind = involvementHelper.mkInvolvementKind(mkName(stem, "ownerKind"));
+        involvementHelper.createInvolvement(u1Id, recipientKind, appA);
+        involvementHelper.createInvolvement(u2Id, recipientKind, appA);
+        involvementHelper.createInvolvement(ownerId, ownerKind, appA);
+
+        long tId = templateHelper.createTemplate(admin, mkName(stem, "template"));
+        templateHelper.updateStatus(admin, tId, ReleaseLifecycleStatus.ACTIVE);
+
+        SurveyRunCreateCommand cmd = ImmutableSurveyRunCreateCommand.builder()
+                .issuanceKind(SurveyIssuanceKind.INDIVIDUAL)
+                .name("test")
+                .description("run desc")
+                .selectionOptions(IdSelectionOptions.mkOpts(appA))
+                .surveyTemplateId(tId)
+                .addInvolvementKindIds(recipientKind)
+                .addOwnerInvKindIds(ownerKind)
+                .dueDate(DateTimeUtilities.today().plusMonths(1))
+                .approvalDueDate(DateTimeUtilities.today().plusMonths(1))
+                .contactEmail("someone@somewhere.com")
+                .build();
+
+        Long surveyRunId = runService
+                .createSurveyRun(admin, cmd)
+                .id()
+                .orElseThrow(() -> new AssertionFailedError("Failed to create run"));
+
+        ImmutableInstancesAndRecipientsCreateCommand createCmd = ImmutableInstancesAndRecipientsCreateCommand.builder()
+                .surveyRunId(surveyRunId)
+                .dueDate(toLocalDate(nowUtcTimestamp()))
+                .approvalDueDate(toLocalDate(nowUtcTimestamp()))
+                .excludedRecipients(emptySet())
+                .build();
+
+        runService.createSurveyInstancesAndRecipients(createCmd);
+        runService.createSurveyInstancesAndRecipients(createCmd);
+
+        Set<SurveyInstance> instances = instanceService.findForSurveyRun(surveyRunId);
+        assertEquals(2, instances.size(), "one instance per recipient, even after re-issuing");
+        assertEquals(1, instanceService.findForRecipient(u1Id).size());
+        assertEquals(1, instanceService.findForRecipient(u2Id).size());
+
+        Set<Long> instanceIds = map(instances, d -> d.id().get());
+        assertEquals(
+                asSet(adminId, ownerId),
+                fromCollection(dsl
+                        .selectDistinct(SURVEY_INSTANCE_OWNER.PERSON_ID)
+                        .from(SURVEY_INSTANCE_OWNER)
+                        .where(SURVEY_INSTANCE_OWNER.SURVEY_INSTANCE_ID.in(instanceIds))
+                        .fetch(SURVEY_INSTANCE_OWNER.PERSON_ID)),
+                "run owner and involved owners should own each instance");
+        assertEquals(4, dsl.fetchCount(SURVEY_INSTANCE_OWNER, SURVEY_INSTANCE_OWNER.SURVEY_INSTANCE_ID.in(instanceIds)));
+        assertEquals(0, dsl.fetchCount(
+                SURVEY_INSTANCE_OWNER,
+                SURVEY_INSTANCE_OWNER.SURVEY_INSTANCE_ID.notIn(dsl.select(SURVEY_INSTANCE.ID).from(SURVEY_INSTANCE))),
+                "re-issuing should not leave orphaned owners behind");
+        assertEquals(2, dsl.fetchCount(SURVEY_INSTANCE_RECIPIENT, SURVEY_INSTANCE_RECIPIENT.SURVEY_INSTANCE_ID.in(instanceIds)));
+    }
+
+
     private Set<String> recipsToUserIds(List<Person> aRecips) {
         return map(aRecips, Person::userId);
     }
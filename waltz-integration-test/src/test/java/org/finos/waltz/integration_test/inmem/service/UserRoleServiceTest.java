@@ -1,6 +1,7 @@
 package org.finos.waltz.integration_test.inmem.service;
 
 import org.finos.waltz.integration_test.inmem.BaseInMemoryIntegrationTest;
+import org.finos.waltz.model.bulk_upload.BulkUploadMode;
 import org.finos.waltz.model.user.ImmutableUpdateRolesCommand;
 import org.finos.waltz.model.user.User;
 import org.finos.waltz.service.user.UserRoleService;
@@ -8,8 +9,10 @@ import org.finos.waltz.test_common.helpers.UserHelper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import static org.finos.waltz.common.ListUtilities.asList;
 import static org.finos.waltz.common.SetUtilities.asSet;
 import static org.finos.waltz.test_common.helpers.NameHelper.mkName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -98,5 +101,28 @@ public class UserRoleServiceTest extends BaseInMemoryIntegrationTest {
     }
 
 
+    @Test
+    public void cachedRolesAreEvictedByBulkUpload() {
+        String userName = mkName("cachedRolesAreEvictedByBulkUpload_User");
+        String roleName = mkName("cachedRolesAreEvictedByBulkUpload_Role");
+        helper.createUser(userName);
+        helper.createRole(roleName);
+
+        assertFalse(svc.hasRole(userName, asSet(roleName)));
+
+        long hitsBefore = svc.getRoleCache().getHitCount();
+        assertFalse(svc.hasRole(userName, asSet(roleName)));
+        assertEquals(hitsBefore + 1, svc.getRoleCache().getHitCount(), "Expected second lookup to be served from cache");
+
+        svc.bulkUpload(
+                BulkUploadMode.ADD_ONLY,
+                asList(userName + "," + roleName),
+                "admin");
+
+        assertTrue(svc.hasRole(userName, asSet(roleName)), "Expected bulk upload to evict stale cached roles");
+    }
+
+
+
 
 }
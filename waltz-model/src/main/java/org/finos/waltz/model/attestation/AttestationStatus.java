@@ -24,6 +24,7 @@ public enum AttestationStatus {
     PENDING,
     ISSUING,
     ISSUED,
+    ISSUE_FAILED,
     INVALID
 
 }
@@ -0,0 +1,61 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.model.email;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.finos.waltz.model.IdProvider;
+import org.immutables.value.Value;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+
+
+/**
+ * An email held in the outbox until it has been sent (or given up on).
+ * Recipients are sent the email as bcc.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableOutboxEmail.class)
+@JsonDeserialize(as = ImmutableOutboxEmail.class)
+public abstract class OutboxEmail implements IdProvider {
+
+    public abstract String subject();
+    public abstract String body();
+    public abstract List<String> recipients();
+
+    @Value.Default
+    public EmailStatus status() {
+        return EmailStatus.PENDING;
+    }
+
+    @Value.Default
+    public int attempts() {
+        return 0;
+    }
+
+    public abstract Optional<String> lastError();
+
+    @Value.Default
+    public LocalDateTime createdAt() {
+        return LocalDateTime.now(ZoneId.of("UTC"));
+    }
+}
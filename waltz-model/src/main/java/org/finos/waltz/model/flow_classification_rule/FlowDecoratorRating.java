@@ -0,0 +1,54 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+package org.finos.waltz.model.flow_classification_rule;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.rating.AuthoritativenessRatingValue;
+import org.immutables.value.Value;
+
+import java.util.Optional;
+
+/**
+ * The current rating of a single data type decorator on a logical flow, along with the
+ * details of the flow needed to (re)calculate it.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableFlowDecoratorRating.class)
+@JsonDeserialize(as = ImmutableFlowDecoratorRating.class)
+public abstract class FlowDecoratorRating {
+
+    public abstract long decoratorId();
+
+    public abstract long dataTypeId();
+
+    public abstract EntityReference source();
+
+    public abstract EntityReference target();
+
+    /**
+     * Only present when the target is an application
+     */
+    public abstract Optional<Long> targetOrgUnitId();
+
+    public abstract AuthoritativenessRatingValue rating();
+
+    public abstract Optional<Long> flowClassificationRuleId();
+
+}
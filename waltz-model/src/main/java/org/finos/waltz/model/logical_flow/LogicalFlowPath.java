@@ -0,0 +1,47 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.model.logical_flow;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.Nullable;
+import org.immutables.value.Value;
+
+import java.util.List;
+
+
+/**
+ * The shortest chain of logical flows from a source to a target entity, the
+ * edges are given in order starting at the source.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableLogicalFlowPath.class)
+@JsonDeserialize(as = ImmutableLogicalFlowPath.class)
+public abstract class LogicalFlowPath {
+
+    public abstract EntityReference source();
+    public abstract EntityReference target();
+
+    @Nullable
+    public abstract Long dataTypeId();
+
+    public abstract List<LogicalFlowLineageEdge> edges();
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.model.recalc;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.IdProvider;
+import org.immutables.value.Value;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+
+/**
+ * Records that an entity has been changed in a way which affects some derived data.
+ * Events are queued and processed (then removed) by a background worker, events
+ * whose recalculation fails are retried a limited number of times.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableRecalcEvent.class)
+@JsonDeserialize(as = ImmutableRecalcEvent.class)
+public abstract class RecalcEvent implements IdProvider {
+
+    public abstract RecalcTarget target();
+    public abstract EntityReference entityReference();
+
+    @Value.Default
+    public LocalDateTime createdAt() {
+        return LocalDateTime.now(ZoneId.of("UTC"));
+    }
+
+    /** number of times the event has been claimed for processing */
+    @Value.Default
+    public int attempts() {
+        return 0;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.model.recalc;
+
+/**
+ * The derived data which a {@link RecalcEvent} asks to be recalculated.
+ */
+public enum RecalcTarget {
+
+    /** usages of applications and actors, events reference the (source and target) entities of changed flows */
+    DATA_TYPE_USAGE,
+
+    /** ratings of flow decorators, events reference org units or applications (whose org unit is used) */
+    FLOW_RATINGS,
+
+    /** entity hierarchies, events reference measurable categories or any other hierarchical kind */
+    ENTITY_HIERARCHY
+}
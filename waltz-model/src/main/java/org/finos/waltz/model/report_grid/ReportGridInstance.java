@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import org.finos.waltz.model.rating.RatingSchemeItem;
 import org.immutables.value.Value;
 
+import java.util.Optional;
 import java.util.Set;
 
 @Value.Immutable
@@ -16,4 +17,6 @@ public abstract class ReportGridInstance {
     public abstract Set<RatingSchemeItem> ratingSchemeItems();  // color scheme
 
     public abstract Set<ReportGridCell> cellData();  // raw cell data
+
+    public abstract Optional<ReportGridInstanceMetadata> metadata();  // diagnostics, e.g. fetch timings
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package org.finos.waltz.model.report_grid;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Diagnostic information about how a grid instance was produced.
+ * Intended to help grid authors see which column types are expensive.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableReportGridInstanceMetadata.class)
+@JsonDeserialize(as = ImmutableReportGridInstanceMetadata.class)
+public abstract class ReportGridInstanceMetadata {
+
+    /**
+     * @return time taken (millis) to fetch the cell data for each kind of column, keyed by column kind
+     */
+    public abstract Map<String, Long> cellFetchTimings();
+
+
+    /**
+     * @return true if the instance was served from the report grid instance cache rather than being recomputed
+     */
+    @Value.Default
+    public boolean cacheHit() {
+        return false;
+    }
+
+
+    /**
+     * @return the data version (see change log) the instance was computed against, if known
+     */
+    public abstract Optional<Long> dataVersion();
+
+}
@@ -25,6 +25,7 @@ public enum JobKey {
     HIERARCHY_REBUILD_MEASURABLE,
     HIERARCHY_REBUILD_ORG_UNIT,
     HIERARCHY_REBUILD_PERSON,
+    HIERARCHY_RECONCILE,
 
     DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL,
     DATA_TYPE_USAGE_RECALC_APPLICATION,
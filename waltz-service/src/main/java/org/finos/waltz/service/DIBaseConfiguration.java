@@ -21,8 +21,8 @@ package org.finos.waltz.service;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import org.finos.waltz.common.QueryAccounting;
 import org.finos.waltz.data.DBExecutorPool;
-import org.finos.waltz.data.DBExecutorPoolInterface;
 import org.jooq.DSLContext;
 import org.jooq.SQLDialect;
 import org.jooq.conf.Settings;
@@ -68,12 +68,30 @@ public class DIBaseConfiguration {
     @Value("${database.pool.min:2}")
     private int dbPoolMin;
 
+    @Value("${database.executor.mode:POOLED}")
+    private DBExecutorPool.Mode dbExecutorMode;
+
+    @Value("${database.executor.concurrency:0}")
+    private int dbExecutorConcurrency;
+
+    @Value("${database.executor.queue.size:200}")
+    private int dbExecutorQueueSize;
+
+    @Value("${database.executor.rejection.policy:CALLER_RUNS}")
+    private DBExecutorPool.RejectionPolicy dbExecutorRejectionPolicy;
+
+    @Value("${database.executor.task.timeout.ms:0}")
+    private long dbExecutorTaskTimeoutMillis;
+
     @Value("${jooq.dialect}")
     private String dialect;
 
     @Value("${database.performance.query.slow.threshold:10}")
     private int databasePerformanceQuerySlowThreshold;
 
+    @Value("${database.performance.query.budget:200}")
+    private int databasePerformanceQueryBudget;
+
     @Bean
     public DataSource dataSource() {
 
@@ -89,8 +107,23 @@ public class DIBaseConfiguration {
 
 
     @Bean
-    public DBExecutorPoolInterface dbExecutorPool() {
-        return new DBExecutorPool(dbPoolMin, dbPoolMax);
+    public DBExecutorPool dbExecutorPool() {
+        int concurrency = dbExecutorConcurrency > 0
+                ? dbExecutorConcurrency
+                : DBExecutorPool.defaultConcurrency(dbPoolMin, dbPoolMax);
+
+        return new DBExecutorPool(
+                dbExecutorMode,
+                concurrency,
+                dbExecutorQueueSize,
+                dbExecutorRejectionPolicy,
+                dbExecutorTaskTimeoutMillis);
+    }
+
+
+    @Bean
+    public QueryAccounting queryAccounting() {
+        return new QueryAccounting(databasePerformanceQueryBudget);
     }
 
 
@@ -121,6 +154,7 @@ public class DIBaseConfiguration {
                 .set(
                     //new SlowDatabaseConnectionSimulator(2000),
                     new SlowQueryListener(databasePerformanceQuerySlowThreshold),
+                    new QueryAccountingListener(),
                     new SpringExceptionTranslationExecuteListener(new SQLStateSQLExceptionTranslator()));
 
         return DSL.using(configuration);
@@ -18,13 +18,38 @@
 
 package org.finos.waltz.service;
 
+import org.finos.waltz.service.aggregate_overlay_diagram.AggregateOverlayDiagramService;
 import org.finos.waltz.service.email.DummyJavaMailSender;
+import org.finos.waltz.service.email.EmailOutboxService;
+import org.finos.waltz.service.entity_search.EntitySearchIndexService;
+import org.finos.waltz.service.access_log.AccessLogService;
+import org.finos.waltz.service.changelog.ChangeLogService;
+import org.finos.waltz.service.jmx.BatchingWriterMonitor;
+import org.finos.waltz.service.jmx.DBExecutorPoolMonitor;
+import org.finos.waltz.service.jmx.DataTypeUsageRecalculationMonitor;
+import org.finos.waltz.service.jmx.EmailOutboxMonitor;
+import org.finos.waltz.service.jmx.EntitySearchIndexMaintenance;
+import org.finos.waltz.service.jmx.IdSelectorMaterialiserMaintenance;
 import org.finos.waltz.service.jmx.PersonMaintenance;
+import org.finos.waltz.service.jmx.OverlayDiagramCacheMaintenance;
+import org.finos.waltz.service.jmx.QueryAccountingMonitor;
+import org.finos.waltz.service.jmx.RecalcQueueMonitor;
+import org.finos.waltz.service.jmx.ReportGridCacheMaintenance;
+import org.finos.waltz.service.jmx.UserRoleCacheMaintenance;
 import org.finos.waltz.service.person_hierarchy.PersonHierarchyService;
+import org.finos.waltz.service.recalc.RecalcQueueService;
+import org.finos.waltz.service.report_grid.ReportGridService;
+import org.finos.waltz.service.usage_info.DataTypeUsageService;
+import org.finos.waltz.service.user.UserRoleService;
+import org.finos.waltz.service.user_agent_info.UserAgentInfoService;
+import org.finos.waltz.common.QueryAccounting;
+import org.finos.waltz.data.DBExecutorPool;
+import org.finos.waltz.data.IdSelectorMaterialiser;
 import org.finos.waltz.model.ImmutableWaltzVersionInfo;
 import org.finos.waltz.model.WaltzVersionInfo;
 import org.finos.waltz.model.settings.ImmutableSetting;
 import org.finos.waltz.model.settings.Setting;
+import org.jooq.DSLContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.*;
@@ -40,6 +65,7 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 
 import java.util.Collection;
+import java.util.Properties;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -60,6 +86,17 @@ public class DIConfiguration implements SchedulingConfigurer {
     @Value("${smtpPort:25}")
     private int smtpPort;
 
+    @Value("${waltz.email.connect.timeout.ms:10000}")
+    private long smtpConnectTimeoutMillis;
+
+    @Value("${waltz.email.read.timeout.ms:30000}")
+    private long smtpReadTimeoutMillis;
+
+    // -- SCHEDULING ---
+
+    @Value("${waltz.scheduler.pool.size:4}")
+    private int schedulerPoolSize;
+
     // -- BUILD ---
 
     @Value("${build.pom:dev}")
@@ -74,6 +111,17 @@ public class DIConfiguration implements SchedulingConfigurer {
     @Value("${settings.override:#{null}}")
     private String settingsOverrideStr;
 
+    // -- SELECTORS ---
+
+    @Value("${waltz.selector.materialise.ttl.ms:0}")
+    private long selectorMaterialiseTtlMillis;
+
+    @Value("${waltz.selector.materialise.max.ids:2000}")
+    private int selectorMaterialiseMaxIds;
+
+    @Value("${waltz.selector.materialise.max.size:500}")
+    private int selectorMaterialiseMaxSize;
+
     @Bean
     public WaltzVersionInfo waltzBuildInfo() {
         return ImmutableWaltzVersionInfo.builder()
@@ -119,6 +167,110 @@ public class DIConfiguration implements SchedulingConfigurer {
     }
 
 
+    @Bean
+    @Autowired
+    public UserRoleCacheMaintenance userRoleCacheMaintenance(UserRoleService userRoleService) {
+        return new UserRoleCacheMaintenance(userRoleService);
+    }
+
+
+    @Bean
+    @Autowired
+    public ReportGridCacheMaintenance reportGridCacheMaintenance(ReportGridService reportGridService) {
+        return new ReportGridCacheMaintenance(reportGridService);
+    }
+
+
+    @Bean
+    @Autowired
+    public OverlayDiagramCacheMaintenance overlayDiagramCacheMaintenance(AggregateOverlayDiagramService aggregateOverlayDiagramService) {
+        return new OverlayDiagramCacheMaintenance(aggregateOverlayDiagramService);
+    }
+
+
+    @Bean
+    @Autowired
+    public EntitySearchIndexMaintenance entitySearchIndexMaintenance(EntitySearchIndexService entitySearchIndexService) {
+        return new EntitySearchIndexMaintenance(entitySearchIndexService);
+    }
+
+
+    @Bean
+    @Autowired
+    public IdSelectorMaterialiser idSelectorMaterialiser(DSLContext dsl) {
+        IdSelectorMaterialiser materialiser = new IdSelectorMaterialiser(
+                dsl,
+                selectorMaterialiseTtlMillis,
+                selectorMaterialiseMaxIds,
+                selectorMaterialiseMaxSize);
+        IdSelectorMaterialiser.install(materialiser);
+        return materialiser;
+    }
+
+
+    @Bean
+    @Autowired
+    public IdSelectorMaterialiserMaintenance idSelectorMaterialiserMaintenance(IdSelectorMaterialiser idSelectorMaterialiser) {
+        return new IdSelectorMaterialiserMaintenance(idSelectorMaterialiser);
+    }
+
+
+    @Bean
+    @Autowired
+    public DBExecutorPoolMonitor dbExecutorPoolMonitor(DBExecutorPool dbExecutorPool) {
+        return new DBExecutorPoolMonitor(dbExecutorPool);
+    }
+
+
+    @Bean
+    @Autowired
+    public BatchingWriterMonitor accessLogWriterMonitor(AccessLogService accessLogService) {
+        return new BatchingWriterMonitor(accessLogService.getWriter());
+    }
+
+
+    @Bean
+    @Autowired
+    public BatchingWriterMonitor userAgentInfoWriterMonitor(UserAgentInfoService userAgentInfoService) {
+        return new BatchingWriterMonitor(userAgentInfoService.getWriter());
+    }
+
+
+    @Bean
+    @Autowired
+    public BatchingWriterMonitor changeLogWriterMonitor(ChangeLogService changeLogService) {
+        return new BatchingWriterMonitor(changeLogService.getAsyncWriter());
+    }
+
+
+    @Bean
+    @Autowired
+    public EmailOutboxMonitor emailOutboxMonitor(EmailOutboxService emailOutboxService) {
+        return new EmailOutboxMonitor(emailOutboxService);
+    }
+
+
+    @Bean
+    @Autowired
+    public DataTypeUsageRecalculationMonitor dataTypeUsageRecalculationMonitor(DataTypeUsageService dataTypeUsageService) {
+        return new DataTypeUsageRecalculationMonitor(dataTypeUsageService);
+    }
+
+
+    @Bean
+    @Autowired
+    public RecalcQueueMonitor recalcQueueMonitor(RecalcQueueService recalcQueueService) {
+        return new RecalcQueueMonitor(recalcQueueService);
+    }
+
+
+    @Bean
+    @Autowired
+    public QueryAccountingMonitor queryAccountingMonitor(QueryAccounting queryAccounting) {
+        return new QueryAccountingMonitor(queryAccounting);
+    }
+
+
     @Bean
     public JavaMailSender mailSender() {
         if (smtpHost == null) {
@@ -127,6 +279,13 @@ public class DIConfiguration implements SchedulingConfigurer {
             JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
             mailSender.setHost(smtpHost);
             mailSender.setPort(smtpPort);
+
+            // without these a stalled mail server holds the sending thread indefinitely
+            Properties mailProperties = new Properties();
+            mailProperties.setProperty("mail.smtp.connectiontimeout", String.valueOf(smtpConnectTimeoutMillis));
+            mailProperties.setProperty("mail.smtp.timeout", String.valueOf(smtpReadTimeoutMillis));
+            mailProperties.setProperty("mail.smtp.writetimeout", String.valueOf(smtpReadTimeoutMillis));
+            mailSender.setJavaMailProperties(mailProperties);
             return mailSender;
         }
     }
@@ -135,6 +294,8 @@ public class DIConfiguration implements SchedulingConfigurer {
     @Bean
     public TaskScheduler taskScheduler() {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, schedulerPoolSize));
+        scheduler.setThreadNamePrefix("waltz-scheduler-");
         scheduler.setDaemon(true);
         return scheduler;
     }
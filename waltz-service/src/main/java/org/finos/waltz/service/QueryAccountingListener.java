@@ -0,0 +1,67 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service;
+
+
+import org.finos.waltz.common.QueryAccounting;
+import org.jooq.ExecuteContext;
+import org.jooq.impl.DefaultExecuteListener;
+
+
+/**
+ * Reports every executed statement to {@link QueryAccounting}, statements issued
+ * outside of a tracked unit of work (e.g. by jobs) are ignored.
+ */
+public class QueryAccountingListener extends DefaultExecuteListener {
+
+    private static final String START_KEY = QueryAccountingListener.class.getName() + ".start";
+
+
+    @Override
+    public void executeStart(ExecuteContext ctx) {
+        super.executeStart(ctx);
+        if (QueryAccounting.current() != null) {
+            ctx.data(START_KEY, System.nanoTime());
+        }
+    }
+
+
+    @Override
+    public void executeEnd(ExecuteContext ctx) {
+        super.executeEnd(ctx);
+        Object start = ctx.data(START_KEY);
+        if (start != null) {
+            QueryAccounting.record(
+                    toSql(ctx),
+                    System.nanoTime() - (Long) start);
+        }
+    }
+
+
+    private static String toSql(ExecuteContext ctx) {
+        if (ctx.sql() != null) {
+            return ctx.sql();
+        }
+
+        String[] batchSql = ctx.batchSQL();
+        return batchSql.length > 0
+                ? batchSql[0]
+                : null;
+    }
+}
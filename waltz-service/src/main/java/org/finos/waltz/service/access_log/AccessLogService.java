@@ -18,10 +18,14 @@
 
 package org.finos.waltz.service.access_log;
 
+import org.finos.waltz.common.BatchingWriter;
+import org.finos.waltz.common.BatchingWriter.OverflowPolicy;
 import org.finos.waltz.data.access_log.AccessLogDao;
 import org.finos.waltz.model.accesslog.AccessLog;
 import org.finos.waltz.model.accesslog.AccessTime;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
@@ -34,20 +38,53 @@ import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.common.DateTimeUtilities.nowUtc;
 
 
+/**
+ * Access log entries are reported by the UI on every page view.  By default they
+ * are queued and batch inserted by a background writer rather than written on
+ * the request thread, see <code>waltz.usage.writer.*</code>.
+ */
 @Service
-public class AccessLogService {
+public class AccessLogService implements DisposableBean {
 
     private final AccessLogDao accessLogDao;
 
+    // null when writing synchronously
+    private final BatchingWriter<AccessLog> writer;
+
+
     @Autowired
-    public AccessLogService(AccessLogDao accessLogDao) {
+    public AccessLogService(AccessLogDao accessLogDao,
+                            @Value("${waltz.usage.writer.async:true}") boolean async,
+                            @Value("${waltz.usage.writer.capacity:10000}") int capacity,
+                            @Value("${waltz.usage.writer.batch.size:500}") int batchSize,
+                            @Value("${waltz.usage.writer.flush.ms:2000}") long flushIntervalMillis,
+                            @Value("${waltz.usage.writer.overflow.policy:DROP}") OverflowPolicy overflowPolicy) {
+        checkNotNull(accessLogDao, "accessLogDao must not be null");
         this.accessLogDao = accessLogDao;
+        this.writer = async
+                ? new BatchingWriter<>(
+                        "access-log",
+                        capacity,
+                        batchSize,
+                        flushIntervalMillis,
+                        overflowPolicy,
+                        flushIntervalMillis,
+                        accessLogDao::writeAll)
+                : null;
     }
 
 
+    /**
+     * @param logEntry entry to record
+     * @return 1 if the entry was written (or queued for writing), 0 if it was dropped
+     */
     public int write(AccessLog logEntry) {
         checkNotNull(logEntry, "logEntry must not be null");
-        return accessLogDao.write(logEntry);
+        if (writer == null) {
+            return accessLogDao.write(logEntry);
+        } else {
+            return writer.submit(logEntry) ? 1 : 0;
+        }
     }
 
 
@@ -63,4 +100,20 @@ public class AccessLogService {
         return accessLogDao.findActiveUsersSince(sinceTime);
     }
 
+
+    public Optional<BatchingWriter<AccessLog>> getWriter() {
+        return Optional.ofNullable(writer);
+    }
+
+
+    /**
+     * Writes any queued entries, called when the application context is closed.
+     */
+    @Override
+    public void destroy() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
 }
@@ -1,6 +1,7 @@
 package org.finos.waltz.service.aggregate_overlay_diagram;
 
 import org.finos.waltz.common.Checks;
+import org.finos.waltz.common.ExpiringCache;
 import org.finos.waltz.common.SetUtilities;
 import org.finos.waltz.data.GenericSelector;
 import org.finos.waltz.data.GenericSelectorFactory;
@@ -14,12 +15,14 @@ import org.finos.waltz.data.aggregate_overlay_diagram.AssessmentRatingWidgetDao;
 import org.finos.waltz.data.aggregate_overlay_diagram.AttestationWidgetDao;
 import org.finos.waltz.data.aggregate_overlay_diagram.BackingEntityWidgetDao;
 import org.finos.waltz.data.aggregate_overlay_diagram.ComplexityWidgetDao;
+import org.finos.waltz.data.aggregate_overlay_diagram.OverlayWidgetInput;
 import org.finos.waltz.data.aggregate_overlay_diagram.TargetAppCostWidgetDao;
 import org.finos.waltz.data.application.ApplicationDao;
 import org.finos.waltz.data.complexity.ComplexityKindDao;
 import org.finos.waltz.data.cost.CostKindDao;
 import org.finos.waltz.data.measurable.MeasurableDao;
 import org.finos.waltz.model.AssessmentBasedSelectionFilter;
+import org.finos.waltz.model.EntityKind;
 import org.finos.waltz.model.IdSelectionOptions;
 import org.finos.waltz.model.ReleaseLifecycleStatusChangeCommand;
 import org.finos.waltz.model.aggregate_overlay_diagram.AggregateOverlayDiagram;
@@ -70,20 +73,73 @@ import org.finos.waltz.model.measurable.Measurable;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.jooq.impl.DSL;
+import org.jooq.lambda.tuple.Tuple5;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.common.SetUtilities.hasIntersection;
+import static org.finos.waltz.common.SetUtilities.union;
+import static org.finos.waltz.data.aggregate_overlay_diagram.OverlayWidgetInput.CELL_RESOLUTION_INPUTS;
 import static org.finos.waltz.data.assessment_rating.AssessmentRatingBasedGenericSelectorFactory.applyFiltersToSelector;
 import static org.finos.waltz.schema.Tables.MEASURABLE;
-
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Widget data is cached, keyed by widget, diagram, selection options, assessment filters and
+ * widget parameters (i.e. everything a preset captures).  Within a request the resolution of
+ * each cell's backing entities to in-scope aggregated entities is shared between widgets via a
+ * second cache, as it is the common (and most expensive) first step of most widgets.
+ * <p>
+ * The tables the cached widgets are calculated from (ratings, costs, assessments etc.) are checked
+ * for changes every `waltz.overlay.widget.cache.refresh.ms`.  Cached widget data which depends on
+ * a changed table is recalculated straight away, so frequently viewed diagrams stay warm.
+ * <p>
+ * The cache is off unless `waltz.overlay.widget.cache.ttl.ms` is set, see {@link OverlayWidgetInput}
+ * for the changes the check can not see.
+ */
 @Service
 public class AggregateOverlayDiagramService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(AggregateOverlayDiagramService.class);
+
+    /**
+     * The widgets, along with the inputs their data is calculated from.
+     */
+    private enum OverlayWidget {
+        AGGREGATED_ENTITIES(CELL_RESOLUTION_INPUTS),
+        APP_CHANGE(CELL_RESOLUTION_INPUTS),
+        APP_COST(union(CELL_RESOLUTION_INPUTS, asSet(OverlayWidgetInput.ALLOCATION, OverlayWidgetInput.COST, OverlayWidgetInput.MEASURABLE))),
+        APP_COUNT(CELL_RESOLUTION_INPUTS),
+        ASSESSMENT(union(CELL_RESOLUTION_INPUTS, asSet(OverlayWidgetInput.ASSESSMENT_RATING))),
+        ATTESTATION(union(CELL_RESOLUTION_INPUTS, asSet(OverlayWidgetInput.ATTESTATION_INSTANCE))),
+        BACKING_ENTITY(asSet(OverlayWidgetInput.AGGREGATE_OVERLAY_DIAGRAM, OverlayWidgetInput.AGGREGATE_OVERLAY_DIAGRAM_CELL_DATA)),
+        COMPLEXITY(union(CELL_RESOLUTION_INPUTS, asSet(OverlayWidgetInput.COMPLEXITY))),
+        TARGET_APP_COST(union(CELL_RESOLUTION_INPUTS, asSet(OverlayWidgetInput.COST)));
+
+        private final Set<OverlayWidgetInput> inputs;
+
+        OverlayWidget(Set<OverlayWidgetInput> inputs) {
+            this.inputs = inputs;
+        }
+    }
+
 
     private final AggregateOverlayDiagramDao aggregateOverlayDiagramDao;
     private final AppCountWidgetDao appCountWidgetDao;
@@ -103,6 +159,17 @@ public class AggregateOverlayDiagramService {
 
     private final GenericSelectorFactory genericSelectorFactory = new GenericSelectorFactory();
 
+    // keyed by (widget, diagram id, selection options, assessment filters, widget parameters)
+    private final ExpiringCache<Tuple5<OverlayWidget, Long, IdSelectionOptions, Set<AssessmentBasedSelectionFilter>, Object>, CachedWidgetData> widgetDataCache;
+
+    // keyed by (diagram id, aggregated entity kind, selection options, assessment filters, target date)
+    private final ExpiringCache<Tuple5<Long, EntityKind, IdSelectionOptions, Set<AssessmentBasedSelectionFilter>, Optional<LocalDate>>, Map<String, Set<Long>>> aggregatedEntitiesCache;
+
+    // last seen version of each input used by the cached widget data
+    private final Map<OverlayWidgetInput, List<Object>> inputVersions = new ConcurrentHashMap<>();
+    private final AtomicLong recalculationCount = new AtomicLong();
+    private final AtomicLong lastRecalculationDuration = new AtomicLong();
+
     @Autowired
     public AggregateOverlayDiagramService(AggregateOverlayDiagramDao aggregateOverlayDiagramDao,
                                           AppCountWidgetDao appCountWidgetDao,
@@ -118,7 +185,9 @@ public class AggregateOverlayDiagramService {
                                           CostKindDao costKindDao,
                                           ComplexityKindDao complexityKindDao,
                                           ComplexityWidgetDao complexityWidgetDao,
-                                          AttestationWidgetDao attestationWidgetDao) {
+                                          AttestationWidgetDao attestationWidgetDao,
+                                          @Value("${waltz.overlay.widget.cache.max.size:200}") int widgetCacheMaxSize,
+                                          @Value("${waltz.overlay.widget.cache.ttl.ms:0}") long widgetCacheTtlMillis) {
 
         this.aggregateOverlayDiagramDao = aggregateOverlayDiagramDao;
         this.appCountWidgetDao = appCountWidgetDao;
@@ -135,6 +204,8 @@ public class AggregateOverlayDiagramService {
         this.complexityKindDao = complexityKindDao;
         this.complexityWidgetDao = complexityWidgetDao;
         this.attestationWidgetDao = attestationWidgetDao;
+        this.widgetDataCache = new ExpiringCache<>(widgetCacheMaxSize, widgetCacheTtlMillis);
+        this.aggregatedEntitiesCache = new ExpiringCache<>(widgetCacheMaxSize, widgetCacheTtlMillis);
     }
 
 
@@ -165,20 +236,32 @@ public class AggregateOverlayDiagramService {
                                                  Set<AssessmentBasedSelectionFilter> filterParams,
                                                  AppCountWidgetParameters appCountWidgetParameters) {
 
-        AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
-        GenericSelector genericSelector = genericSelectorFactory.applyForKind(diagram.aggregatedEntityKind(), appSelectionOptions);
-        Select<Record1<Long>> entityIdSelector = applyFiltersToSelector(genericSelector, filterParams);
-
-        Set<CountWidgetDatum> countData = appCountWidgetDao
-                .findWidgetData(
-                        diagramId,
-                        entityIdSelector,
-                        appCountWidgetParameters.targetDate());
-
-        return ImmutableCountWidgetData
-                .builder()
-                .cellData(countData)
-                .build();
+        return getWidgetData(
+                OverlayWidget.APP_COUNT,
+                diagramId,
+                appSelectionOptions,
+                filterParams,
+                appCountWidgetParameters,
+                () -> {
+                    AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
+                    Select<Record1<Long>> entityIdSelector = mkEntityIdSelector(diagram, appSelectionOptions, filterParams);
+
+                    Set<CountWidgetDatum> countData = appCountWidgetDao
+                            .findWidgetData(
+                                    findAggregatedEntitiesByCellExtId(
+                                            diagramId,
+                                            EntityKind.APPLICATION,
+                                            appSelectionOptions,
+                                            filterParams,
+                                            entityIdSelector,
+                                            Optional.empty()),
+                                    appCountWidgetParameters.targetDate());
+
+                    return ImmutableCountWidgetData
+                            .builder()
+                            .cellData(countData)
+                            .build();
+                });
     }
 
 
@@ -187,17 +270,31 @@ public class AggregateOverlayDiagramService {
                                                            Set<AssessmentBasedSelectionFilter> filterParams,
                                                            TargetAppCostWidgetParameters targetAppCostWidgetParameters) {
 
-        AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
-
-        GenericSelector genericSelector = genericSelectorFactory.applyForKind(diagram.aggregatedEntityKind(), appSelectionOptions);
-
-        Select<Record1<Long>> entityIdSelector = applyFiltersToSelector(genericSelector, filterParams);
-        Set<TargetCostWidgetDatum> targetCostData = targetAppCostWidgetDao.findWidgetData(diagramId, entityIdSelector, targetAppCostWidgetParameters.targetDate());
-
-        return ImmutableTargetCostWidgetData
-                .builder()
-                .cellData(targetCostData)
-                .build();
+        return getWidgetData(
+                OverlayWidget.TARGET_APP_COST,
+                diagramId,
+                appSelectionOptions,
+                filterParams,
+                targetAppCostWidgetParameters,
+                () -> {
+                    AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
+                    Select<Record1<Long>> entityIdSelector = mkEntityIdSelector(diagram, appSelectionOptions, filterParams);
+
+                    Set<TargetCostWidgetDatum> targetCostData = targetAppCostWidgetDao.findWidgetData(
+                            findAggregatedEntitiesByCellExtId(
+                                    diagramId,
+                                    EntityKind.APPLICATION,
+                                    appSelectionOptions,
+                                    filterParams,
+                                    entityIdSelector,
+                                    Optional.empty()),
+                            targetAppCostWidgetParameters.targetDate());
+
+                    return ImmutableTargetCostWidgetData
+                            .builder()
+                            .cellData(targetCostData)
+                            .build();
+                });
     }
 
     public AttestationWidgetData getAttestationWidgetData(long diagramId,
@@ -205,25 +302,36 @@ public class AggregateOverlayDiagramService {
                                                           IdSelectionOptions appSelectionOptions,
                                                           AttestationWidgetParameters widgetParams) {
 
-
-        AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
-
-        GenericSelector genericSelector = genericSelectorFactory.applyForKind(diagram.aggregatedEntityKind(), appSelectionOptions);
-        Select<Record1<Long>> entityIdSelector = applyFiltersToSelector(genericSelector, filterParams);
-
-        Set<AttestationWidgetDatum> attestations = attestationWidgetDao.findWidgetData(
+        return getWidgetData(
+                OverlayWidget.ATTESTATION,
                 diagramId,
-                widgetParams.attestedEntityKind(),
-                Optional.ofNullable(widgetParams.attestedEntityId()),
-                entityIdSelector);
-
-        List<Application> applications = applicationDao.findByAppIdSelector(entityIdSelector);
-
-        return ImmutableAttestationWidgetData
-                .builder()
-                .cellData(attestations)
-                .applications(applications)
-                .build();
+                appSelectionOptions,
+                filterParams,
+                widgetParams,
+                () -> {
+                    AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
+                    Select<Record1<Long>> entityIdSelector = mkEntityIdSelector(diagram, appSelectionOptions, filterParams);
+
+                    Set<AttestationWidgetDatum> attestations = attestationWidgetDao.findWidgetData(
+                            findAggregatedEntitiesByCellExtId(
+                                    diagramId,
+                                    EntityKind.APPLICATION,
+                                    appSelectionOptions,
+                                    filterParams,
+                                    entityIdSelector,
+                                    Optional.empty()),
+                            widgetParams.attestedEntityKind(),
+                            Optional.ofNullable(widgetParams.attestedEntityId()),
+                            entityIdSelector);
+
+                    List<Application> applications = applicationDao.findByAppIdSelector(entityIdSelector);
+
+                    return ImmutableAttestationWidgetData
+                            .builder()
+                            .cellData(attestations)
+                            .applications(applications)
+                            .build();
+                });
     }
 
     public CostWidgetData getAppCostWidgetData(Long diagramId,
@@ -231,10 +339,23 @@ public class AggregateOverlayDiagramService {
                                                IdSelectionOptions appSelectionOptions,
                                                AppCostWidgetParameters appCostWidgetParameters) {
 
-        AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
+        return getWidgetData(
+                OverlayWidget.APP_COST,
+                diagramId,
+                appSelectionOptions,
+                filterParams,
+                appCostWidgetParameters,
+                () -> calculateAppCostWidgetData(diagramId, filterParams, appSelectionOptions, appCostWidgetParameters));
+    }
 
-        GenericSelector genericSelector = genericSelectorFactory.applyForKind(diagram.aggregatedEntityKind(), appSelectionOptions);
-        Select<Record1<Long>> entityIdSelector = applyFiltersToSelector(genericSelector, filterParams);
+
+    private CostWidgetData calculateAppCostWidgetData(Long diagramId,
+                                                      Set<AssessmentBasedSelectionFilter> filterParams,
+                                                      IdSelectionOptions appSelectionOptions,
+                                                      AppCostWidgetParameters appCostWidgetParameters) {
+
+        AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
+        Select<Record1<Long>> entityIdSelector = mkEntityIdSelector(diagram, appSelectionOptions, filterParams);
 
         Set<CostWidgetDatum> costData = appCostWidgetDao.findWidgetData(
                 diagramId,
@@ -274,19 +395,29 @@ public class AggregateOverlayDiagramService {
                                                                   IdSelectionOptions appSelectionOptions,
                                                                   AssessmentWidgetParameters assessmentWidgetParameters) {
 
-        AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
-
-        GenericSelector genericSelector = genericSelectorFactory.applyForKind(diagram.aggregatedEntityKind(), appSelectionOptions);
-        Select<Record1<Long>> entityIdSelector = applyFiltersToSelector(genericSelector, filterParams);
-
-        return ImmutableAssessmentRatingsWidgetData.builder()
-                .cellData(appAssessmentWidgetDao.findWidgetData(
-                        diagramId,
-                        diagram.aggregatedEntityKind(),
-                        assessmentWidgetParameters.assessmentDefinitionId(),
-                        entityIdSelector,
-                        assessmentWidgetParameters.targetDate()))
-               .build();
+        return getWidgetData(
+                OverlayWidget.ASSESSMENT,
+                diagramId,
+                appSelectionOptions,
+                filterParams,
+                assessmentWidgetParameters,
+                () -> {
+                    AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
+                    Select<Record1<Long>> entityIdSelector = mkEntityIdSelector(diagram, appSelectionOptions, filterParams);
+
+                    return ImmutableAssessmentRatingsWidgetData.builder()
+                            .cellData(appAssessmentWidgetDao.findWidgetData(
+                                    findAggregatedEntitiesByCellExtId(
+                                            diagramId,
+                                            diagram.aggregatedEntityKind(),
+                                            appSelectionOptions,
+                                            filterParams,
+                                            entityIdSelector,
+                                            assessmentWidgetParameters.targetDate()),
+                                    diagram.aggregatedEntityKind(),
+                                    assessmentWidgetParameters.assessmentDefinitionId()))
+                            .build();
+                });
     }
 
 
@@ -294,28 +425,45 @@ public class AggregateOverlayDiagramService {
                                                                         Set<AssessmentBasedSelectionFilter> filterParams,
                                                                         IdSelectionOptions idSelectionOptions) {
 
-        AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
-
-        GenericSelector genericSelector = genericSelectorFactory.applyForKind(diagram.aggregatedEntityKind(), idSelectionOptions);
-        Select<Record1<Long>> entityIdSelector = applyFiltersToSelector(genericSelector, filterParams);
-
-        Set<AggregatedEntitiesWidgetDatum> data = aggregatedEntitiesWidgetDao.findWidgetData(
+        return getWidgetData(
+                OverlayWidget.AGGREGATED_ENTITIES,
                 diagramId,
-                diagram.aggregatedEntityKind(),
-                entityIdSelector,
-                Optional.empty());
-
-        return ImmutableAggregatedEntitiesWidgetData.builder()
-                .cellData(data)
-                .build();
+                idSelectionOptions,
+                filterParams,
+                null,
+                () -> {
+                    AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
+                    Select<Record1<Long>> entityIdSelector = mkEntityIdSelector(diagram, idSelectionOptions, filterParams);
+
+                    Set<AggregatedEntitiesWidgetDatum> data = aggregatedEntitiesWidgetDao.findWidgetData(
+                            findAggregatedEntitiesByCellExtId(
+                                    diagramId,
+                                    diagram.aggregatedEntityKind(),
+                                    idSelectionOptions,
+                                    filterParams,
+                                    entityIdSelector,
+                                    Optional.empty()),
+                            diagram.aggregatedEntityKind(),
+                            entityIdSelector);
+
+                    return ImmutableAggregatedEntitiesWidgetData.builder()
+                            .cellData(data)
+                            .build();
+                });
     }
 
 
     public BackingEntityWidgetData getBackingEntityWidgetData(Long diagramId) {
-        return ImmutableBackingEntityWidgetData
-                .builder()
-                .cellData(backingEntityWidgetDao.findWidgetData(diagramId))
-                .build();
+        return getWidgetData(
+                OverlayWidget.BACKING_ENTITY,
+                diagramId,
+                null,
+                null,
+                null,
+                () -> ImmutableBackingEntityWidgetData
+                        .builder()
+                        .cellData(backingEntityWidgetDao.findWidgetData(diagramId))
+                        .build());
     }
 
 
@@ -333,28 +481,38 @@ public class AggregateOverlayDiagramService {
                                                            IdSelectionOptions idSelectionOptions,
                                                            AppComplexityWidgetParameters complexityWidgetParameters) {
 
-
-        AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
-
-        GenericSelector genericSelector = genericSelectorFactory.applyForKind(diagram.aggregatedEntityKind(), idSelectionOptions);
-        Select<Record1<Long>> entityIdSelector = applyFiltersToSelector(genericSelector, assessmentBasedSelectionFilters);
-
-        Set<ComplexityWidgetDatum> complexityData = complexityWidgetDao
-                .findWidgetData(
-                        diagramId,
-                        diagram.aggregatedEntityKind(),
-                        complexityWidgetParameters.complexityKindIds(),
-                        entityIdSelector);
-
-        List<Application> applications = applicationDao.findByAppIdSelector(entityIdSelector);
-        Set<ComplexityKind> complexityKinds = complexityKindDao.findAll();
-
-        return ImmutableComplexityWidgetData
-                .builder()
-                .cellData(complexityData)
-                .applications(applications)
-                .complexityKinds(complexityKinds)
-                .build();
+        return getWidgetData(
+                OverlayWidget.COMPLEXITY,
+                diagramId,
+                idSelectionOptions,
+                assessmentBasedSelectionFilters,
+                complexityWidgetParameters,
+                () -> {
+                    AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
+                    Select<Record1<Long>> entityIdSelector = mkEntityIdSelector(diagram, idSelectionOptions, assessmentBasedSelectionFilters);
+
+                    Set<ComplexityWidgetDatum> complexityData = complexityWidgetDao
+                            .findWidgetData(
+                                    findAggregatedEntitiesByCellExtId(
+                                            diagramId,
+                                            diagram.aggregatedEntityKind(),
+                                            idSelectionOptions,
+                                            assessmentBasedSelectionFilters,
+                                            entityIdSelector,
+                                            Optional.empty()),
+                                    diagram.aggregatedEntityKind(),
+                                    complexityWidgetParameters.complexityKindIds());
+
+                    List<Application> applications = applicationDao.findByAppIdSelector(entityIdSelector);
+                    Set<ComplexityKind> complexityKinds = complexityKindDao.findAll();
+
+                    return ImmutableComplexityWidgetData
+                            .builder()
+                            .cellData(complexityData)
+                            .applications(applications)
+                            .complexityKinds(complexityKinds)
+                            .build();
+                });
     }
 
     public Long create(OverlayDiagramCreateCommand createCmd, String username) {
@@ -372,18 +530,221 @@ public class AggregateOverlayDiagramService {
                                                                       IdSelectionOptions idSelectionOptions,
                                                                       AppChangeWidgetParameters overlayParameters) {
 
-        AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
+        return getWidgetData(
+                OverlayWidget.APP_CHANGE,
+                diagramId,
+                idSelectionOptions,
+                null,
+                overlayParameters,
+                () -> {
+                    AggregateOverlayDiagram diagram = aggregateOverlayDiagramDao.getById(diagramId);
+
+                    GenericSelector genericSelector = genericSelectorFactory.applyForKind(diagram.aggregatedEntityKind(), idSelectionOptions);
+
+                    Set<ApplicationChangeWidgetDatum> widgetData = appChangesWidgetDao.findWidgetData(
+                            diagramId,
+                            genericSelector.selector(),
+                            Optional.of(overlayParameters.targetDate()));
+
+                    return ImmutableApplicationChangeWidgetData
+                            .builder()
+                            .cellData(widgetData)
+                            .build();
+                });
+    }
 
-        GenericSelector genericSelector = genericSelectorFactory.applyForKind(diagram.aggregatedEntityKind(), idSelectionOptions);
 
-        Set<ApplicationChangeWidgetDatum> widgetData = appChangesWidgetDao.findWidgetData(
-                diagramId,
-                genericSelector.selector(),
-                Optional.of(overlayParameters.targetDate()));
+    /**
+     * Checks whether any of the inputs used by the currently cached widget data have changed since
+     * the last check.  Entries calculated from a changed input are recalculated in place, the others
+     * are left alone.  Nothing is checked while the cache is empty.
+     */
+    @Scheduled(
+            initialDelayString = "${waltz.overlay.widget.cache.refresh.ms:60000}",
+            fixedDelayString = "${waltz.overlay.widget.cache.refresh.ms:60000}")
+    public void refreshIfInputsChanged() {
+        if (! widgetDataCache.isEnabled() || widgetDataCache.size() == 0) {
+            return;
+        }
+
+        Set<OverlayWidgetInput> inUse = widgetDataCache
+                .snapshot()
+                .keySet()
+                .stream()
+                .flatMap(k -> inputsFor(k).stream())
+                .collect(Collectors.toSet());
 
-        return ImmutableApplicationChangeWidgetData
-                .builder()
-                .cellData(widgetData)
-                .build();
+        Set<OverlayWidgetInput> changed = aggregateOverlayDiagramDao
+                .findWidgetInputVersions(inUse)
+                .entrySet()
+                .stream()
+                .filter(e -> {
+                    List<Object> previous = inputVersions.put(e.getKey(), e.getValue());
+                    return previous != null && ! previous.equals(e.getValue());
+                })
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+
+        if (! changed.isEmpty()) {
+            LOG.debug("Overlay widget inputs changed: {}", changed);
+            recalculateCachedWidgetData(changed);
+        }
+    }
+
+
+    /**
+     * Recalculates all cached widget data, regardless of whether its inputs have changed.
+     *
+     * @return number of widget data entries recalculated
+     */
+    public int recalculateCachedWidgetData() {
+        return recalculateCachedWidgetData(EnumSet.allOf(OverlayWidgetInput.class));
+    }
+
+
+    /**
+     * Recalculates the cached widget data which depends on any of the given inputs.  Each entry is
+     * replaced once its new value is ready, so requests in the meantime are served the previous value
+     * rather than waiting.
+     *
+     * @param changedInputs inputs which have changed
+     * @return number of widget data entries recalculated
+     */
+    private synchronized int recalculateCachedWidgetData(Set<OverlayWidgetInput> changedInputs) {
+        long start = System.currentTimeMillis();
+
+        if (hasIntersection(CELL_RESOLUTION_INPUTS, changedInputs)) {
+            // shared by most widgets, must be reloaded before they are recalculated
+            aggregatedEntitiesCache.invalidateAll();
+        }
+
+        int recalculated = 0;
+        for (Map.Entry<Tuple5<OverlayWidget, Long, IdSelectionOptions, Set<AssessmentBasedSelectionFilter>, Object>, CachedWidgetData> entry : widgetDataCache.snapshot().entrySet()) {
+            if (! hasIntersection(inputsFor(entry.getKey()), changedInputs)) {
+                continue;
+            }
+            try {
+                widgetDataCache.refresh(entry.getKey(), k -> entry.getValue().recalculate());
+                recalculated++;
+            } catch (Exception e) {
+                // dropped from the cache, the next request will calculate it as normal
+                LOG.warn("Could not recalculate overlay widget data for: {}, {}", entry.getKey(), e.getMessage());
+                widgetDataCache.invalidate(entry.getKey());
+            }
+        }
+
+        long duration = System.currentTimeMillis() - start;
+        lastRecalculationDuration.set(duration);
+        recalculationCount.incrementAndGet();
+
+        LOG.info("Recalculated {} cached overlay widgets in {}ms", recalculated, duration);
+        return recalculated;
+    }
+
+
+    public void evictCachedWidgetData(long diagramId) {
+        widgetDataCache.invalidateIf(k -> k.v2 == diagramId);
+        aggregatedEntitiesCache.invalidateIf(k -> k.v1 == diagramId);
+    }
+
+
+    public void evictAllCachedWidgetData() {
+        LOG.info("Clearing overlay widget data caches");
+        widgetDataCache.invalidateAll();
+        aggregatedEntitiesCache.invalidateAll();
+    }
+
+
+    public ExpiringCache<?, ?> getWidgetDataCache() {
+        return widgetDataCache;
+    }
+
+
+    public ExpiringCache<?, ?> getAggregatedEntitiesCache() {
+        return aggregatedEntitiesCache;
+    }
+
+
+    public long getRecalculationCount() {
+        return recalculationCount.get();
+    }
+
+
+    public long getLastRecalculationDuration() {
+        return lastRecalculationDuration.get();
+    }
+
+
+    // --- helpers ---
+
+    @SuppressWarnings("unchecked")
+    private <T> T getWidgetData(OverlayWidget widget,
+                                long diagramId,
+                                IdSelectionOptions selectionOptions,
+                                Set<AssessmentBasedSelectionFilter> filterParams,
+                                Object widgetParameters,
+                                Supplier<T> calculator) {
+        return (T) widgetDataCache
+                .get(
+                        tuple(widget, diagramId, selectionOptions, nullToEmpty(filterParams), widgetParameters),
+                        k -> new CachedWidgetData(calculator))
+                .data;
+    }
+
+
+    private Map<String, Set<Long>> findAggregatedEntitiesByCellExtId(long diagramId,
+                                                                     EntityKind aggregatedEntityKind,
+                                                                     IdSelectionOptions selectionOptions,
+                                                                     Set<AssessmentBasedSelectionFilter> filterParams,
+                                                                     Select<Record1<Long>> entityIdSelector,
+                                                                     Optional<LocalDate> targetStateDate) {
+        return aggregatedEntitiesCache.get(
+                tuple(diagramId, aggregatedEntityKind, selectionOptions, nullToEmpty(filterParams), targetStateDate),
+                k -> aggregateOverlayDiagramDao.findAggregatedEntitiesByCellExtId(
+                        diagramId,
+                        aggregatedEntityKind,
+                        entityIdSelector,
+                        targetStateDate));
+    }
+
+
+    private Select<Record1<Long>> mkEntityIdSelector(AggregateOverlayDiagram diagram,
+                                                     IdSelectionOptions selectionOptions,
+                                                     Set<AssessmentBasedSelectionFilter> filterParams) {
+        GenericSelector genericSelector = genericSelectorFactory.applyForKind(diagram.aggregatedEntityKind(), selectionOptions);
+        return applyFiltersToSelector(genericSelector, filterParams);
+    }
+
+
+    private static Set<OverlayWidgetInput> inputsFor(Tuple5<OverlayWidget, Long, IdSelectionOptions, Set<AssessmentBasedSelectionFilter>, Object> key) {
+        return key.v4.isEmpty()
+                ? key.v1.inputs
+                : union(key.v1.inputs, asSet(OverlayWidgetInput.ASSESSMENT_RATING));
+    }
+
+
+    private static Set<AssessmentBasedSelectionFilter> nullToEmpty(Set<AssessmentBasedSelectionFilter> filterParams) {
+        return filterParams == null
+                ? Collections.emptySet()
+                : filterParams;
+    }
+
+
+    /**
+     * Calculated widget data along with the means to recalculate it.
+     */
+    private static class CachedWidgetData {
+
+        private final Supplier<?> calculator;
+        private final Object data;
+
+        private CachedWidgetData(Supplier<?> calculator) {
+            this.calculator = calculator;
+            this.data = calculator.get();
+        }
+
+        private CachedWidgetData recalculate() {
+            return new CachedWidgetData(calculator);
+        }
     }
 }
@@ -72,7 +72,6 @@ import static java.lang.String.format;
 import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.common.ListUtilities.append;
 import static org.finos.waltz.common.MapUtilities.indexBy;
-import static org.finos.waltz.data.JooqUtilities.summarizeResults;
 import static org.finos.waltz.model.DiffResult.mkDiff;
 import static org.finos.waltz.model.EntityReference.mkRef;
 import static org.jooq.lambda.tuple.Tuple.tuple;
@@ -511,7 +510,8 @@ public class AppGroupService {
 
         appGroupDao.processAdditionsAndRemovals(additions, removals, userId);
 
-        int changeLogCount = summarizeResults(Stream
+        // entries for automated synchronisations are not needed by the caller, so may be written in the background
+        Set<ChangeLog> changeLogs = Stream
                 .concat(additions.stream().map(t -> t.concat(Operation.ADD)),
                         removals.stream().map(t -> t.concat(Operation.REMOVE)))
                 .map(t -> (ChangeLog) ImmutableChangeLog
@@ -528,15 +528,15 @@ public class AppGroupService {
                         .userId(userId)
                         .severity(Severity.INFORMATION)
                         .build())
-                .collect(Collectors.collectingAndThen(
-                        Collectors.toSet(),
-                        changeLogService::write)));
+                .collect(Collectors.toSet());
+
+        changeLogService.writeAsync(changeLogs);
 
         LOG.info(
-                "Synchronized groups: {} additions, {} removals, {} change log entries created",
+                "Synchronized groups: {} additions, {} removals, {} change log entries written",
                 additions.size(),
                 removals.size(),
-                changeLogCount);
+                changeLogs.size());
     }
 
 
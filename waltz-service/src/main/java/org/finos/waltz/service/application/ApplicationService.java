@@ -33,7 +33,9 @@ import org.finos.waltz.model.application.Application;
 import org.finos.waltz.model.application.AssetCodeRelationshipKind;
 import org.finos.waltz.model.entity_search.EntitySearchOptions;
 import org.finos.waltz.model.external_identifier.ExternalIdValue;
+import org.finos.waltz.model.recalc.RecalcTarget;
 import org.finos.waltz.model.tally.Tally;
+import org.finos.waltz.service.recalc.RecalcQueueService;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -42,12 +44,14 @@ import org.springframework.stereotype.Service;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
 import static org.finos.waltz.common.Checks.checkNotEmpty;
 import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.common.StringUtilities.isEmpty;
@@ -61,6 +65,7 @@ public class ApplicationService {
     private final TagService tagService;
     private final EntityAliasDao entityAliasDao;
     private final ApplicationSearchDao appSearchDao;
+    private final RecalcQueueService recalcQueueService;
     private final ApplicationIdSelectorFactory appIdSelectorFactory = new ApplicationIdSelectorFactory();
 
 
@@ -68,16 +73,19 @@ public class ApplicationService {
     public ApplicationService(ApplicationDao appDao,
                               TagService tagService,
                               EntityAliasDao entityAliasDao,
-                              ApplicationSearchDao appSearchDao) {
+                              ApplicationSearchDao appSearchDao,
+                              RecalcQueueService recalcQueueService) {
         checkNotNull(appDao, "appDao must not be null");
         checkNotNull(tagService, "tagService must not be null");
         checkNotNull(entityAliasDao, "entityAliasDao must not be null");
         checkNotNull(appSearchDao, "appSearchDao must not be null");
+        checkNotNull(recalcQueueService, "recalcQueueService must not be null");
 
         this.applicationDao = appDao;
         this.tagService = tagService;
         this.entityAliasDao = entityAliasDao;
         this.appSearchDao = appSearchDao;
+        this.recalcQueueService = recalcQueueService;
     }
 
 
@@ -139,7 +147,20 @@ public class ApplicationService {
 
 
     public Integer update(Application application) {
-        return applicationDao.update(application);
+        Long previousOrgUnitId = application
+                .id()
+                .map(applicationDao::getById)
+                .map(Application::organisationalUnitId)
+                .orElse(null);
+
+        Integer updateCount = applicationDao.update(application);
+
+        // flows into the application are rated by the rules of its (new) org unit
+        if (updateCount > 0 && ! Objects.equals(previousOrgUnitId, application.organisationalUnitId())) {
+            recalcQueueService.record(RecalcTarget.FLOW_RATINGS, singletonList(application.entityReference()));
+        }
+
+        return updateCount;
     }
 
 
@@ -32,6 +32,7 @@ import org.finos.waltz.model.changelog.ChangeLog;
 import org.finos.waltz.model.changelog.ImmutableChangeLog;
 import org.finos.waltz.model.rating.RatingScheme;
 import org.finos.waltz.model.rating.RatingSchemeItem;
+import org.finos.waltz.service.changelog.ChangeLogBatch;
 import org.finos.waltz.service.changelog.ChangeLogService;
 import org.finos.waltz.service.permission.permission_checker.AssessmentRatingPermissionChecker;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -193,22 +194,26 @@ public class AssessmentRatingService {
 
         AssessmentDefinition defn = assessmentDefinitionDao.getById(assessmentDefinitionId);
 
-        Set<AssessmentRating> ratingsToAdd = getRatingsFilterByOperation(commands, assessmentDefinitionId, username, Operation.ADD);
-        int addedResult = assessmentRatingDao.add(ratingsToAdd);
-        createChangeLogs(assessmentDefinitionId, username, ratingsToAdd, Operation.ADD);
+        // additions and updates are logged with a single insert
+        try (ChangeLogBatch changeLogBatch = changeLogService.batch()) {
+            Set<AssessmentRating> ratingsToAdd = getRatingsFilterByOperation(commands, assessmentDefinitionId, username, Operation.ADD);
+            int addedResult = assessmentRatingDao.add(ratingsToAdd);
+            createChangeLogs(assessmentDefinitionId, username, ratingsToAdd, Operation.ADD);
 
-        Set<AssessmentRating> ratingsToUpdate = getRatingsFilterByOperation(commands, assessmentDefinitionId, username, Operation.UPDATE);
+            Set<AssessmentRating> ratingsToUpdate = getRatingsFilterByOperation(commands, assessmentDefinitionId, username, Operation.UPDATE);
 
-        int updatedCommentsResult;
+            int updatedCommentsResult;
 
-        if (defn.cardinality().equals(Cardinality.ZERO_ONE)) {
-            updatedCommentsResult = assessmentRatingDao.bulkUpdateSingleValuedAssessments(ratingsToUpdate);
-        } else {
-            updatedCommentsResult = assessmentRatingDao.bulkUpdateMultiValuedAssessments(ratingsToUpdate);
-        }
-        createChangeLogs(assessmentDefinitionId, username, ratingsToUpdate, Operation.ADD);
+            if (defn.cardinality().equals(Cardinality.ZERO_ONE)) {
+                updatedCommentsResult = assessmentRatingDao.bulkUpdateSingleValuedAssessments(ratingsToUpdate);
+            } else {
+                updatedCommentsResult = assessmentRatingDao.bulkUpdateMultiValuedAssessments(ratingsToUpdate);
+            }
+            createChangeLogs(assessmentDefinitionId, username, ratingsToUpdate, Operation.ADD);
 
-        return addedResult + updatedCommentsResult > 1;
+            changeLogBatch.complete();
+            return addedResult + updatedCommentsResult > 1;
+        }
     }
 
 
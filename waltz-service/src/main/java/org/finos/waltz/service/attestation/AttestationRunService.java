@@ -28,14 +28,19 @@ import org.finos.waltz.data.GenericSelector;
 import org.finos.waltz.data.GenericSelectorFactory;
 import org.finos.waltz.data.attestation.AttestationInstanceDao;
 import org.finos.waltz.data.attestation.AttestationInstanceRecipientDao;
+import org.finos.waltz.data.attestation.AttestationIssuanceDao;
 import org.finos.waltz.data.attestation.AttestationRunDao;
 import org.finos.waltz.data.involvement.InvolvementDao;
 import org.finos.waltz.model.*;
 import org.finos.waltz.model.attestation.*;
 import org.finos.waltz.model.person.Person;
 import org.finos.waltz.service.involvement_group.InvolvementGroupService;
+import org.jooq.DSLContext;
 import org.jooq.Record1;
 import org.jooq.Select;
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -48,16 +53,22 @@ import static java.util.stream.Collectors.toList;
 import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.common.ListUtilities.asList;
 import static org.finos.waltz.common.ListUtilities.isEmpty;
+import static org.finos.waltz.common.ListUtilities.partition;
 import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.common.SetUtilities.map;
 import static org.finos.waltz.model.EntityReference.mkRef;
 import static org.finos.waltz.model.IdSelectionOptions.mkOpts;
 import static org.finos.waltz.model.attestation.AttestationStatus.ISSUED;
+import static org.finos.waltz.model.attestation.AttestationStatus.ISSUE_FAILED;
 import static org.finos.waltz.model.attestation.AttestationStatus.ISSUING;
-import static org.finos.waltz.model.utils.IdUtilities.toIds;
+import static org.jooq.lambda.tuple.Tuple.tuple;
 
 @Service
 public class AttestationRunService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(AttestationRunService.class);
+    private static final int ISSUANCE_CHUNK_SIZE = 1000;
+
     private final AttestationInstanceDao attestationInstanceDao;
     private final AttestationInstanceRecipientDao attestationInstanceRecipientDao;
     private final AttestationRunDao attestationRunDao;
@@ -65,19 +76,26 @@ public class AttestationRunService {
     private final GenericSelectorFactory genericSelectorFactory = new GenericSelectorFactory();
     private final InvolvementDao involvementDao;
     private final InvolvementGroupService involvementGroupService;
+    private final AttestationIssuanceDao attestationIssuanceDao;
+    private final DSLContext dsl;
 
     @Autowired
     public AttestationRunService(AttestationInstanceDao attestationInstanceDao,
                                  AttestationInstanceRecipientDao attestationInstanceRecipientDao,
                                  AttestationRunDao attestationRunDao,
                                  EmailService emailService,
-                                 InvolvementDao involvementDao, InvolvementGroupService involvementGroupService) {
+                                 InvolvementDao involvementDao,
+                                 InvolvementGroupService involvementGroupService,
+                                 AttestationIssuanceDao attestationIssuanceDao,
+                                 DSLContext dsl) {
         checkNotNull(attestationInstanceRecipientDao, "attestationInstanceRecipientDao cannot be null");
         checkNotNull(attestationInstanceDao, "attestationInstanceDao cannot be null");
         checkNotNull(attestationRunDao, "attestationRunDao cannot be null");
         checkNotNull(emailService, "emailService cannot be null");
         checkNotNull(involvementDao, "involvementDao cannot be null");
         checkNotNull(involvementGroupService, "involvementGroupService cannot be null");
+        checkNotNull(attestationIssuanceDao, "attestationIssuanceDao cannot be null");
+        checkNotNull(dsl, "dsl cannot be null");
 
         this.attestationInstanceDao = attestationInstanceDao;
         this.attestationInstanceRecipientDao = attestationInstanceRecipientDao;
@@ -85,6 +103,8 @@ public class AttestationRunService {
         this.emailService = emailService;
         this.involvementDao = involvementDao;
         this.involvementGroupService = involvementGroupService;
+        this.attestationIssuanceDao = attestationIssuanceDao;
+        this.dsl = dsl;
     }
 
 
@@ -284,27 +304,136 @@ public class AttestationRunService {
     }
 
 
+    /**
+     * Issues each pending run in turn.  Subjects are processed in chunks and
+     * every run is written in its own transaction, so a failure only affects the
+     * run being issued.  Failed runs are marked ISSUE_FAILED, so they are not
+     * retried on every run of this job.  Once the cause has been fixed a failed run
+     * can be retried by setting it back to PENDING.
+     *
+     * @return number of runs successfully issued
+     */
     public int issueInstancesForPendingRuns() {
 
         Set<AttestationRun> pendingRuns = attestationRunDao.findPendingRuns();
 
-        List<AttestationInstanceRecipient> instanceRecipients = pendingRuns
+        int issued = 0;
+        for (AttestationRun run : pendingRuns) {
+            if (issueInstancesForPendingRun(run)) {
+                issued++;
+            }
+        }
+
+        return issued;
+    }
+
+
+    private boolean issueInstancesForPendingRun(AttestationRun run) {
+        long runId = run.id().get();
+        Set<Long> runIds = asSet(runId);
+
+        attestationRunDao.updateStatusForRunIds(runIds, ISSUING);
+
+        try {
+            long start = System.currentTimeMillis();
+            int instanceCount = dsl.transactionResult(ctx -> writeInstancesForRun(ctx.dsl(), run));
+            attestationRunDao.updateStatusForRunIds(runIds, ISSUED);
+
+            LOG.info(
+                    "Attestation run {}: issued {} instances in {}ms",
+                    runId,
+                    instanceCount,
+                    System.currentTimeMillis() - start);
+            return true;
+        } catch (Exception e) {
+            LOG.error(format("Attestation run %d: issuance failed, marking run as %s", runId, ISSUE_FAILED), e);
+            attestationRunDao.updateStatusForRunIds(runIds, ISSUE_FAILED);
+            return false;
+        }
+    }
+
+
+    private int writeInstancesForRun(DSLContext tx, AttestationRun run) {
+        long runId = run.id().get();
+
+        if (run.involvementKindIds().isEmpty()) {
+            EntityReference subject = run.selectionOptions().entityReference();
+            return writeInstancesAndRecipients(
+                    tx,
+                    runId,
+                    subject.kind(),
+                    asList(mkInstanceRecipient(runId, subject, "admin", run.attestedEntityKind())));
+        }
+
+        List<Long> subjectIds = tx
+                .fetch(mkIdSelector(run.targetEntityKind(), run.selectionOptions()))
+                .into(Long.class)
                 .stream()
-                .flatMap(run -> generateAttestationInstanceRecipients(
-                            run.id().get(),
-                            run.attestedEntityKind(),
-                            "admin")
-                        .stream())
+                .distinct()
                 .collect(toList());
 
-        Set<Long> runsBeingIssued = toIds(pendingRuns);
-        attestationRunDao.updateStatusForRunIds(runsBeingIssued, ISSUING);
+        int processed = 0;
+        int instanceCount = 0;
+        for (List<Long> chunk : partition(subjectIds, ISSUANCE_CHUNK_SIZE)) {
+            List<AttestationInstanceRecipient> instanceRecipients = involvementDao
+                    .findPeopleByEntityIdsAndInvolvement(
+                            run.targetEntityKind(),
+                            chunk,
+                            run.involvementKindIds())
+                    .entrySet()
+                    .stream()
+                    .flatMap(e -> e.getValue().stream()
+                            .map(p -> mkInstanceRecipient(runId, e.getKey(), p.email(), run.attestedEntityKind())))
+                    .distinct()
+                    .collect(toList());
+
+            instanceCount += writeInstancesAndRecipients(tx, runId, run.targetEntityKind(), instanceRecipients);
+            processed += chunk.size();
+
+            LOG.info(
+                    "Attestation run {}: processed {}/{} subjects, {} instances created",
+                    runId,
+                    processed,
+                    subjectIds.size(),
+                    instanceCount);
+        }
+
+        return instanceCount;
+    }
+
 
-        if (!isEmpty(instanceRecipients)) {
-            createAttestationInstancesAndRecipients(instanceRecipients);
+    private int writeInstancesAndRecipients(DSLContext tx,
+                                            long runId,
+                                            EntityKind parentKind,
+                                            List<AttestationInstanceRecipient> instanceRecipients) {
+        if (isEmpty(instanceRecipients)) {
+            return 0;
         }
 
-        return attestationRunDao.updateStatusForRunIds(runsBeingIssued, ISSUED);
+        Map<AttestationInstance, List<AttestationInstanceRecipient>> recipientsByInstance = instanceRecipients
+                .stream()
+                .collect(groupingBy(
+                        AttestationInstanceRecipient::attestationInstance,
+                        toList()));
+
+        int created = attestationIssuanceDao.createInstances(tx, recipientsByInstance.keySet());
+
+        Map<Long, Long> instanceIdsByParentId = attestationIssuanceDao.findInstanceIdsByParentId(
+                tx,
+                runId,
+                parentKind,
+                map(recipientsByInstance.keySet(), i -> i.parentEntity().id()));
+
+        List<Tuple2<Long, String>> recipients = instanceRecipients
+                .stream()
+                .map(r -> tuple(
+                        instanceIdsByParentId.get(r.attestationInstance().parentEntity().id()),
+                        r.userId()))
+                .collect(toList());
+
+        attestationIssuanceDao.createRecipients(tx, recipients);
+
+        return created;
     }
 
 
@@ -0,0 +1,132 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.changelog;
+
+import org.finos.waltz.model.changelog.ChangeLog;
+import org.jooq.lambda.tuple.Tuple7;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * A unit of work which gathers the change log entries written (via {@link ChangeLogService})
+ * on the current thread and writes them, as a single batch, when it is closed.
+ * Entries which only differ by their creation time are coalesced into one.
+ * <p>
+ * Obtain via {@link ChangeLogService#batch()} and use with try-with-resources,
+ * marking the work as complete at the end of the block:
+ * <pre>
+ *     try (ChangeLogBatch batch = changeLogService.batch()) {
+ *         ... calls which write change log entries ...
+ *         batch.complete();
+ *     }
+ * </pre>
+ * Entries are only written if the block completes normally.  If it throws
+ * (so {@link #complete()} is not reached) the gathered entries are discarded.
+ * Batches may be nested, entries are written when the outermost batch closes
+ * and only if every nested block completed.
+ */
+public class ChangeLogBatch implements AutoCloseable {
+
+    private final Consumer<List<ChangeLog>> writer;
+    private final Runnable onClose;
+    private final List<ChangeLog> entries = new ArrayList<>();
+
+    private int depth = 1;
+    private boolean completed = false;
+    private boolean abandoned = false;
+
+
+    ChangeLogBatch(Consumer<List<ChangeLog>> writer, Runnable onClose) {
+        this.writer = writer;
+        this.onClose = onClose;
+    }
+
+
+    void add(ChangeLog changeLog) {
+        entries.add(changeLog);
+    }
+
+
+    void addAll(Collection<ChangeLog> changeLogs) {
+        entries.addAll(changeLogs);
+    }
+
+
+    ChangeLogBatch join() {
+        depth++;
+        completed = false;
+        return this;
+    }
+
+
+    /**
+     * Marks the work of the current (innermost) block as done, see the class doc.
+     */
+    public void complete() {
+        completed = true;
+    }
+
+
+    public int size() {
+        return entries.size();
+    }
+
+
+    @Override
+    public void close() {
+        abandoned |= ! completed;
+        if (--depth > 0) {
+            // the enclosing block is still running, it must complete in turn
+            completed = false;
+            return;
+        }
+        onClose.run();
+        if (! abandoned && ! entries.isEmpty()) {
+            writer.accept(coalesce(entries));
+        }
+    }
+
+
+    /**
+     * Removes entries which duplicate an earlier one (ignoring creation time), order is preserved.
+     */
+    static List<ChangeLog> coalesce(Collection<ChangeLog> changeLogs) {
+        Map<Tuple7<?, ?, ?, ?, ?, ?, ?>, ChangeLog> byKey = new LinkedHashMap<>();
+        for (ChangeLog changeLog : changeLogs) {
+            byKey.putIfAbsent(
+                    tuple(changeLog.parentReference(),
+                            changeLog.message(),
+                            changeLog.userId(),
+                            changeLog.childKind(),
+                            changeLog.childId(),
+                            changeLog.operation(),
+                            changeLog.severity()),
+                    changeLog);
+        }
+        return new ArrayList<>(byKey.values());
+    }
+
+}
@@ -18,6 +18,8 @@
 
 package org.finos.waltz.service.changelog;
 
+import org.finos.waltz.common.BatchingWriter;
+import org.finos.waltz.common.BatchingWriter.OverflowPolicy;
 import org.finos.waltz.data.EntityReferenceNameResolver;
 import org.finos.waltz.data.GenericSelector;
 import org.finos.waltz.data.GenericSelectorFactory;
@@ -40,15 +42,21 @@ import org.finos.waltz.model.physical_flow.PhysicalFlow;
 import org.finos.waltz.model.physical_specification.PhysicalSpecification;
 import org.finos.waltz.model.tally.DateTally;
 import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 
 import java.sql.Date;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 import static org.finos.waltz.common.Checks.checkNotEmpty;
@@ -61,7 +69,11 @@ import static org.jooq.lambda.tuple.Tuple.tuple;
 
 
 @Service
-public class ChangeLogService {
+public class ChangeLogService implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeLogService.class);
+
+    private static final int ASYNC_BATCH_SIZE = 500;
 
     private final ChangeLogDao changeLogDao;
     private final ChangeLogSummariesDao changeLogSummariesDao;
@@ -73,6 +85,12 @@ public class ChangeLogService {
     private final MeasurableRatingPlannedDecommissionDao measurableRatingPlannedDecommissionDao;
     private final EntityReferenceNameResolver nameResolver;
 
+    // unit of work gathering entries written on the current thread, see batch()
+    private final ThreadLocal<ChangeLogBatch> currentBatch = new ThreadLocal<>();
+
+    // null if 'async' entries are written synchronously
+    private final BatchingWriter<ChangeLog> asyncWriter;
+
 
     @Autowired
     public ChangeLogService(ChangeLogDao changeLogDao,
@@ -83,7 +101,10 @@ public class ChangeLogService {
                             ApplicationDao applicationDao,
                             MeasurableRatingReplacementDao measurableRatingReplacementDao,
                             MeasurableRatingPlannedDecommissionDao measurableRatingPlannedDecommissionDao,
-                            EntityReferenceNameResolver nameResolver) {
+                            EntityReferenceNameResolver nameResolver,
+                            @Value("${waltz.changelog.async.enabled:false}") boolean asyncEnabled,
+                            @Value("${waltz.changelog.async.capacity:10000}") int asyncCapacity,
+                            @Value("${waltz.changelog.async.flush.ms:1000}") long asyncFlushIntervalMillis) {
         checkNotNull(changeLogDao, "changeLogDao must not be null");
         checkNotNull(changeLogSummariesDao, "changeLogSummariesDao must not be null");
         checkNotNull(physicalFlowDao, "physicalFlowDao cannot be null");
@@ -102,6 +123,16 @@ public class ChangeLogService {
         this.measurableRatingReplacementdao = measurableRatingReplacementDao;
         this.measurableRatingPlannedDecommissionDao = measurableRatingPlannedDecommissionDao;
         this.nameResolver = nameResolver;
+        this.asyncWriter = asyncEnabled
+                ? new BatchingWriter<>(
+                        "change-log",
+                        asyncCapacity,
+                        ASYNC_BATCH_SIZE,
+                        asyncFlushIntervalMillis,
+                        OverflowPolicy.BLOCK,
+                        asyncFlushIntervalMillis,
+                        entries -> changeLogDao.write(ChangeLogBatch.coalesce(entries)))
+                : null;
     }
 
 
@@ -145,13 +176,122 @@ public class ChangeLogService {
     }
 
 
+    /**
+     * Writes the entry, or adds it to the current {@link ChangeLogBatch} if one is open.
+     */
     public int write(ChangeLog changeLog) {
-        return changeLogDao.write(changeLog);
+        checkNotNull(changeLog, "changeLog cannot be null");
+        ChangeLogBatch batch = currentBatch.get();
+        if (batch == null) {
+            return changeLogDao.write(changeLog);
+        } else {
+            batch.add(changeLog);
+            return 1;
+        }
     }
 
 
+    /**
+     * Writes the entries, or adds them to the current {@link ChangeLogBatch} if one is open.
+     */
     public int[] write(Collection<ChangeLog> changeLogs) {
-        return changeLogDao.write(changeLogs);
+        checkNotNull(changeLogs, "changeLogs cannot be null");
+        ChangeLogBatch batch = currentBatch.get();
+        if (batch == null) {
+            return changeLogDao.write(changeLogs);
+        } else {
+            batch.addAll(changeLogs);
+            int[] counts = new int[changeLogs.size()];
+            Arrays.fill(counts, 1);
+            return counts;
+        }
+    }
+
+
+    /**
+     * For non-critical audit entries which need not be visible as soon as the call returns.
+     * If async writing is enabled (<code>waltz.changelog.async.enabled</code>, off by default)
+     * entries are queued and batch inserted in the background.  Entries the queue cannot accept
+     * in time are written synchronously rather than being lost, they are counted as rejected
+     * (not dropped) by the writer's monitor.  Note: the data version (see
+     * {@link #getDataVersion()}) only advances once the entries have been written.
+     */
+    public void writeAsync(ChangeLog changeLog) {
+        checkNotNull(changeLog, "changeLog cannot be null");
+        if (asyncWriter == null) {
+            write(changeLog);
+        } else if (! asyncWriter.trySubmit(changeLog)) {
+            LOG.warn("Change log queue is full, writing entry synchronously");
+            write(changeLog);
+        }
+    }
+
+
+    public void writeAsync(Collection<ChangeLog> changeLogs) {
+        checkNotNull(changeLogs, "changeLogs cannot be null");
+        if (asyncWriter == null) {
+            write(changeLogs);
+        } else {
+            List<ChangeLog> rejected = changeLogs
+                    .stream()
+                    .filter(c -> ! asyncWriter.trySubmit(c))
+                    .collect(Collectors.toList());
+            if (! rejected.isEmpty()) {
+                LOG.warn("Change log queue is full, writing {} entries synchronously", rejected.size());
+                write(rejected);
+            }
+        }
+    }
+
+
+    /**
+     * Opens (or joins) a unit of work on the current thread.  Until it is closed
+     * entries passed to the <code>write</code> methods are gathered rather than
+     * written, they are then coalesced and written as one batch.
+     *
+     * @return the batch, to be closed by the caller (try-with-resources)
+     */
+    public ChangeLogBatch batch() {
+        ChangeLogBatch existing = currentBatch.get();
+        if (existing != null) {
+            return existing.join();
+        }
+        ChangeLogBatch batch = new ChangeLogBatch(changeLogDao::write, currentBatch::remove);
+        currentBatch.set(batch);
+        return batch;
+    }
+
+
+    public Optional<BatchingWriter<ChangeLog>> getAsyncWriter() {
+        return Optional.ofNullable(asyncWriter);
+    }
+
+
+    @Override
+    public void destroy() {
+        if (asyncWriter != null) {
+            asyncWriter.close();
+        }
+    }
+
+
+    /**
+     * A coarse version number for the data in Waltz, it increases whenever
+     * a change log entry is written.  Useful as part of a cache key.
+     *
+     * @return current data version
+     */
+    public long getDataVersion() {
+        return changeLogDao.getLatestId();
+    }
+
+
+    /**
+     * @param dataVersion  a version previously returned by {@link #getDataVersion()}
+     * @return the parent and child kinds of entries written since that version
+     */
+    public Set<EntityKind> findKindsChangedSince(long dataVersion) {
+        return changeLogDao.findKindsChangedSince(dataVersion);
     }
 
 
@@ -268,7 +408,7 @@ public class ChangeLogService {
                         .operation(operation)
                         .build());
 
-        changeLogDao.write(changeLogEntries);
+        write(changeLogEntries);
     }
 
 
@@ -19,9 +19,10 @@
 package org.finos.waltz.service.data_flow_decorator;
 
 
+import org.finos.waltz.model.recalc.RecalcTarget;
 import org.finos.waltz.service.changelog.ChangeLogService;
+import org.finos.waltz.service.logical_flow.LogicalFlowGraphService;
 import org.finos.waltz.service.logical_flow.LogicalFlowService;
-import org.finos.waltz.service.usage_info.DataTypeUsageService;
 import org.finos.waltz.common.Checks;
 import org.finos.waltz.common.ListUtilities;
 import org.finos.waltz.common.SetUtilities;
@@ -41,6 +42,7 @@ import org.finos.waltz.model.datatype.ImmutableDataTypeDecorator;
 import org.finos.waltz.model.logical_flow.ImmutableLogicalFlowMeasures;
 import org.finos.waltz.model.logical_flow.LogicalFlow;
 import org.finos.waltz.model.rating.AuthoritativenessRatingValue;
+import org.finos.waltz.service.recalc.RecalcQueueService;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -73,9 +75,10 @@ public class LogicalFlowDecoratorService {
     private final LogicalFlowDecoratorDao logicalFlowDecoratorDao;
     private final LogicalFlowDecoratorRatingsCalculator ratingsCalculator;
     private final ApplicationIdSelectorFactory applicationIdSelectorFactory = new ApplicationIdSelectorFactory();
-    private final DataTypeUsageService dataTypeUsageService;
+    private final RecalcQueueService recalcQueueService;
     private final DataTypeDao dataTypeDao;
     private final LogicalFlowDao logicalFlowDao;
+    private final LogicalFlowGraphService logicalFlowGraphService;
     private final ChangeLogService changeLogService;
 
 
@@ -83,27 +86,30 @@ public class LogicalFlowDecoratorService {
     public LogicalFlowDecoratorService(LogicalFlowDecoratorSummaryDao logicalFlowDecoratorSummaryDao,
                                        LogicalFlowDecoratorDao logicalFlowDecoratorDao,
                                        LogicalFlowDecoratorRatingsCalculator ratingsCalculator,
-                                       DataTypeUsageService dataTypeUsageService,
+                                       RecalcQueueService recalcQueueService,
                                        DataTypeDao dataTypeDao,
                                        LogicalFlowDao logicalFlowDao,
                                        LogicalFlowService logicalFlowService,
+                                       LogicalFlowGraphService logicalFlowGraphService,
                                        LogicalFlowStatsDao logicalFlowStatsDao,
                                        ChangeLogService changeLogService) {
 
         checkNotNull(logicalFlowDecoratorSummaryDao, "logicalFlowDecoratorDao cannot be null");
         checkNotNull(ratingsCalculator, "ratingsCalculator cannot be null");
-        checkNotNull(dataTypeUsageService, "dataTypeUsageService cannot be null");
+        checkNotNull(recalcQueueService, "recalcQueueService cannot be null");
         checkNotNull(dataTypeDao, "dataTypeDao cannot be null");
         checkNotNull(logicalFlowDao, "logicalFlowDao cannot be null");
         checkNotNull(logicalFlowService, "logicalFlowService cannot be null");
+        checkNotNull(logicalFlowGraphService, "logicalFlowGraphService cannot be null");
         checkNotNull(logicalFlowStatsDao, "logicalFlowStatsDao cannot be null");
         checkNotNull(changeLogService, "changeLogService cannot be null");
 
         this.logicalFlowDecoratorSummaryDao = logicalFlowDecoratorSummaryDao;
         this.ratingsCalculator = ratingsCalculator;
-        this.dataTypeUsageService = dataTypeUsageService;
+        this.recalcQueueService = recalcQueueService;
         this.dataTypeDao = dataTypeDao;
         this.logicalFlowDao = logicalFlowDao;
+        this.logicalFlowGraphService = logicalFlowGraphService;
         this.changeLogService = changeLogService;
         this.logicalFlowDecoratorDao = logicalFlowDecoratorDao;
     }
@@ -133,6 +139,7 @@ public class LogicalFlowDecoratorService {
 
         Collection<DataTypeDecorator> decorators = ratingsCalculator.calculate(unrated);
         int[] added = logicalFlowDecoratorDao.addDecorators(decorators);
+        logicalFlowGraphService.refreshFlows(map(actions, UpdateDataFlowDecoratorsAction::flowId));
 
         List<LogicalFlow> effectedFlows = logicalFlowDao.findActiveByFlowIds(
                 map(actions, UpdateDataFlowDecoratorsAction::flowId));
@@ -142,7 +149,7 @@ public class LogicalFlowDecoratorService {
                 .flatMap(f -> Stream.of(f.source(), f.target()))
                 .collect(Collectors.toList());
 
-        dataTypeUsageService.recalculateForApplications(effectedEntities);
+        recalcQueueService.record(RecalcTarget.DATA_TYPE_USAGE, effectedEntities);
         bulkAudit(actions, username, effectedFlows);
 
         return added;
@@ -31,12 +31,14 @@ import org.finos.waltz.model.datatype.ImmutableDataTypeDecorator;
 import org.finos.waltz.model.logical_flow.LogicalFlow;
 import org.finos.waltz.model.physical_specification.PhysicalSpecification;
 import org.finos.waltz.model.rating.AuthoritativenessRatingValue;
+import org.finos.waltz.model.recalc.RecalcTarget;
 import org.finos.waltz.service.changelog.ChangeLogService;
 import org.finos.waltz.service.data_flow_decorator.LogicalFlowDecoratorRatingsCalculator;
 import org.finos.waltz.service.data_flow_decorator.LogicalFlowDecoratorService;
+import org.finos.waltz.service.logical_flow.LogicalFlowGraphService;
 import org.finos.waltz.service.logical_flow.LogicalFlowService;
 import org.finos.waltz.service.physical_specification.PhysicalSpecificationService;
-import org.finos.waltz.service.usage_info.DataTypeUsageService;
+import org.finos.waltz.service.recalc.RecalcQueueService;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.jooq.impl.DSL;
@@ -62,8 +64,9 @@ public class DataTypeDecoratorService {
     private final DataTypeDecoratorDaoSelectorFactory dataTypeDecoratorDaoSelectorFactory;
     private final LogicalFlowDao logicalFlowDao;
     private final LogicalFlowService logicalFlowService;
+    private final LogicalFlowGraphService logicalFlowGraphService;
     private final LogicalFlowDecoratorRatingsCalculator ratingsCalculator;
-    private final DataTypeUsageService dataTypeUsageService;
+    private final RecalcQueueService recalcQueueService;
     private final DataTypeService dataTypeService;
     private final GenericSelectorFactory genericSelectorFactory = new GenericSelectorFactory();
     private final PhysicalSpecificationDao physicalSpecificationDao;
@@ -76,20 +79,23 @@ public class DataTypeDecoratorService {
                                     DataTypeDecoratorDaoSelectorFactory dataTypeDecoratorDaoSelectorFactory,
                                     LogicalFlowDao logicalFlowDao,
                                     LogicalFlowService logicalFlowService,
+                                    LogicalFlowGraphService logicalFlowGraphService,
                                     LogicalFlowDecoratorRatingsCalculator ratingsCalculator,
-                                    DataTypeUsageService dataTypeUsageService,
+                                    RecalcQueueService recalcQueueService,
                                     DataTypeService dataTypeService,
                                     PhysicalSpecificationDao physicalSpecificationDao,
                                     PhysicalSpecificationService physicalSpecificationService) {
         checkNotNull(changeLogService, "changeLogService cannot be null");
         checkNotNull(logicalFlowDecoratorService, "logicalFlowDecoratorService cannot be null");
         checkNotNull(physicalSpecificationService, "physicalSpecificationService cannot be null");
+        checkNotNull(logicalFlowGraphService, "logicalFlowGraphService cannot be null");
 
         this.changeLogService = changeLogService;
         this.logicalFlowDao = logicalFlowDao;
         this.logicalFlowService = logicalFlowService;
+        this.logicalFlowGraphService = logicalFlowGraphService;
         this.ratingsCalculator = ratingsCalculator;
-        this.dataTypeUsageService = dataTypeUsageService;
+        this.recalcQueueService = recalcQueueService;
         this.dataTypeService = dataTypeService;
         this.dataTypeDecoratorDaoSelectorFactory = dataTypeDecoratorDaoSelectorFactory;
         this.physicalSpecificationDao = physicalSpecificationDao;
@@ -165,6 +171,7 @@ public class DataTypeDecoratorService {
         audit(format("Added data types: %s", dataTypeIds.toString()),
                 entityReference, userName);
 
+        refreshFlowGraph(entityReference);
         recalculateDataTypeUsageForApplications(entityReference);
 
         if (PHYSICAL_SPECIFICATION.equals(entityReference.kind())) {
@@ -186,16 +193,24 @@ public class DataTypeDecoratorService {
         audit(format("Removed data types: %s", dataTypeIds.toString()),
                 entityReference, userName);
 
+        refreshFlowGraph(entityReference);
         recalculateDataTypeUsageForApplications(entityReference);
 
         return result;
     }
 
 
+    private void refreshFlowGraph(EntityReference associatedEntityReference) {
+        if (LOGICAL_DATA_FLOW.equals(associatedEntityReference.kind())) {
+            logicalFlowGraphService.refreshFlows(newArrayList(associatedEntityReference.id()));
+        }
+    }
+
+
     private void recalculateDataTypeUsageForApplications(EntityReference associatedEntityReference) {
         if(LOGICAL_DATA_FLOW.equals(associatedEntityReference.kind())) {
             LogicalFlow flow = logicalFlowDao.getByFlowId(associatedEntityReference.id());
-            dataTypeUsageService.recalculateForApplications(newArrayList(flow.source(), flow.target()));
+            recalcQueueService.record(RecalcTarget.DATA_TYPE_USAGE, newArrayList(flow.source(), flow.target()));
         }
     }
 
@@ -0,0 +1,360 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.email;
+
+import org.finos.waltz.common.LatencyHistogram;
+import org.finos.waltz.data.email.EmailOutboxDao;
+import org.finos.waltz.model.email.EmailStatus;
+import org.finos.waltz.model.email.ImmutableOutboxEmail;
+import org.finos.waltz.model.email.OutboxEmail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.finos.waltz.common.Checks.checkNotEmpty;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
+import static org.finos.waltz.common.DateTimeUtilities.nowUtc;
+import static org.finos.waltz.common.StreamUtilities.batchProcessingCollector;
+
+/**
+ * Emails are written to an outbox table and sent in the background by a dispatcher
+ * which polls for due emails, claims them and sends them on its own threads with
+ * bounded concurrency.
+ * Failed sends are retried with exponential backoff, once the maximum number of
+ * attempts has been reached the email is marked as <code>FAILED</code>.
+ * <p>
+ * If the outbox is disabled (<code>waltz.email.outbox.enabled=false</code>) emails
+ * are sent immediately, on the calling thread.
+ */
+@Service
+public class EmailOutboxService implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    private static final String THREAD_NAME_PREFIX = "waltz-email-dispatcher-";
+
+    // how long a dispatcher may hold an email before another may try to send it
+    private static final long CLAIM_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final EmailOutboxDao emailOutboxDao;
+    private final WaltzEmailer waltzEmailer;
+
+    private final boolean enabled;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int retentionDays;
+
+    private final ExecutorService executor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+
+    @Autowired
+    public EmailOutboxService(EmailOutboxDao emailOutboxDao,
+                              WaltzEmailer waltzEmailer,
+                              @Value("${waltz.email.outbox.enabled:true}") boolean enabled,
+                              @Value("${waltz.email.outbox.concurrency:2}") int concurrency,
+                              @Value("${waltz.email.outbox.max.attempts:5}") int maxAttempts,
+                              @Value("${waltz.email.outbox.backoff.ms:60000}") long initialBackoffMillis,
+                              @Value("${waltz.email.outbox.max.backoff.ms:3600000}") long maxBackoffMillis,
+                              @Value("${waltz.email.outbox.retention.days:30}") int retentionDays) {
+        checkNotNull(emailOutboxDao, "emailOutboxDao cannot be null");
+        checkNotNull(waltzEmailer, "waltzEmailer cannot be null");
+        checkTrue(concurrency > 0, "concurrency must be greater than zero");
+        checkTrue(maxAttempts > 0, "maxAttempts must be greater than zero");
+
+        this.emailOutboxDao = emailOutboxDao;
+        this.waltzEmailer = waltzEmailer;
+        this.enabled = enabled;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = Math.max(initialBackoffMillis, maxBackoffMillis);
+        this.retentionDays = retentionDays;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread t = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+
+    /**
+     * Adds an email to the outbox for each batch of (bcc) recipients.
+     *
+     * @param subject    email subject
+     * @param body       email body (html), inserted into the standard template
+     * @param recipients email addresses
+     * @param batchSize  maximum number of recipients per email
+     * @return number of emails queued (or sent, if the outbox is disabled)
+     */
+    public int enqueue(String subject,
+                       String body,
+                       Collection<String> recipients,
+                       int batchSize) {
+        checkNotEmpty(subject, "subject cannot be empty");
+        checkNotEmpty(body, "body cannot be empty");
+        checkNotNull(recipients, "recipients cannot be null");
+        checkTrue(batchSize > 0, "batchSize must be greater than zero");
+
+        List<OutboxEmail> emails = new ArrayList<>();
+        recipients
+                .stream()
+                .distinct()
+                .collect(batchProcessingCollector(batchSize, batch -> emails.add(ImmutableOutboxEmail
+                        .builder()
+                        .subject(subject)
+                        .body(body)
+                        .recipients(batch)
+                        .build())));
+
+        if (emails.isEmpty()) {
+            return 0;
+        }
+
+        if (enabled) {
+            emailOutboxDao.enqueue(emails, nowUtc());
+            enqueued.addAndGet(emails.size());
+        } else {
+            emails.forEach(e -> waltzEmailer.sendEmail(
+                    e.subject(),
+                    e.body(),
+                    e.recipients().toArray(new String[0])));
+        }
+
+        return emails.size();
+    }
+
+
+    /**
+     * Claims due emails (and retries) and hands them to the dispatcher threads, which send up to
+     * <code>concurrency</code> at once.  The call does not wait for the sends to complete, so a slow
+     * mail server does not hold up the scheduler.  No more than <code>concurrency * 10</code> emails
+     * are claimed but unsent at any time.
+     *
+     * @return number of emails handed to the dispatcher
+     */
+    @Scheduled(
+            initialDelayString = "${waltz.email.outbox.poll.ms:10000}",
+            fixedDelayString = "${waltz.email.outbox.poll.ms:10000}")
+    public synchronized int dispatch() {
+        if (! enabled) {
+            return 0;
+        }
+
+        int capacity = concurrency * 10 - inFlight.get();
+        if (capacity <= 0) {
+            return 0;
+        }
+
+        List<OutboxEmail> due = emailOutboxDao.findDue(nowUtc(), capacity);
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        int dispatched = 0;
+        for (OutboxEmail email : due) {
+            if (claim(email)) {
+                inFlight.incrementAndGet();
+                executor.execute(() -> {
+                    try {
+                        send(email);
+                    } catch (Exception e) {
+                        LOG.warn("Unexpected error dispatching email", e);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+                dispatched++;
+            }
+        }
+
+        LOG.info("Dispatched {} emails", dispatched);
+        return dispatched;
+    }
+
+
+    @Scheduled(fixedRate = 3_600_000)
+    public void purgeSent() {
+        if (enabled && retentionDays > 0) {
+            int removed = emailOutboxDao.deleteSentBefore(nowUtc().minusDays(retentionDays));
+            if (removed > 0) {
+                LOG.info("Removed {} sent emails from the outbox", removed);
+            }
+        }
+    }
+
+
+    /**
+     * Makes failed emails pending again (e.g. once a mail server problem has been fixed).
+     *
+     * @return number of emails which will be retried
+     */
+    public int retryFailed() {
+        return emailOutboxDao.retryFailed(nowUtc());
+    }
+
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+
+    // --- metrics ---
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+
+    /**
+     * @return number of claimed emails which are waiting to be, or being, sent
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+
+    public Map<EmailStatus, Integer> countByStatus() {
+        return emailOutboxDao.countByStatus();
+    }
+
+
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+
+    public LatencyHistogram getSendLatency() {
+        return sendLatency;
+    }
+
+
+    public void resetCounters() {
+        enqueued.set(0);
+        sent.set(0);
+        retried.set(0);
+        failed.set(0);
+        sendLatency.reset();
+    }
+
+
+    // -- HELPERS ---
+
+    private boolean claim(OutboxEmail email) {
+        LocalDateTime now = nowUtc();
+        return emailOutboxDao.claim(
+                email.id().get(),
+                now,
+                now.plusNanos(TimeUnit.MILLISECONDS.toNanos(CLAIM_MILLIS)));
+    }
+
+
+    private void send(OutboxEmail email) {
+        long id = email.id().get();
+        // the claim incremented the attempt count
+        int attempt = email.attempts() + 1;
+        long start = System.currentTimeMillis();
+        try {
+            waltzEmailer.sendEmail(
+                    email.subject(),
+                    email.body(),
+                    email.recipients().toArray(new String[0]));
+            sendLatency.record(System.currentTimeMillis() - start);
+            emailOutboxDao.markSent(id, nowUtc());
+            sent.incrementAndGet();
+        } catch (Exception e) {
+            String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            if (attempt >= maxAttempts) {
+                LOG.error("Giving up sending email: {} after {} attempts, {}", id, attempt, error);
+                emailOutboxDao.markFailed(id, error);
+                failed.incrementAndGet();
+            } else {
+                long backoff = getBackoffMillis(attempt);
+                LOG.warn("Failed to send email: {} (attempt {}), retrying in {}ms, {}", id, attempt, backoff, error);
+                emailOutboxDao.markForRetry(
+                        id,
+                        nowUtc().plusNanos(TimeUnit.MILLISECONDS.toNanos(backoff)),
+                        error);
+                retried.incrementAndGet();
+            }
+        }
+    }
+
+
+    /**
+     * Doubles with each attempt, capped at the maximum backoff.
+     */
+    long getBackoffMillis(int attempt) {
+        int doublings = Math.min(Math.max(attempt - 1, 0), 30);
+        return Math.min(maxBackoffMillis, initialBackoffMillis << doublings);
+    }
+
+}
@@ -42,7 +42,6 @@ import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toSet;
 import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.common.SetUtilities.fromCollection;
-import static org.finos.waltz.common.StreamUtilities.batchProcessingCollector;
 import static org.finos.waltz.common.StringUtilities.mkSafe;
 
 
@@ -52,7 +51,7 @@ public class EmailService {
     private static final Logger LOG = LoggerFactory.getLogger(EmailService.class);
     private static final String MAIL_NEW_LINE = "<br/>";
 
-    private final WaltzEmailer waltzEmailer;
+    private final EmailOutboxService emailOutboxService;
     private final AttestationRunDao attestationRunDao;
     private final AttestationInstanceRecipientDao attestationInstanceRecipientDao;
     private final InvolvementKindService involvementKindService;
@@ -66,18 +65,18 @@ public class EmailService {
 
 
     @Autowired
-    public EmailService(WaltzEmailer waltzEmailer,
+    public EmailService(EmailOutboxService emailOutboxService,
                         AttestationRunDao attestationRunDao,
                         AttestationInstanceRecipientDao attestationInstanceRecipientDao,
                         InvolvementKindService involvementKindService,
                         PersonService personService) {
-        checkNotNull(waltzEmailer, "waltzEmailer cannot be null");
+        checkNotNull(emailOutboxService, "emailOutboxService cannot be null");
         checkNotNull(attestationRunDao, "attestationRunDao cannot be null");
         checkNotNull(attestationInstanceRecipientDao, "attestationInstanceRecipientDao cannot be null");
         checkNotNull(involvementKindService, "involvementKindService cannot be null");
         checkNotNull(personService, "personService cannot be null");
 
-        this.waltzEmailer = waltzEmailer;
+        this.emailOutboxService = emailOutboxService;
         this.attestationRunDao = attestationRunDao;
         this.attestationInstanceRecipientDao = attestationInstanceRecipientDao;
         this.involvementKindService = involvementKindService;
@@ -139,11 +138,8 @@ public class EmailService {
 
 
     private void sendEmailNotification(String subject, String body, Collection<String> recipients) {
-        int count = recipients.stream().collect(batchProcessingCollector(batchSize, batch -> {
-            String[] to = batch.toArray(new String[0]);
-            waltzEmailer.sendEmail(subject, body, to);
-        }));
-        LOG.info(String.format("Sent email notification: %s to %s users", subject, count));
+        int emailCount = emailOutboxService.enqueue(subject, body, recipients, batchSize);
+        LOG.info(String.format("Queued email notification: %s to %s users (%s emails)", subject, recipients.size(), emailCount));
     }
 
 }
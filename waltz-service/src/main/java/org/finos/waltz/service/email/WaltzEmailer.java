@@ -27,16 +27,32 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.mail.javamail.MimeMessagePreparator;
 import org.springframework.stereotype.Service;
 import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
+import org.springframework.util.StreamUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-
+import java.util.Optional;
+
+/**
+ * Sends (synchronously) an email using the standard Waltz template.  The template
+ * and the image attachments are loaded once, when the emailer is created.
+ * <p>
+ * Most callers should use the {@link EmailOutboxService} which queues emails and
+ * sends them in the background (with retries).
+ */
 @Service
 public class WaltzEmailer {
 
@@ -44,6 +60,8 @@ public class WaltzEmailer {
     private static final String DEFAULT_EMAIL_TEMPLATE_LOCATION = "/templates/waltz-email-template.ftlh";
 
     private final JavaMailSender mailSender;
+    private final Template template;
+    private final Map<String, Resource> attachments;
 
     @Value("${waltz.from.email:waltz.admin}")
     private String fromEmail;
@@ -52,6 +70,12 @@ public class WaltzEmailer {
     @Autowired
     public WaltzEmailer(JavaMailSender mailSender) {
         this.mailSender = mailSender;
+        this.template = loadTemplate(DEFAULT_EMAIL_TEMPLATE_LOCATION);
+
+        Map<String, Resource> attachments = new LinkedHashMap<>();
+        loadAttachment("/images/waltz.png").ifPresent(a -> attachments.put("waltz.png", a));
+        loadAttachment("/templates/images/client-logo.png").ifPresent(a -> attachments.put("client-logo", a));
+        this.attachments = Collections.unmodifiableMap(attachments);
     }
 
 
@@ -73,23 +97,50 @@ public class WaltzEmailer {
             message.setSubject(subject);
             message.setFrom(fromEmail);
             message.setBcc(to);
-            message.addAttachment("waltz.png", IOUtilities.getFileResource("/images/waltz.png"));
-            message.addAttachment("client-logo", IOUtilities.getFileResource("/templates/images/client-logo.png"));
+            for (Map.Entry<String, Resource> attachment : attachments.entrySet()) {
+                message.addAttachment(attachment.getKey(), attachment.getValue());
+            }
 
-            Map model = new HashMap();
+            Map<String, Object> model = new HashMap<>();
             model.put("body", body);
 
-            Configuration cfg = new Configuration(Configuration.VERSION_2_3_23);
-
-            try(InputStreamReader templateReader = new InputStreamReader(IOUtilities
-                    .getFileResource(DEFAULT_EMAIL_TEMPLATE_LOCATION)
-                    .getInputStream())) {
-                Template template = new Template("template", templateReader, cfg);
-                String text = FreeMarkerTemplateUtils.processTemplateIntoString(template, model);
-                message.setText(text, true);
-            }
+            String text = FreeMarkerTemplateUtils.processTemplateIntoString(template, model);
+            message.setText(text, true);
         };
 
         this.mailSender.send(preparator);
     }
+
+
+    // -- HELPERS ---
+
+    private static Template loadTemplate(String location) {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_23);
+        try (InputStreamReader templateReader = new InputStreamReader(IOUtilities
+                .getFileResource(location)
+                .getInputStream())) {
+            return new Template("template", templateReader, cfg);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load email template: " + location, e);
+        }
+    }
+
+
+    /**
+     * Attachments are read into memory, a missing attachment is logged and omitted from emails.
+     */
+    private static Optional<Resource> loadAttachment(String location) {
+        Resource resource = IOUtilities.getFileResource(location);
+        if (! resource.exists()) {
+            LOG.warn("Email attachment not found, it will not be included in emails: {}", location);
+            return Optional.empty();
+        }
+        try (InputStream is = resource.getInputStream()) {
+            return Optional.of(new ByteArrayResource(StreamUtils.copyToByteArray(is)));
+        } catch (IOException e) {
+            LOG.warn("Could not read email attachment, it will not be included in emails: {}", location, e);
+            return Optional.empty();
+        }
+    }
+
 }
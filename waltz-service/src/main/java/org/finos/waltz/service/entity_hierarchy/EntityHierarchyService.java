@@ -21,6 +21,7 @@ package org.finos.waltz.service.entity_hierarchy;
 import org.finos.waltz.schema.Tables;
 import org.finos.waltz.service.person_hierarchy.PersonHierarchyService;
 import org.finos.waltz.common.ListUtilities;
+import org.finos.waltz.common.SetUtilities;
 import org.finos.waltz.common.hierarchy.FlatNode;
 import org.finos.waltz.common.hierarchy.Forest;
 import org.finos.waltz.common.hierarchy.HierarchyUtilities;
@@ -51,6 +52,7 @@ import org.springframework.stereotype.Service;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.finos.waltz.schema.Tables.ENTITY_HIERARCHY;
@@ -144,6 +146,11 @@ public class EntityHierarchyService {
     }
 
 
+    /**
+     * Fully rebuilds the hierarchy for the given kind, deleting and re-inserting every row.
+     * Prefer {@link #updateFor(EntityKind)} for routine maintenance, this is intended
+     * as a periodic reconciliation.
+     */
     public int buildFor(EntityKind kind) {
         if (kind == PERSON) {
             int[] rc = personHierarchyService.build();
@@ -155,13 +162,62 @@ public class EntityHierarchyService {
     }
 
 
+    /**
+     * Incrementally updates the hierarchy for the given kind.  Nodes which have been added,
+     * removed or moved since the hierarchy was last written are found in the database (their
+     * direct parent row is missing or stale), then only the subtrees of those nodes are
+     * loaded, recomputed and compared with their existing rows.  Only the differences are
+     * written.
+     *
+     * @return number of hierarchy rows deleted and inserted
+     */
+    public int updateFor(EntityKind kind) {
+        if (kind == PERSON) {
+            // person hierarchy is maintained separately
+            return buildFor(kind);
+        } else {
+            Table<?> table = determineTableToRebuild(kind);
+            return updateFor(table, kind, DSL.trueCondition());
+        }
+    }
+
+
+    /**
+     * Incrementally updates the hierarchy for the subtrees of the given nodes, for use when
+     * the caller knows which nodes have been added, removed or moved.
+     *
+     * @return number of hierarchy rows deleted and inserted
+     */
+    public int updateForNodes(EntityKind kind, Collection<Long> ids) {
+        checkNotNull(ids, "ids cannot be null");
+        if (kind == PERSON) {
+            return buildFor(kind);
+        } else {
+            Table<?> table = determineTableToRebuild(kind);
+            return updateSubtrees(table, kind, DSL.trueCondition(), new HashSet<>(ids));
+        }
+    }
+
+
     public int buildForMeasurableByCategory(long categoryId) {
         return buildFor(MEASURABLE,
                         EntityKind.MEASURABLE,
                         MEASURABLE.MEASURABLE_CATEGORY_ID.eq(categoryId),
-                        ENTITY_HIERARCHY.ID.in(select(MEASURABLE.ID)
-                                                .from(MEASURABLE)
-                                                .where(MEASURABLE.MEASURABLE_CATEGORY_ID.eq(categoryId))));
+                        mkMeasurableCategoryHierarchyFilter(categoryId));
+    }
+
+
+    public int updateForMeasurableByCategory(long categoryId) {
+        return updateFor(MEASURABLE,
+                         EntityKind.MEASURABLE,
+                         MEASURABLE.MEASURABLE_CATEGORY_ID.eq(categoryId));
+    }
+
+
+    private Condition mkMeasurableCategoryHierarchyFilter(long categoryId) {
+        return ENTITY_HIERARCHY.ID.in(select(MEASURABLE.ID)
+                                        .from(MEASURABLE)
+                                        .where(MEASURABLE.MEASURABLE_CATEGORY_ID.eq(categoryId)));
     }
 
 
@@ -176,6 +232,196 @@ public class EntityHierarchyService {
     }
 
 
+    private int updateFor(Table<?> table,
+                          EntityKind kind,
+                          Condition selectFilter) {
+        return updateSubtrees(
+                table,
+                kind,
+                selectFilter,
+                findChangedNodeIds(table, kind, selectFilter));
+    }
+
+
+    /**
+     * Nodes whose hierarchy rows no longer reflect the node table: new or moved nodes (no row
+     * for their current parent at the level above them), roots which were previously children
+     * and nodes which have been deleted.
+     */
+    private Set<Long> findChangedNodeIds(Table<?> table,
+                                         EntityKind kind,
+                                         Condition selectFilter) {
+        Field<Long> idField = table.field("id", Long.class);
+        Field<Long> parentIdField = table.field("parent_id", Long.class);
+
+        Condition isRoot = parentIdField.isNull().or(parentIdField.eq(idField));
+
+        Condition hasParentRow = DSL.exists(DSL
+                .selectOne()
+                .from(ENTITY_HIERARCHY)
+                .where(ENTITY_HIERARCHY.KIND.eq(kind.name()))
+                .and(ENTITY_HIERARCHY.ID.eq(idField))
+                .and(ENTITY_HIERARCHY.ANCESTOR_ID.eq(parentIdField))
+                .and(ENTITY_HIERARCHY.LEVEL.eq(ENTITY_HIERARCHY.DESCENDANT_LEVEL.minus(1))));
+
+        Condition hasRootRow = DSL.exists(DSL
+                .selectOne()
+                .from(ENTITY_HIERARCHY)
+                .where(ENTITY_HIERARCHY.KIND.eq(kind.name()))
+                .and(ENTITY_HIERARCHY.ID.eq(idField))
+                .and(ENTITY_HIERARCHY.ANCESTOR_ID.eq(idField))
+                .and(ENTITY_HIERARCHY.LEVEL.eq(1))
+                .and(ENTITY_HIERARCHY.DESCENDANT_LEVEL.eq(1)));
+
+        Set<Long> changed = dsl
+                .select(idField)
+                .from(table)
+                .where(selectFilter)
+                .and(isRoot.and(DSL.not(hasRootRow))
+                        .or(DSL.not(isRoot).and(DSL.not(hasParentRow))))
+                .fetchSet(idField);
+
+        Set<Long> removed = dsl
+                .select(ENTITY_HIERARCHY.ID)
+                .from(ENTITY_HIERARCHY)
+                .where(ENTITY_HIERARCHY.KIND.eq(kind.name()))
+                .and(ENTITY_HIERARCHY.ID.eq(ENTITY_HIERARCHY.ANCESTOR_ID))
+                .and(DSL.notExists(DSL
+                        .selectOne()
+                        .from(table)
+                        .where(idField.eq(ENTITY_HIERARCHY.ID))))
+                .fetchSet(ENTITY_HIERARCHY.ID);
+
+        return SetUtilities.union(changed, removed);
+    }
+
+
+    /**
+     * Recomputes the hierarchy rows of the given nodes and everything beneath them, both
+     * beneath them previously (according to the existing rows) and now (according to the
+     * node table).  Only those subtrees, and the ancestors of the nodes, are loaded.
+     */
+    private int updateSubtrees(Table<?> table,
+                               EntityKind kind,
+                               Condition selectFilter,
+                               Set<Long> changedIds) {
+        if (changedIds.isEmpty()) {
+            return 0;
+        }
+
+        Field<Long> idField = table.field("id", Long.class);
+        Field<Long> parentIdField = table.field("parent_id", Long.class);
+
+        Set<Long> affectedIds = new HashSet<>(changedIds);
+        affectedIds.addAll(entityHierarchyDao.findDescendantIds(kind, changedIds));
+
+        Map<Long, Optional<Long>> parentIdsById = new HashMap<>();
+
+        // current descendants, breadth first
+        Set<Long> visited = new HashSet<>(changedIds);
+        Set<Long> frontier = changedIds;
+        while (! frontier.isEmpty()) {
+            Set<Long> nextFrontier = new HashSet<>();
+            fetchFlatNodes(table, selectFilter.and(parentIdField.in(frontier)).and(idField.ne(parentIdField)))
+                    .forEach(n -> {
+                        parentIdsById.put(n.getId(), n.getParentId());
+                        affectedIds.add(n.getId());
+                        if (visited.add(n.getId())) {
+                            nextFrontier.add(n.getId());
+                        }
+                    });
+            frontier = nextFrontier;
+        }
+
+        // the affected nodes themselves and their ancestors, walking upwards
+        Set<Long> missingIds = new HashSet<>();
+        Set<Long> toFetch = SetUtilities.minus(affectedIds, parentIdsById.keySet());
+        while (! toFetch.isEmpty()) {
+            Set<Long> found = new HashSet<>();
+            fetchFlatNodes(table, selectFilter.and(idField.in(toFetch)))
+                    .forEach(n -> {
+                        found.add(n.getId());
+                        parentIdsById.put(n.getId(), n.getParentId().filter(pId -> ! pId.equals(n.getId())));
+                    });
+            missingIds.addAll(SetUtilities.minus(toFetch, found));
+
+            toFetch = found
+                    .stream()
+                    .map(parentIdsById::get)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .filter(pId -> ! parentIdsById.containsKey(pId) && ! missingIds.contains(pId))
+                    .collect(Collectors.toSet());
+        }
+
+        Set<EntityHierarchyItem> required = affectedIds
+                .stream()
+                .filter(parentIdsById::containsKey)
+                .flatMap(id -> mkItemsForNode(kind, id, parentIdsById))
+                .collect(Collectors.toSet());
+
+        Set<EntityHierarchyItem> existing = new HashSet<>(entityHierarchyDao.findByIds(kind, affectedIds));
+
+        // rows with changed levels appear in both sets, so are deleted and re-inserted
+        Set<EntityHierarchyItem> removals = SetUtilities.minus(existing, required);
+        Set<EntityHierarchyItem> additions = SetUtilities.minus(required, existing);
+
+        return entityHierarchyDao.applyDelta(kind, removals, additions);
+    }
+
+
+    /**
+     * The self row and one row per ancestor for the given node, with the same levels as a full
+     * rebuild would give.  Nodes which cannot be traced to a root (their parent is missing, or
+     * they are in a cycle) only get a self row with unknown (-1) levels.
+     */
+    private Stream<EntityHierarchyItem> mkItemsForNode(EntityKind kind,
+                                                       Long id,
+                                                       Map<Long, Optional<Long>> parentIdsById) {
+        List<Long> ancestorIds = new ArrayList<>();
+        Set<Long> seen = SetUtilities.asSet(id);
+        Long currentId = id;
+        boolean rooted = false;
+        while (true) {
+            Optional<Long> parentId = parentIdsById.get(currentId);
+            if (parentId == null || (parentId.isPresent() && ! seen.add(parentId.get()))) {
+                break;
+            } else if (! parentId.isPresent()) {
+                rooted = true;
+                break;
+            }
+            ancestorIds.add(parentId.get());
+            currentId = parentId.get();
+        }
+
+        if (! rooted) {
+            return Stream.of(mkItem(kind, id, id, -1, -1));
+        }
+
+        int level = ancestorIds.size() + 1;
+        return Stream.concat(
+                Stream.of(mkItem(kind, id, id, level, level)),
+                IntStream
+                        .range(0, ancestorIds.size())
+                        .mapToObj(i -> mkItem(kind, id, ancestorIds.get(i), level - 1 - i, level)));
+    }
+
+
+    private EntityHierarchyItem mkItem(EntityKind kind,
+                                       Long id,
+                                       Long ancestorId,
+                                       int ancestorLevel,
+                                       int descendantLevel) {
+        return ImmutableEntityHierarchyItem.builder()
+                .id(id)
+                .parentId(ancestorId)
+                .ancestorLevel(ancestorLevel)
+                .descendantLevel(descendantLevel)
+                .kind(kind)
+                .build();
+    }
+
+
     private List<FlatNode<Long, Long>> fetchFlatNodes(Table<?> table,
                                                       Condition selectFilter) {
         Field<Long> idField = table.field("id", Long.class);
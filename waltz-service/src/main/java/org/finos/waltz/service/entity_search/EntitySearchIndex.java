@@ -0,0 +1,299 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.entity_search;
+
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityLifecycleStatus;
+import org.finos.waltz.model.EntityReference;
+import org.jooq.lambda.tuple.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import static java.util.stream.Collectors.toList;
+import static org.finos.waltz.common.Checks.checkNotNull;
+
+/**
+ * An immutable, in-memory inverted index over the searchable text of entities.
+ * <p>
+ * Text is split into lower-cased tokens (on any non letter/digit character) and each
+ * token maps to a sorted array of document ordinals.  Whole field values (except
+ * descriptions) are also indexed so queries like 'ABC-12' still match an external id
+ * of 'ABC-123'.
+ * A query matches a document when every query term is a prefix of at least one of the
+ * documents tokens or field values.
+ * <p>
+ * Results are ranked: external id matches first, then names starting with the first term,
+ * then names containing it, then everything else (e.g. description or alias matches).
+ * Ties are broken by name.
+ */
+public class EntitySearchIndex {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<EntityKind, KindIndex> indexesByKind;
+    private final long dataVersion;
+    private final long builtAt;
+
+
+    private EntitySearchIndex(Map<EntityKind, KindIndex> indexesByKind,
+                              long dataVersion,
+                              long builtAt) {
+        this.indexesByKind = indexesByKind;
+        this.dataVersion = dataVersion;
+        this.builtAt = builtAt;
+    }
+
+
+    /**
+     * @param documentsByKind  entity references (with any extra searchable text) per kind
+     * @param dataVersion  the version of the data the documents were read at (see change log)
+     */
+    public static EntitySearchIndex build(Map<EntityKind, ? extends Collection<Tuple2<EntityReference, Set<String>>>> documentsByKind,
+                                          long dataVersion) {
+        checkNotNull(documentsByKind, "documentsByKind cannot be null");
+
+        Map<EntityKind, KindIndex> indexes = new EnumMap<>(EntityKind.class);
+        documentsByKind.forEach((kind, docs) -> indexes.put(kind, new KindIndex(docs)));
+
+        return new EntitySearchIndex(
+                Collections.unmodifiableMap(indexes),
+                dataVersion,
+                System.currentTimeMillis());
+    }
+
+
+    /**
+     * Returns a copy of this index with the given kinds re-indexed from the supplied documents,
+     * the indexes of the other kinds are shared.  The build time is not changed as the other
+     * kinds have not been re-read.
+     *
+     * @param documentsByKind  entity references (with any extra searchable text) of the kinds to replace
+     * @param dataVersion  the version of the data the documents were read at (see change log)
+     */
+    public EntitySearchIndex withKinds(Map<EntityKind, ? extends Collection<Tuple2<EntityReference, Set<String>>>> documentsByKind,
+                                       long dataVersion) {
+        checkNotNull(documentsByKind, "documentsByKind cannot be null");
+
+        Map<EntityKind, KindIndex> indexes = new EnumMap<>(EntityKind.class);
+        indexes.putAll(indexesByKind);
+        documentsByKind.forEach((kind, docs) -> indexes.put(kind, new KindIndex(docs)));
+
+        return new EntitySearchIndex(
+                Collections.unmodifiableMap(indexes),
+                dataVersion,
+                builtAt);
+    }
+
+
+    public boolean covers(EntityKind kind) {
+        return indexesByKind.containsKey(kind);
+    }
+
+
+    public Set<EntityKind> getIndexedKinds() {
+        return indexesByKind.keySet();
+    }
+
+
+    public List<EntityReference> search(EntityKind kind,
+                                        List<String> terms,
+                                        Collection<EntityLifecycleStatus> lifecycleStatuses,
+                                        int limit) {
+        checkNotNull(terms, "terms cannot be null");
+        checkNotNull(lifecycleStatuses, "lifecycleStatuses cannot be null");
+
+        KindIndex index = indexesByKind.get(kind);
+        if (index == null || terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> normalisedTerms = terms
+                .stream()
+                .map(String::toLowerCase)
+                .collect(toList());
+
+        return index.search(normalisedTerms, lifecycleStatuses, limit);
+    }
+
+
+    public int getDocumentCount() {
+        return indexesByKind
+                .values()
+                .stream()
+                .mapToInt(idx -> idx.documents.length)
+                .sum();
+    }
+
+
+    public int getTokenCount() {
+        return indexesByKind
+                .values()
+                .stream()
+                .mapToInt(idx -> idx.postings.size())
+                .sum();
+    }
+
+
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+
+    private static class KindIndex {
+
+        private final EntityReference[] documents;
+        private final String[] names;
+        private final String[] externalIds;
+        private final NavigableMap<String, int[]> postings;
+
+
+        private KindIndex(Collection<Tuple2<EntityReference, Set<String>>> docs) {
+            int size = docs.size();
+            this.documents = new EntityReference[size];
+            this.names = new String[size];
+            this.externalIds = new String[size];
+
+            Map<String, BitSet> working = new HashMap<>();
+            int ordinal = 0;
+            for (Tuple2<EntityReference, Set<String>> doc : docs) {
+                EntityReference ref = doc.v1;
+                documents[ordinal] = ref;
+                names[ordinal] = ref.name().map(String::toLowerCase).orElse("");
+                externalIds[ordinal] = ref.externalId().map(String::toLowerCase).orElse("");
+
+                addText(working, ordinal, names[ordinal], true);
+                addText(working, ordinal, externalIds[ordinal], true);
+                addText(working, ordinal, ref.description(), false);
+                for (String extra : doc.v2) {
+                    addText(working, ordinal, extra, true);
+                }
+                ordinal++;
+            }
+
+            TreeMap<String, int[]> postings = new TreeMap<>();
+            working.forEach((token, bits) -> postings.put(token, bits.stream().toArray()));
+            this.postings = postings;
+        }
+
+
+        private List<EntityReference> search(List<String> terms,
+                                             Collection<EntityLifecycleStatus> lifecycleStatuses,
+                                             int limit) {
+            BitSet matches = null;
+            for (String term : terms) {
+                BitSet termMatches = prefixMatches(term);
+                if (matches == null) {
+                    matches = termMatches;
+                } else {
+                    matches.and(termMatches);
+                }
+                if (matches.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+
+            String firstTerm = terms.get(0);
+            List<Integer> ordinals = new ArrayList<>(matches.cardinality());
+            matches.stream()
+                    .filter(i -> lifecycleStatuses.contains(documents[i].entityLifecycleStatus()))
+                    .forEach(ordinals::add);
+
+            Comparator<Integer> byRank = Comparator
+                    .<Integer>comparingInt(i -> rank(i, firstTerm))
+                    .thenComparing(i -> names[i]);
+
+            return ordinals
+                    .stream()
+                    .sorted(byRank)
+                    .limit(limit)
+                    .map(i -> documents[i])
+                    .collect(toList());
+        }
+
+
+        private BitSet prefixMatches(String term) {
+            BitSet result = new BitSet(documents.length);
+            postings
+                    .subMap(term, true, term + Character.MAX_VALUE, false)
+                    .values()
+                    .forEach(ordinals -> Arrays.stream(ordinals).forEach(result::set));
+            return result;
+        }
+
+
+        private int rank(int ordinal, String firstTerm) {
+            String externalId = externalIds[ordinal];
+            String name = names[ordinal];
+            if (externalId.equals(firstTerm)) {
+                return 0;
+            } else if (externalId.startsWith(firstTerm)) {
+                return 1;
+            } else if (name.startsWith(firstTerm)) {
+                return 2;
+            } else if (name.contains(firstTerm)) {
+                return 3;
+            } else {
+                return 4;
+            }
+        }
+
+
+        private static void addText(Map<String, BitSet> working,
+                                    int ordinal,
+                                    String text,
+                                    boolean includeWholeValue) {
+            if (text == null || text.isEmpty()) {
+                return;
+            }
+            String lower = text.toLowerCase().trim();
+            if (includeWholeValue) {
+                addToken(working, ordinal, lower);
+            }
+            for (String token : TOKEN_SEPARATOR.split(lower)) {
+                addToken(working, ordinal, token);
+            }
+        }
+
+
+        private static void addToken(Map<String, BitSet> working, int ordinal, String token) {
+            if (!token.isEmpty()) {
+                working.computeIfAbsent(token, t -> new BitSet()).set(ordinal);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.entity_search;
+
+import org.finos.waltz.data.entity_search.EntitySearchIndexDao;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.entity_search.EntitySearchOptions;
+import org.finos.waltz.service.changelog.ChangeLogService;
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.SetUtilities.intersection;
+
+/**
+ * Maintains an optional, in-memory {@link EntitySearchIndex} so the common entity
+ * kinds can be searched without hitting the database.
+ * <p>
+ * The index is disabled by default (`waltz.search.index.enabled`).  When enabled it is
+ * built shortly after startup and then checked every `waltz.search.index.refresh.ms`.
+ * When the change log has advanced only the indexed kinds mentioned (as parent or child kind)
+ * by the new entries are re-read, the rest of the index is kept.  The whole index is rebuilt
+ * when it is older than `waltz.search.index.max.age.ms` (to pick up changes made by loaders
+ * which do not write to the change log).
+ * <p>
+ * Until the index is available (or for kinds it does not cover) callers should fall back
+ * to the database searches.
+ */
+@Service
+public class EntitySearchIndexService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntitySearchIndexService.class);
+
+    private final EntitySearchIndexDao entitySearchIndexDao;
+    private final ChangeLogService changeLogService;
+    private final boolean enabled;
+    private final long maxAgeMillis;
+
+    private final AtomicReference<EntitySearchIndex> index = new AtomicReference<>();
+    private final AtomicLong buildCount = new AtomicLong();
+    private final AtomicLong updateCount = new AtomicLong();
+    private final AtomicLong lastBuildDuration = new AtomicLong();
+    private final AtomicLong indexedSearchCount = new AtomicLong();
+
+
+    @Autowired
+    public EntitySearchIndexService(EntitySearchIndexDao entitySearchIndexDao,
+                                    ChangeLogService changeLogService,
+                                    @Value("${waltz.search.index.enabled:false}") boolean enabled,
+                                    @Value("${waltz.search.index.max.age.ms:3600000}") long maxAgeMillis) {
+        checkNotNull(entitySearchIndexDao, "entitySearchIndexDao cannot be null");
+        checkNotNull(changeLogService, "changeLogService cannot be null");
+
+        this.entitySearchIndexDao = entitySearchIndexDao;
+        this.changeLogService = changeLogService;
+        this.enabled = enabled;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+
+    /**
+     * Searches the in-memory index.
+     *
+     * @return the matching references, or empty if the index cannot answer for this kind
+     *   (disabled, not yet built or kind not indexed) and the caller should use the database
+     */
+    public Optional<List<EntityReference>> search(EntityKind kind,
+                                                  List<String> terms,
+                                                  EntitySearchOptions options) {
+        EntitySearchIndex current = index.get();
+        if (!enabled || current == null || !current.covers(kind)) {
+            return Optional.empty();
+        }
+
+        indexedSearchCount.incrementAndGet();
+        return Optional.of(current.search(
+                kind,
+                terms,
+                options.entityLifecycleStatuses(),
+                options.limit()));
+    }
+
+
+    @Scheduled(
+            initialDelayString = "${waltz.search.index.initial.delay.ms:5000}",
+            fixedDelayString = "${waltz.search.index.refresh.ms:60000}")
+    public void refreshIfStale() {
+        if (!enabled) {
+            return;
+        }
+
+        EntitySearchIndex current = index.get();
+        if (current == null || System.currentTimeMillis() - current.getBuiltAt() > maxAgeMillis) {
+            rebuild();
+        } else if (current.getDataVersion() != changeLogService.getDataVersion()) {
+            update(current);
+        }
+    }
+
+
+    /**
+     * Unconditionally rebuilds the index, the previous index continues to serve
+     * searches until the new one is ready.
+     */
+    public synchronized EntitySearchIndex rebuild() {
+        long start = System.currentTimeMillis();
+        // read the version first, any changes made whilst loading will trigger another rebuild
+        long dataVersion = changeLogService.getDataVersion();
+
+        Map<EntityKind, List<Tuple2<EntityReference, Set<String>>>> documentsByKind = new EnumMap<>(EntityKind.class);
+        EntitySearchIndexDao.INDEXABLE_KINDS.forEach(kind -> documentsByKind.put(
+                kind,
+                entitySearchIndexDao.findDocuments(kind)));
+
+        EntitySearchIndex latest = EntitySearchIndex.build(documentsByKind, dataVersion);
+        index.set(latest);
+
+        long duration = System.currentTimeMillis() - start;
+        lastBuildDuration.set(duration);
+        buildCount.incrementAndGet();
+
+        LOG.info(
+                "Built entity search index: {} documents, {} tokens, data version: {}, in {}ms",
+                latest.getDocumentCount(),
+                latest.getTokenCount(),
+                dataVersion,
+                duration);
+
+        return latest;
+    }
+
+
+    /**
+     * Re-reads the indexed kinds which have changed (according to the change log) since the
+     * given index was built or last updated.
+     */
+    private synchronized void update(EntitySearchIndex current) {
+        if (index.get() != current) {
+            // rebuilt (or updated) whilst waiting, the next check will pick up anything outstanding
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        // read the version first, any changes made whilst loading will trigger another update
+        long dataVersion = changeLogService.getDataVersion();
+
+        Set<EntityKind> changedKinds = intersection(
+                changeLogService.findKindsChangedSince(current.getDataVersion()),
+                current.getIndexedKinds());
+
+        Map<EntityKind, List<Tuple2<EntityReference, Set<String>>>> documentsByKind = new EnumMap<>(EntityKind.class);
+        changedKinds.forEach(kind -> documentsByKind.put(
+                kind,
+                entitySearchIndexDao.findDocuments(kind)));
+
+        index.set(current.withKinds(documentsByKind, dataVersion));
+        updateCount.incrementAndGet();
+
+        LOG.debug(
+                "Updated entity search index, kinds: {}, data version: {}, in {}ms",
+                changedKinds,
+                dataVersion,
+                System.currentTimeMillis() - start);
+    }
+
+
+    public Optional<EntitySearchIndex> getIndex() {
+        return Optional.ofNullable(index.get());
+    }
+
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    public long getBuildCount() {
+        return buildCount.get();
+    }
+
+
+    public long getUpdateCount() {
+        return updateCount.get();
+    }
+
+
+    public long getLastBuildDuration() {
+        return lastBuildDuration.get();
+    }
+
+
+    public long getIndexedSearchCount() {
+        return indexedSearchCount.get();
+    }
+
+}
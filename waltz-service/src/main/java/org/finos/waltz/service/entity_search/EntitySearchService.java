@@ -48,6 +48,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 import static java.util.stream.Collectors.toList;
@@ -74,6 +75,7 @@ public class EntitySearchService {
     private final FlowDiagramService flowDiagramService;
     private final LegalEntityService legalEntityService;
     private final DatabaseInformationService databaseInformationService;
+    private final EntitySearchIndexService entitySearchIndexService;
 
 
     @Autowired
@@ -93,7 +95,8 @@ public class EntitySearchService {
                                SoftwareCatalogService softwareCatalogService,
                                FlowDiagramService flowDiagramService,
                                LegalEntityService legalEntityService,
-                               DatabaseInformationService databaseInformationService) {
+                               DatabaseInformationService databaseInformationService,
+                               EntitySearchIndexService entitySearchIndexService) {
 
         checkNotNull(dbExecutorPool, "dbExecutorPool cannot be null");
         checkNotNull(actorService, "actorService cannot be null");
@@ -112,6 +115,7 @@ public class EntitySearchService {
         checkNotNull(softwareCatalogService, "softwareCatalogService cannot be null");
         checkNotNull(legalEntityService, "legalEntityService cannot be null");
         checkNotNull(databaseInformationService, "databaseInformationService cannot be null");
+        checkNotNull(entitySearchIndexService, "entitySearchIndexService cannot be null");
 
         this.actorService = actorService;
         this.dbExecutorPool = dbExecutorPool;
@@ -130,26 +134,44 @@ public class EntitySearchService {
         this.softwareCatalogService = softwareCatalogService;
         this.legalEntityService = legalEntityService;
         this.databaseInformationService = databaseInformationService;
+        this.entitySearchIndexService = entitySearchIndexService;
     }
 
 
     public List<EntityReference> search(EntitySearchOptions options) {
         checkNotNull(options, "options cannot be null");
 
-        if (StringUtilities.isEmpty(options.searchQuery())
-                || SearchUtilities.mkTerms(options.searchQuery()).isEmpty()) {
+        List<String> terms = StringUtilities.isEmpty(options.searchQuery())
+                ? Collections.emptyList()
+                : SearchUtilities.mkTerms(options.searchQuery());
+
+        if (terms.isEmpty()) {
             return Collections.emptyList();
         }
 
-        List<Future<Collection<? extends WaltzEntity>>> futures = options
+        // kinds covered by the in-memory index are answered directly, the rest go to the database
+        List<Future<List<EntityReference>>> futures = options
                 .entityKinds()
                 .stream()
-                .map(ek -> dbExecutorPool.submit(mkCallable(ek, options)))
+                .map(ek -> entitySearchIndexService
+                        .search(ek, terms, options)
+                        .<Future<List<EntityReference>>>map(CompletableFuture::completedFuture)
+                        .orElseGet(() -> dbExecutorPool.submit(mkDatabaseSearch(ek, options))))
                 .collect(toList());
 
         return futures
                 .stream()
                 .flatMap(f -> supplier(f::get).get().stream())
+                .collect(toList());
+    }
+
+
+    private Callable<List<EntityReference>> mkDatabaseSearch(EntityKind entityKind,
+                                                             EntitySearchOptions options) {
+        Callable<Collection<? extends WaltzEntity>> callable = mkCallable(entityKind, options);
+        return () -> callable
+                .call()
+                .stream()
                 .map(WaltzEntity::entityReference)
                 .collect(toList());
     }
@@ -39,6 +39,8 @@ import org.finos.waltz.model.datatype.DataType;
 import org.finos.waltz.model.flow_classification.FlowClassification;
 import org.finos.waltz.model.flow_classification_rule.*;
 import org.finos.waltz.model.rating.AuthoritativenessRatingValue;
+import org.finos.waltz.model.recalc.RecalcTarget;
+import org.finos.waltz.service.recalc.RecalcQueueService;
 import org.jooq.Condition;
 import org.jooq.Record1;
 import org.jooq.Select;
@@ -55,6 +57,7 @@ import java.util.Set;
 
 import static org.finos.waltz.schema.tables.LogicalFlowDecorator.LOGICAL_FLOW_DECORATOR;
 import static java.lang.String.format;
+import static java.util.Collections.singletonList;
 import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.model.EntityKind.ACTOR;
 import static org.finos.waltz.model.EntityKind.ORG_UNIT;
@@ -75,6 +78,8 @@ public class FlowClassificationRuleService {
     private final FlowClassificationCalculator ratingCalculator;
     private final ChangeLogService changeLogService;
     private final LogicalFlowDecoratorDao logicalFlowDecoratorDao;
+    private final FlowRatingRecalculator flowRatingRecalculator;
+    private final RecalcQueueService recalcQueueService;
     private final DataTypeIdSelectorFactory dataTypeIdSelectorFactory = new DataTypeIdSelectorFactory();
     private final ApplicationIdSelectorFactory applicationIdSelectorFactory = new ApplicationIdSelectorFactory();
     private final GenericSelectorFactory genericSelectorFactory = new GenericSelectorFactory();
@@ -89,7 +94,9 @@ public class FlowClassificationRuleService {
                                          ActorDao actorDao,
                                          FlowClassificationCalculator ratingCalculator,
                                          ChangeLogService changeLogService,
-                                         LogicalFlowDecoratorDao logicalFlowDecoratorDao) {
+                                         LogicalFlowDecoratorDao logicalFlowDecoratorDao,
+                                         FlowRatingRecalculator flowRatingRecalculator,
+                                         RecalcQueueService recalcQueueService) {
         checkNotNull(flowClassificationRuleDao, "flowClassificationRuleDao must not be null");
         checkNotNull(flowClassificationDao, "flowClassificationDao must not be null");
         checkNotNull(actorDao, "actorDao must not be null");
@@ -99,6 +106,8 @@ public class FlowClassificationRuleService {
         checkNotNull(ratingCalculator, "ratingCalculator cannot be null");
         checkNotNull(changeLogService, "changeLogService cannot be null");
         checkNotNull(logicalFlowDecoratorDao, "logicalFlowDecoratorDao cannot be null");
+        checkNotNull(flowRatingRecalculator, "flowRatingRecalculator cannot be null");
+        checkNotNull(recalcQueueService, "recalcQueueService cannot be null");
 
         this.flowClassificationRuleDao = flowClassificationRuleDao;
         this.flowClassificationDao = flowClassificationDao;
@@ -109,6 +118,8 @@ public class FlowClassificationRuleService {
         this.ratingCalculator = ratingCalculator;
         this.changeLogService = changeLogService;
         this.logicalFlowDecoratorDao = logicalFlowDecoratorDao;
+        this.flowRatingRecalculator = flowRatingRecalculator;
+        this.recalcQueueService = recalcQueueService;
     }
 
 
@@ -138,7 +149,7 @@ public class FlowClassificationRuleService {
                 .id()
                 .orElseThrow(() -> new IllegalArgumentException("cannot update an flow classification rule without an id"));
         FlowClassificationRule updatedClassificationRule = getById(ruleId);
-        ratingCalculator.update(updatedClassificationRule.dataTypeId(), updatedClassificationRule.vantagePointReference());
+        updateRatings(updatedClassificationRule.dataTypeId(), updatedClassificationRule.vantagePointReference());
         logUpdate(command, username);
         return updateCount;
     }
@@ -148,7 +159,7 @@ public class FlowClassificationRuleService {
         long classificationRuleId = flowClassificationRuleDao.insert(command, username);
 
         if (command.parentReference().kind() == ORG_UNIT) {
-            ratingCalculator.update(command.dataTypeId(), command.parentReference());
+            updateRatings(command.dataTypeId(), command.parentReference());
         }
 
         logInsert(classificationRuleId, command, username);
@@ -177,7 +188,7 @@ public class FlowClassificationRuleService {
         LOG.debug("Updated point-point");
         if (classificationRuleToDelete.vantagePointReference().kind() != ACTOR) {
             LOG.debug("Updating org unit /app flow ratings");
-            ratingCalculator.update(classificationRuleToDelete.dataTypeId(), classificationRuleToDelete.vantagePointReference());
+            updateRatings(classificationRuleToDelete.dataTypeId(), classificationRuleToDelete.vantagePointReference());
         }
 
         return deletedCount;
@@ -200,27 +211,14 @@ public class FlowClassificationRuleService {
     }
 
 
+    /**
+     * Recalculates the rating of every flow decorator in memory, only writing
+     * back those decorators whose rating has changed.
+     *
+     * @return number of decorators updated
+     */
     public int fastRecalculateAllFlowRatings() {
-        logicalFlowDecoratorDao.updateRatingsByCondition(AuthoritativenessRatingValue.NO_OPINION, DSL.trueCondition());
-
-        //finds all the vantage points to apply using parent as selector
-        List<FlowClassificationRuleVantagePoint> flowClassificationRuleVantagePoints = flowClassificationRuleDao
-                .findFlowClassificationRuleVantagePoints();
-
-        int updatedRuleDecorators = flowClassificationRuleVantagePoints
-                .stream()
-                .mapToInt(logicalFlowDecoratorDao::updateDecoratorsForFlowClassificationRule)
-                .sum();
-
-        //overrides rating for point to point flows (must run after the above)
-        int updatedPointToPointDecorators = flowClassificationRuleDao.updatePointToPointFlowClassificationRules();
-
-        LOG.info(
-                "Updated decorators for: {} for general rules and {} point-to-point flows",
-                updatedRuleDecorators,
-                updatedPointToPointDecorators);
-
-        return updatedRuleDecorators + updatedPointToPointDecorators;
+        return flowRatingRecalculator.recalculateAll();
     }
 
 
@@ -356,6 +354,19 @@ public class FlowClassificationRuleService {
     }
 
 
+    /**
+     * Flows into org units and applications are re-rated via the recalculation queue.  Flows
+     * into actors are not grouped by org unit, so those are still re-rated immediately.
+     */
+    private void updateRatings(long dataTypeId, EntityReference vantagePoint) {
+        if (vantagePoint.kind() == ACTOR) {
+            ratingCalculator.update(dataTypeId, vantagePoint);
+        } else {
+            recalcQueueService.record(RecalcTarget.FLOW_RATINGS, singletonList(vantagePoint));
+        }
+    }
+
+
     private void logInsert(Long ruleId, FlowClassificationRuleCreateCommand command, String username) {
 
         String parentName = getParentEntityName(command.parentReference());
@@ -0,0 +1,363 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.flow_classification_rule;
+
+import org.finos.waltz.data.datatype_decorator.LogicalFlowDecoratorDao;
+import org.finos.waltz.data.entity_hierarchy.EntityHierarchyDao;
+import org.finos.waltz.data.flow_classification_rule.FlowClassificationDao;
+import org.finos.waltz.data.flow_classification_rule.FlowClassificationRuleDao;
+import org.finos.waltz.data.orgunit.OrganisationalUnitDao;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.entity_hierarchy.EntityHierarchyItem;
+import org.finos.waltz.model.flow_classification.FlowClassification;
+import org.finos.waltz.model.flow_classification_rule.FlowClassificationRule;
+import org.finos.waltz.model.flow_classification_rule.FlowClassificationRuleVantagePoint;
+import org.finos.waltz.model.flow_classification_rule.FlowDecoratorRating;
+import org.finos.waltz.model.flow_classification_rule.ImmutableFlowDecoratorRating;
+import org.finos.waltz.model.rating.AuthoritativenessRatingValue;
+import org.jooq.impl.DSL;
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
+import static org.finos.waltz.common.ListUtilities.partition;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Recalculates the ratings of every logical flow data type decorator in memory.
+ * <p>
+ * Org units are processed in chunks.  For each chunk the expanded vantage points are
+ * loaded into a {@link FlowClassificationRuleResolver} and the decorators of flows
+ * targeting applications in those org units are streamed through it.  Point-to-point
+ * rules (where the rule's vantage point is the flow target itself) are then applied,
+ * the rule with the most specific data type wins.
+ * <p>
+ * Only decorators whose rating or rule actually changed are written back, in batches.
+ */
+@Service
+public class FlowRatingRecalculator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlowRatingRecalculator.class);
+
+    private final FlowClassificationRuleDao flowClassificationRuleDao;
+    private final FlowClassificationDao flowClassificationDao;
+    private final LogicalFlowDecoratorDao logicalFlowDecoratorDao;
+    private final EntityHierarchyDao entityHierarchyDao;
+    private final OrganisationalUnitDao organisationalUnitDao;
+    private final int orgUnitChunkSize;
+    private final int writeBatchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong changedCount = new AtomicLong();
+
+
+    @Autowired
+    public FlowRatingRecalculator(FlowClassificationRuleDao flowClassificationRuleDao,
+                                  FlowClassificationDao flowClassificationDao,
+                                  LogicalFlowDecoratorDao logicalFlowDecoratorDao,
+                                  EntityHierarchyDao entityHierarchyDao,
+                                  OrganisationalUnitDao organisationalUnitDao,
+                                  @Value("${waltz.flow.ratings.recalc.org.unit.chunk.size:250}") int orgUnitChunkSize,
+                                  @Value("${waltz.flow.ratings.recalc.batch.size:1000}") int writeBatchSize) {
+        checkNotNull(flowClassificationRuleDao, "flowClassificationRuleDao cannot be null");
+        checkNotNull(flowClassificationDao, "flowClassificationDao cannot be null");
+        checkNotNull(logicalFlowDecoratorDao, "logicalFlowDecoratorDao cannot be null");
+        checkNotNull(entityHierarchyDao, "entityHierarchyDao cannot be null");
+        checkNotNull(organisationalUnitDao, "organisationalUnitDao cannot be null");
+        checkTrue(orgUnitChunkSize > 0, "orgUnitChunkSize must be positive");
+        checkTrue(writeBatchSize > 0, "writeBatchSize must be positive");
+
+        this.flowClassificationRuleDao = flowClassificationRuleDao;
+        this.flowClassificationDao = flowClassificationDao;
+        this.logicalFlowDecoratorDao = logicalFlowDecoratorDao;
+        this.entityHierarchyDao = entityHierarchyDao;
+        this.organisationalUnitDao = organisationalUnitDao;
+        this.orgUnitChunkSize = orgUnitChunkSize;
+        this.writeBatchSize = writeBatchSize;
+    }
+
+
+    /**
+     * @return the number of decorators whose rating (or rule) changed
+     */
+    public synchronized int recalculateAll() {
+        long start = System.currentTimeMillis();
+        running.set(true);
+        processedCount.set(0);
+        changedCount.set(0);
+
+        try {
+            PointToPointRules pointToPointRules = loadPointToPointRules();
+
+            List<Long> orgUnitIds = organisationalUnitDao
+                    .findAll()
+                    .stream()
+                    .map(ou -> ou.id().get())
+                    .collect(toList());
+
+            List<List<Long>> chunks = partition(orgUnitIds, orgUnitChunkSize);
+            for (int i = 0; i < chunks.size(); i++) {
+                Set<Long> chunk = new HashSet<>(chunks.get(i));
+                FlowClassificationRuleResolver resolver = new FlowClassificationRuleResolver(
+                        flowClassificationRuleDao.findExpandedFlowClassificationRuleVantagePoints(chunk));
+
+                process(
+                        logicalFlowDecoratorDao.findDecoratorRatingsForTargetOrgUnits(chunk),
+                        resolver,
+                        pointToPointRules);
+
+                LOG.debug(
+                        "Flow rating recalculation: org unit chunk {}/{}, {} decorators processed, {} changed",
+                        i + 1,
+                        chunks.size(),
+                        processedCount.get(),
+                        changedCount.get());
+            }
+
+            // flows to actors (or to apps in unknown org units) can only be rated by point-to-point rules
+            process(
+                    logicalFlowDecoratorDao.findDecoratorRatingsForNonOrgUnitTargets(),
+                    new FlowClassificationRuleResolver(Collections.emptyList()),
+                    pointToPointRules);
+
+            LOG.info(
+                    "Recalculated flow ratings: {} decorators processed, {} changed, in {}ms",
+                    processedCount.get(),
+                    changedCount.get(),
+                    System.currentTimeMillis() - start);
+
+            return (int) changedCount.get();
+        } finally {
+            running.set(false);
+        }
+    }
+
+
+    /**
+     * Recalculates the ratings of decorators on flows which target applications in the given
+     * org units, e.g. after an application has moved org unit.  Rules are inherited down the
+     * org unit hierarchy so callers should include any descendant org units.
+     *
+     * @return the number of decorators whose rating (or rule) changed
+     */
+    public synchronized int recalculateForOrgUnits(Collection<Long> orgUnitIds) {
+        checkNotNull(orgUnitIds, "orgUnitIds cannot be null");
+        if (orgUnitIds.isEmpty()) {
+            return 0;
+        }
+
+        PointToPointRules pointToPointRules = loadPointToPointRules();
+
+        int changed = 0;
+        for (List<Long> chunk : partition(new ArrayList<>(new HashSet<>(orgUnitIds)), orgUnitChunkSize)) {
+            Set<Long> chunkIds = new HashSet<>(chunk);
+            FlowClassificationRuleResolver resolver = new FlowClassificationRuleResolver(
+                    flowClassificationRuleDao.findExpandedFlowClassificationRuleVantagePoints(chunkIds));
+
+            changed += process(
+                    logicalFlowDecoratorDao.findDecoratorRatingsForTargetOrgUnits(chunkIds),
+                    resolver,
+                    pointToPointRules);
+        }
+
+        return changed;
+    }
+
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+
+    public long getChangedCount() {
+        return changedCount.get();
+    }
+
+
+    /**
+     * @return the number of decorators whose rating (or rule) changed
+     */
+    private int process(List<FlowDecoratorRating> current,
+                        FlowClassificationRuleResolver resolver,
+                        PointToPointRules pointToPointRules) {
+        List<FlowDecoratorRating> changed = current
+                .stream()
+                .map(d -> {
+                    FlowDecoratorRating updated = calculate(d, resolver, pointToPointRules);
+                    return updated.equals(d)
+                            ? null
+                            : updated;
+                })
+                .filter(Objects::nonNull)
+                .collect(toList());
+
+        for (List<FlowDecoratorRating> batch : partition(changed, writeBatchSize)) {
+            logicalFlowDecoratorDao.updateRatings(batch);
+            changedCount.addAndGet(batch.size());
+        }
+
+        processedCount.addAndGet(current.size());
+        return changed.size();
+    }
+
+
+    static FlowDecoratorRating calculate(FlowDecoratorRating decorator,
+                                         FlowClassificationRuleResolver resolver,
+                                         PointToPointRules pointToPointRules) {
+        Optional<Tuple2<AuthoritativenessRatingValue, Long>> pointToPoint = pointToPointRules.resolve(
+                decorator.source(),
+                decorator.target(),
+                decorator.dataTypeId());
+
+        if (pointToPoint.isPresent()) {
+            return ImmutableFlowDecoratorRating
+                    .copyOf(decorator)
+                    .withRating(pointToPoint.get().v1)
+                    .withFlowClassificationRuleId(pointToPoint.get().v2);
+        }
+
+        if (! decorator.targetOrgUnitId().isPresent()) {
+            return ImmutableFlowDecoratorRating
+                    .copyOf(decorator)
+                    .withRating(AuthoritativenessRatingValue.NO_OPINION)
+                    .withFlowClassificationRuleId(Optional.empty());
+        }
+
+        EntityReference vantagePoint = mkRef(EntityKind.ORG_UNIT, decorator.targetOrgUnitId().get());
+
+        return ImmutableFlowDecoratorRating
+                .copyOf(decorator)
+                .withRating(resolver.resolve(vantagePoint, decorator.source(), decorator.dataTypeId()))
+                .withFlowClassificationRuleId(resolver
+                        .resolveAuthSource(vantagePoint, decorator.source(), decorator.dataTypeId())
+                        .map(FlowClassificationRuleVantagePoint::ruleId));
+    }
+
+
+    private PointToPointRules loadPointToPointRules() {
+        Map<Long, String> codesById = flowClassificationDao
+                .findAll()
+                .stream()
+                .collect(toMap(c -> c.id().get(), FlowClassification::code));
+
+        List<FlowClassificationRule> rules = flowClassificationRuleDao
+                .findAll()
+                .stream()
+                .filter(r -> r.vantagePointReference().kind() != EntityKind.ORG_UNIT)
+                .collect(toList());
+
+        Map<Long, Map<Long, Integer>> ancestorLevelsByDataTypeId = new HashMap<>();
+        List<EntityHierarchyItem> dataTypeHierarchy = rules.isEmpty()
+                ? Collections.emptyList()
+                : entityHierarchyDao.findByKind(EntityKind.DATA_TYPE, DSL.trueCondition());
+        dataTypeHierarchy.forEach(item -> ancestorLevelsByDataTypeId
+                .computeIfAbsent(item.id().get(), k -> new HashMap<>())
+                .put(item.parentId().get(), item.ancestorLevel()));
+
+        return new PointToPointRules(rules, codesById, ancestorLevelsByDataTypeId);
+    }
+
+
+    /**
+     * Rules declared directly between a source and a consuming entity (app or actor).
+     * These override any org unit based rating.
+     */
+    static class PointToPointRules {
+
+        private final Map<Tuple2<EntityReference, EntityReference>, List<FlowClassificationRule>> rulesBySubjectAndTarget;
+        private final Map<Long, String> codesByClassificationId;
+        private final Map<Long, Map<Long, Integer>> ancestorLevelsByDataTypeId;
+
+
+        PointToPointRules(Collection<FlowClassificationRule> rules,
+                          Map<Long, String> codesByClassificationId,
+                          Map<Long, Map<Long, Integer>> ancestorLevelsByDataTypeId) {
+            this.rulesBySubjectAndTarget = rules
+                    .stream()
+                    .collect(groupingBy(r -> tuple(
+                            mkRef(r.subjectReference().kind(), r.subjectReference().id()),
+                            mkRef(r.vantagePointReference().kind(), r.vantagePointReference().id()))));
+            this.codesByClassificationId = codesByClassificationId;
+            this.ancestorLevelsByDataTypeId = ancestorLevelsByDataTypeId;
+        }
+
+
+        /**
+         * @return the rating and rule id of the most specific matching rule, if any
+         */
+        Optional<Tuple2<AuthoritativenessRatingValue, Long>> resolve(EntityReference source,
+                                                                     EntityReference target,
+                                                                     long dataTypeId) {
+            List<FlowClassificationRule> candidates = rulesBySubjectAndTarget.get(tuple(source, target));
+            if (candidates == null) {
+                return Optional.empty();
+            }
+
+            Map<Long, Integer> ancestorLevels = ancestorLevelsByDataTypeId.getOrDefault(
+                    dataTypeId,
+                    Collections.emptyMap());
+
+            FlowClassificationRule best = null;
+            int bestLevel = Integer.MIN_VALUE;
+            for (FlowClassificationRule rule : candidates) {
+                Integer level = ancestorLevels.get(rule.dataTypeId());
+                if (level != null && level > bestLevel) {
+                    best = rule;
+                    bestLevel = level;
+                }
+            }
+
+            return Optional
+                    .ofNullable(best)
+                    .map(r -> tuple(
+                            AuthoritativenessRatingValue.of(codesByClassificationId.get(r.classificationId())),
+                            r.id().get()));
+        }
+    }
+
+}
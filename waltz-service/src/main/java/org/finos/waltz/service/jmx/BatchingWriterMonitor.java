@@ -0,0 +1,132 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.jmx;
+
+import org.finos.waltz.common.BatchingWriter;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+
+/**
+ * Statistics for a background batching writer (e.g. the access log).  If the
+ * writer is disabled (writes are synchronous) all counts are zero.
+ */
+@ManagedResource(description = "Statistics for a background writer which batch inserts queued entries")
+public class BatchingWriterMonitor {
+
+    private final Optional<? extends BatchingWriter<?>> writer;
+
+
+    public BatchingWriterMonitor(Optional<? extends BatchingWriter<?>> writer) {
+        this.writer = writer;
+    }
+
+
+    @ManagedOperation(description = "Synchronously write all queued entries")
+    public void flush() {
+        writer.ifPresent(BatchingWriter::flush);
+    }
+
+
+    @ManagedOperation
+    public void resetCounters() {
+        writer.ifPresent(BatchingWriter::resetCounters);
+    }
+
+
+    @ManagedAttribute(description = "False if entries are written synchronously")
+    public boolean isEnabled() {
+        return writer.isPresent();
+    }
+
+
+    @ManagedAttribute
+    public String getOverflowPolicy() {
+        return writer.map(w -> w.getOverflowPolicy().name()).orElse("");
+    }
+
+
+    @ManagedAttribute
+    public long getCapacity() {
+        return get(BatchingWriter::getCapacity);
+    }
+
+
+    @ManagedAttribute
+    public long getBatchSize() {
+        return get(BatchingWriter::getBatchSize);
+    }
+
+
+    @ManagedAttribute
+    public long getFlushIntervalMillis() {
+        return get(BatchingWriter::getFlushIntervalMillis);
+    }
+
+
+    @ManagedAttribute(description = "Entries currently waiting to be written")
+    public long getQueueDepth() {
+        return get(BatchingWriter::getQueueDepth);
+    }
+
+
+    @ManagedAttribute
+    public long getQueuedCount() {
+        return get(BatchingWriter::getQueuedCount);
+    }
+
+
+    @ManagedAttribute
+    public long getFlushedCount() {
+        return get(BatchingWriter::getFlushedCount);
+    }
+
+
+    @ManagedAttribute(description = "Entries discarded because the queue was full")
+    public long getDroppedCount() {
+        return get(BatchingWriter::getDroppedCount);
+    }
+
+
+    @ManagedAttribute(description = "Entries the queue could not accept which were written synchronously instead")
+    public long getRejectedCount() {
+        return get(BatchingWriter::getRejectedCount);
+    }
+
+
+    @ManagedAttribute(description = "Entries lost because their batch could not be written")
+    public long getFailedCount() {
+        return get(BatchingWriter::getFailedCount);
+    }
+
+
+    @ManagedAttribute
+    public long getBatchCount() {
+        return get(BatchingWriter::getBatchCount);
+    }
+
+
+    private long get(ToLongFunction<BatchingWriter<?>> getter) {
+        return writer.map(getter::applyAsLong).orElse(0L);
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.jmx;
+
+import org.finos.waltz.data.DBExecutorPool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.Map;
+
+@ManagedResource(description = "Statistics for the executor used to run database queries concurrently")
+public class DBExecutorPoolMonitor {
+
+    private final DBExecutorPool dbExecutorPool;
+
+    @Autowired
+    public DBExecutorPoolMonitor(DBExecutorPool dbExecutorPool) {
+        this.dbExecutorPool = dbExecutorPool;
+    }
+
+
+    @ManagedOperation(description = "Reset the task counters and latency histograms")
+    public void resetCounters() {
+        dbExecutorPool.resetCounters();
+    }
+
+
+    @ManagedAttribute
+    public String getMode() {
+        return dbExecutorPool.getMode().name();
+    }
+
+
+    @ManagedAttribute
+    public boolean isUsingVirtualThreads() {
+        return dbExecutorPool.isUsingVirtualThreads();
+    }
+
+
+    @ManagedAttribute
+    public int getConcurrency() {
+        return dbExecutorPool.getConcurrency();
+    }
+
+
+    @ManagedAttribute
+    public int getQueueCapacity() {
+        return dbExecutorPool.getQueueCapacity();
+    }
+
+
+    @ManagedAttribute
+    public String getRejectionPolicy() {
+        return dbExecutorPool.getRejectionPolicy().name();
+    }
+
+
+    @ManagedAttribute
+    public long getTaskTimeoutMillis() {
+        return dbExecutorPool.getTaskTimeoutMillis();
+    }
+
+
+    @ManagedAttribute(description = "Tasks waiting for a thread or permit")
+    public int getQueueDepth() {
+        return dbExecutorPool.getQueueDepth();
+    }
+
+
+    @ManagedAttribute(description = "Tasks currently executing")
+    public int getActiveCount() {
+        return dbExecutorPool.getActiveCount();
+    }
+
+
+    @ManagedAttribute
+    public long getSubmittedCount() {
+        return dbExecutorPool.getSubmittedCount();
+    }
+
+
+    @ManagedAttribute
+    public long getCompletedCount() {
+        return dbExecutorPool.getCompletedCount();
+    }
+
+
+    @ManagedAttribute
+    public long getFailedCount() {
+        return dbExecutorPool.getFailedCount();
+    }
+
+
+    @ManagedAttribute(description = "Tasks which could not be queued (run by the caller or rejected, depending on policy)")
+    public long getRejectedCount() {
+        return dbExecutorPool.getRejectedCount();
+    }
+
+
+    @ManagedAttribute(description = "Tasks submitted from within another task and therefore run inline")
+    public long getInlineCount() {
+        return dbExecutorPool.getInlineCount();
+    }
+
+
+    @ManagedAttribute
+    public long getTimedOutCount() {
+        return dbExecutorPool.getTimedOutCount();
+    }
+
+
+    @ManagedAttribute(description = "Time tasks spent waiting to start, bucketed")
+    public Map<String, Long> getQueueWaitHistogram() {
+        return dbExecutorPool.getQueueWaitHistogram().snapshot();
+    }
+
+
+    @ManagedAttribute
+    public double getMeanQueueWaitMillis() {
+        return dbExecutorPool.getQueueWaitHistogram().getMean();
+    }
+
+
+    @ManagedAttribute(description = "Time tasks spent executing, bucketed")
+    public Map<String, Long> getExecutionHistogram() {
+        return dbExecutorPool.getExecutionHistogram().snapshot();
+    }
+
+
+    @ManagedAttribute
+    public double getMeanExecutionMillis() {
+        return dbExecutorPool.getExecutionHistogram().getMean();
+    }
+
+
+    @ManagedAttribute
+    public long getMaxExecutionMillis() {
+        return dbExecutorPool.getExecutionHistogram().getMax();
+    }
+
+
+    @ManagedAttribute
+    public String getName() {
+        return "DBExecutorPool";
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+package org.finos.waltz.service.jmx;
+
+import org.finos.waltz.service.usage_info.DataTypeUsageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "Progress of the current (or last) chunked data type usage recalculation")
+public class DataTypeUsageRecalculationMonitor {
+
+    private final DataTypeUsageService dataTypeUsageService;
+
+    @Autowired
+    public DataTypeUsageRecalculationMonitor(DataTypeUsageService dataTypeUsageService) {
+        this.dataTypeUsageService = dataTypeUsageService;
+    }
+
+
+    @ManagedAttribute(description = "Kind of entity (APPLICATION or ACTOR) being recalculated")
+    public String getKind() {
+        return dataTypeUsageService
+                .getRecalculationKind()
+                .map(Enum::name)
+                .orElse("");
+    }
+
+
+    @ManagedAttribute
+    public int getChunkCount() {
+        return dataTypeUsageService.getRecalculationChunkCount();
+    }
+
+
+    @ManagedAttribute
+    public int getChunksCompleted() {
+        return dataTypeUsageService.getRecalculationChunksCompleted();
+    }
+
+
+    @ManagedAttribute(description = "Usage rows inserted, updated or deleted so far")
+    public long getChanges() {
+        return dataTypeUsageService.getRecalculationChanges();
+    }
+
+}
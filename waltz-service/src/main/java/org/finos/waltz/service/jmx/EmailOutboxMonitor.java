@@ -0,0 +1,128 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.jmx;
+
+import org.finos.waltz.service.email.EmailOutboxService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+@ManagedResource(description = "Statistics for the email outbox and its background dispatcher")
+public class EmailOutboxMonitor {
+
+    private final EmailOutboxService emailOutboxService;
+
+    @Autowired
+    public EmailOutboxMonitor(EmailOutboxService emailOutboxService) {
+        this.emailOutboxService = emailOutboxService;
+    }
+
+
+    @ManagedOperation(description = "Send any due emails now rather than waiting for the next poll, returns the number of emails dispatched")
+    public int dispatch() {
+        return emailOutboxService.dispatch();
+    }
+
+
+    @ManagedOperation(description = "Make failed emails pending again, returns the number of emails affected")
+    public int retryFailed() {
+        return emailOutboxService.retryFailed();
+    }
+
+
+    @ManagedOperation
+    public void resetCounters() {
+        emailOutboxService.resetCounters();
+    }
+
+
+    @ManagedAttribute(description = "False if emails are sent immediately rather than via the outbox")
+    public boolean isEnabled() {
+        return emailOutboxService.isEnabled();
+    }
+
+
+    @ManagedAttribute
+    public int getConcurrency() {
+        return emailOutboxService.getConcurrency();
+    }
+
+
+    @ManagedAttribute(description = "Claimed emails waiting to be, or being, sent")
+    public int getInFlightCount() {
+        return emailOutboxService.getInFlightCount();
+    }
+
+
+    @ManagedAttribute
+    public int getMaxAttempts() {
+        return emailOutboxService.getMaxAttempts();
+    }
+
+
+    @ManagedAttribute(description = "Number of emails in the outbox, by status")
+    public Map<String, Integer> getOutboxCounts() {
+        Map<String, Integer> counts = new TreeMap<>();
+        emailOutboxService
+                .countByStatus()
+                .forEach((status, count) -> counts.put(status.name(), count));
+        return counts;
+    }
+
+
+    @ManagedAttribute
+    public long getEnqueuedCount() {
+        return emailOutboxService.getEnqueuedCount();
+    }
+
+
+    @ManagedAttribute
+    public long getSentCount() {
+        return emailOutboxService.getSentCount();
+    }
+
+
+    @ManagedAttribute(description = "Failed sends which will be retried")
+    public long getRetriedCount() {
+        return emailOutboxService.getRetriedCount();
+    }
+
+
+    @ManagedAttribute(description = "Emails given up on after the maximum number of attempts")
+    public long getFailedCount() {
+        return emailOutboxService.getFailedCount();
+    }
+
+
+    @ManagedAttribute(description = "Time taken to hand emails to the mail server, bucketed")
+    public Map<String, Long> getSendLatencyHistogram() {
+        return emailOutboxService.getSendLatency().snapshot();
+    }
+
+
+    @ManagedAttribute
+    public double getMeanSendMillis() {
+        return emailOutboxService.getSendLatency().getMean();
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.jmx;
+
+import org.finos.waltz.service.entity_search.EntitySearchIndex;
+import org.finos.waltz.service.entity_search.EntitySearchIndexService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "Statistics and maintenance functions for the in-memory entity search index")
+public class EntitySearchIndexMaintenance {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntitySearchIndexMaintenance.class);
+
+    private final EntitySearchIndexService entitySearchIndexService;
+
+    @Autowired
+    public EntitySearchIndexMaintenance(EntitySearchIndexService entitySearchIndexService) {
+        this.entitySearchIndexService = entitySearchIndexService;
+    }
+
+
+    @ManagedOperation(description = "Rebuild the search index now")
+    public void rebuild() {
+        LOG.warn("Rebuilding entity search index (via jmx)");
+        entitySearchIndexService.rebuild();
+    }
+
+
+    @ManagedAttribute
+    public boolean isEnabled() {
+        return entitySearchIndexService.isEnabled();
+    }
+
+
+    @ManagedAttribute
+    public int getDocumentCount() {
+        return entitySearchIndexService
+                .getIndex()
+                .map(EntitySearchIndex::getDocumentCount)
+                .orElse(0);
+    }
+
+
+    @ManagedAttribute
+    public int getTokenCount() {
+        return entitySearchIndexService
+                .getIndex()
+                .map(EntitySearchIndex::getTokenCount)
+                .orElse(0);
+    }
+
+
+    @ManagedAttribute
+    public long getDataVersion() {
+        return entitySearchIndexService
+                .getIndex()
+                .map(EntitySearchIndex::getDataVersion)
+                .orElse(-1L);
+    }
+
+
+    @ManagedAttribute
+    public long getBuildCount() {
+        return entitySearchIndexService.getBuildCount();
+    }
+
+
+    @ManagedAttribute(description = "Partial updates, re-reading only the kinds which have changed")
+    public long getUpdateCount() {
+        return entitySearchIndexService.getUpdateCount();
+    }
+
+
+    @ManagedAttribute
+    public long getLastBuildDuration() {
+        return entitySearchIndexService.getLastBuildDuration();
+    }
+
+
+    @ManagedAttribute
+    public long getIndexedSearchCount() {
+        return entitySearchIndexService.getIndexedSearchCount();
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.jmx;
+
+import org.finos.waltz.data.IdSelectorMaterialiser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "Statistics and maintenance functions for the materialised id selector cache")
+public class IdSelectorMaterialiserMaintenance {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IdSelectorMaterialiserMaintenance.class);
+
+    private final IdSelectorMaterialiser idSelectorMaterialiser;
+
+    @Autowired
+    public IdSelectorMaterialiserMaintenance(IdSelectorMaterialiser idSelectorMaterialiser) {
+        this.idSelectorMaterialiser = idSelectorMaterialiser;
+    }
+
+
+    @ManagedOperation(description = "Clear all materialised selectors")
+    public void clearCache() {
+        LOG.warn("Clearing materialised id selector cache (via jmx)");
+        idSelectorMaterialiser.getCache().invalidateAll();
+    }
+
+
+    @ManagedOperation(description = "Reset the hit/miss/eviction counters")
+    public void resetCounters() {
+        idSelectorMaterialiser.getCache().resetCounters();
+    }
+
+
+    @ManagedAttribute
+    public boolean isEnabled() {
+        return idSelectorMaterialiser.isEnabled();
+    }
+
+
+    @ManagedAttribute
+    public int getMaxIds() {
+        return idSelectorMaterialiser.getMaxIds();
+    }
+
+
+    @ManagedAttribute
+    public int getSize() {
+        return idSelectorMaterialiser.getCache().size();
+    }
+
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return idSelectorMaterialiser.getCache().getHitCount();
+    }
+
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return idSelectorMaterialiser.getCache().getMissCount();
+    }
+
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return idSelectorMaterialiser.getCache().getEvictionCount();
+    }
+
+
+    @ManagedAttribute
+    public String getName() {
+        return "IdSelectorMaterialiser";
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.jmx;
+
+import org.finos.waltz.service.aggregate_overlay_diagram.AggregateOverlayDiagramService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "Statistics and maintenance functions for the aggregate overlay diagram widget caches")
+public class OverlayDiagramCacheMaintenance {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OverlayDiagramCacheMaintenance.class);
+
+    private final AggregateOverlayDiagramService aggregateOverlayDiagramService;
+
+    @Autowired
+    public OverlayDiagramCacheMaintenance(AggregateOverlayDiagramService aggregateOverlayDiagramService) {
+        this.aggregateOverlayDiagramService = aggregateOverlayDiagramService;
+    }
+
+
+    @ManagedOperation(description = "Clear all cached overlay widget data")
+    public void clearCache() {
+        LOG.warn("Clearing overlay widget caches (via jmx)");
+        aggregateOverlayDiagramService.evictAllCachedWidgetData();
+    }
+
+
+    @ManagedOperation(description = "Clear cached widget data for a single diagram")
+    @ManagedOperationParameter(name = "diagramId", description = "id of the aggregate overlay diagram")
+    public void clearCacheForDiagram(long diagramId) {
+        LOG.warn("Clearing overlay widget caches for diagram: {} (via jmx)", diagramId);
+        aggregateOverlayDiagramService.evictCachedWidgetData(diagramId);
+    }
+
+
+    @ManagedOperation(description = "Recalculate all cached widget data now")
+    public int recalculate() {
+        LOG.warn("Recalculating cached overlay widget data (via jmx)");
+        return aggregateOverlayDiagramService.recalculateCachedWidgetData();
+    }
+
+
+    @ManagedOperation(description = "Reset the hit/miss/eviction counters")
+    public void resetCounters() {
+        aggregateOverlayDiagramService.getWidgetDataCache().resetCounters();
+        aggregateOverlayDiagramService.getAggregatedEntitiesCache().resetCounters();
+    }
+
+
+    @ManagedAttribute
+    public boolean isEnabled() {
+        return aggregateOverlayDiagramService.getWidgetDataCache().isEnabled();
+    }
+
+
+    @ManagedAttribute
+    public int getSize() {
+        return aggregateOverlayDiagramService.getWidgetDataCache().size();
+    }
+
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return aggregateOverlayDiagramService.getWidgetDataCache().getHitCount();
+    }
+
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return aggregateOverlayDiagramService.getWidgetDataCache().getMissCount();
+    }
+
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return aggregateOverlayDiagramService.getWidgetDataCache().getEvictionCount();
+    }
+
+
+    @ManagedAttribute(description = "Cell to aggregated entity resolutions held, these are shared between widgets")
+    public int getResolutionCacheSize() {
+        return aggregateOverlayDiagramService.getAggregatedEntitiesCache().size();
+    }
+
+
+    @ManagedAttribute
+    public long getResolutionHitCount() {
+        return aggregateOverlayDiagramService.getAggregatedEntitiesCache().getHitCount();
+    }
+
+
+    @ManagedAttribute
+    public long getResolutionMissCount() {
+        return aggregateOverlayDiagramService.getAggregatedEntitiesCache().getMissCount();
+    }
+
+
+    @ManagedAttribute
+    public long getRecalculationCount() {
+        return aggregateOverlayDiagramService.getRecalculationCount();
+    }
+
+
+    @ManagedAttribute
+    public long getLastRecalculationDuration() {
+        return aggregateOverlayDiagramService.getLastRecalculationDuration();
+    }
+
+
+    @ManagedAttribute
+    public String getName() {
+        return "OverlayDiagramWidgetCache";
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.jmx;
+
+import org.finos.waltz.common.QueryAccounting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.List;
+import java.util.Map;
+
+@ManagedResource(description = "Statistics for the number of queries issued per request")
+public class QueryAccountingMonitor {
+
+    private final QueryAccounting queryAccounting;
+
+    @Autowired
+    public QueryAccountingMonitor(QueryAccounting queryAccounting) {
+        this.queryAccounting = queryAccounting;
+    }
+
+
+    @ManagedOperation(description = "Reset the counters, histogram and recent offenders")
+    public void resetCounters() {
+        queryAccounting.resetCounters();
+    }
+
+
+    @ManagedAttribute(description = "Statements a request may issue before it is reported, zero or less disables reporting")
+    public int getBudget() {
+        return queryAccounting.getBudget();
+    }
+
+
+    @ManagedAttribute
+    public void setBudget(int budget) {
+        queryAccounting.setBudget(budget);
+    }
+
+
+    @ManagedAttribute
+    public long getRequestCount() {
+        return queryAccounting.getUnitCount();
+    }
+
+
+    @ManagedAttribute
+    public long getQueryCount() {
+        return queryAccounting.getQueryCount();
+    }
+
+
+    @ManagedAttribute
+    public double getMeanQueriesPerRequest() {
+        long requests = queryAccounting.getUnitCount();
+        return requests == 0
+                ? 0
+                : (double) queryAccounting.getQueryCount() / requests;
+    }
+
+
+    @ManagedAttribute
+    public long getMaxQueriesPerRequest() {
+        return queryAccounting.getMaxQueriesPerUnit();
+    }
+
+
+    @ManagedAttribute
+    public long getOverBudgetCount() {
+        return queryAccounting.getOverBudgetCount();
+    }
+
+
+    @ManagedAttribute(description = "Most recent requests which exceeded the budget, newest first")
+    public List<String> getRecentOffenders() {
+        return queryAccounting.getRecentOffenders();
+    }
+
+
+    @ManagedAttribute(description = "Total database time per request, bucketed")
+    public Map<String, Long> getDbTimeHistogram() {
+        return queryAccounting.getDbTimeHistogram().snapshot();
+    }
+
+
+    @ManagedAttribute
+    public double getMeanDbTimeMillis() {
+        return queryAccounting.getDbTimeHistogram().getMean();
+    }
+
+
+    @ManagedAttribute
+    public String getName() {
+        return "QueryAccounting";
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.jmx;
+
+import org.finos.waltz.service.recalc.RecalcQueueService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+@ManagedResource(description = "Statistics for the queue of derived data recalculations and its background worker")
+public class RecalcQueueMonitor {
+
+    private final RecalcQueueService recalcQueueService;
+
+    @Autowired
+    public RecalcQueueMonitor(RecalcQueueService recalcQueueService) {
+        this.recalcQueueService = recalcQueueService;
+    }
+
+
+    @ManagedOperation(description = "Process queued events now rather than waiting for the next poll, returns the number processed")
+    public int process() {
+        return recalcQueueService.process();
+    }
+
+
+    @ManagedOperation
+    public void resetCounters() {
+        recalcQueueService.resetCounters();
+    }
+
+
+    @ManagedAttribute(description = "False if recalculations happen immediately rather than via the queue")
+    public boolean isEnabled() {
+        return recalcQueueService.isEnabled();
+    }
+
+
+    @ManagedAttribute
+    public int getBatchSize() {
+        return recalcQueueService.getBatchSize();
+    }
+
+
+    @ManagedAttribute(description = "Number of events waiting in the queue, by target")
+    public Map<String, Integer> getQueueCounts() {
+        Map<String, Integer> counts = new TreeMap<>();
+        recalcQueueService
+                .countByTarget()
+                .forEach((target, count) -> counts.put(target.name(), count));
+        return counts;
+    }
+
+
+    @ManagedAttribute
+    public long getEnqueuedCount() {
+        return recalcQueueService.getEnqueuedCount();
+    }
+
+
+    @ManagedAttribute
+    public long getProcessedCount() {
+        return recalcQueueService.getProcessedCount();
+    }
+
+
+    @ManagedAttribute(description = "Failed attempts to recalculate events, failed events are retried")
+    public long getFailedCount() {
+        return recalcQueueService.getFailedCount();
+    }
+
+
+    @ManagedAttribute(description = "Events which failed too many times, these are left to the nightly reconciliation")
+    public long getAbandonedCount() {
+        return recalcQueueService.getAbandonedCount();
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.jmx;
+
+import org.finos.waltz.service.report_grid.ReportGridService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "Statistics and maintenance functions for the report grid instance cache")
+public class ReportGridCacheMaintenance {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReportGridCacheMaintenance.class);
+
+    private final ReportGridService reportGridService;
+
+    @Autowired
+    public ReportGridCacheMaintenance(ReportGridService reportGridService) {
+        this.reportGridService = reportGridService;
+    }
+
+
+    @ManagedOperation(description = "Clear all cached report grid instances")
+    public void clearCache() {
+        LOG.warn("Clearing report grid instance cache (via jmx)");
+        reportGridService.evictAllCachedInstances();
+    }
+
+
+    @ManagedOperation(description = "Clear cached instances for a single report grid")
+    @ManagedOperationParameter(name = "gridId", description = "id of the report grid")
+    public void clearCacheForGrid(long gridId) {
+        LOG.warn("Clearing report grid instance cache for grid: {} (via jmx)", gridId);
+        reportGridService.evictCachedInstances(gridId);
+    }
+
+
+    @ManagedOperation(description = "Reset the hit/miss/eviction counters")
+    public void resetCounters() {
+        reportGridService.getInstanceCache().resetCounters();
+    }
+
+
+    @ManagedAttribute
+    public boolean isEnabled() {
+        return reportGridService.getInstanceCache().isEnabled();
+    }
+
+
+    @ManagedAttribute
+    public int getSize() {
+        return reportGridService.getInstanceCache().size();
+    }
+
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return reportGridService.getInstanceCache().getHitCount();
+    }
+
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return reportGridService.getInstanceCache().getMissCount();
+    }
+
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return reportGridService.getInstanceCache().getEvictionCount();
+    }
+
+
+    @ManagedAttribute
+    public String getName() {
+        return "ReportGridInstanceCache";
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.jmx;
+
+import org.finos.waltz.service.user.UserRoleService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "Statistics and maintenance functions for the user role cache")
+public class UserRoleCacheMaintenance {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserRoleCacheMaintenance.class);
+
+    private final UserRoleService userRoleService;
+
+    @Autowired
+    public UserRoleCacheMaintenance(UserRoleService userRoleService) {
+        this.userRoleService = userRoleService;
+    }
+
+
+    @ManagedOperation(description = "Clear all cached user roles")
+    public void clearCache() {
+        LOG.warn("Clearing user role cache (via jmx)");
+        userRoleService.evictAllCachedRoles();
+    }
+
+
+    @ManagedOperation(description = "Reset the hit/miss/eviction counters")
+    public void resetCounters() {
+        userRoleService.getRoleCache().resetCounters();
+    }
+
+
+    @ManagedAttribute
+    public boolean isEnabled() {
+        return userRoleService.getRoleCache().isEnabled();
+    }
+
+
+    @ManagedAttribute
+    public int getSize() {
+        return userRoleService.getRoleCache().size();
+    }
+
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return userRoleService.getRoleCache().getHitCount();
+    }
+
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return userRoleService.getRoleCache().getMissCount();
+    }
+
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return userRoleService.getRoleCache().getEvictionCount();
+    }
+
+
+    @ManagedAttribute
+    public String getName() {
+        return "UserRoleCache";
+    }
+
+}
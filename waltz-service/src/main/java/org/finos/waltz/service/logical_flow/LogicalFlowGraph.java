@@ -0,0 +1,461 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.logical_flow;
+
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.FlowDirection;
+import org.finos.waltz.model.logical_flow.ImmutableLogicalFlowLineage;
+import org.finos.waltz.model.logical_flow.ImmutableLogicalFlowLineageEdge;
+import org.finos.waltz.model.logical_flow.ImmutableLogicalFlowLineageNode;
+import org.finos.waltz.model.logical_flow.ImmutableLogicalFlowPath;
+import org.finos.waltz.model.logical_flow.LogicalFlowLineage;
+import org.finos.waltz.model.logical_flow.LogicalFlowLineageEdge;
+import org.finos.waltz.model.logical_flow.LogicalFlowPath;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
+import static org.finos.waltz.model.EntityReference.mkRef;
+
+/**
+ * Immutable, in-memory graph of active logical flows and the data types they carry.
+ * <p>
+ * Entities are numbered densely and flows are held as parallel primitive arrays with
+ * compressed (offset + index) adjacency lists in both directions, so traversals
+ * allocate little beyond a visited array and a queue.  Changes are applied by
+ * building a new graph via {@link #update(Collection, Collection, LocalDateTime)},
+ * readers holding the previous graph are unaffected.
+ */
+public class LogicalFlowGraph {
+
+    /**
+     * A logical flow as loaded from the database, used to build the graph.
+     */
+    public static class FlowEdge {
+
+        private final long flowId;
+        private final EntityReference source;
+        private final EntityReference target;
+        private final long[] dataTypeIds;
+
+
+        public FlowEdge(long flowId, EntityReference source, EntityReference target, Collection<Long> dataTypeIds) {
+            checkNotNull(source, "source cannot be null");
+            checkNotNull(target, "target cannot be null");
+            checkNotNull(dataTypeIds, "dataTypeIds cannot be null");
+
+            this.flowId = flowId;
+            this.source = source;
+            this.target = target;
+            this.dataTypeIds = dataTypeIds
+                    .stream()
+                    .mapToLong(Long::longValue)
+                    .distinct()
+                    .sorted()
+                    .toArray();
+        }
+
+
+        public long getFlowId() {
+            return flowId;
+        }
+    }
+
+
+    private final EntityReference[] nodes;
+    private final Map<EntityReference, Integer> nodeIndex;
+
+    private final long[] edgeFlowIds;
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+    private final int[] edgeDataTypeOffsets;
+    private final long[] edgeDataTypeIds;
+
+    private final int[] outOffsets;
+    private final int[] outEdges;
+    private final int[] inOffsets;
+    private final int[] inEdges;
+
+    private final Map<Long, List<Long>> dataTypeChildren;
+    private final LocalDateTime latestUpdate;
+    private final long builtAt;
+
+
+    private LogicalFlowGraph(Collection<FlowEdge> flows,
+                             Map<Long, List<Long>> dataTypeChildren,
+                             LocalDateTime latestUpdate,
+                             long builtAt) {
+        this.dataTypeChildren = dataTypeChildren;
+        this.latestUpdate = latestUpdate;
+        this.builtAt = builtAt;
+
+        int edgeCount = flows.size();
+        List<EntityReference> nodeList = new ArrayList<>();
+        nodeIndex = new HashMap<>();
+
+        edgeFlowIds = new long[edgeCount];
+        edgeSources = new int[edgeCount];
+        edgeTargets = new int[edgeCount];
+        edgeDataTypeOffsets = new int[edgeCount + 1];
+        edgeDataTypeIds = new long[flows.stream().mapToInt(f -> f.dataTypeIds.length).sum()];
+
+        int e = 0;
+        for (FlowEdge flow : flows) {
+            edgeFlowIds[e] = flow.flowId;
+            edgeSources[e] = indexOf(flow.source, nodeList);
+            edgeTargets[e] = indexOf(flow.target, nodeList);
+            edgeDataTypeOffsets[e + 1] = edgeDataTypeOffsets[e] + flow.dataTypeIds.length;
+            System.arraycopy(flow.dataTypeIds, 0, edgeDataTypeIds, edgeDataTypeOffsets[e], flow.dataTypeIds.length);
+            e++;
+        }
+
+        nodes = nodeList.toArray(new EntityReference[0]);
+
+        outOffsets = new int[nodes.length + 1];
+        outEdges = new int[edgeCount];
+        index(edgeSources, outOffsets, outEdges);
+
+        inOffsets = new int[nodes.length + 1];
+        inEdges = new int[edgeCount];
+        index(edgeTargets, inOffsets, inEdges);
+    }
+
+
+    /**
+     * @param flows            active logical flows, with their data types
+     * @param dataTypeParents  map of data type id to parent data type id, used to
+     *                         expand data type restrictions to include descendants
+     * @param latestUpdate     most recent flow/decorator update reflected in the flows
+     */
+    public static LogicalFlowGraph build(Collection<FlowEdge> flows,
+                                         Map<Long, Long> dataTypeParents,
+                                         LocalDateTime latestUpdate) {
+        checkNotNull(flows, "flows cannot be null");
+        checkNotNull(dataTypeParents, "dataTypeParents cannot be null");
+
+        Map<Long, List<Long>> dataTypeChildren = new HashMap<>();
+        dataTypeParents.forEach((child, parent) -> dataTypeChildren
+                .computeIfAbsent(parent, k -> new ArrayList<>())
+                .add(child));
+
+        return new LogicalFlowGraph(flows, dataTypeChildren, latestUpdate, System.currentTimeMillis());
+    }
+
+
+    /**
+     * Builds a new graph with the given flows replaced (or added) and the removed
+     * flows dropped, this graph is left unchanged.  The new graph keeps the build
+     * time of this one, so incremental updates do not defer full rebuilds.
+     */
+    public LogicalFlowGraph update(Collection<FlowEdge> upserts,
+                                   Collection<Long> removedFlowIds,
+                                   LocalDateTime latestUpdate) {
+        checkNotNull(upserts, "upserts cannot be null");
+        checkNotNull(removedFlowIds, "removedFlowIds cannot be null");
+
+        Set<Long> replaced = new HashSet<>(removedFlowIds);
+        upserts.forEach(f -> replaced.add(f.flowId));
+
+        List<FlowEdge> flows = new ArrayList<>(edgeFlowIds.length + upserts.size());
+        for (int e = 0; e < edgeFlowIds.length; e++) {
+            if (! replaced.contains(edgeFlowIds[e])) {
+                flows.add(toFlowEdge(e));
+            }
+        }
+        flows.addAll(upserts);
+
+        return new LogicalFlowGraph(
+                flows,
+                dataTypeChildren,
+                latestUpdate == null ? this.latestUpdate : latestUpdate,
+                builtAt);
+    }
+
+
+    /**
+     * Breadth first traversal from the starting entity.
+     *
+     * @param direction   INBOUND for upstream lineage, OUTBOUND for downstream
+     * @param maxHops     maximum number of flows to follow away from the start
+     * @param dataTypeId  if not null, only flows carrying this data type (or one of
+     *                    its descendants) are followed
+     */
+    public LogicalFlowLineage findLineage(EntityReference start,
+                                          FlowDirection direction,
+                                          int maxHops,
+                                          Long dataTypeId) {
+        checkNotNull(start, "start cannot be null");
+        checkTrue(direction == FlowDirection.INBOUND || direction == FlowDirection.OUTBOUND,
+                "direction must be INBOUND or OUTBOUND");
+        checkTrue(maxHops >= 0, "maxHops cannot be negative");
+
+        ImmutableLogicalFlowLineage.Builder result = ImmutableLogicalFlowLineage
+                .builder()
+                .startEntity(start)
+                .direction(direction)
+                .maxHops(maxHops)
+                .dataTypeId(dataTypeId);
+
+        Integer startNode = nodeIndex.get(toKey(start));
+        if (startNode == null) {
+            return result.build();
+        }
+
+        boolean downstream = direction == FlowDirection.OUTBOUND;
+        int[] offsets = downstream ? outOffsets : inOffsets;
+        int[] adjacency = downstream ? outEdges : inEdges;
+        int[] nextNodes = downstream ? edgeTargets : edgeSources;
+        long[] allowedDataTypes = expandDataType(dataTypeId);
+
+        int[] hops = new int[nodes.length];
+        Arrays.fill(hops, -1);
+        int[] queue = new int[nodes.length];
+        int head = 0;
+        int tail = 0;
+
+        hops[startNode] = 0;
+        queue[tail++] = startNode;
+
+        while (head < tail) {
+            int node = queue[head++];
+            if (hops[node] >= maxHops) {
+                continue;
+            }
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                int edge = adjacency[i];
+                if (! carries(edge, allowedDataTypes)) {
+                    continue;
+                }
+                result.addEdges(toLineageEdge(edge));
+
+                int next = nextNodes[edge];
+                if (hops[next] == -1) {
+                    hops[next] = hops[node] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        for (int i = 1; i < tail; i++) {
+            result.addNodes(ImmutableLogicalFlowLineageNode
+                    .builder()
+                    .entity(nodes[queue[i]])
+                    .hops(hops[queue[i]])
+                    .build());
+        }
+
+        return result.build();
+    }
+
+
+    /**
+     * Finds the path from source to target following the fewest flows.
+     *
+     * @param dataTypeId  if not null, only flows carrying this data type (or one of
+     *                    its descendants) are followed
+     * @return the path, or empty if the target cannot be reached from the source
+     */
+    public Optional<LogicalFlowPath> findShortestPath(EntityReference source,
+                                                      EntityReference target,
+                                                      Long dataTypeId) {
+        checkNotNull(source, "source cannot be null");
+        checkNotNull(target, "target cannot be null");
+
+        Integer sourceNode = nodeIndex.get(toKey(source));
+        Integer targetNode = nodeIndex.get(toKey(target));
+        if (sourceNode == null || targetNode == null) {
+            return Optional.empty();
+        }
+
+        long[] allowedDataTypes = expandDataType(dataTypeId);
+
+        int[] viaEdge = new int[nodes.length];
+        Arrays.fill(viaEdge, -1);
+        boolean[] visited = new boolean[nodes.length];
+        int[] queue = new int[nodes.length];
+        int head = 0;
+        int tail = 0;
+
+        visited[sourceNode] = true;
+        queue[tail++] = sourceNode;
+
+        while (head < tail && ! visited[targetNode]) {
+            int node = queue[head++];
+            for (int i = outOffsets[node]; i < outOffsets[node + 1]; i++) {
+                int edge = outEdges[i];
+                int next = edgeTargets[edge];
+                if (! visited[next] && carries(edge, allowedDataTypes)) {
+                    visited[next] = true;
+                    viaEdge[next] = edge;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        if (! visited[targetNode]) {
+            return Optional.empty();
+        }
+
+        LinkedList<LogicalFlowLineageEdge> path = new LinkedList<>();
+        for (int node = targetNode; node != sourceNode; node = edgeSources[viaEdge[node]]) {
+            path.addFirst(toLineageEdge(viaEdge[node]));
+        }
+
+        return Optional.of(ImmutableLogicalFlowPath
+                .builder()
+                .source(nodes[sourceNode])
+                .target(nodes[targetNode])
+                .dataTypeId(dataTypeId)
+                .edges(path)
+                .build());
+    }
+
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+
+    public int getEdgeCount() {
+        return edgeFlowIds.length;
+    }
+
+
+    public LocalDateTime getLatestUpdate() {
+        return latestUpdate;
+    }
+
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+
+    // --- helpers ---
+
+    private int indexOf(EntityReference ref, List<EntityReference> nodeList) {
+        return nodeIndex.computeIfAbsent(toKey(ref), k -> {
+            nodeList.add(ref);
+            return nodeList.size() - 1;
+        });
+    }
+
+
+    /**
+     * Counting sort of the edges by node, giving a contiguous range of
+     * <code>edges</code> (delimited by <code>offsets</code>) per node.
+     */
+    private static void index(int[] edgeNodes, int[] offsets, int[] edges) {
+        for (int node : edgeNodes) {
+            offsets[node + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        int[] positions = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int e = 0; e < edgeNodes.length; e++) {
+            edges[positions[edgeNodes[e]]++] = e;
+        }
+    }
+
+
+    /**
+     * @return sorted ids of the data type and all of its descendants, or null if
+     * no restriction is required
+     */
+    private long[] expandDataType(Long dataTypeId) {
+        if (dataTypeId == null) {
+            return null;
+        }
+
+        List<Long> ids = new ArrayList<>();
+        LinkedList<Long> toVisit = new LinkedList<>(Collections.singletonList(dataTypeId));
+        while (! toVisit.isEmpty()) {
+            Long id = toVisit.removeFirst();
+            ids.add(id);
+            toVisit.addAll(dataTypeChildren.getOrDefault(id, Collections.emptyList()));
+        }
+
+        return ids
+                .stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+    }
+
+
+    private boolean carries(int edge, long[] allowedDataTypes) {
+        if (allowedDataTypes == null) {
+            return true;
+        }
+        for (int i = edgeDataTypeOffsets[edge]; i < edgeDataTypeOffsets[edge + 1]; i++) {
+            if (Arrays.binarySearch(allowedDataTypes, edgeDataTypeIds[i]) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private List<Long> dataTypesOf(int edge) {
+        List<Long> dataTypes = new ArrayList<>();
+        for (int i = edgeDataTypeOffsets[edge]; i < edgeDataTypeOffsets[edge + 1]; i++) {
+            dataTypes.add(edgeDataTypeIds[i]);
+        }
+        return dataTypes;
+    }
+
+
+    private FlowEdge toFlowEdge(int edge) {
+        return new FlowEdge(
+                edgeFlowIds[edge],
+                nodes[edgeSources[edge]],
+                nodes[edgeTargets[edge]],
+                dataTypesOf(edge));
+    }
+
+
+    private LogicalFlowLineageEdge toLineageEdge(int edge) {
+        return ImmutableLogicalFlowLineageEdge
+                .builder()
+                .flowId(edgeFlowIds[edge])
+                .source(nodes[edgeSources[edge]])
+                .target(nodes[edgeTargets[edge]])
+                .dataTypeIds(dataTypesOf(edge))
+                .build();
+    }
+
+
+    private static EntityReference toKey(EntityReference ref) {
+        return mkRef(ref.kind(), ref.id());
+    }
+
+}
@@ -0,0 +1,352 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.logical_flow;
+
+import org.finos.waltz.data.datatype_decorator.LogicalFlowDecoratorDao;
+import org.finos.waltz.data.logical_flow.LogicalFlowDao;
+import org.finos.waltz.data.logical_flow.LogicalFlowGraphDao;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityLifecycleStatus;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.FlowDirection;
+import org.finos.waltz.model.datatype.DataTypeDecorator;
+import org.finos.waltz.model.logical_flow.LogicalFlow;
+import org.finos.waltz.model.logical_flow.LogicalFlowLineage;
+import org.finos.waltz.model.logical_flow.LogicalFlowPath;
+import org.finos.waltz.service.data_type.DataTypeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.CollectionUtilities.isEmpty;
+
+/**
+ * Answers lineage and path questions about logical flows from an in-memory
+ * {@link LogicalFlowGraph}.
+ * <p>
+ * The graph is built on first use and synchronised every `waltz.flow.graph.refresh.ms`,
+ * off the request thread.  Each synchronisation reloads the flows recorded by the logical
+ * flow and decorator services (see {@link #refreshFlows(Collection)}) together with any
+ * flows updated (by loaders, jobs etc.) since the graph was last synchronised.  As hard
+ * deletes of decorators made elsewhere leave no trace, the graph is fully rebuilt once it
+ * is older than `waltz.flow.graph.max.age.ms`.
+ */
+@Service
+public class LogicalFlowGraphService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogicalFlowGraphService.class);
+
+    private final LogicalFlowDao logicalFlowDao;
+    private final LogicalFlowDecoratorDao logicalFlowDecoratorDao;
+    private final LogicalFlowGraphDao logicalFlowGraphDao;
+    private final DataTypeService dataTypeService;
+    private final long maxAgeMillis;
+
+    private final AtomicReference<LogicalFlowGraph> graph = new AtomicReference<>();
+    private final Set<Long> pendingFlowIds = ConcurrentHashMap.newKeySet();
+    private final AtomicLong buildCount = new AtomicLong();
+    private final AtomicLong updateCount = new AtomicLong();
+    private final AtomicLong lastBuildDuration = new AtomicLong();
+
+
+    @Autowired
+    public LogicalFlowGraphService(LogicalFlowDao logicalFlowDao,
+                                   LogicalFlowDecoratorDao logicalFlowDecoratorDao,
+                                   LogicalFlowGraphDao logicalFlowGraphDao,
+                                   DataTypeService dataTypeService,
+                                   @Value("${waltz.flow.graph.max.age.ms:3600000}") long maxAgeMillis) {
+        checkNotNull(logicalFlowDao, "logicalFlowDao cannot be null");
+        checkNotNull(logicalFlowDecoratorDao, "logicalFlowDecoratorDao cannot be null");
+        checkNotNull(logicalFlowGraphDao, "logicalFlowGraphDao cannot be null");
+        checkNotNull(dataTypeService, "dataTypeService cannot be null");
+
+        this.logicalFlowDao = logicalFlowDao;
+        this.logicalFlowDecoratorDao = logicalFlowDecoratorDao;
+        this.logicalFlowGraphDao = logicalFlowGraphDao;
+        this.dataTypeService = dataTypeService;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+
+    /**
+     * @param direction   INBOUND for upstream lineage, OUTBOUND for downstream
+     * @param maxHops     maximum number of flows away from the starting entity
+     * @param dataTypeId  optional, restricts the traversal to flows carrying this
+     *                    data type (or one of its descendants)
+     */
+    public LogicalFlowLineage getLineage(EntityReference ref,
+                                         FlowDirection direction,
+                                         int maxHops,
+                                         Long dataTypeId) {
+        return getGraph().findLineage(ref, direction, maxHops, dataTypeId);
+    }
+
+
+    /**
+     * Everything reachable (upstream or downstream) from the given entity via flows
+     * carrying the data type (or one of its descendants).
+     */
+    public LogicalFlowLineage getReachable(EntityReference ref,
+                                           FlowDirection direction,
+                                           long dataTypeId) {
+        return getGraph().findLineage(ref, direction, Integer.MAX_VALUE, dataTypeId);
+    }
+
+
+    public Optional<LogicalFlowPath> findShortestPath(EntityReference source,
+                                                      EntityReference target,
+                                                      Long dataTypeId) {
+        return getGraph().findShortestPath(source, target, dataTypeId);
+    }
+
+
+    /**
+     * Records that the given flows (or their data types) have changed, to be called
+     * once flows have been added, removed, restored or re-decorated.  The flows are
+     * reloaded by the next synchronisation, so callers are never held up behind a
+     * rebuild.  Does nothing if the graph has not yet been built.
+     */
+    public void refreshFlows(Collection<Long> flowIds) {
+        if (graph.get() == null || isEmpty(flowIds)) {
+            return;
+        }
+
+        pendingFlowIds.addAll(flowIds);
+    }
+
+
+    @Scheduled(
+            initialDelayString = "${waltz.flow.graph.refresh.ms:10000}",
+            fixedDelayString = "${waltz.flow.graph.refresh.ms:10000}")
+    public void refreshIfStale() {
+        LogicalFlowGraph current = graph.get();
+        if (current == null) {
+            // only maintained once someone has asked for it
+            return;
+        }
+
+        if (System.currentTimeMillis() - current.getBuiltAt() > maxAgeMillis) {
+            rebuild();
+        } else {
+            synchroniseChanges();
+        }
+    }
+
+
+    /**
+     * Unconditionally rebuilds the graph, the previous graph continues to serve
+     * queries until the new one is ready.
+     */
+    public synchronized LogicalFlowGraph rebuild() {
+        long start = System.currentTimeMillis();
+        // the rebuild reads every flow, anything recorded after this point is re-applied by the next sync
+        pendingFlowIds.clear();
+        // read first, anything changed whilst loading will be re-applied by the next sync
+        LocalDateTime latestUpdate = logicalFlowGraphDao.findLatestUpdate().orElse(null);
+
+        Map<Long, List<Long>> dataTypesByFlowId = toDataTypesByFlowId(logicalFlowDecoratorDao.findAll());
+
+        List<LogicalFlowGraph.FlowEdge> edges = logicalFlowDao
+                .findAllActive()
+                .stream()
+                .filter(LogicalFlowGraphService::isActive)
+                .map(f -> toFlowEdge(f, dataTypesByFlowId))
+                .collect(toList());
+
+        LogicalFlowGraph latest = LogicalFlowGraph.build(edges, loadDataTypeParents(), latestUpdate);
+        graph.set(latest);
+
+        long duration = System.currentTimeMillis() - start;
+        lastBuildDuration.set(duration);
+        buildCount.incrementAndGet();
+
+        LOG.info(
+                "Built logical flow graph: {} entities, {} flows, in {}ms",
+                latest.getNodeCount(),
+                latest.getEdgeCount(),
+                duration);
+
+        return latest;
+    }
+
+
+    public Optional<LogicalFlowGraph> getCurrentGraph() {
+        return Optional.ofNullable(graph.get());
+    }
+
+
+    public long getBuildCount() {
+        return buildCount.get();
+    }
+
+
+    public long getUpdateCount() {
+        return updateCount.get();
+    }
+
+
+    public long getLastBuildDuration() {
+        return lastBuildDuration.get();
+    }
+
+
+    public int getPendingFlowCount() {
+        return pendingFlowIds.size();
+    }
+
+
+    // --- helpers ---
+
+    private LogicalFlowGraph getGraph() {
+        LogicalFlowGraph current = graph.get();
+        return current == null
+                ? rebuildIfAbsent()
+                : current;
+    }
+
+
+    private synchronized LogicalFlowGraph rebuildIfAbsent() {
+        LogicalFlowGraph current = graph.get();
+        return current == null
+                ? rebuild()
+                : current;
+    }
+
+
+    private synchronized void synchroniseChanges() {
+        LogicalFlowGraph current = graph.get();
+        Optional<LocalDateTime> latestUpdate = logicalFlowGraphDao.findLatestUpdate();
+
+        if (latestUpdate.isPresent() && current.getLatestUpdate() == null) {
+            rebuild();
+            return;
+        }
+
+        Set<Long> flowIds = drainPendingFlowIds();
+        boolean updatedElsewhere = latestUpdate.isPresent()
+                && latestUpdate.get().isAfter(current.getLatestUpdate());
+
+        if (updatedElsewhere) {
+            flowIds.addAll(logicalFlowGraphDao.findFlowIdsUpdatedAfter(current.getLatestUpdate()));
+        }
+
+        if (! flowIds.isEmpty()) {
+            applyChanges(
+                    flowIds,
+                    updatedElsewhere ? latestUpdate.get() : null);
+        }
+    }
+
+
+    private Set<Long> drainPendingFlowIds() {
+        Set<Long> drained = new HashSet<>();
+        Iterator<Long> iterator = pendingFlowIds.iterator();
+        while (iterator.hasNext()) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+
+    private synchronized void applyChanges(Collection<Long> flowIds, LocalDateTime latestUpdate) {
+        LogicalFlowGraph current = graph.get();
+        if (current == null) {
+            return;
+        }
+
+        Map<Long, List<Long>> dataTypesByFlowId = toDataTypesByFlowId(logicalFlowDecoratorDao.findByFlowIds(flowIds));
+
+        List<LogicalFlowGraph.FlowEdge> upserts = logicalFlowDao
+                .findAllByFlowIds(flowIds)
+                .stream()
+                .filter(LogicalFlowGraphService::isActive)
+                .map(f -> toFlowEdge(f, dataTypesByFlowId))
+                .collect(toList());
+
+        Set<Long> removed = new HashSet<>(flowIds);
+        upserts.forEach(e -> removed.remove(e.getFlowId()));
+
+        graph.set(current.update(upserts, removed, latestUpdate));
+        updateCount.incrementAndGet();
+
+        LOG.debug("Updated logical flow graph, {} flows reloaded, {} removed", upserts.size(), removed.size());
+    }
+
+
+    private Map<Long, Long> loadDataTypeParents() {
+        return dataTypeService
+                .findAll()
+                .stream()
+                .filter(dt -> dt.id().isPresent() && dt.parentId().isPresent())
+                .collect(toMap(
+                        dt -> dt.id().get(),
+                        dt -> dt.parentId().get()));
+    }
+
+
+    private static Map<Long, List<Long>> toDataTypesByFlowId(Collection<DataTypeDecorator> decorators) {
+        return decorators
+                .stream()
+                .filter(d -> d.decoratorEntity().kind() == EntityKind.DATA_TYPE)
+                .collect(groupingBy(
+                        DataTypeDecorator::dataFlowId,
+                        HashMap::new,
+                        mapping(DataTypeDecorator::dataTypeId, toList())));
+    }
+
+
+    private static LogicalFlowGraph.FlowEdge toFlowEdge(LogicalFlow flow, Map<Long, List<Long>> dataTypesByFlowId) {
+        long flowId = flow.id().get();
+        return new LogicalFlowGraph.FlowEdge(
+                flowId,
+                flow.source(),
+                flow.target(),
+                dataTypesByFlowId.getOrDefault(flowId, Collections.emptyList()));
+    }
+
+
+    private static boolean isActive(LogicalFlow flow) {
+        return ! flow.isRemoved()
+                && flow.entityLifecycleStatus() == EntityLifecycleStatus.ACTIVE;
+    }
+
+}
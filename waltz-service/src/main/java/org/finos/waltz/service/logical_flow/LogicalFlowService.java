@@ -34,13 +34,14 @@ import org.finos.waltz.model.datatype.DataType;
 import org.finos.waltz.model.datatype.ImmutableDataTypeDecorator;
 import org.finos.waltz.model.logical_flow.*;
 import org.finos.waltz.model.rating.AuthoritativenessRatingValue;
+import org.finos.waltz.model.recalc.RecalcTarget;
 import org.finos.waltz.model.tally.TallyPack;
 import org.finos.waltz.service.changelog.ChangeLogService;
 import org.finos.waltz.service.data_type.DataTypeService;
 import org.finos.waltz.service.involvement.InvolvementService;
 import org.finos.waltz.service.permission.PermissionGroupService;
 import org.finos.waltz.service.permission.permission_checker.FlowPermissionChecker;
-import org.finos.waltz.service.usage_info.DataTypeUsageService;
+import org.finos.waltz.service.recalc.RecalcQueueService;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.jooq.lambda.Unchecked;
@@ -81,11 +82,12 @@ public class LogicalFlowService {
 
     private final ChangeLogService changeLogService;
     private final DataTypeService dataTypeService;
-    private final DataTypeUsageService dataTypeUsageService;
+    private final RecalcQueueService recalcQueueService;
     private final DBExecutorPoolInterface dbExecutorPool;
     private final LogicalFlowDao logicalFlowDao;
     private final LogicalFlowStatsDao logicalFlowStatsDao;
     private final LogicalFlowDecoratorDao logicalFlowDecoratorDao;
+    private final LogicalFlowGraphService logicalFlowGraphService;
     private final InvolvementService involvementService;
     private final PermissionGroupService permissionGroupService;
     private final FlowPermissionChecker flowPermissionChecker;
@@ -98,11 +100,12 @@ public class LogicalFlowService {
     @Autowired
     public LogicalFlowService(ChangeLogService changeLogService,
                               DataTypeService dataTypeService,
-                              DataTypeUsageService dataTypeUsageService,
+                              RecalcQueueService recalcQueueService,
                               DBExecutorPoolInterface dbExecutorPool,
                               LogicalFlowDao logicalFlowDao,
                               LogicalFlowStatsDao logicalFlowStatsDao,
                               LogicalFlowDecoratorDao logicalFlowDecoratorDao,
+                              LogicalFlowGraphService logicalFlowGraphService,
                               InvolvementService involvementService,
                               PermissionGroupService permissionGroupService,
                               FlowPermissionChecker flowPermissionChecker) {
@@ -110,10 +113,11 @@ public class LogicalFlowService {
         checkNotNull(changeLogService, "changeLogService cannot be null");
         checkNotNull(dbExecutorPool, "dbExecutorPool cannot be null");
         checkNotNull(dataTypeService, "dataTypeService cannot be null");
-        checkNotNull(dataTypeUsageService, "dataTypeUsageService cannot be null");
+        checkNotNull(recalcQueueService, "recalcQueueService cannot be null");
         checkNotNull(logicalFlowDao, "logicalFlowDao must not be null");
         checkNotNull(logicalFlowDecoratorDao, "logicalFlowDataTypeDecoratorDao cannot be null");
         checkNotNull(logicalFlowStatsDao, "logicalFlowStatsDao cannot be null");
+        checkNotNull(logicalFlowGraphService, "logicalFlowGraphService cannot be null");
         checkNotNull(involvementService, "involvementService cannot be null");
         checkNotNull(permissionGroupService, "permissionGroupService cannot be null");
         checkNotNull(flowPermissionChecker, "flowPermissionChecker cannot be null");
@@ -121,11 +125,12 @@ public class LogicalFlowService {
         this.changeLogService = changeLogService;
         this.dataTypeService = dataTypeService;
         this.flowPermissionChecker = flowPermissionChecker;
-        this.dataTypeUsageService = dataTypeUsageService;
+        this.recalcQueueService = recalcQueueService;
         this.dbExecutorPool = dbExecutorPool;
         this.logicalFlowDao = logicalFlowDao;
         this.logicalFlowStatsDao = logicalFlowStatsDao;
         this.logicalFlowDecoratorDao = logicalFlowDecoratorDao;
+        this.logicalFlowGraphService = logicalFlowGraphService;
         this.involvementService = involvementService;
         this.permissionGroupService = permissionGroupService;
     }
@@ -197,6 +202,7 @@ public class LogicalFlowService {
 
         LogicalFlow logicalFlow = logicalFlowDao.addFlow(flowToAdd);
         attemptToAddUnknownDecoration(logicalFlow, username);
+        logicalFlowGraphService.refreshFlows(newArrayList(logicalFlow.id().get()));
 
         changeLogService.writeChangeLogEntries(logicalFlow, username, "Added", Operation.ADD);
 
@@ -246,7 +252,10 @@ public class LogicalFlowService {
                         .build())
                 .collect(toSet());
 
-        return logicalFlowDao.addFlows(flowsToAdd, username);
+        Set<LogicalFlow> addedFlows = logicalFlowDao.addFlows(flowsToAdd, username);
+        logicalFlowGraphService.refreshFlows(map(addedFlows, f -> f.id().get()));
+
+        return addedFlows;
     }
 
 
@@ -262,7 +271,7 @@ public class LogicalFlowService {
 
     /**
      * Removes the given logical flow and creates an audit log entry.
-     * The removal is a soft removal. After the removal usage stats are recalculated
+     * The removal is a soft removal. After the removal usage stats are queued for recalculation
      *
      * todo: #WALTZ-1894 for cleanupOrphans task
      *
@@ -279,10 +288,11 @@ public class LogicalFlowService {
             throw new IllegalArgumentException(format("Cannot find flow with id: %d, no logical flow removed", flowId));
         } else {
             int deleted = logicalFlowDao.removeFlow(flowId, username);
+            logicalFlowGraphService.refreshFlows(newArrayList(flowId));
 
             Set<EntityReference> affectedEntityRefs = SetUtilities.fromArray(logicalFlow.source(), logicalFlow.target());
 
-            dataTypeUsageService.recalculateForApplications(affectedEntityRefs);
+            recalcQueueService.record(RecalcTarget.DATA_TYPE_USAGE, affectedEntityRefs);
 
             changeLogService.writeChangeLogEntries(logicalFlow, username,
                     "Removed : datatypes [" + getAssociatedDatatypeNamesAsCsv(flowId) + "]",
@@ -345,6 +355,7 @@ public class LogicalFlowService {
     public boolean restoreFlow(long logicalFlowId, String username) {
         boolean result = logicalFlowDao.restoreFlow(logicalFlowId, username);
         if (result) {
+            logicalFlowGraphService.refreshFlows(newArrayList(logicalFlowId));
             changeLogService.writeChangeLogEntries(mkRef(LOGICAL_DATA_FLOW, logicalFlowId), username, "Restored", Operation.ADD);
         }
         return result;
@@ -24,17 +24,22 @@ import org.finos.waltz.common.StringUtilities;
 import org.finos.waltz.data.actor.ActorDao;
 import org.finos.waltz.data.application.ApplicationDao;
 import org.finos.waltz.data.data_type.DataTypeDao;
-import org.finos.waltz.data.logical_flow.LogicalFlowDao;
-import org.finos.waltz.data.physical_flow.PhysicalFlowDao;
-import org.finos.waltz.data.physical_specification.PhysicalSpecificationDao;
+import org.finos.waltz.data.datatype_decorator.LogicalFlowDecoratorDao;
+import org.finos.waltz.data.physical_flow.PhysicalFlowUploadDao;
 import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityLifecycleStatus;
 import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.Operation;
+import org.finos.waltz.model.Severity;
 import org.finos.waltz.model.UserTimestamp;
 import org.finos.waltz.model.actor.Actor;
 import org.finos.waltz.model.application.Application;
+import org.finos.waltz.model.changelog.ChangeLog;
+import org.finos.waltz.model.changelog.ImmutableChangeLog;
 import org.finos.waltz.model.command.CommandOutcome;
 import org.finos.waltz.model.datatype.DataType;
 import org.finos.waltz.model.datatype.DataTypeDecorator;
+import org.finos.waltz.model.datatype.ImmutableDataTypeDecorator;
 import org.finos.waltz.model.enum_value.EnumValueKind;
 import org.finos.waltz.model.external_identifier.ExternalIdValue;
 import org.finos.waltz.model.logical_flow.ImmutableLogicalFlow;
@@ -43,38 +48,86 @@ import org.finos.waltz.model.physical_flow.*;
 import org.finos.waltz.model.physical_specification.DataFormatKindValue;
 import org.finos.waltz.model.physical_specification.ImmutablePhysicalSpecification;
 import org.finos.waltz.model.physical_specification.PhysicalSpecification;
-import org.finos.waltz.service.data_type.DataTypeDecoratorService;
+import org.finos.waltz.model.rating.AuthoritativenessRatingValue;
+import org.finos.waltz.model.recalc.RecalcTarget;
+import org.finos.waltz.service.changelog.ChangeLogBatch;
+import org.finos.waltz.service.changelog.ChangeLogService;
+import org.finos.waltz.service.data_flow_decorator.LogicalFlowDecoratorRatingsCalculator;
 import org.finos.waltz.service.enum_value.EnumValueAliasService;
+import org.finos.waltz.service.physical_specification.PhysicalSpecificationService;
+import org.finos.waltz.service.recalc.RecalcQueueService;
+import org.jooq.DSLContext;
+import org.jooq.lambda.tuple.Tuple2;
+import org.jooq.lambda.tuple.Tuple3;
+import org.jooq.lambda.tuple.Tuple6;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static java.lang.String.format;
 import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.common.DateTimeUtilities.nowUtc;
-import static org.finos.waltz.common.SetUtilities.fromArray;
+import static org.finos.waltz.common.ListUtilities.partition;
 import static org.finos.waltz.common.StringUtilities.isEmpty;
 import static org.finos.waltz.common.StringUtilities.lower;
-
-
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+
+/**
+ * Validates and uploads physical flows in bulk.
+ * <p>
+ * Uploads are processed in three phases:
+ * <ol>
+ *     <li>resolve: the candidate logical flows, specifications, physical flows (and
+ *     their data types) for every row are loaded with a handful of set based queries</li>
+ *     <li>insert: anything missing is created with batch inserts in a single transaction,
+ *     nothing is written if any part of the upload fails</li>
+ *     <li>follow up: new logical flow data types are rated, data type usages recalculated
+ *     and change log entries written in bulk</li>
+ * </ol>
+ * The number of rows processed per second is logged on completion.
+ */
 @Service
 public class PhysicalFlowUploadService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(PhysicalFlowUploadService.class);
+    private static final String PROVENANCE = "waltz";
+
     private final ActorDao actorDao;
     private final ApplicationDao applicationDao;
     private final DataTypeDao dataTypeDao;
-    private final LogicalFlowDao logicalFlowDao;
-    private final DataTypeDecoratorService dataTypeDecoratorService;
-    private final PhysicalFlowDao physicalFlowDao;
-    private final PhysicalSpecificationDao physicalSpecificationDao;
+    private final LogicalFlowDecoratorDao logicalFlowDecoratorDao;
+    private final PhysicalFlowUploadDao physicalFlowUploadDao;
     private final EnumValueAliasService enumValueAliasService;
+    private final LogicalFlowDecoratorRatingsCalculator ratingsCalculator;
+    private final RecalcQueueService recalcQueueService;
+    private final PhysicalSpecificationService physicalSpecificationService;
+    private final ChangeLogService changeLogService;
+    private final DSLContext dsl;
 
     private final Pattern basisOffsetRegex = Pattern.compile("T?(?<offset>[\\+\\-]?\\d+)");
 
@@ -82,27 +135,36 @@ public class PhysicalFlowUploadService {
     public PhysicalFlowUploadService(ActorDao actorDao,
                                      ApplicationDao applicationDao,
                                      DataTypeDao dataTypeDao,
-                                     LogicalFlowDao logicalFlowDao,
-                                     DataTypeDecoratorService dataTypeDecoratorService,
-                                     PhysicalFlowDao physicalFlowDao,
-                                     PhysicalSpecificationDao physicalSpecificationDao,
-                                     EnumValueAliasService enumValueAliasService) {
+                                     LogicalFlowDecoratorDao logicalFlowDecoratorDao,
+                                     PhysicalFlowUploadDao physicalFlowUploadDao,
+                                     EnumValueAliasService enumValueAliasService,
+                                     LogicalFlowDecoratorRatingsCalculator ratingsCalculator,
+                                     RecalcQueueService recalcQueueService,
+                                     PhysicalSpecificationService physicalSpecificationService,
+                                     ChangeLogService changeLogService,
+                                     DSLContext dsl) {
         checkNotNull(actorDao, "actorDao cannot be null");
         checkNotNull(applicationDao, "applicationDao cannot be null");
         checkNotNull(dataTypeDao, "dataTypeDao cannot be null");
-        checkNotNull(dataTypeDecoratorService, "dataTypeDecoratorService cannot be null");
-        checkNotNull(logicalFlowDao, "logicalFlowDao cannot be null");
-        checkNotNull(physicalFlowDao, "physicalFlowDao cannot be null");
-        checkNotNull(physicalSpecificationDao, "physicalSpecificationDao cannot be null");
+        checkNotNull(logicalFlowDecoratorDao, "logicalFlowDecoratorDao cannot be null");
+        checkNotNull(physicalFlowUploadDao, "physicalFlowUploadDao cannot be null");
         checkNotNull(enumValueAliasService, "enumValueAliasService cannot be null");
+        checkNotNull(ratingsCalculator, "ratingsCalculator cannot be null");
+        checkNotNull(recalcQueueService, "recalcQueueService cannot be null");
+        checkNotNull(physicalSpecificationService, "physicalSpecificationService cannot be null");
+        checkNotNull(changeLogService, "changeLogService cannot be null");
+        checkNotNull(dsl, "dsl cannot be null");
         this.actorDao = actorDao;
         this.applicationDao = applicationDao;
         this.dataTypeDao = dataTypeDao;
-        this.logicalFlowDao = logicalFlowDao;
-        this.physicalFlowDao = physicalFlowDao;
-        this.physicalSpecificationDao = physicalSpecificationDao;
+        this.logicalFlowDecoratorDao = logicalFlowDecoratorDao;
+        this.physicalFlowUploadDao = physicalFlowUploadDao;
         this.enumValueAliasService = enumValueAliasService;
-        this.dataTypeDecoratorService = dataTypeDecoratorService;
+        this.ratingsCalculator = ratingsCalculator;
+        this.recalcQueueService = recalcQueueService;
+        this.physicalSpecificationService = physicalSpecificationService;
+        this.changeLogService = changeLogService;
+        this.dsl = dsl;
     }
 
 
@@ -145,21 +207,14 @@ public class PhysicalFlowUploadService {
         }
 
         // no parse errors - check for duplicates
-        List<PhysicalFlowUploadCommandResponse> responses = parsedFlows.stream()
-                .map(f -> Optional.ofNullable(physicalFlowDao.getByParsedFlow(f.parsedFlow()))
-                    .map(m -> (PhysicalFlowUploadCommandResponse) ImmutablePhysicalFlowUploadCommandResponse
-                            .copyOf(f)
-                            .withEntityReference(m.entityReference()))
-                    .orElse(f))
-                .collect(toList());
-
-        return responses;
+        return markExistingFlows(dsl, parsedFlows);
     }
 
     
     public List<PhysicalFlowUploadCommandResponse> upload(String username,
                                                           List<PhysicalFlowUploadCommand> cmds) throws Exception {
         checkNotNull(cmds, "cmds cannot be empty");
+        long start = System.currentTimeMillis();
 
         // load application and actor maps
         List<PhysicalFlowUploadCommandResponse> validated = validate(cmds);
@@ -172,20 +227,333 @@ public class PhysicalFlowUploadService {
                 .filter(v -> v.outcome() == CommandOutcome.SUCCESS && v.entityReference() == null)
                 .collect(toList());
 
-        // create physical flow with ids from the above two
-        List<PhysicalFlowUploadCommandResponse> created = newFlowCmds.stream()
-                .map(v -> {
-                    if (!(v.outcome() == CommandOutcome.SUCCESS && v.entityReference() == null)) {
-                        return v;
+        if (newFlowCmds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        UploadBatch batch = dsl.transactionResult(ctx -> insertMissing(ctx.dsl(), username, newFlowCmds));
+
+        applyFollowUps(username, batch);
+
+        long duration = Math.max(1, System.currentTimeMillis() - start);
+        LOG.info(
+                "Physical flow upload: {} rows ({} new), created {} logical flows, {} specifications, {} physical flows in {}ms ({} rows/sec)",
+                cmds.size(),
+                newFlowCmds.size(),
+                batch.logicalFlowCount,
+                batch.specificationCount,
+                batch.physicalFlowCount,
+                duration,
+                cmds.size() * 1000L / duration);
+
+        return batch.responses;
+    }
+
+
+    ////////////////////// PRIVATE //////////////////////
+    /////////////////////////////////////////////////////
+
+    /**
+     * Sets the entity reference of every parsed row which already has a matching, live,
+     * physical flow.  A match requires the logical flow (source, target), specification
+     * (owner, name, format), specification data type and the physical flow attributes
+     * (basis offset, frequency, transport, criticality) to agree.
+     */
+    private List<PhysicalFlowUploadCommandResponse> markExistingFlows(DSLContext ctx,
+                                                                      List<PhysicalFlowUploadCommandResponse> parsedFlows) {
+        List<PhysicalFlowParsed> flows = parsedFlows
+                .stream()
+                .map(PhysicalFlowUploadCommandResponse::parsedFlow)
+                .collect(toList());
+
+        Map<Tuple2<EntityReference, EntityReference>, LogicalFlow> logicalFlows = loadLogicalFlows(ctx, flows);
+        Map<Tuple3<EntityReference, String, DataFormatKindValue>, PhysicalSpecification> specs = loadSpecifications(ctx, flows);
+
+        Set<Tuple2<Long, Long>> specDataTypes = physicalFlowUploadDao.findSpecificationDataTypes(
+                ctx,
+                specs.values().stream().map(s -> s.id().get()).collect(toSet()));
+
+        Map<Tuple6<Long, Long, Integer, FrequencyKindValue, TransportKindValue, CriticalityValue>, PhysicalFlow> physicalFlows = loadPhysicalFlows(
+                ctx,
+                logicalFlows.values());
+
+        return parsedFlows
+                .stream()
+                .map(f -> {
+                    PhysicalFlowParsed flow = f.parsedFlow();
+                    LogicalFlow logicalFlow = logicalFlows.get(logicalFlowKey(flow));
+                    PhysicalSpecification spec = specs.get(specificationKey(flow));
+
+                    if (logicalFlow == null || !isLive(logicalFlow) || spec == null) {
+                        return f;
+                    }
+
+                    long specId = spec.id().get();
+                    PhysicalFlow match = physicalFlows.get(physicalFlowKey(logicalFlow.id().get(), specId, flow));
+
+                    return match != null && isLive(match) && specDataTypes.contains(tuple(specId, flow.dataType().id()))
+                            ? ImmutablePhysicalFlowUploadCommandResponse
+                                .copyOf(f)
+                                .withEntityReference(match.entityReference())
+                            : f;
+                })
+                .collect(toList());
+    }
+
+
+    /**
+     * Resolves, and where necessary creates, the logical flows, specifications, data types and
+     * physical flows required by the given rows.  Each kind of entity is looked up with set based
+     * queries and any missing ones are created with a single batch insert.
+     */
+    private UploadBatch insertMissing(DSLContext tx,
+                                      String username,
+                                      List<PhysicalFlowUploadCommandResponse> rows) {
+        LocalDateTime now = nowUtc();
+        UploadBatch batch = new UploadBatch();
+
+        List<PhysicalFlowParsed> flows = rows
+                .stream()
+                .map(PhysicalFlowUploadCommandResponse::parsedFlow)
+                .collect(toList());
+
+        Map<Tuple2<EntityReference, EntityReference>, LogicalFlow> logicalFlows = resolveLogicalFlows(tx, username, now, flows, batch);
+        addMissingLogicalFlowDataTypes(tx, username, now, flows, logicalFlows, batch);
+
+        Map<Tuple3<EntityReference, String, DataFormatKindValue>, PhysicalSpecification> specs = resolveSpecifications(tx, username, now, flows, batch);
+        addMissingSpecificationDataTypes(tx, username, now, flows, specs, batch);
+
+        Map<Tuple6<Long, Long, Integer, FrequencyKindValue, TransportKindValue, CriticalityValue>, PhysicalFlow> physicalFlows
+                = resolvePhysicalFlows(tx, username, now, flows, logicalFlows, specs, batch);
+
+        batch.responses = rows
+                .stream()
+                .map(r -> {
+                    PhysicalFlowParsed flow = r.parsedFlow();
+                    PhysicalFlow physicalFlow = physicalFlows.get(physicalFlowKey(
+                            logicalFlows.get(logicalFlowKey(flow)).id().get(),
+                            specs.get(specificationKey(flow)).id().get(),
+                            flow));
+                    return (PhysicalFlowUploadCommandResponse) ImmutablePhysicalFlowUploadCommandResponse
+                            .copyOf(r)
+                            .withEntityReference(physicalFlow.entityReference());
+                })
+                .collect(toList());
+
+        return batch;
+    }
+
+
+    private Map<Tuple2<EntityReference, EntityReference>, LogicalFlow> resolveLogicalFlows(DSLContext tx,
+                                                                                           String username,
+                                                                                           LocalDateTime now,
+                                                                                           List<PhysicalFlowParsed> flows,
+                                                                                           UploadBatch batch) {
+        Map<Tuple2<EntityReference, EntityReference>, LogicalFlow> existing = loadLogicalFlows(tx, flows);
+        Map<Tuple2<EntityReference, EntityReference>, PhysicalFlowParsed> required = indexFirst(flows, this::logicalFlowKey);
+
+        List<LogicalFlow> toRestore = new ArrayList<>();
+        List<LogicalFlow> toCreate = new ArrayList<>();
+        required.forEach((key, flow) -> {
+            LogicalFlow logicalFlow = existing.get(key);
+            if (logicalFlow == null) {
+                toCreate.add(ImmutableLogicalFlow.builder()
+                        .source(flow.source())
+                        .target(flow.target())
+                        .lastUpdatedBy(username)
+                        .lastUpdatedAt(now)
+                        .provenance(PROVENANCE)
+                        .created(UserTimestamp.mkForUser(username, now))
+                        .build());
+            } else if (!isLive(logicalFlow)) {
+                toRestore.add(logicalFlow);
+            }
+        });
+
+        if (toCreate.isEmpty() && toRestore.isEmpty()) {
+            return existing;
+        }
+
+        physicalFlowUploadDao.restoreLogicalFlows(tx, toRestore.stream().map(f -> f.id().get()).collect(toList()), username);
+        batch.logicalFlowCount = physicalFlowUploadDao.createLogicalFlows(tx, toCreate);
+
+        // batch inserts do not return generated ids, so re-read to pick them up
+        Map<Tuple2<EntityReference, EntityReference>, LogicalFlow> resolved = loadLogicalFlows(tx, flows);
+
+        toRestore.forEach(f -> batch.changeLogs.addAll(mkLogicalFlowChangeLogs(
+                resolved.get(logicalFlowKey(f.source(), f.target())),
+                required.get(logicalFlowKey(f.source(), f.target())),
+                "Restored",
+                username)));
+        toCreate.forEach(f -> batch.changeLogs.addAll(mkLogicalFlowChangeLogs(
+                resolved.get(logicalFlowKey(f.source(), f.target())),
+                required.get(logicalFlowKey(f.source(), f.target())),
+                "Added",
+                username)));
+
+        return resolved;
+    }
+
+
+    private void addMissingLogicalFlowDataTypes(DSLContext tx,
+                                                String username,
+                                                LocalDateTime now,
+                                                List<PhysicalFlowParsed> flows,
+                                                Map<Tuple2<EntityReference, EntityReference>, LogicalFlow> logicalFlows,
+                                                UploadBatch batch) {
+        Map<Tuple2<Long, Long>, PhysicalFlowParsed> required = indexFirst(
+                flows,
+                f -> tuple(logicalFlows.get(logicalFlowKey(f)).id().get(), f.dataType().id()));
+
+        Set<Tuple2<Long, Long>> existing = physicalFlowUploadDao.findLogicalFlowDataTypes(
+                tx,
+                required.keySet().stream().map(t -> t.v1).collect(toSet()));
+
+        List<DataTypeDecorator> decorators = required
+                .keySet()
+                .stream()
+                .filter(t -> !existing.contains(t))
+                .map(t -> mkDecorator(
+                        mkRef(EntityKind.LOGICAL_DATA_FLOW, t.v1),
+                        t.v2,
+                        Optional.of(AuthoritativenessRatingValue.NO_OPINION),
+                        username,
+                        now))
+                .collect(toList());
+
+        physicalFlowUploadDao.createLogicalFlowDecorators(tx, decorators);
+
+        batch.logicalFlowDecorators.addAll(decorators);
+        decorators.forEach(d -> {
+            PhysicalFlowParsed flow = required.get(tuple(d.dataFlowId(), d.dataTypeId()));
+            batch.usageRefs.add(flow.source());
+            batch.usageRefs.add(flow.target());
+        });
+        batch.changeLogs.addAll(mkDataTypesAddedChangeLogs(decorators, username));
+    }
+
+
+    private Map<Tuple3<EntityReference, String, DataFormatKindValue>, PhysicalSpecification> resolveSpecifications(DSLContext tx,
+                                                                                                                  String username,
+                                                                                                                  LocalDateTime now,
+                                                                                                                  List<PhysicalFlowParsed> flows,
+                                                                                                                  UploadBatch batch) {
+        Map<Tuple3<EntityReference, String, DataFormatKindValue>, PhysicalSpecification> existing = loadSpecifications(tx, flows);
+
+        List<PhysicalSpecification> toCreate = indexFirst(flows, this::specificationKey)
+                .entrySet()
+                .stream()
+                .filter(e -> !existing.containsKey(e.getKey()))
+                .map(e -> {
+                    PhysicalFlowParsed flow = e.getValue();
+                    return (PhysicalSpecification) ImmutablePhysicalSpecification.builder()
+                            .owningEntity(flow.owner())
+                            .format(flow.format())
+                            .name(flow.name())
+                            .externalId(Optional.ofNullable(flow.specExternalId()).orElse(""))
+                            .description(Optional.ofNullable(flow.specDescription()).orElse(""))
+                            .lastUpdatedBy(username)
+                            .lastUpdatedAt(now)
+                            .provenance(PROVENANCE)
+                            .created(UserTimestamp.mkForUser(username, now))
+                            .build();
+                })
+                .collect(toList());
+
+        if (toCreate.isEmpty()) {
+            return existing;
+        }
+
+        batch.specificationCount = physicalFlowUploadDao.createSpecifications(tx, toCreate);
+        batch.newSpecificationKeys.addAll(toCreate
+                .stream()
+                .map(s -> specificationKey(s.owningEntity(), s.name(), s.format()))
+                .collect(toList()));
+
+        return loadSpecifications(tx, flows);
+    }
+
+
+    /**
+     * Adds any missing data types to the specifications.  Existing specifications (or new
+     * ones acquiring several data types) need those data types propagating to the logical
+     * flows of their physical flows, this is done once the upload has been committed.
+     */
+    private void addMissingSpecificationDataTypes(DSLContext tx,
+                                                  String username,
+                                                  LocalDateTime now,
+                                                  List<PhysicalFlowParsed> flows,
+                                                  Map<Tuple3<EntityReference, String, DataFormatKindValue>, PhysicalSpecification> specs,
+                                                  UploadBatch batch) {
+        Map<Tuple2<Long, Long>, PhysicalFlowParsed> required = indexFirst(
+                flows,
+                f -> tuple(specs.get(specificationKey(f)).id().get(), f.dataType().id()));
+
+        Set<Tuple2<Long, Long>> existing = physicalFlowUploadDao.findSpecificationDataTypes(
+                tx,
+                required.keySet().stream().map(t -> t.v1).collect(toSet()));
+
+        List<DataTypeDecorator> decorators = required
+                .keySet()
+                .stream()
+                .filter(t -> !existing.contains(t))
+                .map(t -> mkDecorator(
+                        mkRef(EntityKind.PHYSICAL_SPECIFICATION, t.v1),
+                        t.v2,
+                        Optional.empty(),
+                        username,
+                        now))
+                .collect(toList());
+
+        physicalFlowUploadDao.createSpecificationDecorators(tx, decorators);
+
+        Set<Long> newSpecIds = batch.newSpecificationKeys
+                .stream()
+                .map(k -> specs.get(k).id().get())
+                .collect(toSet());
+
+        decorators
+                .stream()
+                .collect(groupingBy(DataTypeDecorator::dataFlowId, mapping(DataTypeDecorator::dataTypeId, toSet())))
+                .forEach((specId, dataTypeIds) -> {
+                    if (!newSpecIds.contains(specId) || dataTypeIds.size() > 1) {
+                        batch.specificationsToPropagate.add(specId);
                     }
+                });
+
+        batch.changeLogs.addAll(mkDataTypesAddedChangeLogs(decorators, username));
+    }
 
-                    PhysicalFlowParsed flow = v.parsedFlow();
-                    LogicalFlow logicalFlow = getOrCreateLogicalFlow(flow.source(), flow.target(), flow.dataType(), username);
-                    PhysicalSpecification specification = getOrCreatePhysicalSpec(flow, username);
 
-                    PhysicalFlow newFlow = ImmutablePhysicalFlow.builder()
-                            .logicalFlowId(logicalFlow.id().get())
-                            .specificationId(specification.id().get())
+    private Map<Tuple6<Long, Long, Integer, FrequencyKindValue, TransportKindValue, CriticalityValue>, PhysicalFlow> resolvePhysicalFlows(
+            DSLContext tx,
+            String username,
+            LocalDateTime now,
+            List<PhysicalFlowParsed> flows,
+            Map<Tuple2<EntityReference, EntityReference>, LogicalFlow> logicalFlows,
+            Map<Tuple3<EntityReference, String, DataFormatKindValue>, PhysicalSpecification> specs,
+            UploadBatch batch) {
+
+        Map<Tuple6<Long, Long, Integer, FrequencyKindValue, TransportKindValue, CriticalityValue>, PhysicalFlowParsed> required = indexFirst(
+                flows,
+                f -> physicalFlowKey(
+                        logicalFlows.get(logicalFlowKey(f)).id().get(),
+                        specs.get(specificationKey(f)).id().get(),
+                        f));
+
+        Map<Tuple6<Long, Long, Integer, FrequencyKindValue, TransportKindValue, CriticalityValue>, PhysicalFlow> existing = loadPhysicalFlows(
+                tx,
+                logicalFlows.values());
+
+        List<PhysicalFlow> toCreate = required
+                .entrySet()
+                .stream()
+                .filter(e -> !existing.containsKey(e.getKey()))
+                .map(e -> {
+                    PhysicalFlowParsed flow = e.getValue();
+                    return (PhysicalFlow) ImmutablePhysicalFlow.builder()
+                            .logicalFlowId(e.getKey().v1)
+                            .specificationId(e.getKey().v2)
                             .basisOffset(flow.basisOffset())
                             .frequency(flow.frequency())
                             .transport(flow.transport())
@@ -193,22 +561,277 @@ public class PhysicalFlowUploadService {
                             .description(flow.description())
                             .externalId(Optional.ofNullable(flow.externalId()))
                             .lastUpdatedBy(username)
-                            .lastUpdatedAt(nowUtc())
+                            .lastUpdatedAt(now)
                             .build();
+                })
+                .collect(toList());
+
+        if (toCreate.isEmpty()) {
+            return existing;
+        }
 
-                    long id = getOrCreatePhysicalFlow(newFlow);
+        batch.physicalFlowCount = physicalFlowUploadDao.createPhysicalFlows(tx, toCreate);
+
+        Map<Tuple6<Long, Long, Integer, FrequencyKindValue, TransportKindValue, CriticalityValue>, PhysicalFlow> resolved = loadPhysicalFlows(
+                tx,
+                logicalFlows.values());
+
+        toCreate.forEach(f -> {
+            Tuple6<Long, Long, Integer, FrequencyKindValue, TransportKindValue, CriticalityValue> key = physicalFlowKey(f);
+            PhysicalFlowParsed flow = required.get(key);
+            batch.changeLogs.addAll(mkChangeLogs(
+                    format("Physical flow: %s, from: %s, to: %s: created",
+                            flow.name(),
+                            safeName(flow.source()),
+                            safeName(flow.target())),
+                    EntityKind.PHYSICAL_FLOW,
+                    Operation.ADD,
+                    username,
+                    resolved.get(key).entityReference(),
+                    mkRef(EntityKind.LOGICAL_DATA_FLOW, f.logicalFlowId()),
+                    flow.source(),
+                    flow.target()));
+        });
+
+        return resolved;
+    }
 
-                    return ImmutablePhysicalFlowUploadCommandResponse.copyOf(v)
-                            .withEntityReference(EntityReference.mkRef(EntityKind.PHYSICAL_FLOW, id));
-                })
+
+    /**
+     * Work which relies upon the upload having been committed (and is not critical to it):
+     * rating new logical flow data types, propagating specification data types,
+     * queueing data type usage recalculation and writing the change log.
+     */
+    private void applyFollowUps(String username, UploadBatch batch) {
+        if (! batch.logicalFlowDecorators.isEmpty()) {
+            // re-read the new decorators as the rating update is made by id
+            Set<Tuple2<Long, Long>> added = batch.logicalFlowDecorators
+                    .stream()
+                    .map(d -> tuple(d.dataFlowId(), d.dataTypeId()))
+                    .collect(toSet());
+
+            List<Long> flowIds = added.stream().map(t -> t.v1).distinct().collect(toList());
+            List<DataTypeDecorator> persisted = partition(flowIds, PhysicalFlowUploadDao.MAX_IDS_PER_QUERY)
+                    .stream()
+                    .flatMap(chunk -> logicalFlowDecoratorDao.findByFlowIds(chunk).stream())
+                    .filter(d -> added.contains(tuple(d.dataFlowId(), d.dataTypeId())))
+                    .collect(toList());
+
+            Collection<DataTypeDecorator> rated = ratingsCalculator.calculate(persisted);
+            if (! rated.isEmpty()) {
+                logicalFlowDecoratorDao.updateDecorators(new HashSet<>(rated));
+            }
+        }
+
+        if (! batch.usageRefs.isEmpty()) {
+            recalcQueueService.record(RecalcTarget.DATA_TYPE_USAGE, batch.usageRefs);
+        }
+
+        // each propagation logs its own entries, gather them with the upload's so they are written together
+        try (ChangeLogBatch changeLogBatch = changeLogService.batch()) {
+            batch.specificationsToPropagate.forEach(specId -> physicalSpecificationService.propagateDataTypesToLogicalFlows(username, specId));
+            changeLogService.write(batch.changeLogs);
+            changeLogBatch.complete();
+        }
+    }
+
+
+    private Map<Tuple2<EntityReference, EntityReference>, LogicalFlow> loadLogicalFlows(DSLContext ctx,
+                                                                                        List<PhysicalFlowParsed> flows) {
+        Set<Tuple2<EntityReference, EntityReference>> wanted = flows
+                .stream()
+                .map(this::logicalFlowKey)
+                .collect(toSet());
+
+        List<LogicalFlow> candidates = physicalFlowUploadDao.findLogicalFlowsBySourceIds(
+                ctx,
+                flows.stream().map(f -> f.source().id()).collect(toSet()));
+
+        // prefer live flows if (unusually) there are several for the same source and target
+        return candidates
+                .stream()
+                .filter(f -> wanted.contains(logicalFlowKey(f.source(), f.target())))
+                .collect(toMap(
+                        f -> logicalFlowKey(f.source(), f.target()),
+                        identity(),
+                        (f1, f2) -> isLive(f1) ? f1 : f2));
+    }
+
+
+    private Map<Tuple3<EntityReference, String, DataFormatKindValue>, PhysicalSpecification> loadSpecifications(DSLContext ctx,
+                                                                                                               List<PhysicalFlowParsed> flows) {
+        Set<Tuple3<EntityReference, String, DataFormatKindValue>> wanted = flows
+                .stream()
+                .map(this::specificationKey)
+                .collect(toSet());
+
+        List<PhysicalSpecification> candidates = physicalFlowUploadDao.findSpecificationsByOwnerIds(
+                ctx,
+                flows.stream().map(f -> f.owner().id()).collect(toSet()));
+
+        return candidates
+                .stream()
+                .filter(s -> wanted.contains(specificationKey(s.owningEntity(), s.name(), s.format())))
+                .collect(toMap(
+                        s -> specificationKey(s.owningEntity(), s.name(), s.format()),
+                        identity(),
+                        (s1, s2) -> s1.id().get() <= s2.id().get() ? s1 : s2));
+    }
+
+
+    private Map<Tuple6<Long, Long, Integer, FrequencyKindValue, TransportKindValue, CriticalityValue>, PhysicalFlow> loadPhysicalFlows(DSLContext ctx,
+                                                                                                                                      Collection<LogicalFlow> logicalFlows) {
+        List<PhysicalFlow> candidates = physicalFlowUploadDao.findPhysicalFlowsByLogicalFlowIds(
+                ctx,
+                logicalFlows.stream().map(f -> f.id().get()).collect(toSet()));
+
+        // prefer live flows, removed ones are only reused if there is no live alternative
+        return candidates
+                .stream()
+                .collect(toMap(
+                        this::physicalFlowKey,
+                        identity(),
+                        (f1, f2) -> isLive(f1) ? f1 : f2));
+    }
+
+
+    private Tuple2<EntityReference, EntityReference> logicalFlowKey(PhysicalFlowParsed flow) {
+        return logicalFlowKey(flow.source(), flow.target());
+    }
+
+
+    private Tuple2<EntityReference, EntityReference> logicalFlowKey(EntityReference source, EntityReference target) {
+        return tuple(plainRef(source), plainRef(target));
+    }
+
+
+    private Tuple3<EntityReference, String, DataFormatKindValue> specificationKey(PhysicalFlowParsed flow) {
+        return specificationKey(flow.owner(), flow.name(), flow.format());
+    }
+
+
+    private Tuple3<EntityReference, String, DataFormatKindValue> specificationKey(EntityReference owner,
+                                                                                  String name,
+                                                                                  DataFormatKindValue format) {
+        return tuple(plainRef(owner), name, format);
+    }
+
+
+    private Tuple6<Long, Long, Integer, FrequencyKindValue, TransportKindValue, CriticalityValue> physicalFlowKey(long logicalFlowId,
+                                                                                                                  long specificationId,
+                                                                                                                  PhysicalFlowParsed flow) {
+        return tuple(logicalFlowId, specificationId, flow.basisOffset(), flow.frequency(), flow.transport(), flow.criticality());
+    }
+
+
+    private Tuple6<Long, Long, Integer, FrequencyKindValue, TransportKindValue, CriticalityValue> physicalFlowKey(PhysicalFlow flow) {
+        return tuple(flow.logicalFlowId(), flow.specificationId(), flow.basisOffset(), flow.frequency(), flow.transport(), flow.criticality());
+    }
+
+
+    /**
+     * References resolved during validation carry names, those read back
+     * from the database do not, so keys only use the kind and id.
+     */
+    private static EntityReference plainRef(EntityReference ref) {
+        return mkRef(ref.kind(), ref.id());
+    }
+
+
+    private static boolean isLive(LogicalFlow flow) {
+        return !flow.isRemoved() && flow.entityLifecycleStatus() != EntityLifecycleStatus.REMOVED;
+    }
+
+
+    private static boolean isLive(PhysicalFlow flow) {
+        return !flow.isRemoved() && flow.entityLifecycleStatus() != EntityLifecycleStatus.REMOVED;
+    }
+
+
+    private static <K> Map<K, PhysicalFlowParsed> indexFirst(List<PhysicalFlowParsed> flows,
+                                                             Function<PhysicalFlowParsed, K> keyFn) {
+        Map<K, PhysicalFlowParsed> result = new LinkedHashMap<>();
+        flows.forEach(f -> result.putIfAbsent(keyFn.apply(f), f));
+        return result;
+    }
+
+
+    private static DataTypeDecorator mkDecorator(EntityReference entityReference,
+                                                 long dataTypeId,
+                                                 Optional<AuthoritativenessRatingValue> rating,
+                                                 String username,
+                                                 LocalDateTime now) {
+        return ImmutableDataTypeDecorator.builder()
+                .rating(rating)
+                .entityReference(entityReference)
+                .decoratorEntity(mkRef(EntityKind.DATA_TYPE, dataTypeId))
+                .provenance(PROVENANCE)
+                .lastUpdatedAt(now)
+                .lastUpdatedBy(username)
+                .build();
+    }
+
+
+    private static List<ChangeLog> mkLogicalFlowChangeLogs(LogicalFlow logicalFlow,
+                                                           PhysicalFlowParsed flow,
+                                                           String postamble,
+                                                           String username) {
+        return mkChangeLogs(
+                format("Logical flow from: %s, to: %s: %s",
+                        safeName(flow.source()),
+                        safeName(flow.target()),
+                        postamble),
+                EntityKind.LOGICAL_DATA_FLOW,
+                Operation.ADD,
+                username,
+                logicalFlow.entityReference(),
+                flow.source(),
+                flow.target());
+    }
+
+
+    private static List<ChangeLog> mkDataTypesAddedChangeLogs(List<DataTypeDecorator> decorators, String username) {
+        return decorators
+                .stream()
+                .collect(groupingBy(
+                        DataTypeDecorator::entityReference,
+                        mapping(DataTypeDecorator::dataTypeId, toCollection(TreeSet::new))))
+                .entrySet()
+                .stream()
+                .flatMap(e -> mkChangeLogs(
+                        format("Added data types: %s", e.getValue()),
+                        EntityKind.DATA_TYPE,
+                        Operation.UPDATE,
+                        username,
+                        e.getKey()).stream())
                 .collect(toList());
+    }
+
 
-        return created;
+    private static List<ChangeLog> mkChangeLogs(String message,
+                                                EntityKind childKind,
+                                                Operation operation,
+                                                String username,
+                                                EntityReference... parents) {
+        List<ChangeLog> changeLogs = new ArrayList<>();
+        for (EntityReference parent : parents) {
+            changeLogs.add(ImmutableChangeLog.builder()
+                    .parentReference(parent)
+                    .message(message)
+                    .severity(Severity.INFORMATION)
+                    .userId(username)
+                    .childKind(childKind)
+                    .operation(operation)
+                    .build());
+        }
+        return changeLogs;
     }
 
 
-    ////////////////////// PRIVATE //////////////////////
-    /////////////////////////////////////////////////////
+    private static String safeName(EntityReference ref) {
+        return ref.name().orElse(Long.toString(ref.id()));
+    }
+
 
     private PhysicalFlowUploadCommandResponse validateCommand(Map<String, Actor> actorsByName,
                                                               Map<String, Application> applicationsByAssetCode,
@@ -383,94 +1006,6 @@ public class PhysicalFlowUploadService {
     }
 
 
-    private LogicalFlow getOrCreateLogicalFlow(EntityReference source,
-                                               EntityReference target,
-                                               EntityReference dataType,
-                                               String username) {
-
-        LogicalFlow flow = logicalFlowDao.getBySourceAndTarget(source, target);
-
-        if (flow == null) {
-            LocalDateTime now = nowUtc();
-
-            LogicalFlow flowToAdd = ImmutableLogicalFlow.builder()
-                    .source(source)
-                    .target(target)
-                    .lastUpdatedBy(username)
-                    .lastUpdatedAt(now)
-                    .provenance("waltz")
-                    .created(UserTimestamp.mkForUser(username, now))
-                    .build();
-
-            flow = logicalFlowDao.addFlow(flowToAdd);
-        }
-
-
-        EntityReference logicalFlowEntityRef = EntityReference.mkRef(EntityKind.LOGICAL_DATA_FLOW, flow.id().get());
-        DataTypeDecorator existingDecorator = dataTypeDecoratorService.getByEntityRefAndDataTypeId(
-                logicalFlowEntityRef,
-                dataType.id());
-
-        if(existingDecorator == null) {
-            dataTypeDecoratorService
-                    .addDecorators(username, logicalFlowEntityRef, fromArray(dataType.id()));
-        }
-        return flow;
-    }
-
-
-    private PhysicalSpecification getOrCreatePhysicalSpec(PhysicalFlowParsed flow,
-                                                          String username) {
-        EntityReference owner = flow.owner();
-        DataFormatKindValue format = flow.format();
-        String name = flow.name();
-
-
-        // check database
-        PhysicalSpecification spec = physicalSpecificationDao.getByParsedFlow(flow);
-        if (spec == null) {
-
-            // create
-            LocalDateTime now = nowUtc();
-            PhysicalSpecification specToAdd = ImmutablePhysicalSpecification.builder()
-                    .owningEntity(owner)
-                    .format(format)
-                    .name(name)
-                    .externalId(Optional.ofNullable(flow.specExternalId()).orElse(""))
-                    .description(Optional.ofNullable(flow.specDescription()).orElse(""))
-                    .lastUpdatedBy(username)
-                    .lastUpdatedAt(now)
-                    .provenance("waltz")
-                    .created(UserTimestamp.mkForUser(username, now))
-                    .build();
-
-            Long id = physicalSpecificationDao.create(specToAdd);
-            spec = ImmutablePhysicalSpecification
-                    .copyOf(specToAdd)
-                    .withId(id);
-        }
-
-        long dataTypeId = flow.dataType().id();
-        EntityReference specificationEntityRef = EntityReference.mkRef(EntityKind.PHYSICAL_SPECIFICATION, spec.id().get());
-
-        DataTypeDecorator existingDataType = dataTypeDecoratorService.getByEntityRefAndDataTypeId(specificationEntityRef, dataTypeId);
-        if(existingDataType == null) {
-            dataTypeDecoratorService.addDecorators(username, specificationEntityRef, fromArray(dataTypeId));
-        }
-        return spec;
-    }
-
-
-    private long getOrCreatePhysicalFlow(PhysicalFlow newFlow) {
-        PhysicalFlow existing = physicalFlowDao.matchPhysicalFlow(newFlow);
-        if (existing != null) {
-            return existing.id().get();
-        } else {
-            return physicalFlowDao.create(newFlow);
-        }
-    }
-
-
     private Aliases<TransportKindValue> loadTransportAliases() {
         return enumValueAliasService.mkAliases(EnumValueKind.TRANSPORT_KIND, TransportKindValue::of);
     }
@@ -487,4 +1022,20 @@ public class PhysicalFlowUploadService {
         return enumValueAliasService.mkAliases(EnumValueKind.DATA_FORMAT_KIND, DataFormatKindValue::of);
     }
 
+
+    /**
+     * Everything created by the insert phase which needs following up once committed.
+     */
+    private static class UploadBatch {
+        private List<PhysicalFlowUploadCommandResponse> responses = Collections.emptyList();
+        private final List<DataTypeDecorator> logicalFlowDecorators = new ArrayList<>();
+        private final Set<EntityReference> usageRefs = new HashSet<>();
+        private final List<Tuple3<EntityReference, String, DataFormatKindValue>> newSpecificationKeys = new ArrayList<>();
+        private final Set<Long> specificationsToPropagate = new HashSet<>();
+        private final List<ChangeLog> changeLogs = new ArrayList<>();
+        private int logicalFlowCount = 0;
+        private int specificationCount = 0;
+        private int physicalFlowCount = 0;
+    }
+
 }
@@ -0,0 +1,367 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.recalc;
+
+import org.finos.waltz.data.application.ApplicationDao;
+import org.finos.waltz.data.entity_hierarchy.EntityHierarchyDao;
+import org.finos.waltz.data.recalc.RecalcEventDao;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.application.Application;
+import org.finos.waltz.model.recalc.ImmutableRecalcEvent;
+import org.finos.waltz.model.recalc.RecalcEvent;
+import org.finos.waltz.model.recalc.RecalcTarget;
+import org.finos.waltz.service.entity_hierarchy.EntityHierarchyService;
+import org.finos.waltz.service.flow_classification_rule.FlowRatingRecalculator;
+import org.finos.waltz.service.usage_info.DataTypeUsageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.partitioningBy;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
+import static org.finos.waltz.common.DateTimeUtilities.nowUtc;
+import static org.finos.waltz.common.ListUtilities.filter;
+import static org.finos.waltz.common.ListUtilities.map;
+
+/**
+ * Keeps derived data (data type usages, flow ratings and entity hierarchies) up to date
+ * without rebuilding it wholesale.  Writers record which entities they have touched, a
+ * background worker periodically drains the queue and recalculates only for those
+ * entities.  Duplicate events are collapsed so a burst of edits to one application
+ * results in a single recalculation.
+ * <p>
+ * Events are claimed for a short lease before being processed, so nodes polling at once
+ * do not process the same events.  If a node dies mid-batch its events become claimable
+ * again once the lease expires; every recalculation only writes differences so processing
+ * an event twice is harmless.  Events whose recalculation fails (e.g. due to a deadlock)
+ * are retried shortly afterwards, after <code>waltz.recalc.queue.max.attempts</code> they
+ * are abandoned and the nightly reconciliation jobs repair any drift.
+ * <p>
+ * The queue is disabled by default (<code>waltz.recalc.queue.enabled=false</code>), in
+ * which case recalculations happen immediately, on the calling thread.
+ */
+@Service
+public class RecalcQueueService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecalcQueueService.class);
+    private static final long CLAIM_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final RecalcEventDao recalcEventDao;
+    private final DataTypeUsageService dataTypeUsageService;
+    private final FlowRatingRecalculator flowRatingRecalculator;
+    private final EntityHierarchyService entityHierarchyService;
+    private final EntityHierarchyDao entityHierarchyDao;
+    private final ApplicationDao applicationDao;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxAttempts;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+
+
+    @Autowired
+    public RecalcQueueService(RecalcEventDao recalcEventDao,
+                              DataTypeUsageService dataTypeUsageService,
+                              FlowRatingRecalculator flowRatingRecalculator,
+                              EntityHierarchyService entityHierarchyService,
+                              EntityHierarchyDao entityHierarchyDao,
+                              ApplicationDao applicationDao,
+                              @Value("${waltz.recalc.queue.enabled:false}") boolean enabled,
+                              @Value("${waltz.recalc.queue.batch.size:1000}") int batchSize,
+                              @Value("${waltz.recalc.queue.max.attempts:5}") int maxAttempts) {
+        checkNotNull(recalcEventDao, "recalcEventDao cannot be null");
+        checkNotNull(dataTypeUsageService, "dataTypeUsageService cannot be null");
+        checkNotNull(flowRatingRecalculator, "flowRatingRecalculator cannot be null");
+        checkNotNull(entityHierarchyService, "entityHierarchyService cannot be null");
+        checkNotNull(entityHierarchyDao, "entityHierarchyDao cannot be null");
+        checkNotNull(applicationDao, "applicationDao cannot be null");
+        checkTrue(batchSize > 0, "batchSize must be greater than zero");
+        checkTrue(maxAttempts > 0, "maxAttempts must be greater than zero");
+
+        this.recalcEventDao = recalcEventDao;
+        this.dataTypeUsageService = dataTypeUsageService;
+        this.flowRatingRecalculator = flowRatingRecalculator;
+        this.entityHierarchyService = entityHierarchyService;
+        this.entityHierarchyDao = entityHierarchyDao;
+        this.applicationDao = applicationDao;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+    }
+
+
+    /**
+     * Records that the given entities have changed in a way which affects the target.
+     *
+     * @param target derived data which needs recalculating
+     * @param refs   entities which have been touched, see {@link RecalcTarget} for the kinds expected
+     * @return number of events queued (or entities recalculated, if the queue is disabled)
+     */
+    public int record(RecalcTarget target, Collection<EntityReference> refs) {
+        checkNotNull(target, "target cannot be null");
+        checkNotNull(refs, "refs cannot be null");
+
+        Set<EntityReference> distinctRefs = new LinkedHashSet<>(refs);
+        if (distinctRefs.isEmpty()) {
+            return 0;
+        }
+
+        if (enabled) {
+            recalcEventDao.enqueue(map(distinctRefs, ref -> ImmutableRecalcEvent
+                    .builder()
+                    .target(target)
+                    .entityReference(ref)
+                    .build()));
+            enqueued.addAndGet(distinctRefs.size());
+        } else {
+            recalculate(target, distinctRefs);
+        }
+
+        return distinctRefs.size();
+    }
+
+
+    /**
+     * Drains the queue, oldest events first, recalculating once per target for each batch.
+     * Only events this node has managed to claim are processed.  Events are removed once
+     * their recalculation succeeds, failed events are released for a retry a minute later
+     * until they have been attempted <code>maxAttempts</code> times.
+     *
+     * @return number of events claimed (whether or not their recalculation succeeded)
+     */
+    @Scheduled(
+            initialDelayString = "${waltz.recalc.queue.poll.ms:10000}",
+            fixedDelayString = "${waltz.recalc.queue.poll.ms:10000}")
+    public synchronized int process() {
+        if (! enabled) {
+            return 0;
+        }
+
+        int total = 0;
+        List<RecalcEvent> events;
+        do {
+            LocalDateTime now = nowUtc();
+            events = recalcEventDao.findClaimable(now, batchSize);
+            if (events.isEmpty()) {
+                break;
+            }
+
+            Set<Long> claimedIds = recalcEventDao.claim(
+                    map(events, e -> e.id().get()),
+                    now,
+                    now.plusNanos(TimeUnit.MILLISECONDS.toNanos(CLAIM_MILLIS)));
+
+            List<RecalcEvent> claimed = filter(e -> claimedIds.contains(e.id().get()), events);
+
+            Map<RecalcTarget, List<RecalcEvent>> eventsByTarget = claimed
+                    .stream()
+                    .collect(groupingBy(
+                            RecalcEvent::target,
+                            () -> new EnumMap<>(RecalcTarget.class),
+                            toList()));
+
+            Set<Long> completedIds = new HashSet<>();
+            Set<Long> retryIds = new HashSet<>();
+            eventsByTarget.forEach((target, targetEvents) -> {
+                Set<EntityReference> refs = targetEvents
+                        .stream()
+                        .map(RecalcEvent::entityReference)
+                        .collect(toSet());
+                try {
+                    recalculate(target, refs);
+                    targetEvents.forEach(evt -> completedIds.add(evt.id().get()));
+                    processed.addAndGet(targetEvents.size());
+                } catch (Exception e) {
+                    failed.addAndGet(targetEvents.size());
+                    // the claim incremented the attempt count
+                    Map<Boolean, List<Long>> idsByExhausted = targetEvents
+                            .stream()
+                            .collect(partitioningBy(
+                                    evt -> evt.attempts() + 1 >= maxAttempts,
+                                    mapping(evt -> evt.id().get(), toList())));
+                    completedIds.addAll(idsByExhausted.get(true));
+                    retryIds.addAll(idsByExhausted.get(false));
+                    abandoned.addAndGet(idsByExhausted.get(true).size());
+                    LOG.error(
+                            "Failed to recalculate {} for {} entities, {} events will be retried, {} abandoned to reconciliation",
+                            target,
+                            refs.size(),
+                            idsByExhausted.get(false).size(),
+                            idsByExhausted.get(true).size(),
+                            e);
+                }
+            });
+
+            recalcEventDao.deleteByIds(completedIds);
+            if (! retryIds.isEmpty()) {
+                recalcEventDao.markForRetry(
+                        retryIds,
+                        nowUtc().plusNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_MILLIS)));
+            }
+            total += claimed.size();
+        } while (events.size() == batchSize);
+
+        if (total > 0) {
+            LOG.info("Processed {} recalculation events", total);
+        }
+        return total;
+    }
+
+
+    // --- metrics ---
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+
+    public Map<RecalcTarget, Integer> countByTarget() {
+        return recalcEventDao.countByTarget();
+    }
+
+
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+
+    public long getAbandonedCount() {
+        return abandoned.get();
+    }
+
+
+    public void resetCounters() {
+        enqueued.set(0);
+        processed.set(0);
+        failed.set(0);
+        abandoned.set(0);
+    }
+
+
+    // -- HELPERS ---
+
+    private void recalculate(RecalcTarget target, Set<EntityReference> refs) {
+        long start = System.currentTimeMillis();
+        switch (target) {
+            case DATA_TYPE_USAGE:
+                dataTypeUsageService.recalculateForEntities(refs);
+                break;
+            case FLOW_RATINGS:
+                flowRatingRecalculator.recalculateForOrgUnits(findAffectedOrgUnitIds(refs));
+                break;
+            case ENTITY_HIERARCHY:
+                updateHierarchies(refs);
+                break;
+            default:
+                throw new IllegalArgumentException("Cannot recalculate unknown target: " + target);
+        }
+        LOG.debug("Recalculated {} for {} entities in {}ms", target, refs.size(), System.currentTimeMillis() - start);
+    }
+
+
+    /**
+     * Org units (and their descendants, as rules are inherited) plus the org units of any applications.
+     */
+    private Set<Long> findAffectedOrgUnitIds(Set<EntityReference> refs) {
+        Set<Long> orgUnitIds = new HashSet<>();
+
+        refs.stream()
+                .filter(r -> r.kind() == EntityKind.ORG_UNIT)
+                .forEach(r -> entityHierarchyDao
+                        .findDesendents(r)
+                        .forEach(item -> item.id().ifPresent(orgUnitIds::add)));
+
+        List<Long> appIds = refs
+                .stream()
+                .filter(r -> r.kind() == EntityKind.APPLICATION)
+                .map(EntityReference::id)
+                .collect(toList());
+
+        if (! appIds.isEmpty()) {
+            applicationDao
+                    .findByIds(appIds)
+                    .stream()
+                    .map(Application::organisationalUnitId)
+                    .filter(Objects::nonNull)
+                    .forEach(orgUnitIds::add);
+        }
+
+        return orgUnitIds;
+    }
+
+
+    /**
+     * Measurable hierarchies are updated per category, other kinds are updated for the subtrees
+     * of the referenced nodes.
+     */
+    private void updateHierarchies(Set<EntityReference> refs) {
+        refs.stream()
+                .filter(r -> r.kind() == EntityKind.MEASURABLE_CATEGORY)
+                .map(EntityReference::id)
+                .distinct()
+                .forEach(entityHierarchyService::updateForMeasurableByCategory);
+
+        refs.stream()
+                .filter(r -> r.kind() != EntityKind.MEASURABLE_CATEGORY)
+                .collect(groupingBy(EntityReference::kind, mapping(EntityReference::id, toSet())))
+                .forEach(entityHierarchyService::updateForNodes);
+    }
+
+}
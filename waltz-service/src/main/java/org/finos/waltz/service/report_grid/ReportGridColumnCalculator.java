@@ -1,31 +1,38 @@
 package org.finos.waltz.service.report_grid;
 
 import org.apache.commons.jexl3.*;
-import org.finos.waltz.common.SetUtilities;
+import org.finos.waltz.common.ExpiringCache;
 import org.finos.waltz.model.either.Either;
 import org.finos.waltz.model.rating.RatingSchemeItem;
 import org.finos.waltz.model.report_grid.*;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 
-import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.finos.waltz.common.MapUtilities.*;
 import static org.finos.waltz.common.SetUtilities.*;
 import static org.finos.waltz.common.StringUtilities.notEmpty;
 import static org.finos.waltz.model.report_grid.CellOption.mkCellOption;
 import static org.finos.waltz.model.utils.IdUtilities.indexById;
-import static org.jooq.lambda.tuple.Tuple.tuple;
 
 public class ReportGridColumnCalculator {
 
+    private static final JexlEngine JEXL = new JexlBuilder().cache(512).create();
+
+    // a non-converging cycle of derived columns should not hang the request
+    private static final int MAX_CYCLIC_ITERATIONS = 100;
+
+    // compiled (and ordered) derived columns, keyed by the grid definition they were compiled from
+    private static final ExpiringCache<ReportGridDefinition, CompiledGrid> COMPILED_GRIDS = new ExpiringCache<>(
+            100,
+            TimeUnit.HOURS.toMillis(1));
+
 
     public static Set<ReportGridCell> calculate(ReportGridInstance instance,
                                                 ReportGridDefinition definition) {
-        ReportGridEvaluatorNamespace ns = new ReportGridEvaluatorNamespace(definition);
-        JexlBuilder builder = new JexlBuilder();
-        JexlEngine jexl = builder.namespaces(newHashMap(null, ns)).cache(512).create();
+        CompiledGrid compiledGrid = COMPILED_GRIDS.get(definition, ReportGridColumnCalculator::compileGrid);
 
         Map<Long, Collection<ReportGridCell>> rowBySubject = groupBy(
                 instance.cellData(),
@@ -33,41 +40,24 @@ public class ReportGridColumnCalculator {
 
         Map<Long, RatingSchemeItem> ratingSchemeItemsById = indexById(instance.ratingSchemeItems());
 
-        Set<CompiledCalculatedColumn> derivedColumns = map(
-                definition.derivedColumnDefinitions(),
-                d -> {
-                    Either<String, JexlScript> expr = compile(
-                            jexl,
-                            d.derivationScript());
-
-                    return ImmutableCompiledCalculatedColumn
-                            .builder()
-                            .column(d)
-                            .expression(expr)
-                            .build();
-                });
-
+        // rows are independent of each other, each gets its own namespace/context so can be evaluated in parallel
         return instance
                 .subjects()
-                .stream()
-                .map(s -> {
-                    long subjectId = s.entityReference().id();
+                .parallelStream()
+                .flatMap(subject -> {
                     Map<String, Object> ctx = initialiseContext(
                             definition.fixedColumnDefinitions(),
                             ratingSchemeItemsById,
-                            s,
-                            lookupRow(rowBySubject, subjectId));
-                    ns.setContext(ctx);
-                    return s;
+                            subject,
+                            lookupRow(rowBySubject, subject.entityReference().id()));
+
+                    return calcDerivedCols(
+                            compiledGrid.namespace.withContext(ctx),
+                            subject,
+                            compiledGrid)
+                        .stream();
                 })
-                .flatMap(subject ->
-                        calcDerivedCols(
-                                ns,
-                                subject,
-                                derivedColumns)
-                        .stream())
                 .collect(toSet());
-
     }
 
 
@@ -79,79 +69,139 @@ public class ReportGridColumnCalculator {
     }
 
 
+    /**
+     * Compiles each derived column script and orders the columns so that a column is evaluated after
+     * any derived columns it references.  References are detected by looking for the quoted external
+     * id of each derived column within a script (e.g. <code>cell('MY_COL')</code>).  Columns which are
+     * part of (or depend upon) a reference cycle cannot be ordered and are instead evaluated repeatedly
+     * until their values settle.
+     */
+    private static CompiledGrid compileGrid(ReportGridDefinition definition) {
+        List<CompiledCalculatedColumn> columns = definition
+                .derivedColumnDefinitions()
+                .stream()
+                .sorted(Comparator.comparingInt(ReportGridDerivedColumnDefinition::position))
+                .map(d -> ImmutableCompiledCalculatedColumn
+                        .builder()
+                        .column(d)
+                        .expression(compile(JEXL, d.derivationScript()))
+                        .build())
+                .collect(toList());
+
+        Map<CompiledCalculatedColumn, Set<CompiledCalculatedColumn>> dependencies = new HashMap<>();
+        columns.forEach(c -> dependencies.put(
+                c,
+                columns
+                        .stream()
+                        .filter(other -> referencesColumn(c.column().derivationScript(), colToExtId(other.column())))
+                        .collect(toSet())));
+
+        List<CompiledCalculatedColumn> ordered = new ArrayList<>();
+        Set<CompiledCalculatedColumn> pending = new LinkedHashSet<>(columns);
+
+        boolean progressing = true;
+        while (progressing) {
+            progressing = false;
+            Iterator<CompiledCalculatedColumn> iter = pending.iterator();
+            while (iter.hasNext()) {
+                CompiledCalculatedColumn col = iter.next();
+                if (dependencies.get(col).stream().noneMatch(pending::contains)) {
+                    ordered.add(col);
+                    iter.remove();
+                    progressing = true;
+                }
+            }
+        }
+
+        return new CompiledGrid(
+                ordered,
+                new ArrayList<>(pending),
+                new ReportGridEvaluatorNamespace(definition));
+    }
+
+
+    private static boolean referencesColumn(String script, String colExtId) {
+        return script.contains("'" + colExtId + "'")
+                || script.contains("\"" + colExtId + "\"");
+    }
+
+
     private static Set<ReportGridCell> calcDerivedCols(ReportGridEvaluatorNamespace ns,
                                                        ReportSubject subject,
-                                                       Set<CompiledCalculatedColumn> colsToCalc) {
+                                                       CompiledGrid compiledGrid) {
 
-        // we need to evaluate derived cols at least once
-        AtomicBoolean evaluateRowAgain = new AtomicBoolean(true);
         // collecting the results as we go
         Map<Long, ReportGridCell> results = new HashMap<>();
-
-        Set<CompiledCalculatedColumn> remaining = SetUtilities.fromCollection(colsToCalc);
-
         Map<ReportGridDerivedColumnDefinition, String> lastErrors = new HashMap<>();
 
-        while (evaluateRowAgain.get()) {
-            // assume this time will be the last
-            evaluateRowAgain.set(false);
-
-            // iterate over remaining columns attempting execution
-            remaining.forEach(ccc -> {
-                try {
-                    // attempt to evaluate the cell
-                    ofNullable(evaluateCalcCol(ccc, subject))
-                            .ifPresent(result -> {
-                                ReportGridCell existingResult = results.get(ccc.column().gridColumnId());
-                                boolean isDifferent = existingResult == null || !existingResult.equals(result);
-
-                                if (isDifferent) {
-                                    // If successful record the result
-                                    results.put(ccc.column().gridColumnId(), result);
-
-                                    // ...and update the context so dependent expressions can be calculated
-                                    ns.addContext(colToExtId(ccc.column()), result);
-
-                                    // Since something has changed we want to run the loop again in case
-                                    // ...a dependant expression can now be evaluated.
-                                    evaluateRowAgain.set(true);
-                                }
-                        });
-
-                    // clear out the error map for this column as the last evaluation succeeded (but may have been null)
-                    lastErrors.remove(ccc.column());
+        // dependencies come before dependants, so a single pass is sufficient
+        compiledGrid.orderedColumns.forEach(ccc -> evaluateAndRecord(ns, subject, ccc, results, lastErrors));
 
-                } catch (Exception e) {
-                    // if we hit a problem we store it for later as it may resolve itself on a subsequent iteration
-                    String msg = toMessage(e);
-                    lastErrors.put(ccc.column(), msg);
-                }
-            });
+        // cyclic columns are re-evaluated until nothing changes
+        boolean evaluateAgain = ! compiledGrid.cyclicColumns.isEmpty();
+        int iterations = 0;
 
-            if (remaining.isEmpty()) {
-                // nothing left to do, therefore we can finish on this iteration
-                evaluateRowAgain.set(false);
+        while (evaluateAgain && iterations++ < MAX_CYCLIC_ITERATIONS) {
+            evaluateAgain = false;
+            for (CompiledCalculatedColumn ccc : compiledGrid.cyclicColumns) {
+                evaluateAgain |= evaluateAndRecord(ns, subject, ccc, results, lastErrors);
             }
         }
 
-        Set<ReportGridCell> errorResults = remaining
+        Set<ReportGridCell> errorResults = lastErrors
+                .entrySet()
                 .stream()
-                .map(ccc -> tuple(
-                        ccc.column(),
-                        lastErrors.get(ccc.column())))
-                .filter(d -> notEmpty(d.v2))
+                .filter(d -> notEmpty(d.getValue()))
                 .map(t -> ImmutableReportGridCell
                         .builder()
                         .subjectId(subject.entityReference().id())
-                        .errorValue(t.v2)
+                        .errorValue(t.getValue())
                         .options(asSet(mkCellOption("EXECUTION_ERROR", "Execution Error")))
-                        .columnDefinitionId(t.v1.gridColumnId())
+                        .columnDefinitionId(t.getKey().gridColumnId())
                         .build())
                 .collect(toSet());
 
         return union(results.values(), errorResults);
     }
 
+
+    /**
+     * Evaluates a single cell, recording the result (and making it available to
+     * dependant expressions) or the error message.
+     *
+     * @return true if the cell value changed
+     */
+    private static boolean evaluateAndRecord(ReportGridEvaluatorNamespace ns,
+                                             ReportSubject subject,
+                                             CompiledCalculatedColumn ccc,
+                                             Map<Long, ReportGridCell> results,
+                                             Map<ReportGridDerivedColumnDefinition, String> lastErrors) {
+        try {
+            ReportGridCell result = evaluateCalcCol(ccc, ns, subject);
+
+            // clear out the error map for this column as the last evaluation succeeded (but may have been null)
+            lastErrors.remove(ccc.column());
+
+            if (result == null) {
+                return false;
+            }
+
+            ReportGridCell existingResult = results.put(ccc.column().gridColumnId(), result);
+            boolean isDifferent = existingResult == null || !existingResult.equals(result);
+
+            if (isDifferent) {
+                ns.addContext(colToExtId(ccc.column()), result);
+            }
+
+            return isDifferent;
+
+        } catch (Exception e) {
+            // store the problem, for cyclic columns it may resolve itself on a subsequent iteration
+            lastErrors.put(ccc.column(), toMessage(e));
+            return false;
+        }
+    }
+
     private static String toMessage(Exception e) {
         if (e.getCause() != null) {
             return e.getCause().getMessage();
@@ -195,6 +245,7 @@ public class ReportGridColumnCalculator {
 
 
     private static ReportGridCell evaluateCalcCol(CompiledCalculatedColumn compiledCalculatedColumn,
+                                                  ReportGridEvaluatorNamespace ns,
                                                   ReportSubject subject) {
 
         ReportGridDerivedColumnDefinition cd = compiledCalculatedColumn.column();
@@ -211,13 +262,15 @@ public class ReportGridColumnCalculator {
                                 .build(),
                         expr -> {
 
-                            MapContext mapContext = new MapContext(newHashMap(
-                                    "subjectId", subject.entityReference().id(),
-                                    "subjectExternalId", subject.entityReference().externalId().orElse(""),
-                                    "subjectName", subject.entityReference().name().orElse(""),
-                                    "subjectLifecyclePhase", subject.lifecyclePhase().name()));
+                            RowContext rowContext = new RowContext(
+                                    ns,
+                                    newHashMap(
+                                        "subjectId", subject.entityReference().id(),
+                                        "subjectExternalId", subject.entityReference().externalId().orElse(""),
+                                        "subjectName", subject.entityReference().name().orElse(""),
+                                        "subjectLifecyclePhase", subject.lifecyclePhase().name()));
 
-                            Object result = expr.execute(mapContext);
+                            Object result = expr.execute(rowContext);
 
                             if (result == null) {
                                 return null;
@@ -277,4 +330,45 @@ public class ReportGridColumnCalculator {
                 .build();
     }
 
+
+
+    /**
+     * Supplies the row specific namespace to the (shared) compiled scripts, functions
+     * such as <code>cell('X')</code> resolve against it.
+     */
+    private static class RowContext extends MapContext implements JexlContext.NamespaceResolver {
+
+        private final ReportGridEvaluatorNamespace ns;
+
+        private RowContext(ReportGridEvaluatorNamespace ns,
+                           Map<String, Object> vars) {
+            super(vars);
+            this.ns = ns;
+        }
+
+
+        @Override
+        public Object resolveNamespace(String name) {
+            return name == null
+                    ? ns
+                    : null;
+        }
+    }
+
+
+    private static class CompiledGrid {
+
+        private final List<CompiledCalculatedColumn> orderedColumns;
+        private final List<CompiledCalculatedColumn> cyclicColumns;
+        private final ReportGridEvaluatorNamespace namespace;
+
+        private CompiledGrid(List<CompiledCalculatedColumn> orderedColumns,
+                             List<CompiledCalculatedColumn> cyclicColumns,
+                             ReportGridEvaluatorNamespace namespace) {
+            this.orderedColumns = orderedColumns;
+            this.cyclicColumns = cyclicColumns;
+            this.namespace = namespace;
+        }
+    }
+
 }
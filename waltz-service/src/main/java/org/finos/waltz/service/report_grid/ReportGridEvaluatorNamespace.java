@@ -24,11 +24,33 @@ public class ReportGridEvaluatorNamespace {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-    private final ReportGridDefinition definition;
-    private Map<String, Object> ctx = new HashMap<>();
+    private final Set<String> availableCellExtIds;
+    private Map<String, Object> ctx;
 
     public ReportGridEvaluatorNamespace(ReportGridDefinition definition) {
-        this.definition = definition;
+        this(union(
+                    map(definition.fixedColumnDefinitions(), ReportGridColumnCalculator::colToExtId),
+                    map(definition.derivedColumnDefinitions(), ReportGridColumnCalculator::colToExtId)),
+             new HashMap<>());
+    }
+
+
+    private ReportGridEvaluatorNamespace(Set<String> availableCellExtIds,
+                                         Map<String, Object> ctx) {
+        this.availableCellExtIds = availableCellExtIds;
+        this.ctx = ctx;
+    }
+
+
+    /**
+     * Creates a namespace for the same grid definition but bound to the given context.
+     * Namespaces are not thread-safe, this allows each row to be evaluated with its own.
+     *
+     * @param ctx  context (cell values etc.) for a single row
+     * @return a new namespace sharing this namespace's grid definition
+     */
+    public ReportGridEvaluatorNamespace withContext(Map<String, Object> ctx) {
+        return new ReportGridEvaluatorNamespace(availableCellExtIds, ctx);
     }
 
 
@@ -221,10 +243,6 @@ public class ReportGridEvaluatorNamespace {
 
 
     private void checkAllCellsExist(Set<String> requiredCellExtIds) {
-        Set<String> availableCellExtIds = union(
-                map(definition.fixedColumnDefinitions(), ReportGridColumnCalculator::colToExtId),
-                map(definition.derivedColumnDefinitions(), ReportGridColumnCalculator::colToExtId));
-
         Checks.checkTrue(availableCellExtIds.containsAll(
                         requiredCellExtIds),
                 "Not all cells external ids found in grid");
@@ -18,6 +18,7 @@
 
 package org.finos.waltz.service.report_grid;
 
+import org.finos.waltz.common.ExpiringCache;
 import org.finos.waltz.common.SetUtilities;
 import org.finos.waltz.common.exception.InsufficientPrivelegeException;
 import org.finos.waltz.common.exception.NotFoundException;
@@ -27,20 +28,28 @@ import org.finos.waltz.data.application.ApplicationDao;
 import org.finos.waltz.data.change_initiative.ChangeInitiativeDao;
 import org.finos.waltz.data.report_grid.ReportGridDao;
 import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
 import org.finos.waltz.model.IdSelectionOptions;
+import org.finos.waltz.model.ImmutableIdSelectionOptions;
 import org.finos.waltz.model.application.Application;
 import org.finos.waltz.model.change_initiative.ChangeInitiative;
 import org.finos.waltz.model.rating.RatingSchemeItem;
 import org.finos.waltz.model.report_grid.*;
 import org.finos.waltz.model.user.SystemRole;
+import org.finos.waltz.service.changelog.ChangeLogService;
 import org.finos.waltz.service.rating_scheme.RatingSchemeService;
 import org.finos.waltz.service.user.UserRoleService;
+import org.jooq.lambda.tuple.Tuple2;
+import org.jooq.lambda.tuple.Tuple3;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
@@ -48,7 +57,15 @@ import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.common.Checks.checkTrue;
 import static org.finos.waltz.common.SetUtilities.map;
 import static org.finos.waltz.model.EntityReference.mkRef;
-
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Grid instances are cached, keyed by the change log data version (its latest id, see
+ * {@link ChangeLogService#getDataVersion()}).  Writes which bypass the change log (e.g.
+ * loaders or direct SQL) do not change the key, so such changes only show once the cached
+ * instance reaches its maximum age (`waltz.report.grid.cache.ttl.ms`), or the cache is
+ * cleared via JMX.
+ */
 @Service
 public class ReportGridService {
 
@@ -60,6 +77,11 @@ public class ReportGridService {
     private final ReportGridDao reportGridDao;
     private final ReportGridMemberService reportGridMemberService;
     private final UserRoleService userRoleService;
+    private final ChangeLogService changeLogService;
+
+    // keyed by (grid id, normalised selection options, data version)
+    private final ExpiringCache<Tuple3<Long, IdSelectionOptions, Long>, ReportGridInstance> instanceCache;
+    private final AtomicLong latestDataVersion = new AtomicLong(0);
 
     private final GenericSelectorFactory genericSelectorFactory = new GenericSelectorFactory();
 
@@ -69,12 +91,16 @@ public class ReportGridService {
                              RatingSchemeService ratingSchemeService,
                              ReportGridMemberService reportGridMemberService,
                              UserRoleService userRoleService,
-                             ChangeInitiativeDao changeInitiativeDao) {
+                             ChangeInitiativeDao changeInitiativeDao,
+                             ChangeLogService changeLogService,
+                             @Value("${waltz.report.grid.cache.max.size:50}") int instanceCacheMaxSize,
+                             @Value("${waltz.report.grid.cache.ttl.ms:900000}") long instanceCacheTtlMillis) {
         checkNotNull(reportGridDao, "reportGridDao cannot be null");
         checkNotNull(reportGridMemberService, "reportGridMemberService cannot be null");
         checkNotNull(applicationDao, "applicationDao cannot be null");
         checkNotNull(ratingSchemeService, "ratingSchemeService cannot be null");
         checkNotNull(userRoleService, "userRoleService cannot be null");
+        checkNotNull(changeLogService, "changeLogService cannot be null");
 
         this.reportGridDao = reportGridDao;
         this.reportGridMemberService = reportGridMemberService;
@@ -82,6 +108,8 @@ public class ReportGridService {
         this.ratingSchemeService = ratingSchemeService;
         this.changeInititativeDao = changeInitiativeDao;
         this.userRoleService = userRoleService;
+        this.changeLogService = changeLogService;
+        this.instanceCache = new ExpiringCache<>(instanceCacheMaxSize, instanceCacheTtlMillis);
     }
 
 
@@ -118,9 +146,7 @@ public class ReportGridService {
             return Optional.empty();
         }
 
-        EntityKind targetKind = definition.subjectKind();
-
-        ReportGridInstance instance = mkInstance(id, idSelectionOptions, targetKind);
+        ReportGridInstance instance = getInstance(id, definition, idSelectionOptions);
 
         Set<ReportGridMember> members = reportGridMemberService.findByGridId(id);
 
@@ -131,20 +157,6 @@ public class ReportGridService {
                 .map(ReportGridMember::role)
                 .orElse(ReportGridMemberRole.VIEWER);
 
-        if (!definition.derivedColumnDefinitions().isEmpty()) {
-            Set<ReportGridCell> calculatedCells = ReportGridColumnCalculator.calculate(instance, definition);
-
-            return Optional.of(ImmutableReportGrid
-                    .builder()
-                    .definition(definition)
-                    .instance(ImmutableReportGridInstance
-                            .copyOf(instance)
-                            .withCellData(SetUtilities.union(instance.cellData(), calculatedCells)))
-                    .members(members)
-                    .userRole(userRole)
-                    .build());
-        }
-
         return Optional.of(ImmutableReportGrid
                 .builder()
                 .definition(definition)
@@ -155,10 +167,116 @@ public class ReportGridService {
     }
 
 
+    /**
+     * Returns the grid instance (including derived column values) for the given grid and selection
+     * options.  Instances are cached, keyed by grid id, the normalised selection options and the
+     * current data version (see {@link ChangeLogService#getDataVersion()}).  Any change logged
+     * after an instance is computed will therefore cause it to be recomputed on next request.
+     */
+    private ReportGridInstance getInstance(long id,
+                                           ReportGridDefinition definition,
+                                           IdSelectionOptions idSelectionOptions) {
+        long dataVersion = changeLogService.getDataVersion();
+        discardInstancesOlderThan(dataVersion);
+
+        Tuple3<Long, IdSelectionOptions, Long> key = tuple(
+                id,
+                normaliseSelectionOptions(idSelectionOptions),
+                dataVersion);
+
+        AtomicBoolean computed = new AtomicBoolean(false);
+
+        ReportGridInstance instance = instanceCache.get(key, k -> {
+            computed.set(true);
+            return mkInstanceWithDerivedCells(id, definition, k.v2, dataVersion);
+        });
+
+        if (computed.get()) {
+            return instance;
+        } else {
+            LOG.debug("ReportGrid - serving cached instance for ID={}, data version={}", id, dataVersion);
+            return ImmutableReportGridInstance
+                    .copyOf(instance)
+                    .withMetadata(instance
+                            .metadata()
+                            .map(md -> ImmutableReportGridInstanceMetadata
+                                    .copyOf(md)
+                                    .withCacheHit(true))
+                            .orElse(ImmutableReportGridInstanceMetadata
+                                    .builder()
+                                    .cacheHit(true)
+                                    .dataVersion(dataVersion)
+                                    .build()));
+        }
+    }
+
+
+    private ReportGridInstance mkInstanceWithDerivedCells(long id,
+                                                          ReportGridDefinition definition,
+                                                          IdSelectionOptions idSelectionOptions,
+                                                          long dataVersion) {
+        ReportGridInstance instance = mkInstance(id, idSelectionOptions, definition.subjectKind());
+
+        Set<ReportGridCell> cellData = definition.derivedColumnDefinitions().isEmpty()
+                ? instance.cellData()
+                : SetUtilities.union(instance.cellData(), ReportGridColumnCalculator.calculate(instance, definition));
+
+        return ImmutableReportGridInstance
+                .copyOf(instance)
+                .withCellData(cellData)
+                .withMetadata(instance
+                        .metadata()
+                        .map(md -> ImmutableReportGridInstanceMetadata
+                                .copyOf(md)
+                                .withDataVersion(dataVersion))
+                        .orElse(ImmutableReportGridInstanceMetadata
+                                .builder()
+                                .dataVersion(dataVersion)
+                                .build()));
+    }
+
+
+    /**
+     * Entity names, descriptions etc. do not affect the selector, only the kind and id of the
+     * reference are kept so equivalent requests share a cache entry.
+     */
+    private static IdSelectionOptions normaliseSelectionOptions(IdSelectionOptions idSelectionOptions) {
+        EntityReference ref = idSelectionOptions.entityReference();
+        return ImmutableIdSelectionOptions
+                .copyOf(idSelectionOptions)
+                .withEntityReference(mkRef(ref.kind(), ref.id()));
+    }
+
+
+    private void discardInstancesOlderThan(long dataVersion) {
+        long previousVersion = latestDataVersion.getAndAccumulate(dataVersion, Math::max);
+        if (dataVersion > previousVersion) {
+            instanceCache.invalidateIf(k -> k.v3 < dataVersion);
+        }
+    }
+
+
+    public void evictCachedInstances(long gridId) {
+        instanceCache.invalidateIf(k -> k.v1 == gridId);
+    }
+
+
+    public void evictAllCachedInstances() {
+        LOG.info("ReportGrid - clearing instance cache");
+        instanceCache.invalidateAll();
+    }
+
+
+    public ExpiringCache<Tuple3<Long, IdSelectionOptions, Long>, ReportGridInstance> getInstanceCache() {
+        return instanceCache;
+    }
+
+
     public ReportGridInstance mkInstance(long id, IdSelectionOptions idSelectionOptions, EntityKind targetKind) {
 
         GenericSelector genericSelector = genericSelectorFactory.applyForKind(targetKind, idSelectionOptions);
-        Set<ReportGridCell> cellData = reportGridDao.findCellDataByGridId(id, genericSelector);
+        Tuple2<Set<ReportGridCell>, Map<String, Long>> cellDataAndTimings = reportGridDao.getCellDataAndTimingsByGridId(id, genericSelector);
+        Set<ReportGridCell> cellData = cellDataAndTimings.v1;
         Set<ReportSubject> subjects = getReportSubjects(genericSelector);
 
         Set<RatingSchemeItem> ratingSchemeItems = ratingSchemeService.findRatingSchemeItemsByIds(
@@ -169,6 +287,10 @@ public class ReportGridService {
                 .subjects(subjects)
                 .cellData(cellData)
                 .ratingSchemeItems(ratingSchemeItems)
+                .metadata(ImmutableReportGridInstanceMetadata
+                        .builder()
+                        .cellFetchTimings(cellDataAndTimings.v2)
+                        .build())
                 .build();
     }
 
@@ -213,6 +335,7 @@ public class ReportGridService {
                                                         String username) throws InsufficientPrivelegeException {
         checkIsOwner(reportGridId, username);
         reportGridDao.updateColumnDefinitions(reportGridId, updateCommand);
+        evictCachedInstances(reportGridId);
         return reportGridDao.getGridDefinitionById(reportGridId);
     }
 
@@ -256,6 +379,7 @@ public class ReportGridService {
         }
 
         reportGridDao.update(id, updateCommand, username);
+        evictCachedInstances(id);
         return reportGridDao.getGridInfoById(id);
     }
 
@@ -281,7 +405,9 @@ public class ReportGridService {
         }
         reportGridMemberService.checkIsOwner(gridId, username);
 
-        return reportGridDao.remove(gridId);
+        boolean removed = reportGridDao.remove(gridId);
+        evictCachedInstances(gridId);
+        return removed;
     }
 
 
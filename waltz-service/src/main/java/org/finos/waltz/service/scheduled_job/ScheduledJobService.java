@@ -39,10 +39,12 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
 
 import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.ListUtilities.asList;
 import static org.finos.waltz.common.SetUtilities.asSet;
 
 @ExcludeFromIntegrationTesting
@@ -51,6 +53,14 @@ public class ScheduledJobService {
 
     private static final Logger LOG = LoggerFactory.getLogger(ScheduledJobService.class);
 
+    private static final List<EntityKind> HIERARCHY_KINDS = asList(
+            EntityKind.CHANGE_INITIATIVE,
+            EntityKind.DATA_TYPE,
+            EntityKind.ENTITY_STATISTIC,
+            EntityKind.MEASURABLE,
+            EntityKind.ORG_UNIT,
+            EntityKind.PERSON);
+
     private final DataTypeUsageService dataTypeUsageService;
     private final EntityHierarchyService entityHierarchyService;
     private final FlowClassificationRuleService flowClassificationRuleService;
@@ -99,22 +109,25 @@ public class ScheduledJobService {
     public void run() {
         Thread.currentThread().setName("WaltzScheduledJobService");
         runIfNeeded(JobKey.HIERARCHY_REBUILD_CHANGE_INITIATIVE,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.CHANGE_INITIATIVE));
+                (jk) -> entityHierarchyService.updateFor(EntityKind.CHANGE_INITIATIVE));
 
         runIfNeeded(JobKey.HIERARCHY_REBUILD_DATA_TYPE,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.DATA_TYPE));
+                (jk) -> entityHierarchyService.updateFor(EntityKind.DATA_TYPE));
 
         runIfNeeded(JobKey.HIERARCHY_REBUILD_ENTITY_STATISTICS,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.ENTITY_STATISTIC));
+                (jk) -> entityHierarchyService.updateFor(EntityKind.ENTITY_STATISTIC));
 
         runIfNeeded(JobKey.HIERARCHY_REBUILD_MEASURABLE,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.MEASURABLE));
+                (jk) -> entityHierarchyService.updateFor(EntityKind.MEASURABLE));
 
         runIfNeeded(JobKey.HIERARCHY_REBUILD_ORG_UNIT,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.ORG_UNIT));
+                (jk) -> entityHierarchyService.updateFor(EntityKind.ORG_UNIT));
 
         runIfNeeded(JobKey.HIERARCHY_REBUILD_PERSON,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.PERSON));
+                (jk) -> entityHierarchyService.updateFor(EntityKind.PERSON));
+
+        runIfNeeded(JobKey.HIERARCHY_RECONCILE,
+                (jk) -> HIERARCHY_KINDS.forEach(entityHierarchyService::buildFor));
 
         runIfNeeded(JobKey.DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL,
                 (jk) -> physicalSpecDataTypeService.rippleDataTypesToLogicalFlows(),
@@ -144,6 +157,31 @@ public class ScheduledJobService {
     }
 
 
+    /**
+     * Routine hierarchy maintenance is incremental, this periodically marks the full
+     * rebuild as runnable to reconcile any drift (e.g. rows for deleted entities).
+     * Only one node will pick up the job as it is claimed via the settings table.
+     */
+    @Scheduled(cron = "${waltz.hierarchy.reconcile.cron:0 0 2 * * *}")
+    public void scheduleHierarchyReconciliation() {
+        LOG.info("Marking hierarchy reconciliation as runnable");
+        scheduledJobDao.updateJobStatus(JobKey.HIERARCHY_RECONCILE, JobLifecycleStatus.RUNNABLE);
+    }
+
+
+    /**
+     * Data type usages and flow ratings are kept up to date incrementally via the recalculation
+     * queue, this periodically marks their full recalculation as runnable to reconcile any drift
+     * (e.g. changes made directly in the database or events dropped after a failure).
+     */
+    @Scheduled(cron = "${waltz.derived.data.reconcile.cron:0 30 2 * * *}")
+    public void scheduleDerivedDataReconciliation() {
+        LOG.info("Marking data type usage and flow rating recalculation as runnable");
+        scheduledJobDao.updateJobStatus(JobKey.DATA_TYPE_USAGE_RECALC_APPLICATION, JobLifecycleStatus.RUNNABLE);
+        scheduledJobDao.updateJobStatus(JobKey.AUTH_SOURCE_RECALC_FLOW_RATINGS, JobLifecycleStatus.RUNNABLE);
+    }
+
+
     private void runIfNeeded(JobKey jobKey, Consumer<JobKey> jobExecutor) {
         runIfNeeded(jobKey, jobExecutor, Collections.emptySet());
     }
@@ -18,24 +18,33 @@
 
 package org.finos.waltz.service.settings;
 
-import org.finos.waltz.common.CollectionUtilities;
 import org.finos.waltz.common.MapUtilities;
 import org.finos.waltz.data.settings.SettingsDao;
 import org.finos.waltz.model.settings.Setting;
 import org.finos.waltz.model.settings.UpdateSettingsCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static org.finos.waltz.common.ListUtilities.ensureNotNull;
 
 
 @Service
 public class SettingsService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SettingsService.class);
+
     private final SettingsDao settingsDao;
 
     public static final String DEFAULT_ROLES_KEY = "server.authentication.roles.default";
@@ -43,11 +52,23 @@ public class SettingsService {
 
     private final Map<String, Setting> overridesByName;
 
+    /**
+     * Immutable snapshot of the settings table (by name), swapped atomically on refresh.
+     * Null until first use.
+     */
+    private final AtomicReference<Map<String, Setting>> snapshot = new AtomicReference<>();
+
 
     /**
      * Setting service allows the settings table to be interrogated.  For dev purposes then a
      * collection of overrides may be given, useful when debugging a shared database instance and
-     * you do not wish to change the values in the settings table
+     * you do not wish to change the values in the settings table.
+     * <p>
+     * Settings are read from an in-memory snapshot of the settings table.  The snapshot is
+     * loaded on first use, replaced whenever settings are updated via this service and
+     * periodically reloaded (`waltz.settings.refresh.ms`, default 60s) to pick up
+     * changes made directly in the database.
+     *
      * @param settingsDao
      * @param overrides
      */
@@ -59,18 +80,20 @@ public class SettingsService {
 
 
     public Collection<Setting> findAll() {
-        return CollectionUtilities.map(
-                settingsDao.findAll(),
-                s -> Optional
+        return getSnapshot()
+                .values()
+                .stream()
+                .map(s -> Optional
                         .ofNullable(overridesByName.get(s.name()))
-                        .orElse(s));
+                        .orElse(s))
+                .collect(toList());
     }
 
 
     public Setting getByName(String name) {
         return Optional
                 .ofNullable(overridesByName.get(name))
-                .orElse(settingsDao.getByName(name));
+                .orElse(getSnapshot().get(name));
     }
 
     /**
@@ -86,12 +109,62 @@ public class SettingsService {
     }
 
 
+    /**
+     * Returns the (unrestricted) settings whose names start with the given prefix.
+     * As with the underlying table, overrides are not applied.
+     *
+     * @param prefix  name prefix to match
+     * @return map of setting name to (trimmed) value, missing values are given as empty strings
+     */
     public Map<String, String> indexByPrefix(String prefix) {
-        return settingsDao.indexByPrefix(prefix);
+        return getSnapshot()
+                .values()
+                .stream()
+                .filter(s -> s.name().startsWith(prefix))
+                .filter(s -> ! s.restricted())
+                .collect(toMap(
+                        Setting::name,
+                        s -> s.value().orElse("")));
     }
 
 
     public int update(UpdateSettingsCommand cmd) {
-        return settingsDao.update(cmd);
+        int rc = settingsDao.update(cmd);
+        refresh();
+        return rc;
+    }
+
+
+    /**
+     * Reloads the settings snapshot from the database.
+     * Runs periodically so edits made outside of Waltz are picked up.
+     */
+    @Scheduled(
+            initialDelayString = "${waltz.settings.refresh.ms:60000}",
+            fixedDelayString = "${waltz.settings.refresh.ms:60000}")
+    public void refresh() {
+        Map<String, Setting> latest = loadSnapshot();
+        Map<String, Setting> previous = snapshot.getAndSet(latest);
+        if (previous != null && ! previous.equals(latest)) {
+            LOG.info("Settings changed, snapshot refreshed with {} settings", latest.size());
+        }
+    }
+
+
+    private Map<String, Setting> getSnapshot() {
+        Map<String, Setting> current = snapshot.get();
+        if (current == null) {
+            snapshot.compareAndSet(null, loadSnapshot());
+            current = snapshot.get();
+        }
+        return current;
+    }
+
+
+    private Map<String, Setting> loadSnapshot() {
+        return Collections.unmodifiableMap(settingsDao
+                .findAll()
+                .stream()
+                .collect(toMap(Setting::name, Function.identity())));
     }
 }
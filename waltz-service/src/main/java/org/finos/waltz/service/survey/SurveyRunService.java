@@ -35,8 +35,12 @@ import org.finos.waltz.model.person.Person;
 import org.finos.waltz.model.survey.*;
 import org.finos.waltz.service.changelog.ChangeLogService;
 import org.finos.waltz.service.involvement_group.InvolvementGroupService;
+import org.jooq.DSLContext;
 import org.jooq.Record1;
 import org.jooq.Select;
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -53,14 +57,19 @@ import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.common.Checks.checkTrue;
 import static org.finos.waltz.common.CollectionUtilities.isEmpty;
 import static org.finos.waltz.common.ListUtilities.map;
+import static org.finos.waltz.common.ListUtilities.partition;
 import static org.finos.waltz.common.MapUtilities.groupBy;
 import static org.finos.waltz.common.MapUtilities.indexBy;
 import static org.finos.waltz.common.SetUtilities.*;
 import static org.finos.waltz.common.StringUtilities.capitalise;
+import static org.jooq.lambda.tuple.Tuple.tuple;
 
 @Service
 public class SurveyRunService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SurveyRunService.class);
+    private static final int ISSUANCE_BATCH_SIZE = 1000;
+
     private final ChangeLogService changeLogService;
     private final InvolvementDao involvementDao;
     private final PersonDao personDao;
@@ -71,6 +80,8 @@ public class SurveyRunService {
     private final SurveyTemplateDao surveyTemplateDao;
     private final SurveyQuestionResponseDao surveyQuestionResponseDao;
     private final InvolvementGroupService involvementGroupService;
+    private final SurveyIssuanceDao surveyIssuanceDao;
+    private final DSLContext dsl;
 
     private final GenericSelectorFactory genericSelectorFactory = new GenericSelectorFactory();
     private final SurveyInstanceIdSelectorFactory surveyInstanceIdSelectorFactory = new SurveyInstanceIdSelectorFactory();
@@ -86,7 +97,9 @@ public class SurveyRunService {
                             SurveyRunDao surveyRunDao,
                             SurveyTemplateDao surveyTemplateDao,
                             SurveyQuestionResponseDao surveyQuestionResponseDao,
-                            InvolvementGroupService involvementGroupService) {
+                            InvolvementGroupService involvementGroupService,
+                            SurveyIssuanceDao surveyIssuanceDao,
+                            DSLContext dsl) {
 
         checkNotNull(changeLogService, "changeLogService cannot be null");
         checkNotNull(involvementDao, "involvementDao cannot be null");
@@ -98,6 +111,8 @@ public class SurveyRunService {
         checkNotNull(surveyTemplateDao, "surveyTemplateDao cannot be null");
         checkNotNull(surveyQuestionResponseDao, "surveyQuestionResponseDao cannot be null");
         checkNotNull(involvementGroupService, "involvementGroupService cannot be null");
+        checkNotNull(surveyIssuanceDao, "surveyIssuanceDao cannot be null");
+        checkNotNull(dsl, "dsl cannot be null");
 
         this.changeLogService = changeLogService;
         this.involvementDao = involvementDao;
@@ -109,6 +124,8 @@ public class SurveyRunService {
         this.surveyTemplateDao = surveyTemplateDao;
         this.surveyQuestionResponseDao = surveyQuestionResponseDao;
         this.involvementGroupService = involvementGroupService;
+        this.surveyIssuanceDao = surveyIssuanceDao;
+        this.dsl = dsl;
     }
 
 
@@ -420,6 +437,14 @@ public class SurveyRunService {
     }
 
 
+    /**
+     * (Re)issues all instances of a survey run.
+     * <p>
+     * Any existing instances are removed and the new instances, owners and
+     * recipients are batch inserted, all in a single transaction.  A failure
+     * part way through therefore leaves the previous issuance untouched and the
+     * operation can simply be run again.
+     */
     public boolean createSurveyInstancesAndRecipients(InstancesAndRecipientsCreateCommand command) {
 
         SurveyRun surveyRun = surveyRunDao.getById(command.surveyRunId());
@@ -433,77 +458,133 @@ public class SurveyRunService {
 
         List<SurveyInstanceOwner> surveyInstanceOwners = generateSurveyInstanceOwners(command);
 
-        Map<SurveyInstance, Collection<SurveyInstanceOwner>> surveyOwnersByInstance = groupBy(surveyInstanceOwners, SurveyInstanceOwner::surveyInstance);
+        List<PlannedInstance> plannedInstances = planInstances(
+                surveyRun,
+                surveyInstanceRecipients,
+                surveyInstanceOwners);
+
+        long surveyRunId = command.surveyRunId();
+        long start = System.currentTimeMillis();
+
+        dsl.transaction(ctx -> {
+            DSLContext tx = ctx.dsl();
+
+            int removed = surveyIssuanceDao.deleteForSurveyRun(tx, surveyRunId);
+            LOG.info("Survey run {}: removed {} existing instances", surveyRunId, removed);
+
+            List<List<PlannedInstance>> batches = partition(plannedInstances, ISSUANCE_BATCH_SIZE);
+            int issued = 0;
+            for (List<PlannedInstance> batch : batches) {
+                issued += surveyIssuanceDao.createInstances(tx, map(batch, pi -> pi.command));
+                LOG.info("Survey run {}: created {}/{} instances", surveyRunId, issued, plannedInstances.size());
+            }
+
+            List<Tuple2<Long, EntityReference>> instanceIds = surveyIssuanceDao.findInstanceIdsForSurveyRun(tx, surveyRunId);
+            checkTrue(
+                    instanceIds.size() == plannedInstances.size(),
+                    "Survey run %d: expected %d instances but found %d",
+                    surveyRunId,
+                    plannedInstances.size(),
+                    instanceIds.size());
+
+            Set<Tuple2<Long, Long>> owners = new HashSet<>();
+            Set<Tuple2<Long, Long>> recipients = new HashSet<>();
+            for (int idx = 0; idx < plannedInstances.size(); idx++) {
+                PlannedInstance planned = plannedInstances.get(idx);
+                Tuple2<Long, EntityReference> created = instanceIds.get(idx);
+                checkTrue(
+                        created.v2.equals(planned.command.entityReference()),
+                        "Survey run %d: instance %d does not match the planned subject",
+                        surveyRunId,
+                        created.v1);
+
+                planned.ownerIds.forEach(personId -> owners.add(tuple(created.v1, personId)));
+                planned.recipientIds.forEach(personId -> recipients.add(tuple(created.v1, personId)));
+            }
+
+            int ownersCreated = 0;
+            for (List<Tuple2<Long, Long>> batch : partition(new ArrayList<>(owners), ISSUANCE_BATCH_SIZE)) {
+                ownersCreated += surveyIssuanceDao.createOwners(tx, batch);
+                LOG.info("Survey run {}: created {}/{} instance owners", surveyRunId, ownersCreated, owners.size());
+            }
+
+            int recipientsCreated = 0;
+            for (List<Tuple2<Long, Long>> batch : partition(new ArrayList<>(recipients), ISSUANCE_BATCH_SIZE)) {
+                recipientsCreated += surveyIssuanceDao.createRecipients(tx, batch);
+                LOG.info("Survey run {}: created {}/{} instance recipients", surveyRunId, recipientsCreated, recipients.size());
+            }
+        });
 
-        Map<SurveyInstance, List<SurveyInstanceRecipient>> instancesAndRecipientsToSave = surveyInstanceRecipients
-                .stream()
-                .collect(groupingBy(
-                        SurveyInstanceRecipient::surveyInstance,
-                        toList()
-                ));
-
-        // delete existing instances and recipients
-        deleteSurveyInstancesAndRecipients(command.surveyRunId());
-
-        // insert new instances and recipients
-        instancesAndRecipientsToSave.forEach(
-                (k,v) -> {
-                    if (surveyRun.issuanceKind() == SurveyIssuanceKind.GROUP) {
-                        // one instance per group
-                        long instanceId = createSurveyInstance(k);
-                        createSurveyInstanceOwner(instanceId, surveyRun.ownerId());
-                        Collection<SurveyInstanceOwner> owners = surveyOwnersByInstance.get(k);
-                        fromCollection(owners).forEach(o -> createSurveyInstanceOwner(instanceId, o.person().id().get()));
-                        v.forEach(r -> createSurveyInstanceRecipient(instanceId, r));
-                    } else {
-                        // one instance for each individual
-                        v.forEach(r -> {
-                            long instanceId = createSurveyInstance(k);
-                            createSurveyInstanceOwner(instanceId, surveyRun.ownerId());
-                            Collection<SurveyInstanceOwner> owners = surveyOwnersByInstance.get(k);
-                            fromCollection(owners).forEach(o -> createSurveyInstanceOwner(instanceId, o.person().id().get()));
-                            createSurveyInstanceRecipient(instanceId, r);
-                        });
-                    }
-                }
-        );
+        LOG.info(
+                "Survey run {}: issued {} instances in {}ms",
+                surveyRunId,
+                plannedInstances.size(),
+                System.currentTimeMillis() - start);
 
         return true;
     }
 
 
-    private void deleteSurveyInstancesAndRecipients(long surveyRunId) {
-        surveyInstanceRecipientDao.deleteForSurveyRun(surveyRunId);
-        surveyInstanceDao.deleteForSurveyRun(surveyRunId);
-    }
+    /**
+     * Works out the instances to create for a run.  Group runs have one instance
+     * per subject entity shared by all its recipients, otherwise each recipient
+     * gets their own instance.  Every instance is owned by the run owner and by
+     * anyone holding one of the run's owner involvements for the subject entity.
+     */
+    private List<PlannedInstance> planInstances(SurveyRun surveyRun,
+                                                List<SurveyInstanceRecipient> recipients,
+                                                List<SurveyInstanceOwner> owners) {
 
+        Map<EntityReference, Set<Long>> ownerIdsByEntity = owners
+                .stream()
+                .collect(groupingBy(
+                        o -> o.surveyInstance().surveyEntity(),
+                        Collectors.mapping(o -> o.person().id().get(), Collectors.toSet())));
 
-    private long createSurveyInstance(SurveyInstance surveyInstance) {
-        return surveyInstanceDao
-                .create(ImmutableSurveyInstanceCreateCommand.builder()
-                        .surveyRunId(surveyInstance.surveyRunId())
-                        .entityReference(surveyInstance.surveyEntity())
-                        .status(surveyInstance.status())
-                        .dueDate(surveyInstance.dueDate())
-                        .approvalDueDate(surveyInstance.approvalDueDate())
-                        .owningRole(surveyInstance.owningRole())
-                        .name(surveyInstance.name())
-                        .build());
-    }
+        Map<SurveyInstance, List<SurveyInstanceRecipient>> recipientsByInstance = recipients
+                .stream()
+                .collect(groupingBy(
+                        SurveyInstanceRecipient::surveyInstance,
+                        LinkedHashMap::new,
+                        toList()));
 
+        List<PlannedInstance> planned = new ArrayList<>();
+        recipientsByInstance.forEach((instance, instanceRecipients) -> {
+            Set<Long> ownerIds = union(
+                    asSet(surveyRun.ownerId()),
+                    ownerIdsByEntity.getOrDefault(instance.surveyEntity(), emptySet()));
 
-    private long createSurveyInstanceRecipient(long surveyInstanceId, SurveyInstanceRecipient surveyInstanceRecipient) {
-        return surveyInstanceRecipientDao.create(ImmutableSurveyInstanceRecipientCreateCommand.builder()
-                .surveyInstanceId(surveyInstanceId)
-                .personId(surveyInstanceRecipient.person().id().get())
-                .build());
+            SurveyInstanceCreateCommand createCommand = mkCreateCommand(instance);
+
+            if (surveyRun.issuanceKind() == SurveyIssuanceKind.GROUP) {
+                // one instance per group
+                planned.add(new PlannedInstance(
+                        createCommand,
+                        ownerIds,
+                        SetUtilities.map(instanceRecipients, r -> r.person().id().get())));
+            } else {
+                // one instance for each individual
+                instanceRecipients.forEach(r -> planned.add(new PlannedInstance(
+                        createCommand,
+                        ownerIds,
+                        asSet(r.person().id().get()))));
+            }
+        });
+
+        return planned;
     }
 
-    private long createSurveyInstanceOwner(long surveyInstanceId, Long ownerId) {
-        return surveyInstanceOwnerDao.create(ImmutableSurveyInstanceOwnerCreateCommand.builder()
-                .surveyInstanceId(surveyInstanceId)
-                .personId(ownerId)
-                .build());
+
+    private SurveyInstanceCreateCommand mkCreateCommand(SurveyInstance surveyInstance) {
+        return ImmutableSurveyInstanceCreateCommand.builder()
+                .surveyRunId(surveyInstance.surveyRunId())
+                .entityReference(surveyInstance.surveyEntity())
+                .status(surveyInstance.status())
+                .dueDate(surveyInstance.dueDate())
+                .approvalDueDate(surveyInstance.approvalDueDate())
+                .owningRole(surveyInstance.owningRole())
+                .name(surveyInstance.name())
+                .build();
     }
 
 
@@ -683,5 +764,21 @@ public class SurveyRunService {
                 "Approval due date cannot be earlier than the submission due date");
     }
 
-}
 
+    private static class PlannedInstance {
+
+        private final SurveyInstanceCreateCommand command;
+        private final Set<Long> ownerIds;
+        private final Set<Long> recipientIds;
+
+
+        private PlannedInstance(SurveyInstanceCreateCommand command,
+                                Set<Long> ownerIds,
+                                Set<Long> recipientIds) {
+            this.command = command;
+            this.ownerIds = ownerIds;
+            this.recipientIds = recipientIds;
+        }
+    }
+
+}
@@ -152,11 +152,11 @@ public class TaxonomyChangeService {
         if (command.changeDomain().kind() == EntityKind.MEASURABLE_CATEGORY
                 && isHierarchyChange(command)) {
             long categoryId = command.changeDomain().id();
-            int insertCount = entityHierarchyService.buildForMeasurableByCategory(categoryId);
+            int changeCount = entityHierarchyService.updateForMeasurableByCategory(categoryId);
             LOG.info(
-                    "Rebuilt measurable category: {},  inserted {} new records",
+                    "Updated hierarchy for measurable category: {}, {} records deleted/inserted",
                     categoryId,
-                    insertCount);
+                    changeCount);
         }
 
         return updatedCommand;
@@ -222,6 +222,7 @@ public class TaxonomyChangeService {
         return command.changeType() == TaxonomyChangeType.ADD_CHILD
                 || command.changeType() == TaxonomyChangeType.ADD_PEER
                 || command.changeType() == TaxonomyChangeType.REMOVE
-                || command.changeType() == TaxonomyChangeType.MOVE;
+                || command.changeType() == TaxonomyChangeType.MOVE
+                || command.changeType() == TaxonomyChangeType.MERGE;
     }
 }
@@ -34,42 +34,79 @@ import org.finos.waltz.model.usage_info.UsageKind;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static org.finos.waltz.schema.tables.Actor.ACTOR;
 import static org.finos.waltz.schema.tables.Application.APPLICATION;
 import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
 import static org.finos.waltz.common.CollectionUtilities.*;
+import static org.finos.waltz.common.DateTimeUtilities.nowUtc;
+import static org.finos.waltz.common.ListUtilities.partition;
 import static org.finos.waltz.common.SetUtilities.fromCollection;
 import static org.finos.waltz.model.usage_info.UsageInfoUtilities.mkChangeSet;
 
 @Service
 public class DataTypeUsageService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(DataTypeUsageService.class);
+
+    private static final String THREAD_NAME_PREFIX = "waltz-dt-usage-recalc-";
+
+    // checkpoints older than this are ignored, the recalculation starts afresh
+    private static final long CHECKPOINT_EXPIRY_HOURS = 24;
+
     private final DataTypeUsageDao dataTypeUsageDao;
     private final DataTypeDao dataTypeDao;
     private final ApplicationIdSelectorFactory appIdSelectorFactor = new ApplicationIdSelectorFactory();
     private final DataTypeIdSelectorFactory dataTypeIdSelectorFactory = new DataTypeIdSelectorFactory();
     private final ChangeLogService changeLogService;
 
+    private final boolean chunkedRecalculation;
+    private final int recalculationChunkSize;
+    private final int recalculationConcurrency;
+
+    private volatile EntityKind recalculationKind;
+    private final AtomicInteger recalculationChunkCount = new AtomicInteger();
+    private final AtomicInteger recalculationChunksCompleted = new AtomicInteger();
+    private final AtomicLong recalculationChanges = new AtomicLong();
+
 
     @Autowired
     public DataTypeUsageService(DataTypeUsageDao dataTypeUsageDao,
                                 DataTypeDao dataTypeDao,
-                                ChangeLogService changeLogService) {
+                                ChangeLogService changeLogService,
+                                @Value("${waltz.data.type.usage.recalc.chunked:true}") boolean chunkedRecalculation,
+                                @Value("${waltz.data.type.usage.recalc.chunk.size:500}") int recalculationChunkSize,
+                                @Value("${waltz.data.type.usage.recalc.concurrency:4}") int recalculationConcurrency) {
         checkNotNull(dataTypeUsageDao, "dataTypeUsageDao cannot be null");
         checkNotNull(dataTypeDao, "dataTypeDao cannot be null");
         checkNotNull(changeLogService, "changeLogService cannot be null");
+        checkTrue(recalculationChunkSize > 0, "recalculationChunkSize must be greater than zero");
+        checkTrue(recalculationConcurrency > 0, "recalculationConcurrency must be greater than zero");
         this.dataTypeUsageDao = dataTypeUsageDao;
         this.dataTypeDao = dataTypeDao;
         this.changeLogService = changeLogService;
+        this.chunkedRecalculation = chunkedRecalculation;
+        this.recalculationChunkSize = recalculationChunkSize;
+        this.recalculationConcurrency = recalculationConcurrency;
     }
 
 
@@ -146,7 +183,136 @@ public class DataTypeUsageService {
 
 
     public boolean recalculateForAllApplications() {
-        return dataTypeUsageDao.recalculateForAllApplications();
+        if (chunkedRecalculation) {
+            recalculateInChunks(EntityKind.APPLICATION);
+            recalculateInChunks(EntityKind.ACTOR);
+            return true;
+        } else {
+            return dataTypeUsageDao.recalculateForAllApplications();
+        }
+    }
+
+
+    /**
+     * Recalculates the usages of all applications (or actors) by splitting them into chunks
+     * of consecutive ids, each chunk is recalculated in its own transaction, several at once.
+     * <p>
+     * Progress is checkpointed as chunks complete.  If a run fails (or the server stops) the
+     * next run resumes after the last completed chunk, provided it starts within
+     * {@value #CHECKPOINT_EXPIRY_HOURS} hours.
+     *
+     * @param kind APPLICATION or ACTOR
+     * @return number of usage rows inserted, updated or deleted
+     */
+    public synchronized long recalculateInChunks(EntityKind kind) {
+        long resumeAfter = dataTypeUsageDao
+                .findRecalculationCheckpoint(kind, nowUtc().minusHours(CHECKPOINT_EXPIRY_HOURS))
+                .orElse(0L);
+
+        List<List<Long>> chunks = partition(
+                dataTypeUsageDao.findIdsForRecalculation(kind, resumeAfter),
+                recalculationChunkSize);
+
+        if (resumeAfter > 0) {
+            LOG.info("Resuming data type usage recalculation for {} after id: {}, {} chunks remaining", kind, resumeAfter, chunks.size());
+        }
+
+        recalculationKind = kind;
+        recalculationChunkCount.set(chunks.size());
+        recalculationChunksCompleted.set(0);
+        recalculationChanges.set(0);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(recalculationConcurrency, runnable -> {
+            Thread t = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        List<Future<Integer>> futures = chunks
+                .stream()
+                .map(chunk -> executor.submit(() -> dataTypeUsageDao.recalculateForIdRange(kind, first(chunk), last(chunk))))
+                .collect(Collectors.toList());
+
+        try {
+            // completions are taken in order so the checkpoint only covers contiguous, completed chunks
+            for (int i = 0; i < chunks.size(); i++) {
+                List<Long> chunk = chunks.get(i);
+                int changes = futures.get(i).get();
+                recalculationChanges.addAndGet(changes);
+                recalculationChunksCompleted.incrementAndGet();
+                dataTypeUsageDao.saveRecalculationCheckpoint(kind, last(chunk), nowUtc());
+                LOG.info("Recalculated data type usages for {}, chunk {}/{} (ids {}-{}), changes: {}",
+                        kind,
+                        i + 1,
+                        chunks.size(),
+                        first(chunk),
+                        last(chunk),
+                        changes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst recalculating data type usages for: " + kind, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to recalculate data type usages for: " + kind, e.getCause());
+        } finally {
+            // chunks already running are allowed to finish, their work is redone when the run resumes
+            futures.forEach(f -> f.cancel(false));
+            executor.shutdown();
+        }
+
+        dataTypeUsageDao.deleteRecalculationCheckpoint(kind);
+        LOG.info("Completed data type usage recalculation for {}, chunks: {}, changes: {}", kind, chunks.size(), recalculationChanges.get());
+        return recalculationChanges.get();
+    }
+
+
+    // --- progress of the current (or last) chunked recalculation ---
+
+    public Optional<EntityKind> getRecalculationKind() {
+        return Optional.ofNullable(recalculationKind);
+    }
+
+
+    public int getRecalculationChunkCount() {
+        return recalculationChunkCount.get();
+    }
+
+
+    public int getRecalculationChunksCompleted() {
+        return recalculationChunksCompleted.get();
+    }
+
+
+    public long getRecalculationChanges() {
+        return recalculationChanges.get();
+    }
+
+
+    /**
+     * Recalculates the usages of the given applications and actors (other kinds are ignored),
+     * in chunks.  Only the rows which differ are written, so recalculating an entity twice is
+     * harmless.
+     *
+     * @return number of usage rows inserted, updated or deleted
+     */
+    public int recalculateForEntities(Collection<EntityReference> refs) {
+        checkNotNull(refs, "refs cannot be null");
+        Map<EntityKind, List<Long>> idsByKind = refs
+                .stream()
+                .filter(r -> r.kind() == EntityKind.APPLICATION || r.kind() == EntityKind.ACTOR)
+                .distinct()
+                .collect(Collectors.groupingBy(
+                        EntityReference::kind,
+                        Collectors.mapping(EntityReference::id, Collectors.toList())));
+
+        int changes = 0;
+        for (Map.Entry<EntityKind, List<Long>> entry : idsByKind.entrySet()) {
+            for (List<Long> chunk : partition(entry.getValue(), recalculationChunkSize)) {
+                changes += dataTypeUsageDao.recalculateForIds(entry.getKey(), chunk);
+            }
+        }
+        return changes;
     }
 
 
@@ -175,6 +341,11 @@ public class DataTypeUsageService {
     }
 
 
+    private static Long last(List<Long> ids) {
+        return ids.get(ids.size() - 1);
+    }
+
+
     private Select<Record1<Long>> convertApplicationIdsToIdSelector(Set<Long> appIds) {
         return DSL.select(APPLICATION.ID)
                 .from(APPLICATION)
@@ -26,6 +26,7 @@ import org.finos.waltz.model.user.BulkUserOperationRowPreview;
 import org.finos.waltz.model.user.ImmutableBulkUserOperationRowPreview;
 import org.finos.waltz.service.changelog.ChangeLogService;
 import org.finos.waltz.service.person.PersonService;
+import org.finos.waltz.common.ExpiringCache;
 import org.finos.waltz.common.SetUtilities;
 import org.finos.waltz.common.StringUtilities;
 import org.finos.waltz.data.user.UserRoleDao;
@@ -42,6 +43,7 @@ import org.jooq.lambda.tuple.Tuple2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
@@ -69,6 +71,10 @@ import static org.jooq.lambda.tuple.Tuple.tuple;
  *     <li>Listing users and their roles</li>
  *     <li>Updating user roles</li>
  * </ul>
+ *
+ * Role lookups (used by every guarded endpoint) are served from a bounded, per-user cache.
+ * Entries expire after `waltz.user.role.cache.ttl.ms` (0 disables the cache) and are evicted
+ * whenever roles are changed via this service.
  */
 @Service
 public class UserRoleService {
@@ -83,13 +89,17 @@ public class UserRoleService {
 
     private final PersonService personService;
 
+    private final ExpiringCache<String, Set<String>> roleCache;
+
 
     @Autowired
     public UserRoleService(UserRoleDao userRoleDao,
                            UserDao userDao,
                            RoleDao roleDao,
                            ChangeLogService changeLogService,
-                           PersonService personService) {
+                           PersonService personService,
+                           @Value("${waltz.user.role.cache.max.size:2000}") int roleCacheMaxSize,
+                           @Value("${waltz.user.role.cache.ttl.ms:60000}") long roleCacheTtlMillis) {
         checkNotNull(userRoleDao, "userRoleDao must not be null");
         checkNotNull(userDao, "userDao must not be null");
         checkNotNull(roleDao, "roleDao must not be null");
@@ -101,6 +111,7 @@ public class UserRoleService {
         this.roleDao = roleDao;
         this.changeLogService = changeLogService;
         this.personService = personService;
+        this.roleCache = new ExpiringCache<>(roleCacheMaxSize, roleCacheTtlMillis);
     }
 
 
@@ -115,7 +126,7 @@ public class UserRoleService {
 
 
     public boolean hasRole(String userName, Set<String> requiredRoles) {
-        Set<String> userRoles = userRoleDao.getUserRoles(userName);
+        Set<String> userRoles = getUserRoles(userName);
         return userRoles.containsAll(requiredRoles);
     }
 
@@ -126,7 +137,7 @@ public class UserRoleService {
 
 
     public boolean hasAnyRole(String userName, Set<String> requiredRoles) {
-        Set<String> userRoles = userRoleDao.getUserRoles(userName);
+        Set<String> userRoles = getUserRoles(userName);
         return ! SetUtilities.intersection(userRoles, requiredRoles)
                     .isEmpty();
     }
@@ -140,7 +151,7 @@ public class UserRoleService {
     public User getByUserId(String userId) {
         return ImmutableUser.builder()
                 .userName(userId)
-                .addAllRoles(userRoleDao.getUserRoles(userId))
+                .addAllRoles(getUserRoles(userId))
                 .build();
     }
 
@@ -167,12 +178,38 @@ public class UserRoleService {
             changeLogService.write(logEntry);
         }
 
-        return userRoleDao.updateRoles(targetUserName, command.roles());
+        try {
+            return userRoleDao.updateRoles(targetUserName, command.roles());
+        } finally {
+            evictCachedRoles(targetUserName);
+        }
     }
 
 
     public Set<String> getUserRoles(String userName) {
-        return userRoleDao.getUserRoles(userName);
+        return roleCache.get(userName, userRoleDao::getUserRoles);
+    }
+
+
+    /**
+     * Removes any cached roles for the given user, the next lookup will go to the database.
+     * Should be called by any component which changes a users roles without going via this service.
+     *
+     * @param userName  user whose roles have changed
+     */
+    public void evictCachedRoles(String userName) {
+        roleCache.invalidate(userName);
+    }
+
+
+    public void evictAllCachedRoles() {
+        LOG.info("Clearing user role cache");
+        roleCache.invalidateAll();
+    }
+
+
+    public ExpiringCache<String, Set<String>> getRoleCache() {
+        return roleCache;
     }
 
 
@@ -201,15 +238,19 @@ public class UserRoleService {
                 .map(d -> tuple(d.resolvedUser(), d.resolvedRole()))
                 .collect(Collectors.toSet());
 
-        switch (mode) {
-            case ADD_ONLY:
-                return userRoleDao.addRoles(usersAndRolesToUpdate);
-            case REMOVE_ONLY:
-                return userRoleDao.removeRoles(usersAndRolesToUpdate);
-            case REPLACE:
-                return userRoleDao.replaceRoles(usersAndRolesToUpdate);
-            default:
-                throw new UnsupportedOperationException("Unsupported mode: " + mode);
+        try {
+            switch (mode) {
+                case ADD_ONLY:
+                    return userRoleDao.addRoles(usersAndRolesToUpdate);
+                case REMOVE_ONLY:
+                    return userRoleDao.removeRoles(usersAndRolesToUpdate);
+                case REPLACE:
+                    return userRoleDao.replaceRoles(usersAndRolesToUpdate);
+                default:
+                    throw new UnsupportedOperationException("Unsupported mode: " + mode);
+            }
+        } finally {
+            usersAndRolesToUpdate.forEach(t -> evictCachedRoles(t.v1));
         }
     }
 
@@ -18,33 +18,68 @@
 
 package org.finos.waltz.service.user_agent_info;
 
+import org.finos.waltz.common.BatchingWriter;
+import org.finos.waltz.common.BatchingWriter.OverflowPolicy;
 import org.finos.waltz.common.Checks;
 import org.finos.waltz.data.user_agent_info.UserAgentInfoDao;
 import org.finos.waltz.model.user_agent_info.UserAgentInfo;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Optional;
 
 import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.common.Checks.checkTrue;
 
+/**
+ * User agent details are reported by the UI on login.  Like access log entries they are,
+ * by default, queued and batch inserted by a background writer.
+ */
 @Service
-public class UserAgentInfoService {
+public class UserAgentInfoService implements DisposableBean {
 
     private final UserAgentInfoDao userAgentInfoDao;
 
+    // null when writing synchronously
+    private final BatchingWriter<UserAgentInfo> writer;
+
 
     @Autowired
-    public UserAgentInfoService(UserAgentInfoDao userAgentInfoDao) {
+    public UserAgentInfoService(UserAgentInfoDao userAgentInfoDao,
+                                @Value("${waltz.usage.writer.async:true}") boolean async,
+                                @Value("${waltz.usage.writer.capacity:10000}") int capacity,
+                                @Value("${waltz.usage.writer.batch.size:500}") int batchSize,
+                                @Value("${waltz.usage.writer.flush.ms:2000}") long flushIntervalMillis,
+                                @Value("${waltz.usage.writer.overflow.policy:DROP}") OverflowPolicy overflowPolicy) {
         checkNotNull(userAgentInfoDao, "userAgentInfoDao cannot be null");
         this.userAgentInfoDao = userAgentInfoDao;
+        this.writer = async
+                ? new BatchingWriter<>(
+                        "user-agent-info",
+                        capacity,
+                        batchSize,
+                        flushIntervalMillis,
+                        overflowPolicy,
+                        flushIntervalMillis,
+                        userAgentInfoDao::saveAll)
+                : null;
     }
 
 
+    /**
+     * @param userAgentInfo details to record
+     * @return 1 if the details were written (or queued for writing), 0 if they were dropped
+     */
     public int save(UserAgentInfo userAgentInfo) {
         checkNotNull(userAgentInfo, "userLogin cannot be null");
-        return userAgentInfoDao.save(userAgentInfo);
+        if (writer == null) {
+            return userAgentInfoDao.save(userAgentInfo);
+        } else {
+            return writer.submit(userAgentInfo) ? 1 : 0;
+        }
     }
 
 
@@ -54,4 +89,20 @@ public class UserAgentInfoService {
         return userAgentInfoDao.findLoginsForUser(userName, limit);
     }
 
+
+    public Optional<BatchingWriter<UserAgentInfo>> getWriter() {
+        return Optional.ofNullable(writer);
+    }
+
+
+    /**
+     * Writes any queued details, called when the application context is closed.
+     */
+    @Override
+    public void destroy() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
 }
@@ -0,0 +1,155 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.changelog;
+
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.Operation;
+import org.finos.waltz.model.changelog.ChangeLog;
+import org.finos.waltz.model.changelog.ImmutableChangeLog;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ChangeLogBatchTest {
+
+    @Test
+    public void entriesAreWrittenTogetherWhenClosed() {
+        List<List<ChangeLog>> written = new ArrayList<>();
+
+        try (ChangeLogBatch batch = new ChangeLogBatch(written::add, () -> {})) {
+            batch.add(mkChangeLog(1, "a"));
+            batch.addAll(asList(mkChangeLog(2, "b"), mkChangeLog(3, "c")));
+            assertTrue(written.isEmpty(), "nothing written until closed");
+            batch.complete();
+        }
+
+        assertEquals(1, written.size());
+        assertEquals(3, written.get(0).size());
+    }
+
+
+    @Test
+    public void nestedBatchesAreWrittenWhenOutermostCloses() {
+        List<List<ChangeLog>> written = new ArrayList<>();
+        AtomicInteger closeCount = new AtomicInteger();
+
+        try (ChangeLogBatch outer = new ChangeLogBatch(written::add, closeCount::incrementAndGet)) {
+            try (ChangeLogBatch inner = outer.join()) {
+                inner.add(mkChangeLog(1, "a"));
+                inner.complete();
+            }
+            assertTrue(written.isEmpty());
+            assertEquals(0, closeCount.get());
+            outer.add(mkChangeLog(2, "b"));
+            outer.complete();
+        }
+
+        assertEquals(1, closeCount.get());
+        assertEquals(2, written.get(0).size());
+    }
+
+
+    @Test
+    public void entriesAreDiscardedIfTheBlockDoesNotComplete() {
+        List<List<ChangeLog>> written = new ArrayList<>();
+        AtomicInteger closeCount = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> {
+            try (ChangeLogBatch batch = new ChangeLogBatch(written::add, closeCount::incrementAndGet)) {
+                batch.add(mkChangeLog(1, "a"));
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        assertEquals(1, closeCount.get(), "batch is still released");
+        assertTrue(written.isEmpty());
+    }
+
+
+    @Test
+    public void failedNestedBlockDiscardsTheWholeBatch() {
+        List<List<ChangeLog>> written = new ArrayList<>();
+
+        try (ChangeLogBatch outer = new ChangeLogBatch(written::add, () -> {})) {
+            outer.add(mkChangeLog(1, "a"));
+            try (ChangeLogBatch inner = outer.join()) {
+                inner.add(mkChangeLog(2, "b"));
+                throw new IllegalStateException("boom");
+            } catch (IllegalStateException e) {
+                // recovered by the caller, but the nested work did not complete
+            }
+            outer.complete();
+        }
+
+        assertTrue(written.isEmpty());
+    }
+
+
+    @Test
+    public void emptyBatchWritesNothing() {
+        List<List<ChangeLog>> written = new ArrayList<>();
+        new ChangeLogBatch(written::add, () -> {}).close();
+        assertTrue(written.isEmpty());
+    }
+
+
+    @Test
+    public void duplicatesDifferingOnlyByTimeAreCoalesced() {
+        ChangeLog first = ImmutableChangeLog
+                .copyOf(mkChangeLog(1, "a"))
+                .withCreatedAt(LocalDateTime.of(2020, 1, 1, 0, 0));
+        ChangeLog later = ImmutableChangeLog
+                .copyOf(mkChangeLog(1, "a"))
+                .withCreatedAt(LocalDateTime.of(2020, 1, 1, 0, 1));
+
+        List<ChangeLog> result = ChangeLogBatch.coalesce(asList(
+                first,
+                mkChangeLog(2, "a"),
+                later,
+                mkChangeLog(1, "b")));
+
+        assertEquals(3, result.size());
+        assertEquals(first, result.get(0), "earliest occurrence is kept");
+        assertEquals("b", result.get(2).message());
+    }
+
+
+    // -- HELPERS ---
+
+    private static ChangeLog mkChangeLog(long appId, String message) {
+        return ImmutableChangeLog
+                .builder()
+                .parentReference(mkRef(EntityKind.APPLICATION, appId))
+                .message(message)
+                .userId("test")
+                .operation(Operation.UPDATE)
+                .build();
+    }
+
+}
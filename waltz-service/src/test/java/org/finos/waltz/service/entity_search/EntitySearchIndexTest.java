@@ -0,0 +1,105 @@
+package org.finos.waltz.service.entity_search;
+
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityLifecycleStatus;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.ImmutableEntityReference;
+import org.jooq.lambda.tuple.Tuple2;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+import static org.finos.waltz.common.ListUtilities.asList;
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntitySearchIndexTest {
+
+    private static final List<EntityLifecycleStatus> ACTIVE_ONLY = asList(EntityLifecycleStatus.ACTIVE);
+
+    private final EntitySearchIndex index = EntitySearchIndex.build(mkDocuments(), 7L);
+
+
+    @Test
+    public void everyTermMustPrefixATokenOfTheDocument() {
+        assertEquals(asList(1L, 2L), searchIds("gen"));
+        assertEquals(asList(1L), searchIds("gen led"));
+        assertEquals(asList(2L), searchIds("GENERAL Pay"));
+        assertTrue(searchIds("ledger payments").isEmpty());
+    }
+
+
+    @Test
+    public void externalIdMatchesAreRankedFirst() {
+        assertEquals(asList(3L, 1L), searchIds("abc"));
+        assertEquals(asList(3L), searchIds("abc-12"));
+    }
+
+
+    @Test
+    public void extraTextAndDescriptionsAreSearchable() {
+        assertEquals(asList(2L), searchIds("gpay"));
+        assertEquals(asList(3L), searchIds("reconciles"));
+    }
+
+
+    @Test
+    public void lifecycleStatusAndLimitAreRespected() {
+        assertTrue(searchIds("retired").isEmpty());
+        assertEquals(
+                asList(4L),
+                index.search(EntityKind.APPLICATION, asList("retired"), asList(EntityLifecycleStatus.REMOVED), 10)
+                        .stream()
+                        .map(EntityReference::id)
+                        .collect(toList()));
+        assertEquals(1, index.search(EntityKind.APPLICATION, asList("gen"), ACTIVE_ONLY, 1).size());
+    }
+
+
+    @Test
+    public void kindsWhichAreNotIndexedAreNotCovered() {
+        assertTrue(index.covers(EntityKind.APPLICATION));
+        assertFalse(index.covers(EntityKind.APP_GROUP));
+        assertEquals(4, index.getDocumentCount());
+        assertEquals(7L, index.getDataVersion());
+    }
+
+
+    // -- HELPERS ---
+
+    private List<Long> searchIds(String query) {
+        return index
+                .search(EntityKind.APPLICATION, asList(query.split(" ")), ACTIVE_ONLY, 10)
+                .stream()
+                .map(EntityReference::id)
+                .collect(toList());
+    }
+
+
+    private static Map<EntityKind, List<Tuple2<EntityReference, Set<String>>>> mkDocuments() {
+        Map<EntityKind, List<Tuple2<EntityReference, Set<String>>>> docs = new HashMap<>();
+        docs.put(EntityKind.APPLICATION, asList(
+                mkDoc(mkApp(1L, "General Ledger", "XYZ-1", "Posts journals to abc")),
+                mkDoc(mkApp(2L, "General Payments", "XYZ-2", null), "GPay"),
+                mkDoc(mkApp(3L, "Reconciler", "ABC-123", "Reconciles the ledger")),
+                mkDoc(ImmutableEntityReference
+                        .copyOf(mkApp(4L, "Retired App", "OLD-1", null))
+                        .withEntityLifecycleStatus(EntityLifecycleStatus.REMOVED))));
+        return docs;
+    }
+
+
+    private static Tuple2<EntityReference, Set<String>> mkDoc(EntityReference ref, String... extras) {
+        return tuple(ref, asSet(extras));
+    }
+
+
+    private static EntityReference mkApp(long id, String name, String externalId, String description) {
+        return EntityReference.mkRef(EntityKind.APPLICATION, id, name, description, externalId);
+    }
+}
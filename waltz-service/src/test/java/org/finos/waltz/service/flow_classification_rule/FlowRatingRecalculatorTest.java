@@ -0,0 +1,168 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.flow_classification_rule;
+
+import org.finos.waltz.common.DateTimeUtilities;
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.flow_classification_rule.FlowClassificationRule;
+import org.finos.waltz.model.flow_classification_rule.FlowDecoratorRating;
+import org.finos.waltz.model.flow_classification_rule.ImmutableFlowClassificationRule;
+import org.finos.waltz.model.flow_classification_rule.ImmutableFlowClassificationRuleVantagePoint;
+import org.finos.waltz.model.flow_classification_rule.ImmutableFlowDecoratorRating;
+import org.finos.waltz.model.rating.AuthoritativenessRatingValue;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.finos.waltz.common.ListUtilities.newArrayList;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.finos.waltz.service.flow_classification_rule.FlowRatingRecalculator.calculate;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlowRatingRecalculatorTest {
+
+    private static final long PARENT_DT = 1L;
+    private static final long CHILD_DT = 2L;
+
+    private final EntityReference sourceApp = mkRef(EntityKind.APPLICATION, 100L);
+    private final EntityReference targetApp = mkRef(EntityKind.APPLICATION, 200L);
+    private final EntityReference targetActor = mkRef(EntityKind.ACTOR, 300L);
+
+    private final FlowClassificationRuleResolver resolver = new FlowClassificationRuleResolver(newArrayList(
+            ImmutableFlowClassificationRuleVantagePoint.builder()
+                    .vantagePoint(mkRef(EntityKind.ORG_UNIT, 10L))
+                    .vantagePointRank(1)
+                    .dataType(mkRef(EntityKind.DATA_TYPE, CHILD_DT))
+                    .dataTypeRank(1)
+                    .subjectReference(sourceApp)
+                    .classificationCode("PRIMARY")
+                    .ruleId(1L)
+                    .build()));
+
+    private final FlowRatingRecalculator.PointToPointRules noPointToPointRules = new FlowRatingRecalculator.PointToPointRules(
+            Collections.emptyList(),
+            Collections.emptyMap(),
+            Collections.emptyMap());
+
+
+    @Test
+    public void ratingIsResolvedUsingTheTargetOrgUnit() {
+        FlowDecoratorRating result = calculate(
+                mkDecorator(targetApp, 10L, AuthoritativenessRatingValue.NO_OPINION, null),
+                resolver,
+                noPointToPointRules);
+
+        assertEquals(AuthoritativenessRatingValue.of("PRIMARY"), result.rating());
+        assertEquals(Optional.of(1L), result.flowClassificationRuleId());
+    }
+
+
+    @Test
+    public void unchangedDecoratorsAreEqualToTheirRecalculation() {
+        FlowDecoratorRating current = mkDecorator(targetApp, 10L, AuthoritativenessRatingValue.of("PRIMARY"), 1L);
+
+        assertEquals(current, calculate(current, resolver, noPointToPointRules));
+    }
+
+
+    @Test
+    public void staleRuleIdsAreClearedWhenNoRuleApplies() {
+        FlowDecoratorRating result = calculate(
+                mkDecorator(targetApp, 99L, AuthoritativenessRatingValue.of("PRIMARY"), 1L),
+                resolver,
+                noPointToPointRules);
+
+        assertEquals(AuthoritativenessRatingValue.NO_OPINION, result.rating());
+        assertFalse(result.flowClassificationRuleId().isPresent());
+    }
+
+
+    @Test
+    public void mostSpecificPointToPointRuleOverridesOrgUnitRating() {
+        Map<Long, String> codes = new HashMap<>();
+        codes.put(1L, "SECONDARY");
+        codes.put(2L, "DISCOURAGED");
+
+        Map<Long, Map<Long, Integer>> ancestorLevels = new HashMap<>();
+        Map<Long, Integer> childAncestors = new HashMap<>();
+        childAncestors.put(PARENT_DT, 1);
+        childAncestors.put(CHILD_DT, 2);
+        ancestorLevels.put(CHILD_DT, childAncestors);
+
+        FlowRatingRecalculator.PointToPointRules pointToPointRules = new FlowRatingRecalculator.PointToPointRules(
+                newArrayList(
+                        mkRule(10L, targetApp, PARENT_DT, 1L),
+                        mkRule(11L, targetApp, CHILD_DT, 2L),
+                        mkRule(12L, targetActor, CHILD_DT, 1L)),
+                codes,
+                ancestorLevels);
+
+        FlowDecoratorRating toApp = calculate(
+                mkDecorator(targetApp, 10L, AuthoritativenessRatingValue.NO_OPINION, null),
+                resolver,
+                pointToPointRules);
+
+        FlowDecoratorRating toActor = calculate(
+                mkDecorator(targetActor, null, AuthoritativenessRatingValue.NO_OPINION, null),
+                resolver,
+                pointToPointRules);
+
+        assertEquals(AuthoritativenessRatingValue.DISCOURAGED, toApp.rating());
+        assertEquals(Optional.of(11L), toApp.flowClassificationRuleId());
+        assertEquals(AuthoritativenessRatingValue.of("SECONDARY"), toActor.rating());
+        assertEquals(Optional.of(12L), toActor.flowClassificationRuleId());
+    }
+
+
+    private FlowDecoratorRating mkDecorator(EntityReference target,
+                                            Long targetOrgUnitId,
+                                            AuthoritativenessRatingValue rating,
+                                            Long ruleId) {
+        return ImmutableFlowDecoratorRating.builder()
+                .decoratorId(1L)
+                .dataTypeId(CHILD_DT)
+                .source(sourceApp)
+                .target(target)
+                .targetOrgUnitId(Optional.ofNullable(targetOrgUnitId))
+                .rating(rating)
+                .flowClassificationRuleId(Optional.ofNullable(ruleId))
+                .build();
+    }
+
+
+    private FlowClassificationRule mkRule(long id,
+                                          EntityReference vantagePoint,
+                                          long dataTypeId,
+                                          long classificationId) {
+        return ImmutableFlowClassificationRule.builder()
+                .id(id)
+                .subjectReference(sourceApp)
+                .vantagePointReference(vantagePoint)
+                .dataTypeId(dataTypeId)
+                .classificationId(classificationId)
+                .lastUpdatedAt(DateTimeUtilities.nowUtc())
+                .lastUpdatedBy("test")
+                .build();
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.service.logical_flow;
+
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.EntityReference;
+import org.finos.waltz.model.FlowDirection;
+import org.finos.waltz.model.logical_flow.LogicalFlowLineage;
+import org.finos.waltz.model.logical_flow.LogicalFlowLineageEdge;
+import org.finos.waltz.model.logical_flow.LogicalFlowLineageNode;
+import org.finos.waltz.model.logical_flow.LogicalFlowPath;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+import static org.finos.waltz.common.MapUtilities.newHashMap;
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogicalFlowGraphTest {
+
+    private static final EntityReference A = mkRef(EntityKind.APPLICATION, 1L, "A");
+    private static final EntityReference B = mkRef(EntityKind.APPLICATION, 2L, "B");
+    private static final EntityReference C = mkRef(EntityKind.ACTOR, 3L, "C");
+    private static final EntityReference D = mkRef(EntityKind.APPLICATION, 4L, "D");
+
+    private static final long DT_PARENT = 10L;
+    private static final long DT_CHILD = 11L;
+    private static final long DT_OTHER = 20L;
+
+    /*
+     *  A --(parent)--> B --(child)--> C --(parent)--> D
+     *   \                             ^
+     *    `-----------(other)---------'
+     */
+    private final LogicalFlowGraph graph = LogicalFlowGraph.build(
+            asList(
+                    new LogicalFlowGraph.FlowEdge(100L, A, B, asList(DT_PARENT)),
+                    new LogicalFlowGraph.FlowEdge(101L, B, C, asList(DT_CHILD)),
+                    new LogicalFlowGraph.FlowEdge(102L, C, D, asList(DT_PARENT, DT_OTHER)),
+                    new LogicalFlowGraph.FlowEdge(103L, A, C, asList(DT_OTHER))),
+            newHashMap(DT_CHILD, DT_PARENT),
+            null);
+
+
+    @Test
+    public void downstreamLineageIsLimitedByHops() {
+        LogicalFlowLineage oneHop = graph.findLineage(A, FlowDirection.OUTBOUND, 1, null);
+        assertEquals(newHashMap(B, 1, C, 1), hopsByEntity(oneHop));
+        assertEquals(asSet(100L, 103L), flowIds(oneHop.edges()));
+
+        LogicalFlowLineage twoHops = graph.findLineage(A, FlowDirection.OUTBOUND, 2, null);
+        assertEquals(newHashMap(B, 1, C, 1, D, 2), hopsByEntity(twoHops));
+        assertEquals(asSet(100L, 101L, 102L, 103L), flowIds(twoHops.edges()));
+        assertTrue(
+                twoHops.nodes().stream().allMatch(n -> n.entity().name().isPresent()),
+                "entity names are kept in the graph");
+    }
+
+
+    @Test
+    public void upstreamLineageFollowsFlowsBackwards() {
+        LogicalFlowLineage lineage = graph.findLineage(mkRef(EntityKind.APPLICATION, 4L), FlowDirection.INBOUND, 5, null);
+        assertEquals(newHashMap(C, 1, B, 2, A, 2), hopsByEntity(lineage));
+    }
+
+
+    @Test
+    public void dataTypeRestrictionIncludesDescendants() {
+        LogicalFlowLineage parentLineage = graph.findLineage(A, FlowDirection.OUTBOUND, 10, DT_PARENT);
+        assertEquals(newHashMap(B, 1, C, 2, D, 3), hopsByEntity(parentLineage));
+
+        LogicalFlowLineage childLineage = graph.findLineage(A, FlowDirection.OUTBOUND, 10, DT_CHILD);
+        assertTrue(childLineage.nodes().isEmpty(), "A -> B does not carry the child data type");
+    }
+
+
+    @Test
+    public void shortestPathFollowsTheFewestFlows() {
+        Optional<LogicalFlowPath> path = graph.findShortestPath(A, D, null);
+        assertTrue(path.isPresent());
+        assertEquals(asList(103L, 102L), flowIdList(path.get().edges()));
+
+        Optional<LogicalFlowPath> restrictedPath = graph.findShortestPath(A, D, DT_PARENT);
+        assertTrue(restrictedPath.isPresent());
+        assertEquals(asList(100L, 101L, 102L), flowIdList(restrictedPath.get().edges()));
+
+        assertFalse(graph.findShortestPath(D, A, null).isPresent(), "flows are directed");
+        assertFalse(graph.findShortestPath(A, mkRef(EntityKind.APPLICATION, 99L), null).isPresent());
+    }
+
+
+    @Test
+    public void updatesProduceANewGraph() {
+        LogicalFlowGraph updated = graph.update(
+                asList(new LogicalFlowGraph.FlowEdge(104L, D, A, Collections.emptyList())),
+                asList(103L),
+                null);
+
+        assertEquals(4, updated.getEdgeCount());
+        assertEquals(
+                asList(100L, 101L, 102L),
+                flowIdList(updated.findShortestPath(A, D, null).get().edges()));
+        assertEquals(
+                asList(104L),
+                flowIdList(updated.findShortestPath(D, A, null).get().edges()));
+        assertEquals(graph.getBuiltAt(), updated.getBuiltAt());
+
+        assertEquals(
+                asList(103L, 102L),
+                flowIdList(graph.findShortestPath(A, D, null).get().edges()),
+                "original graph is unchanged");
+    }
+
+
+    @Test
+    public void unknownEntitiesHaveNoLineage() {
+        LogicalFlowLineage lineage = graph.findLineage(mkRef(EntityKind.APPLICATION, 99L), FlowDirection.OUTBOUND, 3, null);
+        assertTrue(lineage.nodes().isEmpty());
+        assertTrue(lineage.edges().isEmpty());
+    }
+
+
+    // -- HELPERS ---
+
+    private static Map<EntityReference, Integer> hopsByEntity(LogicalFlowLineage lineage) {
+        return lineage
+                .nodes()
+                .stream()
+                .collect(toMap(
+                        LogicalFlowLineageNode::entity,
+                        LogicalFlowLineageNode::hops));
+    }
+
+
+    private static Set<Long> flowIds(List<LogicalFlowLineageEdge> edges) {
+        return edges
+                .stream()
+                .map(LogicalFlowLineageEdge::flowId)
+                .collect(toSet());
+    }
+
+
+    private static List<Long> flowIdList(List<LogicalFlowLineageEdge> edges) {
+        return edges
+                .stream()
+                .map(LogicalFlowLineageEdge::flowId)
+                .collect(toList());
+    }
+
+}
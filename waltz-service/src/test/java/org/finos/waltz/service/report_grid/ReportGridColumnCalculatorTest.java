@@ -0,0 +1,168 @@
+package org.finos.waltz.service.report_grid;
+
+import org.finos.waltz.model.EntityKind;
+import org.finos.waltz.model.application.LifecyclePhase;
+import org.finos.waltz.model.report_grid.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.finos.waltz.common.ListUtilities.asList;
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.model.EntityReference.mkRef;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReportGridColumnCalculatorTest {
+
+    private static final long FIXED_COL_ID = 1L;
+
+
+    @Test
+    public void derivedColumnsAreEvaluatedInDependencyOrderNotPosition() {
+        // 'C' depends on 'B' which depends on 'A', but they are positioned in reverse
+        ReportGridDefinition defn = mkDefinition(asList(
+                mkDerivedCol(10L, "C", 1, "cell('B') == null ? 'no-b' : mkResult('c-' + cell('B').textValue())"),
+                mkDerivedCol(11L, "B", 2, "cell('A') == null ? 'no-a' : mkResult('b-' + cell('A').textValue())"),
+                mkDerivedCol(12L, "A", 3, "cell('FIXED') == null ? null : mkResult('a')")));
+
+        Map<Long, String> results = textValuesByColumn(
+                ReportGridColumnCalculator.calculate(mkInstance(1), defn),
+                1L);
+
+        assertEquals("a", results.get(12L));
+        assertEquals("b-a", results.get(11L));
+        assertEquals("c-b-a", results.get(10L));
+    }
+
+
+    @Test
+    public void rowsAreEvaluatedIndependently() {
+        ReportGridDefinition defn = mkDefinition(asList(
+                mkDerivedCol(10L, "ID_TWICE", 1, "mkResult('' + (subjectId * 2))"),
+                mkDerivedCol(11L, "ID_TWICE_SHOUTED", 2, "mkResult(cell('ID_TWICE').textValue() + '!')")));
+
+        int subjectCount = 2000;
+        Set<ReportGridCell> cells = ReportGridColumnCalculator.calculate(mkInstance(subjectCount), defn);
+
+        assertEquals(subjectCount * 2, cells.size());
+        LongStream
+                .rangeClosed(1, subjectCount)
+                .forEach(subjectId -> {
+                    Map<Long, String> results = textValuesByColumn(cells, subjectId);
+                    assertEquals(String.valueOf(subjectId * 2), results.get(10L));
+                    assertEquals((subjectId * 2) + "!", results.get(11L));
+                });
+    }
+
+
+    @Test
+    public void cyclicColumnsAreStillEvaluated() {
+        ReportGridDefinition defn = mkDefinition(asList(
+                mkDerivedCol(10L, "X", 1, "cell('Y') == null ? mkResult('x') : mkResult('x-then-y')"),
+                mkDerivedCol(11L, "Y", 2, "cell('X') == null ? null : mkResult('y')")));
+
+        Map<Long, String> results = textValuesByColumn(
+                ReportGridColumnCalculator.calculate(mkInstance(1), defn),
+                1L);
+
+        assertEquals("x-then-y", results.get(10L));
+        assertEquals("y", results.get(11L));
+    }
+
+
+    @Test
+    public void compilationErrorsAreReportedAsCells() {
+        ReportGridDefinition defn = mkDefinition(asList(
+                mkDerivedCol(10L, "BROKEN", 1, "mkResult('unbalanced'")));
+
+        Set<ReportGridCell> cells = ReportGridColumnCalculator.calculate(mkInstance(1), defn);
+
+        ReportGridCell cell = cells.iterator().next();
+        assertEquals(1, cells.size());
+        assertNotNull(cell.errorValue());
+        assertEquals(asSet("COMPILE_ERROR"), cells
+                .stream()
+                .flatMap(c -> c.options().stream())
+                .map(CellOption::code)
+                .collect(Collectors.toSet()));
+    }
+
+
+    // -- HELPERS ---
+
+    private static Map<Long, String> textValuesByColumn(Set<ReportGridCell> cells, long subjectId) {
+        return cells
+                .stream()
+                .filter(c -> c.subjectId() == subjectId)
+                .filter(c -> c.textValue() != null)
+                .collect(Collectors.toMap(ReportGridCell::columnDefinitionId, ReportGridCell::textValue));
+    }
+
+
+    private static ReportGridInstance mkInstance(int subjectCount) {
+        Set<ReportSubject> subjects = LongStream
+                .rangeClosed(1, subjectCount)
+                .mapToObj(id -> ImmutableReportSubject
+                        .builder()
+                        .entityReference(mkRef(EntityKind.APPLICATION, id, "app" + id))
+                        .lifecyclePhase(LifecyclePhase.PRODUCTION)
+                        .build())
+                .collect(Collectors.toSet());
+
+        Set<ReportGridCell> cells = LongStream
+                .rangeClosed(1, subjectCount)
+                .mapToObj(id -> ImmutableReportGridCell
+                        .builder()
+                        .subjectId(id)
+                        .columnDefinitionId(FIXED_COL_ID)
+                        .textValue("fixed")
+                        .build())
+                .collect(Collectors.toSet());
+
+        return ImmutableReportGridInstance
+                .builder()
+                .subjects(subjects)
+                .cellData(cells)
+                .build();
+    }
+
+
+    private static ReportGridDefinition mkDefinition(List<ReportGridDerivedColumnDefinition> derivedCols) {
+        return ImmutableReportGridDefinition
+                .builder()
+                .name("test")
+                .description("test grid")
+                .lastUpdatedBy("test")
+                .subjectKind(EntityKind.APPLICATION)
+                .fixedColumnDefinitions(asList(ImmutableReportGridFixedColumnDefinition
+                        .builder()
+                        .gridColumnId(FIXED_COL_ID)
+                        .columnEntityKind(EntityKind.INVOLVEMENT_KIND)
+                        .columnEntityId(1L)
+                        .columnName("Fixed")
+                        .externalId("FIXED")
+                        .position(0)
+                        .build()))
+                .derivedColumnDefinitions(derivedCols)
+                .build();
+    }
+
+
+    private static ReportGridDerivedColumnDefinition mkDerivedCol(long gridColId,
+                                                                  String extId,
+                                                                  int position,
+                                                                  String script) {
+        return ImmutableReportGridDerivedColumnDefinition
+                .builder()
+                .gridColumnId(gridColId)
+                .displayName(extId)
+                .externalId(extId)
+                .position(position)
+                .derivationScript(script)
+                .build();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.web;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+import static org.finos.waltz.common.JacksonUtilities.getJsonMapper;
+import static org.finos.waltz.web.WebUtilities.acceptsGzip;
+import static org.finos.waltz.web.WebUtilities.addQueryAccountingHeaders;
+import static org.finos.waltz.web.WebUtilities.matchesETag;
+
+/**
+ * Writes route results as json without first rendering them to a string.
+ * <p>
+ * The json is written into a bounded buffer.  If it fits, GET responses are given a weak
+ * ETag (a digest of the json) and requests which already hold that version (via
+ * <code>If-None-Match</code>) are answered with a <code>304</code>.  Larger responses are
+ * streamed to the client as they are written, these are not given an ETag as
+ * the headers have been sent before the digest is known.
+ * <p>
+ * Buffered responses are returned to Spark as bytes so <code>after</code> filters still apply.
+ * Streamed responses are committed by the route, so headers added by <code>after</code>
+ * filters are not sent with them.  The query accounting headers are therefore added just
+ * before streaming starts (covering the queries made by the route itself).
+ */
+public class JsonResponseWriter {
+
+    private static final int BUFFER_LIMIT = 1024 * 1024;
+
+    private static final byte[] NO_CONTENT = new byte[0];
+
+    // negative means gzip is disabled
+    private static volatile int gzipMinimumLength = -1;
+
+
+    /**
+     * Responses of at least <code>minimumLength</code> bytes will be gzip encoded (if the client accepts it).
+     */
+    public static void enableGzip(int minimumLength) {
+        gzipMinimumLength = Math.max(0, minimumLength);
+    }
+
+
+    /**
+     * @return the body for Spark to send, empty if the response has already been sent
+     */
+    public static byte[] write(Request request, Response response, Object result) throws IOException {
+        return write(request, response, result, BUFFER_LIMIT);
+    }
+
+
+    static byte[] write(Request request,
+                        Response response,
+                        Object result,
+                        int bufferLimit) throws IOException {
+        boolean gzip = gzipMinimumLength >= 0
+                && acceptsGzip(request.headers(HttpHeader.ACCEPT_ENCODING.asString()));
+
+        try (SpillingOutputStream out = new SpillingOutputStream(
+                bufferLimit,
+                () -> startStreaming(response.raw(), gzip))) {
+            getJsonMapper().writeValue(out, result);
+
+            if (out.hasSpilled()) {
+                return NO_CONTENT;
+            }
+
+            if ("GET".equalsIgnoreCase(request.requestMethod())) {
+                String eTag = "W/\"" + out.getDigest() + "\"";
+                response.header(HttpHeader.ETAG.asString(), eTag);
+                if (matchesETag(request.headers(HttpHeader.IF_NONE_MATCH.asString()), eTag)) {
+                    response.status(HttpStatus.NOT_MODIFIED_304);
+                    return NO_CONTENT;
+                }
+            }
+
+            byte[] body = out.toByteArray();
+            if (gzip && body.length >= gzipMinimumLength) {
+                // spark compresses the body when it sees this header
+                response.header(HttpHeader.CONTENT_ENCODING.asString(), "gzip");
+            }
+            return body;
+        }
+    }
+
+
+    static OutputStream startStreaming(HttpServletResponse raw, boolean gzip) throws IOException {
+        addQueryAccountingHeaders(raw);
+        if (gzip) {
+            raw.setHeader(HttpHeader.CONTENT_ENCODING.asString(), "gzip");
+            return new GZIPOutputStream(raw.getOutputStream(), true);
+        } else {
+            return raw.getOutputStream();
+        }
+    }
+
+
+    @FunctionalInterface
+    interface StreamOpener {
+        OutputStream open() throws IOException;
+    }
+
+
+    /**
+     * Buffers (and digests) output until the limit is reached, after which
+     * everything is passed on to the stream given by the opener.
+     */
+    static class SpillingOutputStream extends OutputStream {
+
+        private final int limit;
+        private final StreamOpener opener;
+        private final MessageDigest digest;
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        private OutputStream target;
+
+
+        SpillingOutputStream(int limit, StreamOpener opener) {
+            this.limit = limit;
+            this.opener = opener;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // every jvm is required to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (target == null && buffer.size() + length > limit) {
+                spill();
+            }
+            if (target == null) {
+                digest.update(bytes, offset, length);
+                buffer.write(bytes, offset, length);
+            } else {
+                target.write(bytes, offset, length);
+            }
+        }
+
+
+        @Override
+        public void flush() throws IOException {
+            // only pass on flushes once streaming, otherwise jackson would commit the response early
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            if (target != null) {
+                target.close();
+            }
+        }
+
+
+        boolean hasSpilled() {
+            return target != null;
+        }
+
+
+        byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+
+
+        String getDigest() {
+            byte[] hash = Arrays.copyOf(digest.digest(), 16);
+            return Base64
+                    .getUrlEncoder()
+                    .withoutPadding()
+                    .encodeToString(hash);
+        }
+
+
+        private void spill() throws IOException {
+            target = opener.open();
+            buffer.writeTo(target);
+            buffer = null;
+        }
+    }
+
+}
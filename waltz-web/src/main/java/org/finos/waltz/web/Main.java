@@ -20,6 +20,7 @@ package org.finos.waltz.web;
 
 import org.eclipse.jetty.http.HttpStatus;
 import org.finos.waltz.common.LoggingUtilities;
+import org.finos.waltz.common.QueryAccounting;
 import org.finos.waltz.common.exception.DuplicateKeyException;
 import org.finos.waltz.common.exception.InsufficientPrivelegeException;
 import org.finos.waltz.common.exception.NotFoundException;
@@ -44,10 +45,12 @@ import java.util.Map;
 import java.util.TimeZone;
 
 import static java.lang.String.format;
+import static org.finos.waltz.web.WebUtilities.addQueryAccountingHeaders;
 import static org.finos.waltz.web.WebUtilities.reportException;
 import static org.finos.waltz.common.DateTimeUtilities.UTC;
 import static org.finos.waltz.web.WebUtilities.reportException;
 import static spark.Spark.after;
+import static spark.Spark.afterAfter;
 import static spark.Spark.before;
 import static spark.Spark.options;
 import static spark.Spark.port;
@@ -57,7 +60,6 @@ public class Main {
     private static final Logger LOG = LoggerFactory.getLogger(Main.class);
     private final static String GZIP_ENABLED_NAME = "server.gzip.enabled";
     private final static String GZIP_MIN_SIZE_NAME = "server.gzip.minimum-size";
-
     private static AnnotationConfigApplicationContext ctx;
 
     public static void main(String[] args) {
@@ -114,6 +116,8 @@ public class Main {
         LoggingUtilities.configureLogging();
 
         ctx = new AnnotationConfigApplicationContext(DIConfiguration.class);
+        // ensures buffered writes (e.g. access logs) are flushed when the jvm exits
+        ctx.registerShutdownHook();
 
         Map<String, Endpoint> endpoints = ctx.getBeansOfType(Endpoint.class);
         endpoints.forEach((name, endpoint) -> {
@@ -134,6 +138,7 @@ public class Main {
         registerExceptionHandlers();
         enableGZIP();
         enableCORS();
+        enableQueryAccounting();
     }
 
 
@@ -274,8 +279,12 @@ public class Main {
                     .map(Integer::parseInt)
                     .orElse(8192);
 
+            JsonResponseWriter.enableGzip(minimumLength);
+
             after(((request, response) -> {
-                if(response.body() != null && response.body().length() >= minimumLength) {
+                // static resources are served already compressed
+                boolean alreadyEncoded = response.raw().containsHeader("Content-Encoding");
+                if(! alreadyEncoded && response.body() != null && response.body().length() >= minimumLength) {
                     response.header("Content-Encoding", "gzip");
                 }
             }));
@@ -304,6 +313,25 @@ public class Main {
     }
 
 
+    /**
+     * Counts the statements issued while handling each request, the figures are
+     * returned as response headers and requests exceeding the configured budget
+     * are logged to the performance log.
+     */
+    private void enableQueryAccounting() {
+        QueryAccounting queryAccounting = ctx.getBean(QueryAccounting.class);
+
+        before((req, res) -> queryAccounting.begin(req.requestMethod() + " " + req.pathInfo()));
+
+        // streamed json responses add these themselves, before the response is committed
+        after((req, res) -> addQueryAccountingHeaders(res.raw()));
+
+        afterAfter((req, res) -> queryAccounting.end());
+
+        LOG.info("Enabled query accounting (budget: {})", queryAccounting.getBudget());
+    }
+
+
     private void handleCORSHeader(Request req, Response res, String requestHeader, String responseHeader) {
         String accessControlRequestHeaders = req.headers(requestHeader);
         if (accessControlRequestHeaders != null) {
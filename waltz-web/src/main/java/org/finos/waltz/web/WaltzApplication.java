@@ -35,10 +35,11 @@ public class WaltzApplication implements SparkApplication {
         AnnotationConfigApplicationContext ctx = Main.getSpringContext();
         if (ctx != null) {
             HikariDataSource dataSource = ctx.getBean(HikariDataSource.class);
+            // close the context first, beans may write buffered data (e.g. access logs) on shutdown
+            ctx.close();
             if (dataSource != null) {
                 dataSource.close();
             }
-            ctx.close();
         }
     }
 
@@ -19,6 +19,7 @@
 package org.finos.waltz.web;
 
 import org.finos.waltz.common.EnumUtilities;
+import org.finos.waltz.common.QueryAccounting;
 import org.finos.waltz.common.SetUtilities;
 import org.finos.waltz.common.StringUtilities;
 import org.finos.waltz.model.*;
@@ -31,6 +32,7 @@ import spark.Request;
 import spark.Response;
 import spark.ResponseTransformer;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URLConnection;
 import java.text.ParseException;
@@ -55,6 +57,8 @@ public class WebUtilities {
     private static final Logger LOG = LoggerFactory.getLogger(WebUtilities.class);
 
     public static final String TYPE_JSON = "application/json";
+    public static final String QUERY_COUNT_HEADER = "X-Waltz-Query-Count";
+    public static final String QUERY_TIME_HEADER = "X-Waltz-Query-Time-Ms";
     public static final ResponseTransformer transformer = getJsonMapper()::writeValueAsString;
 
 
@@ -401,4 +405,71 @@ public class WebUtilities {
                 .collect(toList());
     }
 
+
+    /**
+     * @param acceptEncoding value of the <code>Accept-Encoding</code> request header (may be null)
+     * @return true if the client will accept a gzip encoded response
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (StringUtilities.isEmpty(acceptEncoding)) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = StringUtilities.lower(parts[0].trim());
+            if (name.equals("gzip") || name.equals("*")) {
+                return Arrays
+                        .stream(parts)
+                        .skip(1)
+                        .map(p -> p.replace(" ", ""))
+                        .noneMatch(p -> p.matches("q=0(\\.0*)?"));
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Implements the (weak) comparison required for <code>If-None-Match</code>.
+     *
+     * @param ifNoneMatch value of the <code>If-None-Match</code> request header (may be null)
+     * @param eTag        current etag of the resource
+     * @return true if the client already has the current representation
+     */
+    public static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (StringUtilities.isEmpty(ifNoneMatch)) {
+            return false;
+        }
+        String opaqueTag = stripWeakPrefix(eTag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeakPrefix(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Adds the number of database queries made so far by the current request, and the time spent
+     * in them, to the response.  Does nothing if query accounting is not active on this thread.
+     *
+     * @param response  response to add the headers to, must not yet be committed
+     */
+    public static void addQueryAccountingHeaders(HttpServletResponse response) {
+        QueryAccounting.Tally tally = QueryAccounting.current();
+        if (tally != null) {
+            response.setHeader(QUERY_COUNT_HEADER, Integer.toString(tally.getQueryCount()));
+            response.setHeader(QUERY_TIME_HEADER, Long.toString(tally.getDbTimeMillis()));
+        }
+    }
+
+
+    private static String stripWeakPrefix(String eTag) {
+        return eTag.startsWith("W/")
+                ? eTag.substring(2)
+                : eTag;
+    }
+
 }
@@ -19,8 +19,8 @@
 package org.finos.waltz.web.endpoints;
 
 import org.finos.waltz.web.DatumRoute;
+import org.finos.waltz.web.JsonResponseWriter;
 import org.finos.waltz.web.ListRoute;
-import org.finos.waltz.web.WebUtilities;
 import spark.*;
 
 import static org.finos.waltz.web.WebUtilities.TYPE_JSON;
@@ -28,9 +28,6 @@ import static org.finos.waltz.web.WebUtilities.TYPE_JSON;
 
 public class EndpointUtilities {
 
-    private static final ResponseTransformer transformer = WebUtilities.transformer;
-
-
     /**
      * Helper method to register a route which provides a list of items.
      * This helps comprehension as the return types of routes becomes explicit.
@@ -39,7 +36,7 @@ public class EndpointUtilities {
      * @param <T>
      */
     public static <T> void getForList(String path, ListRoute<T> handler) {
-        Spark.get(path, wrapListHandler(handler), transformer);
+        Spark.get(path, wrapListHandler(handler));
     }
 
 
@@ -52,31 +49,31 @@ public class EndpointUtilities {
      * @param <T>
      */
     public static <T> void getForDatum(String path, DatumRoute<T> handler) {
-        Spark.get(path, wrapDatumHandler(handler), transformer);
+        Spark.get(path, wrapDatumHandler(handler));
     }
 
     public static <T> void postForDatum(String path, DatumRoute<T> handler) {
-        Spark.post(path, wrapDatumHandler(handler), transformer);
+        Spark.post(path, wrapDatumHandler(handler));
     }
 
     public static <T> void postForList(String path, ListRoute<T> handler) {
-        Spark.post(path, wrapListHandler(handler), transformer);
+        Spark.post(path, wrapListHandler(handler));
     }
 
     public static <T> void deleteForList(String path, ListRoute<T> handler) {
-        Spark.delete(path, wrapListHandler(handler), transformer);
+        Spark.delete(path, wrapListHandler(handler));
     }
 
     public static <T> void deleteForDatum(String path, DatumRoute<T> handler) {
-        Spark.delete(path, wrapDatumHandler(handler), transformer);
+        Spark.delete(path, wrapDatumHandler(handler));
     }
 
     public static <T> void putForDatum(String path, DatumRoute<T> handler) {
-        Spark.put(path, wrapDatumHandler(handler), transformer);
+        Spark.put(path, wrapDatumHandler(handler));
     }
 
     public static <T> void putForList(String path, ListRoute<T> handler) {
-        Spark.put(path, wrapListHandler(handler), transformer);
+        Spark.put(path, wrapListHandler(handler));
     }
 
     public static <T extends Exception> void addExceptionHandler(Class<T> exceptionClass, ExceptionHandler<T> handler) {
@@ -97,14 +94,14 @@ public class EndpointUtilities {
     private static <T> Route wrapListHandler(ListRoute<T> handler) {
         return (request, response) -> {
             response.type(TYPE_JSON);
-            return handler.apply(request, response);
+            return JsonResponseWriter.write(request, response, handler.apply(request, response));
         };
     }
 
     private static <T> Route wrapDatumHandler(DatumRoute<T> handler) {
         return (request, response) -> {
             response.type(TYPE_JSON);
-            return handler.apply(request, response);
+            return JsonResponseWriter.write(request, response, handler.apply(request, response));
         };
     }
 
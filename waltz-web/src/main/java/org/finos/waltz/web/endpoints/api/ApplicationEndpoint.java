@@ -19,6 +19,7 @@
 package org.finos.waltz.web.endpoints.api;
 
 import org.finos.waltz.service.application.ApplicationService;
+import org.finos.waltz.service.changelog.ChangeLogBatch;
 import org.finos.waltz.service.changelog.ChangeLogService;
 import org.finos.waltz.service.tag.TagService;
 import org.finos.waltz.web.DatumRoute;
@@ -97,19 +98,21 @@ public class ApplicationEndpoint implements Endpoint {
                     .id(appId)
                     .build();
 
-            appChange.changes()
-                    .forEach(c -> {
-                        changeLogService.write(
-                                ImmutableChangeLog.builder()
-                                        .message(c.toDescription())
-                                        .severity(Severity.INFORMATION)
-                                        .userId(username)
-                                        .parentReference(ref)
-                                        .operation(Operation.UPDATE)
-                                        .build());
-                    });
-
-            appService.update(appChange.app());
+            try (ChangeLogBatch ignored = changeLogService.batch()) {
+                appChange.changes()
+                        .forEach(c -> {
+                            changeLogService.write(
+                                    ImmutableChangeLog.builder()
+                                            .message(c.toDescription())
+                                            .severity(Severity.INFORMATION)
+                                            .userId(username)
+                                            .parentReference(ref)
+                                            .operation(Operation.UPDATE)
+                                            .build());
+                        });
+
+                appService.update(appChange.app());
+            }
             return true;
         };
 
@@ -0,0 +1,111 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.web.endpoints.api;
+
+import org.finos.waltz.common.StringUtilities;
+import org.finos.waltz.model.FlowDirection;
+import org.finos.waltz.model.logical_flow.LogicalFlowLineage;
+import org.finos.waltz.model.logical_flow.LogicalFlowPath;
+import org.finos.waltz.service.logical_flow.LogicalFlowGraphService;
+import org.finos.waltz.web.DatumRoute;
+import org.finos.waltz.web.endpoints.Endpoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import spark.Request;
+
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.Checks.checkTrue;
+import static org.finos.waltz.web.WebUtilities.getEntityReference;
+import static org.finos.waltz.web.WebUtilities.getLong;
+import static org.finos.waltz.web.WebUtilities.mkPath;
+import static org.finos.waltz.web.WebUtilities.readEnum;
+import static org.finos.waltz.web.endpoints.EndpointUtilities.getForDatum;
+
+
+@Service
+public class LogicalFlowGraphEndpoint implements Endpoint {
+
+    private static final String BASE_URL = mkPath("api", "logical-flow-graph");
+
+    private static final int DEFAULT_HOPS = 3;
+    private static final int MAX_HOPS = 50;
+
+    private final LogicalFlowGraphService logicalFlowGraphService;
+
+
+    @Autowired
+    public LogicalFlowGraphEndpoint(LogicalFlowGraphService logicalFlowGraphService) {
+        checkNotNull(logicalFlowGraphService, "logicalFlowGraphService cannot be null");
+        this.logicalFlowGraphService = logicalFlowGraphService;
+    }
+
+
+    @Override
+    public void register() {
+        // optional query params: hops (default 3), dataTypeId
+        String getLineagePath = mkPath(BASE_URL, "lineage", ":kind", ":id", ":direction");
+        String getReachablePath = mkPath(BASE_URL, "reachable", ":kind", ":id", ":direction", "data-type", ":dataTypeId");
+        // optional query param: dataTypeId
+        String findShortestPathPath = mkPath(BASE_URL, "path", ":sourceKind", ":sourceId", ":targetKind", ":targetId");
+
+        DatumRoute<LogicalFlowLineage> getLineageRoute = (request, response) -> {
+            int hops = StringUtilities.parseInteger(request.queryParams("hops"), DEFAULT_HOPS);
+            checkTrue(hops >= 0 && hops <= MAX_HOPS, "hops must be between 0 and " + MAX_HOPS);
+
+            return logicalFlowGraphService.getLineage(
+                    getEntityReference(request),
+                    readDirection(request),
+                    hops,
+                    readDataTypeId(request));
+        };
+
+        DatumRoute<LogicalFlowLineage> getReachableRoute = (request, response)
+                -> logicalFlowGraphService.getReachable(
+                        getEntityReference(request),
+                        readDirection(request),
+                        getLong(request, "dataTypeId"));
+
+        DatumRoute<LogicalFlowPath> findShortestPathRoute = (request, response)
+                -> logicalFlowGraphService
+                    .findShortestPath(
+                            getEntityReference(request, "sourceKind", "sourceId"),
+                            getEntityReference(request, "targetKind", "targetId"),
+                            readDataTypeId(request))
+                    .orElse(null);
+
+        getForDatum(getLineagePath, getLineageRoute);
+        getForDatum(getReachablePath, getReachableRoute);
+        getForDatum(findShortestPathPath, findShortestPathRoute);
+    }
+
+
+    private static FlowDirection readDirection(Request request) {
+        FlowDirection direction = readEnum(request, "direction", FlowDirection.class, s -> null);
+        checkTrue(
+                direction == FlowDirection.INBOUND || direction == FlowDirection.OUTBOUND,
+                "direction must be INBOUND (upstream) or OUTBOUND (downstream)");
+        return direction;
+    }
+
+
+    private static Long readDataTypeId(Request request) {
+        return StringUtilities.parseLong(request.queryParams("dataTypeId"), null);
+    }
+
+}
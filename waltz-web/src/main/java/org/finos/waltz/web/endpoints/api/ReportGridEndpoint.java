@@ -21,7 +21,9 @@ package org.finos.waltz.web.endpoints.api;
 import org.finos.waltz.common.exception.InsufficientPrivelegeException;
 import org.finos.waltz.common.exception.NotFoundException;
 import org.finos.waltz.model.report_grid.*;
+import org.finos.waltz.model.user.SystemRole;
 import org.finos.waltz.service.report_grid.ReportGridService;
+import org.finos.waltz.service.user.UserRoleService;
 import org.finos.waltz.web.endpoints.Endpoint;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -40,11 +42,14 @@ public class ReportGridEndpoint implements Endpoint {
     private static final String BASE_URL = mkPath("api", "report-grid");
 
     private final ReportGridService reportGridService;
+    private final UserRoleService userRoleService;
 
 
     @Autowired
-    public ReportGridEndpoint(ReportGridService reportGridService) {
+    public ReportGridEndpoint(ReportGridService reportGridService,
+                              UserRoleService userRoleService) {
         this.reportGridService = reportGridService;
+        this.userRoleService = userRoleService;
     }
 
 
@@ -62,6 +67,7 @@ public class ReportGridEndpoint implements Endpoint {
         String getDefinitionByIdPath = mkPath(BASE_URL, "definition", "id", ":id");
         String updateColumnDefsPath = mkPath(BASE_URL, "id", ":id", "column-definitions", "update");
         String findAdditionalColumnOptionsForKindPath = mkPath(BASE_URL, "additional-column-options", "kind", ":kind");
+        String clearInstanceCachePath = mkPath(BASE_URL, "instance-cache");
 
         getForDatum(findAllDefinitionsPath, (req, resp) -> reportGridService.findAllDefinitions());
         getForList(findDefinitionsForUserPath, (req, resp) -> reportGridService.findGridDefinitionsForUser(getUsername(req)));
@@ -75,6 +81,15 @@ public class ReportGridEndpoint implements Endpoint {
         postForDatum(updatePath, this::updateRoute);
         postForDatum(clonePath, this::cloneRoute);
         deleteForDatum(removalPath, this::removalRoute);
+        deleteForDatum(clearInstanceCachePath, this::clearInstanceCacheRoute);
+    }
+
+
+    private boolean clearInstanceCacheRoute(Request request,
+                                            Response response) {
+        requireRole(userRoleService, request, SystemRole.ADMIN);
+        reportGridService.evictAllCachedInstances();
+        return true;
     }
 
 
@@ -0,0 +1,262 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.web.endpoints.api;
+
+import org.finos.waltz.web.WebUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static java.lang.String.format;
+import static org.finos.waltz.common.Checks.checkNotNull;
+import static org.finos.waltz.common.IOUtilities.readFully;
+import static org.finos.waltz.common.SetUtilities.asSet;
+import static org.finos.waltz.common.StringUtilities.isEmpty;
+import static org.finos.waltz.common.StringUtilities.lower;
+
+/**
+ * Holds the static (waltz-ng) resources in memory.  Each resource is read from the
+ * classpath once, on first request, along with a precomputed gzip variant and a strong
+ * ETag per variant.  The <code>index.html</code> page, which has its <code>&lt;base&gt;</code>
+ * tag rewritten to match the context path, is cached once per context path.
+ * <p>
+ * The cached bytes are shared between requests and must not be modified.
+ */
+public class StaticAssetCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StaticAssetCache.class);
+
+    private static final String INDEX_PAGE = "index.html";
+
+    // compression is not worth the cpu (or the extra copy in memory) for tiny files
+    private static final int MIN_COMPRESSIBLE_SIZE = 256;
+
+    // formats which are already compressed
+    private static final Set<String> INCOMPRESSIBLE_EXTENSIONS = asSet(
+            "png", "jpg", "jpeg", "gif", "ico", "woff", "woff2", "zip", "gz", "br", "pdf");
+
+    private final ClassLoader classLoader;
+
+    private final ConcurrentMap<String, Optional<Asset>> assets = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+
+    public StaticAssetCache(ClassLoader classLoader) {
+        checkNotNull(classLoader, "classLoader cannot be null");
+        this.classLoader = classLoader;
+    }
+
+
+    /**
+     * @param resourcePath classpath location of the resource
+     * @param contextPath  context path the application is deployed under (used to rewrite <code>index.html</code>)
+     * @return the cached asset or empty if there is no such resource
+     */
+    public Optional<Asset> get(String resourcePath, String contextPath) {
+        String key = resourcePath.endsWith(INDEX_PAGE) && ! isEmpty(contextPath)
+                ? resourcePath + "@" + contextPath
+                : resourcePath;
+
+        Optional<Asset> existing = assets.get(key);
+        if (existing != null) {
+            hits.incrementAndGet();
+            return existing;
+        }
+        return assets.computeIfAbsent(key, k -> load(resourcePath, contextPath));
+    }
+
+
+    public int size() {
+        return assets.size();
+    }
+
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+
+    public void clear() {
+        assets.clear();
+    }
+
+
+    // --- helpers ---
+
+    private Optional<Asset> load(String resourcePath, String contextPath) {
+        try (InputStream stream = classLoader.getResourceAsStream(resourcePath)) {
+            if (stream == null) {
+                return Optional.empty();
+            }
+
+            byte[] content = readFully(stream);
+            if (resourcePath.endsWith(INDEX_PAGE) && ! isEmpty(contextPath)) {
+                content = modifyIndexBaseTag(content, contextPath);
+            }
+
+            loads.incrementAndGet();
+            LOG.debug("Loaded static resource: {} ({} bytes)", resourcePath, content.length);
+            return Optional.of(new Asset(resourcePath, content, compressIfWorthwhile(resourcePath, content)));
+        } catch (IOException e) {
+            LOG.warn("Could not load static resource: " + resourcePath, e);
+            return Optional.empty();
+        }
+    }
+
+
+    /**
+     * index.html need to have a <base href="/[site_context]/" /> tag in the head section to ensure
+     * html5 mode works correctly in AngularJS.  This method will ensure the existing <base href="/" /> tag
+     * is replace with one that includes the correct site context as deployed.
+     */
+    static byte[] modifyIndexBaseTag(byte[] content, String contextPath) {
+        String[] lines = new String(content, StandardCharsets.UTF_8).split("\\r?\\n", -1);
+
+        for (int i = 0; i < lines.length; i++) {
+            String line = lower(lines[i]);
+
+            if (line.contains("<base href=")) {
+                LOG.debug("Found <base> tag: {}, adding context path: {}", line, contextPath);
+                lines[i] = line.replaceFirst(
+                        "<base href=(['\"])/(['\"])\\s*/>",
+                        format(
+                            "\t<base href=\"%s/\" />",
+                            contextPath));
+                break;
+            }
+
+            if (line.contains("</head>")) {
+                // don't need to continue if have reached here and no base tag found
+                break;
+            }
+        }
+
+        return String
+                .join(System.lineSeparator(), lines)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private static byte[] compressIfWorthwhile(String resourcePath, byte[] content) throws IOException {
+        String extension = lower(resourcePath.substring(resourcePath.lastIndexOf('.') + 1));
+        if (content.length < MIN_COMPRESSIBLE_SIZE || INCOMPRESSIBLE_EXTENSIONS.contains(extension)) {
+            return null;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 3);
+        // compressed once, so worth taking the time to do it well
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gzip.write(content);
+        }
+
+        return compressed.size() < content.length
+                ? compressed.toByteArray()
+                : null;
+    }
+
+
+    private static String mkETag(byte[] content) {
+        try {
+            byte[] digest = MessageDigest
+                    .getInstance("SHA-256")
+                    .digest(content);
+            return Base64
+                    .getUrlEncoder()
+                    .withoutPadding()
+                    .encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // every jvm is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * A static resource, held as its original bytes and (if smaller) a gzip variant.
+     */
+    public static class Asset {
+
+        private final String mimeType;
+        private final ByteBuffer identity;
+        private final ByteBuffer gzip;
+        private final String identityETag;
+        private final String gzipETag;
+
+
+        private Asset(String resourcePath, byte[] identity, byte[] gzip) {
+            String hash = mkETag(identity);
+            this.mimeType = WebUtilities.getMimeType(resourcePath);
+            this.identity = ByteBuffer.wrap(identity).asReadOnlyBuffer();
+            this.gzip = gzip == null ? null : ByteBuffer.wrap(gzip).asReadOnlyBuffer();
+            // variants are different representations so need different (strong) etags
+            this.identityETag = "\"" + hash + "\"";
+            this.gzipETag = "\"" + hash + "-gz\"";
+        }
+
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+
+        public boolean hasGzip() {
+            return gzip != null;
+        }
+
+
+        /**
+         * @param gzip true for the gzip variant (if there is one)
+         * @return a view over the shared, read-only, content
+         */
+        public ByteBuffer getContent(boolean gzip) {
+            return gzip && hasGzip()
+                    ? this.gzip.duplicate()
+                    : this.identity.duplicate();
+        }
+
+
+        public String getETag(boolean gzip) {
+            return gzip && hasGzip()
+                    ? gzipETag
+                    : identityETag;
+        }
+    }
+
+}
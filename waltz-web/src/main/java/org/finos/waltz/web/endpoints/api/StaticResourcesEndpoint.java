@@ -18,35 +18,42 @@
 
 package org.finos.waltz.web.endpoints.api;
 
-import org.finos.waltz.web.endpoints.Endpoint;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.HttpOutput;
+import org.finos.waltz.web.endpoints.Endpoint;
+import org.finos.waltz.web.endpoints.api.StaticAssetCache.Asset;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 import spark.Spark;
 
-import java.io.*;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URL;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
-import static org.finos.waltz.web.WebUtilities.getMimeType;
-import static java.lang.String.format;
-import static org.finos.waltz.common.IOUtilities.copyStream;
-import static org.finos.waltz.common.IOUtilities.readLines;
-import static org.finos.waltz.common.StringUtilities.lower;
-import static org.finos.waltz.common.StringUtilities.notEmpty;
+import static org.finos.waltz.web.WebUtilities.acceptsGzip;
+import static org.finos.waltz.web.WebUtilities.matchesETag;
 
 public class StaticResourcesEndpoint implements Endpoint {
 
     private static final Logger LOG = LoggerFactory.getLogger(StaticResourcesEndpoint.class);
     private static final String CACHE_MAX_AGE_VALUE = "max-age=" + TimeUnit.DAYS.toSeconds(30);
+    private static final String CACHE_REVALIDATE_VALUE = "no-cache";
 
 
     private final ClassLoader classLoader = StaticResourcesEndpoint.class
             .getClassLoader();
 
+    private final StaticAssetCache assetCache = new StaticAssetCache(classLoader);
+
 
     @Override
     public void register() {
@@ -60,29 +67,13 @@ public class StaticResourcesEndpoint implements Endpoint {
                 return null;
             }
 
-            try (
-                InputStream resourceAsStream = classLoader.getResourceAsStream(resolvedPath)
-            ) {
-                if (resourceAsStream == null) {
+            try {
+                Optional<Asset> asset = assetCache.get(resolvedPath, request.contextPath());
+                if (! asset.isPresent()) {
                     return null;
                 } else {
-                    String message = format(
-                            "Serving %s in response to request for %s",
-                            resolvedPath,
-                            request.pathInfo());
-                    LOG.info(message);
-
-                    response.type(getMimeType(resolvedPath));
-
-                    addCacheHeadersIfNeeded(response, resolvedPath);
-                    InputStream modifiedStream = modifyIndexBaseTagIfNeeded(request, resolvedPath, resourceAsStream);
-
-                    OutputStream out = response
-                            .raw()
-                            .getOutputStream();
-                    copyStream(modifiedStream, out);
-                    out.flush();
-
+                    LOG.debug("Serving {} in response to request for {}", resolvedPath, request.pathInfo());
+                    serve(request, response, resolvedPath, asset.get());
                     return new Object(); // indicate we have handled the request
                 }
             } catch (Exception e) {
@@ -93,75 +84,63 @@ public class StaticResourcesEndpoint implements Endpoint {
     }
 
 
+    private void serve(Request request,
+                       Response response,
+                       String resolvedPath,
+                       Asset asset) throws IOException {
+        boolean gzip = asset.hasGzip() && acceptsGzip(request.headers(HttpHeader.ACCEPT_ENCODING.asString()));
+        String eTag = asset.getETag(gzip);
+
+        HttpServletResponse raw = response.raw();
+        raw.setHeader(HttpHeader.ETAG.asString(), eTag);
+        addCacheHeaders(response, resolvedPath);
+        if (asset.hasGzip()) {
+            raw.setHeader(HttpHeader.VARY.asString(), HttpHeader.ACCEPT_ENCODING.asString());
+        }
+
+        if (matchesETag(request.headers(HttpHeader.IF_NONE_MATCH.asString()), eTag)) {
+            raw.setStatus(HttpStatus.NOT_MODIFIED_304);
+            raw.flushBuffer();
+            return;
+        }
+
+        ByteBuffer content = asset.getContent(gzip);
+        raw.setContentType(asset.getMimeType());
+        raw.setContentLength(content.remaining());
+        if (gzip) {
+            raw.setHeader(HttpHeader.CONTENT_ENCODING.asString(), "gzip");
+        }
+
+        ServletOutputStream out = raw.getOutputStream();
+        if (out instanceof HttpOutput) {
+            // hands the shared buffer straight to jetty, avoiding a copy into the response buffer
+            ((HttpOutput) out).sendContent(content);
+        } else {
+            WritableByteChannel channel = Channels.newChannel(out);
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            out.flush();
+        }
+    }
+
+
     /**
      * We want to add a cache-control: max-age value to all resources except html.
      * This is because the html resources have references to 'cache-busted' js files
      * and other resources.  If the html was also cached then it would be difficult
-     * to detect client code updates.
+     * to detect client code updates.  Html is instead revalidated (cheaply, via its ETag)
+     * on each use.
      *
      * @param response - the http response we are servicing
      * @param resolvedPath - the resolved path to the resource we are serving
      */
-    private void addCacheHeadersIfNeeded(Response response, String resolvedPath) {
-        if (! resolvedPath.endsWith(".html")) {
-            response.header(HttpHeader.CACHE_CONTROL.toString(), CACHE_MAX_AGE_VALUE);
-        }
-    }
-
-
-    /**
-     * index.html need to have a <base href="/[site_context]/" /> tag in the head section to ensure
-     * html5 mode works correctly in AngularJS.  This method will ensure the existing <base href="/" /> tag
-     * is replace with one that includes the correct site context as deployed.
-     * @param request
-     * @param resolvedPath
-     * @param resourceStream
-     * @return the modified input stream with the amended <base> tag or the original unmodified resourceStream
-     * @throws IOException
-     */
-    private InputStream modifyIndexBaseTagIfNeeded(Request request,
-                                                   String resolvedPath,
-                                                   InputStream resourceStream) throws IOException {
-        if(resolvedPath.endsWith("index.html") && notEmpty(request.contextPath())) {
-            List<String> lines = readLines(resourceStream);
-
-            for(int i = 0; i < lines.size(); i++) {
-                String line = lower(lines.get(i));
-
-                if (line.contains("<base href=")) {
-                    LOG.info("Found <base> tag: " + line + ", adding context path: " + request.contextPath());
-                    line = line.replaceFirst(
-                            "<base href=(['\"])/(['\"])\\s*/>",
-                            format(
-                                "\t<base href=\"%s/\" />",
-                                request.contextPath()));
-                    LOG.info("Updated <base> tag: " + line);
-                    lines.set(i, line);
-
-                    // done, exit loop
-                    break;
-                }
-
-                if (line.contains("</head>") ) {
-                    // don't need to continue if have reached here and no base tag found
-                    break;
-                }
-            }
-
-            // copy amended file into a stream
-            try(ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                 OutputStreamWriter writer = new OutputStreamWriter(outputStream)) {
-
-                for(String line : lines) {
-                    writer.write(line);
-                    writer.write(System.lineSeparator());
-                }
-
-                writer.flush();
-                return new ByteArrayInputStream(outputStream.toByteArray());
-            }
-        }
-        return resourceStream;
+    private void addCacheHeaders(Response response, String resolvedPath) {
+        response.header(
+                HttpHeader.CACHE_CONTROL.toString(),
+                resolvedPath.endsWith(".html")
+                        ? CACHE_REVALIDATE_VALUE
+                        : CACHE_MAX_AGE_VALUE);
     }
 
 
@@ -25,8 +25,11 @@ import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.eclipse.jetty.http.MimeTypes;
+import org.jooq.CSVFormat;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
 import org.jooq.JSONFormat;
+import org.jooq.Record;
 import org.jooq.Result;
 import org.jooq.Select;
 import org.jooq.lambda.Unchecked;
@@ -35,7 +38,12 @@ import spark.Request;
 import spark.Response;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -43,8 +51,23 @@ import static org.finos.waltz.common.Checks.checkNotNull;
 import static org.finos.waltz.common.FunctionUtilities.time;
 
 
+/**
+ * Writes the results of a query as a CSV, XLSX or JSON extract.
+ * <p>
+ * Results are read through a lazy cursor (using {@link #EXTRACT_FETCH_SIZE}) and written
+ * straight to the response output stream as they arrive, so the full result set (or the
+ * rendered document) is never held in memory.  Note: some drivers (e.g. Postgres) ignore
+ * the fetch size unless the connection is not in auto-commit mode.
+ */
 public abstract class DirectQueryBasedDataExtractor implements DataExtractor {
 
+    /**
+     * Number of rows requested from the database per round trip, and
+     * the number of rows formatted at a time for CSV extracts.
+     */
+    public static final int EXTRACT_FETCH_SIZE = 1000;
+
+    private static final int EXCEL_ROW_WINDOW = 2000;
 
     protected DSLContext dsl;
 
@@ -84,20 +107,34 @@ public abstract class DirectQueryBasedDataExtractor implements DataExtractor {
         }
     }
 
-    private String writeAsJson(Select<?> qry,
-                               Response response) {
+
+    private Object writeAsJson(Select<?> qry,
+                               Response response) throws IOException {
         response.type(MimeTypes.Type.APPLICATION_JSON_UTF_8.name());
-        return query(dsl, qry)
-                .formatJSON(new JSONFormat()
-                        .header(false)
-                        .recordFormat(JSONFormat.RecordFormat.OBJECT));
+        HttpServletResponse httpResponse = response.raw();
+
+        try (Cursor<? extends Record> cursor = fetchLazy(dsl, qry);
+             Writer writer = mkWriter(httpResponse.getOutputStream())) {
+            time("writing json", Unchecked.runnable(() -> writeJson(cursor, writer)));
+        }
+
+        return httpResponse;
     }
 
 
-    private Result<?> query(DSLContext dslContext, Select<?> qry){
-        return dslContext == null
-                ? qry.fetch()
-                : time("fetch", () -> dslContext.fetch(dslContext.renderInlined(qry)));
+    private Object writeAsCSV(String suggestedFilenameStem,
+                              Select<?> qry,
+                              Response response) throws IOException {
+        response.type(MimeTypes.Type.TEXT_PLAIN.name());
+        response.header("Content-disposition", "attachment; filename=" + suggestedFilenameStem + ".csv");
+        HttpServletResponse httpResponse = response.raw();
+
+        try (Cursor<? extends Record> cursor = fetchLazy(null, qry);
+             Writer writer = mkWriter(httpResponse.getOutputStream())) {
+            time("writing csv", () -> writeCsv(cursor, writer));
+        }
+
+        return httpResponse;
     }
 
 
@@ -106,7 +143,7 @@ public abstract class DirectQueryBasedDataExtractor implements DataExtractor {
                                                 String suggestedFilenameStem,
                                                 Response response,
                                                 Tuple2<String, Select<?>>... sheetDefinitions) {
-        SXSSFWorkbook workbook = new SXSSFWorkbook(2000);
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXCEL_ROW_WINDOW);
 
         for (Tuple2<String, Select<?>> sheetDef : sheetDefinitions) {
             time("preparing excel sheet: " + sheetDef.v1, () -> {
@@ -133,7 +170,7 @@ public abstract class DirectQueryBasedDataExtractor implements DataExtractor {
     private static Object writeAsExcel(String suggestedFilenameStem,
                                        Select<?> qry,
                                        Response response) throws IOException {
-        SXSSFWorkbook workbook = new SXSSFWorkbook(2000);
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXCEL_ROW_WINDOW);
         SXSSFSheet sheet = workbook.createSheet(ExtractorUtilities.sanitizeSheetName(suggestedFilenameStem));
 
         writeExcelHeader(qry, sheet);
@@ -150,47 +187,39 @@ public abstract class DirectQueryBasedDataExtractor implements DataExtractor {
     }
 
 
+    /**
+     * Writes the workbook directly to the response.  The rows have already been flushed
+     * to temporary files by SXSSF, these are streamed into the response and then removed.
+     */
     private static HttpServletResponse writeExcelToResponse(String suggestedFilenameStem,
                                                             Response response,
                                                             SXSSFWorkbook workbook) throws IOException {
-        byte[] bytes = ExtractorUtilities.convertExcelToByteArray(workbook);
-
         HttpServletResponse httpResponse = response.raw();
 
         httpResponse.setHeader("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
         httpResponse.setHeader("Content-Disposition", "attachment; filename=" + suggestedFilenameStem + ".xlsx");
         httpResponse.setHeader("Content-Transfer-Encoding", "7bit");
 
-        httpResponse.setContentLength(bytes.length);
-        httpResponse.getOutputStream().write(bytes);
-        httpResponse.getOutputStream().flush();
-        httpResponse.getOutputStream().close();
+        try (OutputStream out = httpResponse.getOutputStream()) {
+            workbook.write(out);
+            out.flush();
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
 
         return httpResponse;
     }
 
 
-    private Object writeAsCSV(String suggestedFilenameStem,
-                              Select<?> qry,
-                              Response response) {
-        String csv = qry.fetch().formatCSV();
-        response.type(MimeTypes.Type.TEXT_PLAIN.name());
-        response.header("Content-disposition", "attachment; filename=" + suggestedFilenameStem + ".csv");
-        return csv;
-    }
-
-
     private static void writeExcelBody(Select<?> qry,
                                        SXSSFSheet sheet,
                                        DSLContext dsl) {
         AtomicInteger rowCounter = new AtomicInteger(1);
-        Result<?> records = dsl == null
-                ? qry.fetch()
-                : time("fetch", () -> dsl.fetch(dsl.renderInlined(qry)));
+        int colCount = qry.fields().length;
 
-        time("record chomper", () -> {
-            int colCount = qry.fields().length;
-            records.forEach(r -> {
+        try (Cursor<? extends Record> cursor = fetchLazy(dsl, qry)) {
+            time("record chomper", () -> cursor.forEach(r -> {
                 int rowNum = rowCounter.getAndIncrement();
                 Row row = sheet.createRow(rowNum);
                 for (int col = 0; col < colCount; col++) {
@@ -200,8 +229,8 @@ public abstract class DirectQueryBasedDataExtractor implements DataExtractor {
                         cell.setCellValue(val.toString());
                     }
                 }
-            });
-        });
+            }));
+        }
     }
 
 
@@ -214,4 +243,58 @@ public abstract class DirectQueryBasedDataExtractor implements DataExtractor {
         });
     }
 
+
+    /**
+     * Writes the cursor as CSV, formatting {@link #EXTRACT_FETCH_SIZE} rows at a time.
+     * The output is identical to formatting the complete result in one go.
+     */
+    static void writeCsv(Cursor<? extends Record> cursor, Writer writer) {
+        boolean first = true;
+        do {
+            Result<? extends Record> chunk = cursor.fetchNext(EXTRACT_FETCH_SIZE);
+            if (first || chunk.isNotEmpty()) {
+                chunk.formatCSV(writer, new CSVFormat().header(first));
+            }
+            first = false;
+        } while (cursor.hasNext());
+    }
+
+
+    /**
+     * Writes the cursor as a json array of objects (one per row, keyed by column name).
+     */
+    static void writeJson(Cursor<? extends Record> cursor, Writer writer) throws IOException {
+        JSONFormat format = new JSONFormat()
+                .header(false)
+                .recordFormat(JSONFormat.RecordFormat.OBJECT);
+
+        writer.write('[');
+        boolean first = true;
+        for (Record record : cursor) {
+            if (! first) {
+                writer.write(',');
+            }
+            record.formatJSON(writer, format);
+            first = false;
+        }
+        writer.write(']');
+    }
+
+
+    /**
+     * Opens a lazy cursor over the query.  If a dsl is given the query is rendered with
+     * inlined bind values and executed through it (avoiding bind parameter limits on large
+     * selectors), otherwise the query is executed using its own attached configuration.
+     */
+    private static Cursor<? extends Record> fetchLazy(DSLContext dsl, Select<?> qry) {
+        return dsl == null
+                ? qry.fetchSize(EXTRACT_FETCH_SIZE).fetchLazy()
+                : dsl.resultQuery(dsl.renderInlined(qry)).fetchSize(EXTRACT_FETCH_SIZE).fetchLazy();
+    }
+
+
+    private static Writer mkWriter(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
 }
@@ -54,7 +54,6 @@ import static org.finos.waltz.common.MapUtilities.*;
 import static org.finos.waltz.common.SetUtilities.union;
 import static org.finos.waltz.common.StringUtilities.mkSafe;
 import static org.finos.waltz.model.utils.IdUtilities.indexById;
-import static org.finos.waltz.service.report_grid.ReportGridColumnCalculator.calculate;
 import static org.finos.waltz.web.WebUtilities.readIdSelectionOptionsFromBody;
 import static org.jooq.lambda.tuple.Tuple.tuple;
 import static spark.Spark.post;
@@ -204,9 +203,8 @@ public class ReportGridExtractor implements SupportsJsonExtraction {
 
         Set<Tuple3<Long, Integer, EntityKind>> allColumnDefinitions = union(derivedCols, fixedCols);
 
-        Set<ReportGridCell> tableData = (definition.derivedColumnDefinitions().isEmpty())
-                ? reportGridInstance.cellData()
-                : union(reportGridInstance.cellData(), calculate(reportGridInstance, definition));
+        // derived column values are already included in the instance cell data (see ReportGridService)
+        Set<ReportGridCell> tableData = reportGridInstance.cellData();
 
         Map<Long, RatingSchemeItem> ratingsById = indexById(reportGridInstance.ratingSchemeItems());
 
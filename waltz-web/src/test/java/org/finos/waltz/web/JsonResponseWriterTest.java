@@ -0,0 +1,108 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.web;
+
+
+import org.finos.waltz.common.QueryAccounting;
+import org.finos.waltz.web.JsonResponseWriter.SpillingOutputStream;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class JsonResponseWriterTest {
+
+    @Test
+    public void smallOutputIsBuffered() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        SpillingOutputStream out = new SpillingOutputStream(100, () -> target);
+
+        out.write(bytes("[1,2,3]"));
+        out.flush();
+        out.close();
+
+        assertFalse(out.hasSpilled());
+        assertEquals(0, target.size(), "nothing should reach the response until the route completes");
+        assertArrayEquals(bytes("[1,2,3]"), out.toByteArray());
+    }
+
+
+    @Test
+    public void largeOutputIsStreamed() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        SpillingOutputStream out = new SpillingOutputStream(4, () -> target);
+
+        out.write(bytes("[1,"));
+        out.write(bytes("2,3]"));
+        out.close();
+
+        assertTrue(out.hasSpilled());
+        assertArrayEquals(bytes("[1,2,3]"), target.toByteArray());
+    }
+
+
+    @Test
+    public void digestReflectsContent() throws IOException {
+        assertEquals(digestOf("[1,2,3]"), digestOf("[1,2,3]"));
+        assertNotEquals(digestOf("[1,2,3]"), digestOf("[1,2,4]"));
+    }
+
+
+    @Test
+    public void streamedResponsesCarryQueryAccountingHeaders() throws IOException {
+        QueryAccounting queryAccounting = new QueryAccounting(100);
+        queryAccounting.begin("test");
+        try {
+            QueryAccounting.record("select 1", 2_000_000);
+            HttpServletResponse raw = mock(HttpServletResponse.class);
+
+            JsonResponseWriter.startStreaming(raw, false);
+
+            verify(raw).setHeader(WebUtilities.QUERY_COUNT_HEADER, "1");
+            verify(raw).setHeader(WebUtilities.QUERY_TIME_HEADER, "2");
+        } finally {
+            queryAccounting.end();
+        }
+    }
+
+
+    // -- HELPERS ---
+
+    private static String digestOf(String json) throws IOException {
+        SpillingOutputStream out = new SpillingOutputStream(100, ByteArrayOutputStream::new);
+        out.write(bytes(json));
+        return out.getDigest();
+    }
+
+
+    private static byte[] bytes(String str) {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
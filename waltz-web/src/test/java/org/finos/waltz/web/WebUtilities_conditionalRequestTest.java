@@ -0,0 +1,57 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.web;
+
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WebUtilities_conditionalRequestTest {
+
+    @Test
+    public void gzipIsAcceptedIfListed() {
+        assertTrue(WebUtilities.acceptsGzip("gzip, deflate, br"));
+        assertTrue(WebUtilities.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+        assertTrue(WebUtilities.acceptsGzip("*"));
+    }
+
+    @Test
+    public void gzipIsNotAcceptedIfMissingOrRejected() {
+        assertFalse(WebUtilities.acceptsGzip("gzip;q=0"));
+        assertFalse(WebUtilities.acceptsGzip("deflate"));
+        assertFalse(WebUtilities.acceptsGzip(null));
+    }
+
+    @Test
+    public void eTagsMatchIgnoringWeakness() {
+        assertTrue(WebUtilities.matchesETag("\"abc\"", "\"abc\""));
+        assertTrue(WebUtilities.matchesETag("\"xyz\", W/\"abc\"", "\"abc\""));
+        assertTrue(WebUtilities.matchesETag("\"abc\"", "W/\"abc\""));
+        assertTrue(WebUtilities.matchesETag("*", "\"abc\""));
+    }
+
+    @Test
+    public void differentOrMissingETagsDoNotMatch() {
+        assertFalse(WebUtilities.matchesETag("\"abc-gz\"", "\"abc\""));
+        assertFalse(WebUtilities.matchesETag(null, "\"abc\""));
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package org.finos.waltz.web.endpoints.api;
+
+import org.finos.waltz.web.endpoints.api.StaticAssetCache.Asset;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.finos.waltz.common.IOUtilities.readFully;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class StaticAssetCacheTest {
+
+    private static final String ROOT = "static-asset-cache/";
+
+    private final StaticAssetCache cache = new StaticAssetCache(StaticAssetCacheTest.class.getClassLoader());
+
+
+    @Test
+    public void resourcesAreLoadedOnce() {
+        Asset first = cache.get(ROOT + "app.js", "").get();
+        Asset second = cache.get(ROOT + "app.js", "").get();
+
+        assertSame(first, second);
+        assertEquals(1, cache.getLoadCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+
+    @Test
+    public void missingResourcesAreEmpty() {
+        assertFalse(cache.get(ROOT + "missing.js", "").isPresent());
+    }
+
+
+    @Test
+    public void gzipVariantDecompressesToOriginal() throws IOException {
+        Asset asset = cache.get(ROOT + "app.js", "").get();
+
+        assertTrue(asset.hasGzip());
+        assertNotEquals(asset.getETag(false), asset.getETag(true), "variants need distinct etags");
+
+        byte[] identity = toBytes(asset.getContent(false));
+        byte[] gzip = toBytes(asset.getContent(true));
+        assertTrue(gzip.length < identity.length);
+        assertArrayEquals(identity, readFully(new GZIPInputStream(new ByteArrayInputStream(gzip))));
+    }
+
+
+    @Test
+    public void indexIsRewrittenPerContextPath() {
+        Asset root = cache.get(ROOT + "index.html", "").get();
+        Asset waltz = cache.get(ROOT + "index.html", "/waltz").get();
+        Asset other = cache.get(ROOT + "index.html", "/other").get();
+
+        assertTrue(asString(root).contains("<base href=\"/\" />"));
+        assertTrue(asString(waltz).contains("<base href=\"/waltz/\" />"));
+        assertTrue(asString(other).contains("<base href=\"/other/\" />"));
+        assertNotEquals(waltz.getETag(false), other.getETag(false));
+        assertSame(waltz, cache.get(ROOT + "index.html", "/waltz").get());
+    }
+
+
+    // -- HELPERS ---
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+
+    private static String asString(Asset asset) {
+        return new String(toBytes(asset.getContent(false)), StandardCharsets.UTF_8);
+    }
+
+}
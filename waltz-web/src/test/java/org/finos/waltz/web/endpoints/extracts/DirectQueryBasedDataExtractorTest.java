@@ -0,0 +1,84 @@
+package org.finos.waltz.web.endpoints.extracts;
+
+import org.finos.waltz.schema.tables.records.OrganisationalUnitRecord;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.JSONFormat;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.finos.waltz.schema.tables.OrganisationalUnit.ORGANISATIONAL_UNIT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DirectQueryBasedDataExtractorTest {
+
+    private static final int ROW_COUNT = DirectQueryBasedDataExtractor.EXTRACT_FETCH_SIZE * 2 + 5;
+
+    private final Result<OrganisationalUnitRecord> rows = mkRows(ROW_COUNT);
+    private final DSLContext dsl = DSL.using(
+            new MockConnection(ctx -> new MockResult[]{ new MockResult(rows.size(), rows) }),
+            SQLDialect.POSTGRES);
+
+
+    @Test
+    void streamedCsvMatchesFormattingTheWholeResult() {
+        StringWriter writer = new StringWriter();
+        try (Cursor<OrganisationalUnitRecord> cursor = dsl.selectFrom(ORGANISATIONAL_UNIT).fetchLazy()) {
+            DirectQueryBasedDataExtractor.writeCsv(cursor, writer);
+        }
+
+        assertEquals(rows.formatCSV(), writer.toString());
+    }
+
+
+    @Test
+    void streamedCsvOfEmptyResultIsJustTheHeader() {
+        Result<OrganisationalUnitRecord> empty = mkRows(0);
+        DSLContext emptyDsl = DSL.using(
+                new MockConnection(ctx -> new MockResult[]{ new MockResult(0, empty) }),
+                SQLDialect.POSTGRES);
+
+        StringWriter writer = new StringWriter();
+        try (Cursor<OrganisationalUnitRecord> cursor = emptyDsl.selectFrom(ORGANISATIONAL_UNIT).fetchLazy()) {
+            DirectQueryBasedDataExtractor.writeCsv(cursor, writer);
+        }
+
+        assertEquals(empty.formatCSV(), writer.toString());
+    }
+
+
+    @Test
+    void streamedJsonMatchesFormattingTheWholeResult() throws IOException {
+        StringWriter writer = new StringWriter();
+        try (Cursor<OrganisationalUnitRecord> cursor = dsl.selectFrom(ORGANISATIONAL_UNIT).fetchLazy()) {
+            DirectQueryBasedDataExtractor.writeJson(cursor, writer);
+        }
+
+        String expected = rows.formatJSON(new JSONFormat()
+                .header(false)
+                .recordFormat(JSONFormat.RecordFormat.OBJECT));
+
+        assertEquals(expected, writer.toString());
+    }
+
+
+    private static Result<OrganisationalUnitRecord> mkRows(int count) {
+        DSLContext create = DSL.using(SQLDialect.POSTGRES);
+        Result<OrganisationalUnitRecord> result = create.newResult(ORGANISATIONAL_UNIT);
+        for (long i = 0; i < count; i++) {
+            result.add(create.newRecord(ORGANISATIONAL_UNIT)
+                    .with(ORGANISATIONAL_UNIT.ID, i)
+                    .with(ORGANISATIONAL_UNIT.NAME, "ou, \"" + i + "\"")
+                    .with(ORGANISATIONAL_UNIT.DESCRIPTION, i % 2 == 0 ? null : "desc " + i));
+        }
+        return result;
+    }
+
+}
@@ -20,11 +20,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import spark.Request;
 import spark.Response;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.sql.Connection;
 
 import static org.finos.waltz.schema.tables.OrganisationalUnit.ORGANISATIONAL_UNIT;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -49,10 +54,12 @@ class OrgUnitExtractorTest {
     void recordsFoundAreTransformRecordsToJsonModel() throws IOException {
         when(request.queryParams("format"))
                 .thenReturn("JSON");
-        Object obj =
-                orgUnitExtractor.writeExtract("name",createDummyQuery(),request, response);
-        assertTrue(obj instanceof String);
-        String responseJSON = (String)obj;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpServletResponse httpResponse = mkHttpResponse(body);
+        when(response.raw())
+                .thenReturn(httpResponse);
+        orgUnitExtractor.writeExtract("name",createDummyQuery(),request, response);
+        String responseJSON = body.toString("UTF-8");
         assertTrue(responseJSON.length()>0);
         JsonNode node = JacksonUtilities.getJsonMapper().readTree(responseJSON);
         JsonNode arrElement = node.get(0);
@@ -63,6 +70,26 @@ class OrgUnitExtractorTest {
 
     }
 
+    private HttpServletResponse mkHttpResponse(ByteArrayOutputStream body) throws IOException {
+        HttpServletResponse httpResponse = mock(HttpServletResponse.class);
+        when(httpResponse.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        });
+        return httpResponse;
+    }
+
     private DSLContext createTestDslContext(){
         MockDataProvider provider = context -> {
             DSLContext create = DSL.using(SQLDialect.POSTGRES);
@@ -0,0 +1,50 @@
+function f0() { return "waltz static asset cache test"; }
+function f1() { return "waltz static asset cache test"; }
+function f2() { return "waltz static asset cache test"; }
+function f3() { return "waltz static asset cache test"; }
+function f4() { return "waltz static asset cache test"; }
+function f5() { return "waltz static asset cache test"; }
+function f6() { return "waltz static asset cache test"; }
+function f7() { return "waltz static asset cache test"; }
+function f8() { return "waltz static asset cache test"; }
+function f9() { return "waltz static asset cache test"; }
+function f10() { return "waltz static asset cache test"; }
+function f11() { return "waltz static asset cache test"; }
+function f12() { return "waltz static asset cache test"; }
+function f13() { return "waltz static asset cache test"; }
+function f14() { return "waltz static asset cache test"; }
+function f15() { return "waltz static asset cache test"; }
+function f16() { return "waltz static asset cache test"; }
+function f17() { return "waltz static asset cache test"; }
+function f18() { return "waltz static asset cache test"; }
+function f19() { return "waltz static asset cache test"; }
+function f20() { return "waltz static asset cache test"; }
+function f21() { return "waltz static asset cache test"; }
+function f22() { return "waltz static asset cache test"; }
+function f23() { return "waltz static asset cache test"; }
+function f24() { return "waltz static asset cache test"; }
+function f25() { return "waltz static asset cache test"; }
+function f26() { return "waltz static asset cache test"; }
+function f27() { return "waltz static asset cache test"; }
+function f28() { return "waltz static asset cache test"; }
+function f29() { return "waltz static asset cache test"; }
+function f30() { return "waltz static asset cache test"; }
+function f31() { return "waltz static asset cache test"; }
+function f32() { return "waltz static asset cache test"; }
+function f33() { return "waltz static asset cache test"; }
+function f34() { return "waltz static asset cache test"; }
+function f35() { return "waltz static asset cache test"; }
+function f36() { return "waltz static asset cache test"; }
+function f37() { return "waltz static asset cache test"; }
+function f38() { return "waltz static asset cache test"; }
+function f39() { return "waltz static asset cache test"; }
+function f40() { return "waltz static asset cache test"; }
+function f41() { return "waltz static asset cache test"; }
+function f42() { return "waltz static asset cache test"; }
+function f43() { return "waltz static asset cache test"; }
+function f44() { return "waltz static asset cache test"; }
+function f45() { return "waltz static asset cache test"; }
+function f46() { return "waltz static asset cache test"; }
+function f47() { return "waltz static asset cache test"; }
+function f48() { return "waltz static asset cache test"; }
+function f49() { return "waltz static asset cache test"; }